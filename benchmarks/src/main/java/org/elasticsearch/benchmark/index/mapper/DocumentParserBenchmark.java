@@ -0,0 +1,164 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.index.mapper;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AnalyzerScope;
+import org.elasticsearch.index.analysis.IndexAnalyzers;
+import org.elasticsearch.index.analysis.NamedAnalyzer;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.similarity.SimilarityService;
+import org.elasticsearch.indices.IndicesModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of {@link org.elasticsearch.index.mapper.DocumentParser} on documents
+ * shaped like structured logs where every field is already mapped, so no dynamic mapping updates
+ * are produced.
+ */
+@Fork(2)
+@Warmup(iterations = 10)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DocumentParserBenchmark {
+    private static final String[] OBJECTS = new String[] { "event", "host", "http", "labels" };
+    private static final String[] TYPES = new String[] { "keyword", "long", "keyword", "ip", "date" };
+
+    @Param({ "200" })
+    private int fields;
+
+    /**
+     * Whether the document uses dotted field names ({@code host.f1}) rather than nested objects.
+     */
+    @Param({ "false", "true" })
+    private boolean dotted;
+
+    private MapperService mapperService;
+    private SourceToParse source;
+
+    @Setup
+    public void setup() throws IOException {
+        Settings settings = Settings.builder()
+            .put("index.number_of_replicas", 0)
+            .put("index.number_of_shards", 1)
+            .put("index.version.created", Version.CURRENT)
+            .build();
+        IndexSettings indexSettings = new IndexSettings(IndexMetadata.builder("index").settings(settings).build(), settings);
+        IndexAnalyzers indexAnalyzers = new IndexAnalyzers(
+            Map.of("default", new NamedAnalyzer("default", AnalyzerScope.INDEX, new StandardAnalyzer())),
+            Map.of(),
+            Map.of()
+        );
+        mapperService = new MapperService(
+            indexSettings,
+            indexAnalyzers,
+            NamedXContentRegistry.EMPTY,
+            new SimilarityService(indexSettings, null, Map.of()),
+            new IndicesModule(List.of()).getMapperRegistry(),
+            () -> { throw new UnsupportedOperationException(); },
+            () -> true,
+            null
+        );
+        mapperService.merge(
+            MapperService.SINGLE_MAPPING_NAME,
+            new CompressedXContent(Strings.toString(mapping())),
+            MapperService.MergeReason.MAPPING_UPDATE
+        );
+        source = new SourceToParse("index", "1", BytesReference.bytes(document()), XContentType.JSON);
+    }
+
+    private XContentBuilder mapping() throws IOException {
+        XContentBuilder b = XContentFactory.jsonBuilder().startObject().startObject("_doc").startObject("properties");
+        b.startObject("@timestamp").field("type", "date").endObject();
+        b.startObject("message").field("type", "text").endObject();
+        int perObject = fields / OBJECTS.length;
+        for (String object : OBJECTS) {
+            b.startObject(object).startObject("properties");
+            for (int f = 0; f < perObject; f++) {
+                b.startObject("f" + f).field("type", TYPES[f % TYPES.length]).endObject();
+            }
+            b.endObject().endObject();
+        }
+        return b.endObject().endObject().endObject();
+    }
+
+    private XContentBuilder document() throws IOException {
+        XContentBuilder b = XContentFactory.jsonBuilder().startObject();
+        b.field("@timestamp", "2021-04-28T19:15:04.123Z");
+        b.field("message", "GET /search?q=elasticsearch HTTP/1.1 200 2326 \"-\" \"Mozilla/5.0\"");
+        int perObject = fields / OBJECTS.length;
+        for (String object : OBJECTS) {
+            if (dotted == false) {
+                b.startObject(object);
+            }
+            for (int f = 0; f < perObject; f++) {
+                String name = dotted ? object + ".f" + f : "f" + f;
+                switch (TYPES[f % TYPES.length]) {
+                    case "keyword":
+                        b.field(name, "value-" + f);
+                        break;
+                    case "long":
+                        b.field(name, f * 1000L);
+                        break;
+                    case "ip":
+                        b.field(name, "10.0." + (f % 256) + ".1");
+                        break;
+                    case "date":
+                        b.field(name, 1619637304000L + f);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unsupported type");
+                }
+            }
+            if (dotted == false) {
+                b.endObject();
+            }
+        }
+        return b.endObject();
+    }
+
+    @Benchmark
+    public ParsedDocument parse() {
+        ParsedDocument doc = mapperService.documentMapper().parse(source);
+        if (doc.dynamicMappingsUpdate() != null) {
+            throw new AssertionError("expected all fields to be mapped");
+        }
+        return doc;
+    }
+}
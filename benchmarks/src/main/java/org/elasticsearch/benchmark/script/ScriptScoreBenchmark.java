@@ -88,7 +88,7 @@ public class ScriptScoreBenchmark {
         (mft, lookup) -> mft.fielddataBuilder("test", lookup).build(fieldDataCache, breakerService)
     );
 
-    @Param({ "expression", "metal", "painless_cast", "painless_def" })
+    @Param({ "expression", "metal", "painless_cast", "painless_cast_get", "painless_def" })
     private String script;
 
     @Param({ "16" })
@@ -116,6 +116,15 @@ public class ScriptScoreBenchmark {
                         Map.of()
                     );
                 break;
+            case "painless_cast_get":
+                factory = scriptModule.engines.get("painless")
+                    .compile(
+                        "test",
+                        "((org.elasticsearch.index.fielddata.ScriptDocValues.Longs)doc['n']).get(0)",
+                        ScoreScript.CONTEXT,
+                        Map.of()
+                    );
+                break;
             case "painless_def":
                 factory = scriptModule.engines.get("painless").compile("test", "doc['n'].value", ScoreScript.CONTEXT, Map.of());
                 break;
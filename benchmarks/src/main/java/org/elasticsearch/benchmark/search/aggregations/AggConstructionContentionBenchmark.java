@@ -8,50 +8,25 @@
 
 package org.elasticsearch.benchmark.search.aggregations;
 
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
-import org.apache.lucene.search.Query;
-import org.elasticsearch.common.breaker.CircuitBreaker;
-import org.elasticsearch.common.breaker.PreallocatedCircuitBreakerService;
-import org.elasticsearch.common.lease.Releasable;
-import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.PageCacheRecycler;
 import org.elasticsearch.index.Index;
-import org.elasticsearch.index.IndexSettings;
-import org.elasticsearch.index.analysis.NamedAnalyzer;
-import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
-import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.fielddata.IndexFieldDataCache;
 import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.elasticsearch.index.mapper.NumberFieldMapper.NumberType;
-import org.elasticsearch.index.mapper.ObjectMapper;
-import org.elasticsearch.index.query.QueryBuilder;
-import org.elasticsearch.index.query.support.NestedScope;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
-import org.elasticsearch.script.Script;
-import org.elasticsearch.script.ScriptContext;
 import org.elasticsearch.search.SearchModule;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
-import org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.SumAggregationBuilder;
-import org.elasticsearch.search.aggregations.support.AggregationContext;
-import org.elasticsearch.search.aggregations.support.ValuesSourceRegistry;
-import org.elasticsearch.search.internal.SubSearchContext;
-import org.elasticsearch.search.lookup.SearchLookup;
-import org.elasticsearch.search.sort.BucketedSort;
-import org.elasticsearch.search.sort.BucketedSort.ExtraData;
-import org.elasticsearch.search.sort.SortAndFormats;
-import org.elasticsearch.search.sort.SortBuilder;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -66,12 +41,8 @@ import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
 
 /**
  * Benchmarks the overhead of constructing {@link Aggregator}s in many
@@ -152,56 +123,18 @@ public class AggConstructionContentionBenchmark {
         }
     }
 
-    private class DummyAggregationContext extends AggregationContext {
-        private final Query query = new MatchAllDocsQuery();
-        private final List<Releasable> releaseMe = new ArrayList<>();
-
-        private final CircuitBreaker breaker;
-        private final PreallocatedCircuitBreakerService preallocated;
-        private final MultiBucketConsumer multiBucketConsumer;
-
+    private class DummyAggregationContext extends BenchmarkAggregationContext {
         DummyAggregationContext(long bytesToPreallocate) {
-            CircuitBreakerService breakerService;
-            if (preallocateBreaker) {
-                breakerService = preallocated = new PreallocatedCircuitBreakerService(
-                    AggConstructionContentionBenchmark.this.breakerService,
-                    CircuitBreaker.REQUEST,
-                    bytesToPreallocate,
-                    "aggregations"
-                );
-            } else {
-                breakerService = AggConstructionContentionBenchmark.this.breakerService;
-                preallocated = null;
-            }
-            breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
-            multiBucketConsumer = new MultiBucketConsumer(Integer.MAX_VALUE, breaker);
-        }
-
-        @Override
-        public Query query() {
-            return query;
-        }
-
-        @Override
-        public Aggregator profileIfEnabled(Aggregator agg) throws IOException {
-            return agg;
-        }
-
-        @Override
-        public boolean profiling() {
-            return false;
-        }
-
-        @Override
-        public long nowInMillis() {
-            return 0;
-        }
-
-        @Override
-        protected IndexFieldData<?> buildFieldData(MappedFieldType ft) {
-            IndexFieldDataCache indexFieldDataCache = indicesFieldDataCache.buildIndexFieldDataCache(new IndexFieldDataCache.Listener() {
-            }, index, ft.name());
-            return ft.fielddataBuilder("test", this::lookup).build(indexFieldDataCache, breakerService);
+            super(
+                searchModule.getValuesSourceRegistry(),
+                indicesFieldDataCache,
+                index,
+                null,
+                new MatchAllDocsQuery(),
+                bigArrays,
+                breakerService,
+                preallocateBreaker ? bytesToPreallocate : 0
+            );
         }
 
         @Override
@@ -212,131 +145,9 @@ public class AggConstructionContentionBenchmark {
             throw new UnsupportedOperationException();
         }
 
-        @Override
-        public Collection<MappedFieldType> getMatchingFieldTypes(String pattern) {
-            throw new UnsupportedOperationException();
-        }
-
         @Override
         public boolean isFieldMapped(String field) {
             return field.startsWith("int");
         }
-
-        @Override
-        public <FactoryType> FactoryType compile(Script script, ScriptContext<FactoryType> context) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public SearchLookup lookup() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public ValuesSourceRegistry getValuesSourceRegistry() {
-            return searchModule.getValuesSourceRegistry();
-        }
-
-        @Override
-        public BigArrays bigArrays() {
-            return bigArrays;
-        }
-
-        @Override
-        public IndexSearcher searcher() {
-            return null;
-        }
-
-        @Override
-        public Query buildQuery(QueryBuilder builder) throws IOException {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public Query filterQuery(Query query) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public IndexSettings getIndexSettings() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public Optional<SortAndFormats> buildSort(List<SortBuilder<?>> sortBuilders) throws IOException {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public ObjectMapper getObjectMapper(String path) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public NestedScope nestedScope() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public SubSearchContext subSearchContext() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void addReleasable(Aggregator aggregator) {
-            releaseMe.add(aggregator);
-        }
-
-        @Override
-        public MultiBucketConsumer multiBucketConsumer() {
-            return multiBucketConsumer;
-        }
-
-        @Override
-        public BitsetFilterCache bitsetFilterCache() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public BucketedSort buildBucketedSort(SortBuilder<?> sort, int size, ExtraData values) throws IOException {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public int shardRandomSeed() {
-            return 0;
-        }
-
-        @Override
-        public long getRelativeTimeInMillis() {
-            return 0;
-        }
-
-        @Override
-        public boolean isCancelled() {
-            return false;
-        }
-
-        @Override
-        public CircuitBreaker breaker() {
-            return breaker;
-        }
-
-        @Override
-        public Analyzer getIndexAnalyzer(Function<String, NamedAnalyzer> unindexedFieldAnalyzer) {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public boolean isCacheable() {
-            throw new UnsupportedOperationException();
-        }
-
-        @Override
-        public void close() {
-            List<Releasable> releaseMe = new ArrayList<>(this.releaseMe);
-            releaseMe.add(preallocated);
-            Releasables.close(releaseMe);
-        }
     }
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.PreallocatedCircuitBreakerService;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.NamedAnalyzer;
+import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.ObjectMapper;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.support.NestedScope;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptContext;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.MultiBucketConsumerService.MultiBucketConsumer;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSourceRegistry;
+import org.elasticsearch.search.internal.SubSearchContext;
+import org.elasticsearch.search.lookup.SearchLookup;
+import org.elasticsearch.search.sort.BucketedSort;
+import org.elasticsearch.search.sort.BucketedSort.ExtraData;
+import org.elasticsearch.search.sort.SortAndFormats;
+import org.elasticsearch.search.sort.SortBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * {@link AggregationContext} for benchmarks that build aggregators without
+ * a node. Benchmarks map their fields and throw
+ * {@link UnsupportedOperationException} for anything they don't need.
+ */
+abstract class BenchmarkAggregationContext extends AggregationContext {
+    private final ValuesSourceRegistry valuesSourceRegistry;
+    private final IndicesFieldDataCache indicesFieldDataCache;
+    private final Index index;
+    private final IndexSearcher searcher;
+    private final Query query;
+    private final BigArrays bigArrays;
+    private final CircuitBreakerService breakerService;
+    private final PreallocatedCircuitBreakerService preallocated;
+    private final CircuitBreaker breaker;
+    private final MultiBucketConsumer multiBucketConsumer;
+    private final NestedScope nestedScope = new NestedScope();
+    private final List<Releasable> releaseMe = new ArrayList<>();
+
+    /**
+     * @param searcher the searcher to collect with or {@code null} if the benchmark only builds aggregators
+     * @param bytesToPreallocate bytes to preallocate on the request breaker, {@code 0} to account every allocation on it
+     */
+    BenchmarkAggregationContext(
+        ValuesSourceRegistry valuesSourceRegistry,
+        IndicesFieldDataCache indicesFieldDataCache,
+        Index index,
+        @Nullable IndexSearcher searcher,
+        Query query,
+        BigArrays bigArrays,
+        CircuitBreakerService breakerService,
+        long bytesToPreallocate
+    ) {
+        this.valuesSourceRegistry = valuesSourceRegistry;
+        this.indicesFieldDataCache = indicesFieldDataCache;
+        this.index = index;
+        this.searcher = searcher;
+        this.query = query;
+        this.bigArrays = bigArrays;
+        this.breakerService = breakerService;
+        if (bytesToPreallocate == 0) {
+            preallocated = null;
+            breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+        } else {
+            preallocated = new PreallocatedCircuitBreakerService(
+                breakerService,
+                CircuitBreaker.REQUEST,
+                bytesToPreallocate,
+                "aggregations"
+            );
+            breaker = preallocated.getBreaker(CircuitBreaker.REQUEST);
+        }
+        multiBucketConsumer = new MultiBucketConsumer(Integer.MAX_VALUE, breaker);
+    }
+
+    @Override
+    public Query query() {
+        return query;
+    }
+
+    @Override
+    public Aggregator profileIfEnabled(Aggregator agg) throws IOException {
+        return agg;
+    }
+
+    @Override
+    public boolean profiling() {
+        return false;
+    }
+
+    @Override
+    public long nowInMillis() {
+        return 0;
+    }
+
+    @Override
+    protected IndexFieldData<?> buildFieldData(MappedFieldType ft) {
+        IndexFieldDataCache indexFieldDataCache = indicesFieldDataCache.buildIndexFieldDataCache(new IndexFieldDataCache.Listener() {
+        }, index, ft.name());
+        return ft.fielddataBuilder("test", this::lookup).build(indexFieldDataCache, breakerService);
+    }
+
+    @Override
+    public Collection<MappedFieldType> getMatchingFieldTypes(String pattern) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <FactoryType> FactoryType compile(Script script, ScriptContext<FactoryType> context) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public SearchLookup lookup() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ValuesSourceRegistry getValuesSourceRegistry() {
+        return valuesSourceRegistry;
+    }
+
+    @Override
+    public BigArrays bigArrays() {
+        return bigArrays;
+    }
+
+    @Override
+    public IndexSearcher searcher() {
+        return searcher;
+    }
+
+    @Override
+    public Query buildQuery(QueryBuilder builder) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Query filterQuery(Query query) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public IndexSettings getIndexSettings() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Optional<SortAndFormats> buildSort(List<SortBuilder<?>> sortBuilders) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ObjectMapper getObjectMapper(String path) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NestedScope nestedScope() {
+        return nestedScope;
+    }
+
+    @Override
+    public SubSearchContext subSearchContext() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void addReleasable(Aggregator aggregator) {
+        releaseMe.add(aggregator);
+    }
+
+    @Override
+    public MultiBucketConsumer multiBucketConsumer() {
+        return multiBucketConsumer;
+    }
+
+    @Override
+    public BitsetFilterCache bitsetFilterCache() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public BucketedSort buildBucketedSort(SortBuilder<?> sort, int size, ExtraData values) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int shardRandomSeed() {
+        return 0;
+    }
+
+    @Override
+    public long getRelativeTimeInMillis() {
+        return 0;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public CircuitBreaker breaker() {
+        return breaker;
+    }
+
+    @Override
+    public Analyzer getIndexAnalyzer(Function<String, NamedAnalyzer> unindexedFieldAnalyzer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean isCacheable() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ConcurrentMap<String, Object> pointInTimeState() {
+        return null;
+    }
+
+    @Override
+    public CircuitBreaker pointInTimeBreaker() {
+        return breakerService.getBreaker(CircuitBreaker.REQUEST);
+    }
+
+    @Override
+    public void close() {
+        /*
+         * Release the preallocated bytes after all the aggregations that
+         * allocate bytes on them.
+         */
+        List<Releasable> releaseMe = new ArrayList<>(this.releaseMe);
+        releaseMe.add(preallocated);
+        Releasables.close(releaseMe);
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
+import org.elasticsearch.search.SearchModule;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramInterval;
+import org.elasticsearch.search.aggregations.metrics.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks collecting a {@code date_histogram} over 30 days of metrics,
+ * one document every ten seconds, at one hour intervals. That has too many
+ * buckets to be collected as a {@code range} so it measures the rounding
+ * collector. Small segments of documents indexed in timestamp order fall
+ * into a single bucket, which is the best case for time series data.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DateHistogramAggregatorBenchmark {
+    private static final String FIELD = "@timestamp";
+    private static final long START = 1609459200000L; // 2021-01-01T00:00:00Z
+    private static final long INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    private static final int DOCS = (int) (TimeUnit.DAYS.toMillis(30) / INTERVAL);
+
+    private final SearchModule searchModule = new SearchModule(Settings.EMPTY, List.of());
+    private final Index index = new Index("test", "uuid");
+    private final IndicesFieldDataCache indicesFieldDataCache = new IndicesFieldDataCache(
+        Settings.EMPTY,
+        new IndexFieldDataCache.Listener() {
+        }
+    );
+    private final CircuitBreakerService breakerService = new NoneCircuitBreakerService();
+    private final MappedFieldType fieldType = new DateFieldMapper.DateFieldType(FIELD);
+
+    /**
+     * Documents per segment. Segments of 100 documents usually fall in a
+     * single hour while segments of 100000 documents span about 11 days.
+     */
+    @Param({ "100", "100000" })
+    private int docsPerSegment;
+
+    /**
+     * Are the documents indexed in timestamp order, as they usually are
+     * for metrics, or in random order?
+     */
+    @Param({ "true", "false" })
+    private boolean sorted;
+
+    /**
+     * {@code none} to only count documents or {@code max} to collect a
+     * sub-aggregation, which needs every document of the bucket.
+     */
+    @Param({ "none", "max" })
+    private String subAggregation;
+
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+
+    @Setup
+    public void setup() throws IOException {
+        long[] timestamps = new long[DOCS];
+        for (int i = 0; i < DOCS; i++) {
+            timestamps[i] = START + i * INTERVAL;
+        }
+        if (sorted == false) {
+            Random random = new Random(0);
+            for (int i = timestamps.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                long tmp = timestamps[i];
+                timestamps[i] = timestamps[j];
+                timestamps[j] = tmp;
+            }
+        }
+        directory = new ByteBuffersDirectory();
+        IndexWriterConfig config = new IndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE)
+            .setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH)
+            .setRAMBufferSizeMB(256);
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            for (int i = 0; i < timestamps.length; i++) {
+                writer.addDocument(List.of(new LongPoint(FIELD, timestamps[i]), new SortedNumericDocValuesField(FIELD, timestamps[i])));
+                if ((i + 1) % docsPerSegment == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        directory.close();
+    }
+
+    @Benchmark
+    public InternalAggregation dateHistogram() throws IOException {
+        DateHistogramAggregationBuilder builder = new DateHistogramAggregationBuilder("histo").field(FIELD)
+            .fixedInterval(DateHistogramInterval.HOUR);
+        if (subAggregation.equals("max")) {
+            builder.subAggregation(new MaxAggregationBuilder("max").field(FIELD));
+        }
+        return collect(builder);
+    }
+
+    private InternalAggregation collect(AggregationBuilder builder) throws IOException {
+        AggregatorFactories.Builder factories = new AggregatorFactories.Builder().addAggregator(builder);
+        try (AggregationContext context = new DateHistogramAggregationContext()) {
+            Aggregator aggregator = factories.build(context, null).createTopLevelAggregators()[0];
+            aggregator.preCollection();
+            searcher.search(context.query(), aggregator);
+            aggregator.postCollection();
+            return aggregator.buildTopLevel();
+        }
+    }
+
+    private class DateHistogramAggregationContext extends BenchmarkAggregationContext {
+        DateHistogramAggregationContext() {
+            super(
+                searchModule.getValuesSourceRegistry(),
+                indicesFieldDataCache,
+                index,
+                searcher,
+                new MatchAllDocsQuery(),
+                BigArrays.NON_RECYCLING_INSTANCE,
+                breakerService,
+                0
+            );
+        }
+
+        @Override
+        public MappedFieldType getFieldType(String path) {
+            if (path.equals(FIELD)) {
+                return fieldType;
+            }
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isFieldMapped(String field) {
+            return field.equals(FIELD);
+        }
+    }
+}
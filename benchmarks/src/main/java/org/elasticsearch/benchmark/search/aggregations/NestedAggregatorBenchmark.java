@@ -0,0 +1,257 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.benchmark.search.aggregations;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Accountable;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.lucene.search.Queries;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.cache.bitset.BitsetFilterCache;
+import org.elasticsearch.index.fielddata.IndexFieldDataCache;
+import org.elasticsearch.index.mapper.ContentPath;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NestedPathFieldMapper;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.mapper.ObjectMapper;
+import org.elasticsearch.index.mapper.SeqNoFieldMapper;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
+import org.elasticsearch.search.SearchModule;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.bucket.histogram.HistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.NestedAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.nested.ReverseNestedAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.MaxAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks collecting {@code nested} and {@code reverse_nested}
+ * aggregations over orders with 50 line items each, mapped as a single
+ * nested field. That is the layout that lets us collect each order's line
+ * items as a block.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class NestedAggregatorBenchmark {
+    private static final String LINES = "lines";
+    private static final String PRICE = LINES + ".price";
+    private static final String CUSTOMER = "customer";
+    private static final int ORDERS = 20000;
+    private static final int LINES_PER_ORDER = 50;
+    private static final int CUSTOMERS = 100;
+
+    private final SearchModule searchModule = new SearchModule(Settings.EMPTY, List.of());
+    private final IndicesFieldDataCache indicesFieldDataCache = new IndicesFieldDataCache(
+        Settings.EMPTY,
+        new IndexFieldDataCache.Listener() {
+        }
+    );
+    private final CircuitBreakerService breakerService = new NoneCircuitBreakerService();
+    private final Map<String, MappedFieldType> fieldTypes = Map.of(
+        PRICE,
+        new NumberFieldMapper.NumberFieldType(PRICE, NumberFieldMapper.NumberType.LONG),
+        CUSTOMER,
+        new NumberFieldMapper.NumberFieldType(CUSTOMER, NumberFieldMapper.NumberType.LONG)
+    );
+    private final ObjectMapper linesMapper = new ObjectMapper.Builder(LINES, Version.CURRENT).nested(ObjectMapper.Nested.newNested())
+        .build(new ContentPath());
+
+    /**
+     * {@code none} to only count documents or {@code max} to collect a
+     * sub-aggregation, which needs every document of the bucket.
+     */
+    @Param({ "none", "max" })
+    private String subAggregation;
+
+    private BitsetFilterCache bitsetFilterCache;
+    private Directory directory;
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+
+    @Setup
+    public void setup() throws IOException {
+        Settings settings = Settings.builder()
+            .put("index.number_of_replicas", 0)
+            .put("index.number_of_shards", 1)
+            .put("index.version.created", Version.CURRENT)
+            .build();
+        IndexSettings indexSettings = new IndexSettings(IndexMetadata.builder("index").settings(settings).build(), settings);
+        bitsetFilterCache = new BitsetFilterCache(indexSettings, new BitsetFilterCache.Listener() {
+            @Override
+            public void onCache(ShardId shardId, Accountable accountable) {}
+
+            @Override
+            public void onRemoval(ShardId shardId, Accountable accountable) {}
+        });
+
+        Random random = new Random(0);
+        directory = new ByteBuffersDirectory();
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            for (int o = 0; o < ORDERS; o++) {
+                // nested docs come right before their parent in the same block
+                List<Document> block = new ArrayList<>(LINES_PER_ORDER + 1);
+                for (int l = 0; l < LINES_PER_ORDER; l++) {
+                    Document line = new Document();
+                    line.add(NestedPathFieldMapper.field(Version.CURRENT, linesMapper.nestedTypePath()));
+                    line.add(new SortedNumericDocValuesField(PRICE, random.nextInt(10000)));
+                    block.add(line);
+                }
+                Document order = new Document();
+                order.add(new NumericDocValuesField(SeqNoFieldMapper.PRIMARY_TERM_NAME, 0));
+                order.add(new SortedNumericDocValuesField(CUSTOMER, random.nextInt(CUSTOMERS)));
+                block.add(order);
+                writer.addDocuments(block);
+            }
+        }
+        reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(directory), new ShardId(bitsetFilterCache.index(), 0));
+        searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(null);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        bitsetFilterCache.close();
+        reader.close();
+        directory.close();
+    }
+
+    /**
+     * A {@code nested} aggregation at the top level, which collects from a
+     * single bucket.
+     */
+    @Benchmark
+    public InternalAggregation nested() throws IOException {
+        return collect(nestedBuilder());
+    }
+
+    /**
+     * A {@code nested} aggregation under a {@code histogram} with a bucket
+     * per customer, which collects from many buckets.
+     */
+    @Benchmark
+    public InternalAggregation nestedUnderHistogram() throws IOException {
+        return collect(new HistogramAggregationBuilder("customers").field(CUSTOMER).interval(1).subAggregation(nestedBuilder()));
+    }
+
+    /**
+     * A {@code reverse_nested} aggregation that joins the line items back
+     * to their orders.
+     */
+    @Benchmark
+    public InternalAggregation reverseNested() throws IOException {
+        ReverseNestedAggregationBuilder reverse = new ReverseNestedAggregationBuilder("orders");
+        if (subAggregation.equals("max")) {
+            reverse.subAggregation(new MaxAggregationBuilder("max").field(CUSTOMER));
+        }
+        return collect(new NestedAggregationBuilder("lines", LINES).subAggregation(reverse));
+    }
+
+    private NestedAggregationBuilder nestedBuilder() {
+        NestedAggregationBuilder builder = new NestedAggregationBuilder("lines", LINES);
+        if (subAggregation.equals("max")) {
+            builder.subAggregation(new MaxAggregationBuilder("max").field(PRICE));
+        }
+        return builder;
+    }
+
+    private InternalAggregation collect(AggregationBuilder builder) throws IOException {
+        AggregatorFactories.Builder factories = new AggregatorFactories.Builder().addAggregator(builder);
+        try (AggregationContext context = new NestedAggregationContext()) {
+            Aggregator aggregator = factories.build(context, null).createTopLevelAggregators()[0];
+            aggregator.preCollection();
+            searcher.search(context.query(), aggregator);
+            aggregator.postCollection();
+            return aggregator.buildTopLevel();
+        }
+    }
+
+    private class NestedAggregationContext extends BenchmarkAggregationContext {
+        NestedAggregationContext() {
+            super(
+                searchModule.getValuesSourceRegistry(),
+                indicesFieldDataCache,
+                bitsetFilterCache.index(),
+                searcher,
+                // like the query phase we only match the top level docs
+                Queries.newNonNestedFilter(),
+                BigArrays.NON_RECYCLING_INSTANCE,
+                breakerService,
+                0
+            );
+        }
+
+        @Override
+        public MappedFieldType getFieldType(String path) {
+            MappedFieldType fieldType = fieldTypes.get(path);
+            if (fieldType == null) {
+                throw new UnsupportedOperationException();
+            }
+            return fieldType;
+        }
+
+        @Override
+        public boolean isFieldMapped(String field) {
+            return fieldTypes.containsKey(field);
+        }
+
+        @Override
+        public ObjectMapper getObjectMapper(String path) {
+            if (path.equals(LINES)) {
+                return linesMapper;
+            }
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BitsetFilterCache bitsetFilterCache() {
+            return bitsetFilterCache;
+        }
+    }
+}
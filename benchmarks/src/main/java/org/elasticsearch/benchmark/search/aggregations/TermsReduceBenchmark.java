@@ -21,6 +21,7 @@ import org.elasticsearch.common.breaker.NoopCircuitBreaker;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.lucene.search.TopDocsAndMaxScore;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
@@ -28,6 +29,7 @@ import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchModule;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.AggregationReducePool;
 import org.elasticsearch.search.aggregations.BucketOrder;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregations;
@@ -46,6 +48,7 @@ import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.annotations.Warmup;
 
 import java.util.AbstractList;
@@ -76,7 +79,12 @@ public class TermsReduceBenchmark {
         req -> new InternalAggregation.ReduceContextBuilder() {
             @Override
             public InternalAggregation.ReduceContext forPartialReduction() {
-                return InternalAggregation.ReduceContext.forPartialReduction(null, null, () -> PipelineAggregator.PipelineTree.EMPTY);
+                return InternalAggregation.ReduceContext.forPartialReduction(
+                    null,
+                    null,
+                    () -> PipelineAggregator.PipelineTree.EMPTY,
+                    reducePool
+                );
             }
 
             @Override
@@ -89,7 +97,8 @@ public class TermsReduceBenchmark {
                     null,
                     null,
                     bucketConsumer,
-                    PipelineAggregator.PipelineTree.EMPTY
+                    PipelineAggregator.PipelineTree.EMPTY,
+                    reducePool
                 );
             }
         }
@@ -100,12 +109,19 @@ public class TermsReduceBenchmark {
         @Param({ "1600172297" })
         long seed;
 
-        @Param({ "64", "128", "512" })
+        @Param({ "64", "128", "512", "1000" })
         int numShards;
 
-        @Param({ "100" })
+        @Param({ "100", "10000" })
         int topNSize;
 
+        /**
+         * The size of the terms under each top bucket, {@code 0} to benchmark terms without sub-aggregations. The largest
+         * combinations of shards, top buckets and nested buckets need a large heap.
+         */
+        @Param({ "0", "10" })
+        int nestedTopNSize;
+
         @Param({ "1", "10", "100" })
         int cardinalityFactor;
 
@@ -121,20 +137,20 @@ public class TermsReduceBenchmark {
                 dict[i] = new BytesRef(Long.toString(rand.nextLong()));
             }
             for (int i = 0; i < numShards; i++) {
-                aggsList.add(InternalAggregations.from(Collections.singletonList(newTerms(rand, dict, true))));
+                aggsList.add(InternalAggregations.from(Collections.singletonList(newTerms(rand, dict, topNSize, nestedTopNSize > 0))));
             }
         }
 
-        private StringTerms newTerms(Random rand, BytesRef[] dict, boolean withNested) {
+        private StringTerms newTerms(Random rand, BytesRef[] dict, int size, boolean withNested) {
             Set<BytesRef> randomTerms = new HashSet<>();
-            for (int i = 0; i < topNSize; i++) {
+            for (int i = 0; i < size; i++) {
                 randomTerms.add(dict[rand.nextInt(dict.length)]);
             }
             List<StringTerms.Bucket> buckets = new ArrayList<>();
             for (BytesRef term : randomTerms) {
                 InternalAggregations subAggs;
                 if (withNested) {
-                    subAggs = InternalAggregations.from(Collections.singletonList(newTerms(rand, dict, false)));
+                    subAggs = InternalAggregations.from(Collections.singletonList(newTerms(rand, dict, nestedTopNSize, false)));
                 } else {
                     subAggs = InternalAggregations.EMPTY;
                 }
@@ -146,7 +162,7 @@ public class TermsReduceBenchmark {
                 "terms",
                 BucketOrder.key(true),
                 BucketOrder.count(false),
-                topNSize,
+                size,
                 1,
                 Collections.emptyMap(),
                 DocValueFormat.RAW,
@@ -172,6 +188,25 @@ public class TermsReduceBenchmark {
     @Param({ "32", "512" })
     private int bufferSize;
 
+    @Param({ "1", "8" })
+    private int reduceParallelism;
+
+    private AggregationReducePool reducePool;
+
+    @Setup
+    public void setupReducePool() {
+        reducePool = reduceParallelism > 1
+            ? new AggregationReducePool(Settings.EMPTY, reduceParallelism, new ThreadContext(Settings.EMPTY))
+            : null;
+    }
+
+    @TearDown
+    public void closeReducePool() {
+        if (reducePool != null) {
+            reducePool.close();
+        }
+    }
+
     @Benchmark
     public SearchPhaseController.ReducedQueryPhase reduceAggs(TermsList candidateList) throws Exception {
         List<QuerySearchResult> shards = new ArrayList<>();
@@ -11,22 +11,44 @@ package org.elasticsearch.http.netty4;
 import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.http.HttpPipelinedRequest;
 import org.elasticsearch.http.HttpPipelinedResponse;
 import org.elasticsearch.http.HttpPipeliningAggregator;
+import org.elasticsearch.http.HttpResponse;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
+import org.elasticsearch.transport.netty4.Netty4Utils;
 
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Implements HTTP pipelining ordering, ensuring that responses are completely served in the same order as their corresponding requests.
+ * <p>
+ * The body of a {@link Netty4ChunkedHttpResponse} is serialized here, one chunk at a time, and only while the channel is writable so
+ * that a slow client holds back the serialization of a large response rather than making its serialized bytes pile up in memory.
+ * Responses that are ready to be sent while such a body is being written wait for it to complete.
  */
 public class Netty4HttpPipeliningHandler extends ChannelDuplexHandler {
 
     private final Logger logger;
     private final HttpPipeliningAggregator<ChannelPromise> aggregator;
+    private final BigArrays bigArrays;
+
+    /** Responses that are ready to be written once the chunked response that is currently being written completes. */
+    private final ArrayDeque<Tuple<HttpPipelinedResponse, ChannelPromise>> queuedWrites = new ArrayDeque<>();
+
+    @Nullable
+    private ChunkedWrite currentChunkedWrite;
+    private boolean writingChunks;
 
     /**
      * Construct a new pipelining handler; this handler should be used downstream of HTTP decoding/aggregation.
@@ -36,8 +58,21 @@ public class Netty4HttpPipeliningHandler extends ChannelDuplexHandler {
      *                      required as events cannot queue up indefinitely
      */
     public Netty4HttpPipeliningHandler(Logger logger, final int maxEventsHeld) {
+        this(logger, maxEventsHeld, BigArrays.NON_RECYCLING_INSTANCE);
+    }
+
+    /**
+     * Construct a new pipelining handler; this handler should be used downstream of HTTP decoding/aggregation.
+     *
+     * @param logger        for logging unexpected errors
+     * @param maxEventsHeld the maximum number of channel events that will be retained prior to aborting the channel connection; this is
+     *                      required as events cannot queue up indefinitely
+     * @param bigArrays     to allocate the pages that the chunks of chunked responses are serialized into
+     */
+    public Netty4HttpPipeliningHandler(Logger logger, final int maxEventsHeld, BigArrays bigArrays) {
         this.logger = logger;
         this.aggregator = new HttpPipeliningAggregator<>(maxEventsHeld);
+        this.bigArrays = bigArrays;
     }
 
     @Override
@@ -54,9 +89,7 @@ public class Netty4HttpPipeliningHandler extends ChannelDuplexHandler {
         boolean success = false;
         try {
             List<Tuple<HttpPipelinedResponse, ChannelPromise>> readyResponses = aggregator.write(response, promise);
-            for (Tuple<HttpPipelinedResponse, ChannelPromise> readyResponse : readyResponses) {
-                ctx.write(readyResponse.v1().getDelegateRequest(), readyResponse.v2());
-            }
+            queuedWrites.addAll(readyResponses);
             success = true;
         } catch (IllegalStateException e) {
             ctx.channel().close();
@@ -65,22 +98,119 @@ public class Netty4HttpPipeliningHandler extends ChannelDuplexHandler {
                 promise.setFailure(new ClosedChannelException());
             }
         }
+        if (success) {
+            doWrite(ctx);
+        }
+    }
+
+    private void doWrite(ChannelHandlerContext ctx) {
+        if (currentChunkedWrite != null) {
+            writeChunks(ctx);
+        }
+        while (currentChunkedWrite == null && queuedWrites.isEmpty() == false) {
+            final Tuple<HttpPipelinedResponse, ChannelPromise> readyResponse = queuedWrites.poll();
+            final HttpResponse response = readyResponse.v1().getDelegateRequest();
+            if (response instanceof Netty4ChunkedHttpResponse) {
+                currentChunkedWrite = new ChunkedWrite(((Netty4ChunkedHttpResponse) response).body(), readyResponse.v2());
+                ctx.write(response);
+                writeChunks(ctx);
+            } else {
+                ctx.write(response, readyResponse.v2());
+            }
+        }
+    }
+
+    private void writeChunks(ChannelHandlerContext ctx) {
+        final ChunkedWrite chunkedWrite = currentChunkedWrite;
+        final ChunkedRestResponseBody body = chunkedWrite.body;
+        writingChunks = true;
+        try {
+            while (currentChunkedWrite == chunkedWrite) {
+                while (body.isDone() == false && ctx.channel().isWritable()) {
+                    final ReleasableBytesReference chunk;
+                    try {
+                        chunk = body.encodeChunk(Netty4HttpResponseCreator.SPLIT_THRESHOLD, bigArrays);
+                    } catch (Exception e) {
+                        // the head of the response is sent already so the client cannot be told about the failure other than by closing
+                        logger.warn("failed to serialize chunked http response", e);
+                        currentChunkedWrite = null;
+                        chunkedWrite.promise.tryFailure(e);
+                        ctx.channel().close();
+                        return;
+                    }
+                    ctx.write(new DefaultHttpContent(Netty4Utils.toByteBuf(chunk))).addListener(f -> chunk.close());
+                }
+                if (body.isDone()) {
+                    currentChunkedWrite = null;
+                    ctx.write(LastHttpContent.EMPTY_LAST_CONTENT, chunkedWrite.promise);
+                    return;
+                }
+                // flushing may make the channel writable again right away, otherwise we continue once it becomes writable
+                ctx.flush();
+                if (ctx.channel().isWritable() == false) {
+                    return;
+                }
+            }
+        } finally {
+            writingChunks = false;
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        // while chunks are being written, changes of the writability are picked up by the loop that writes them
+        if (writingChunks == false && currentChunkedWrite != null && ctx.channel().isWritable()) {
+            doWrite(ctx);
+            ctx.flush();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+        failPendingWrites();
+        ctx.fireChannelInactive();
     }
 
     @Override
     public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
-        List<Tuple<HttpPipelinedResponse, ChannelPromise>> inflightResponses = aggregator.removeAllInflightResponses();
+        failPendingWrites();
+        ctx.close(promise);
+    }
+
+    private void failPendingWrites() {
+        List<ChannelPromise> pendingPromises = new ArrayList<>();
+        for (Tuple<HttpPipelinedResponse, ChannelPromise> inflightResponse : aggregator.removeAllInflightResponses()) {
+            pendingPromises.add(inflightResponse.v2());
+        }
+        if (currentChunkedWrite != null) {
+            pendingPromises.add(currentChunkedWrite.promise);
+            currentChunkedWrite = null;
+        }
+        Tuple<HttpPipelinedResponse, ChannelPromise> queuedWrite;
+        while ((queuedWrite = queuedWrites.poll()) != null) {
+            pendingPromises.add(queuedWrite.v2());
+        }
 
-        if (inflightResponses.isEmpty() == false) {
+        if (pendingPromises.isEmpty() == false) {
             ClosedChannelException closedChannelException = new ClosedChannelException();
-            for (Tuple<HttpPipelinedResponse, ChannelPromise> inflightResponse : inflightResponses) {
+            for (ChannelPromise pendingPromise : pendingPromises) {
                 try {
-                    inflightResponse.v2().setFailure(closedChannelException);
+                    pendingPromise.tryFailure(closedChannelException);
                 } catch (RuntimeException e) {
                     logger.error("unexpected error while releasing pipelined http responses", e);
                 }
             }
         }
-        ctx.close(promise);
+    }
+
+    private static final class ChunkedWrite {
+        private final ChunkedRestResponseBody body;
+        private final ChannelPromise promise;
+
+        private ChunkedWrite(ChunkedRestResponseBody body, ChannelPromise promise) {
+            this.body = body;
+            this.promise = promise;
+        }
     }
 }
@@ -31,7 +31,7 @@ class Netty4HttpResponseCreator extends MessageToMessageEncoder<Netty4HttpRespon
     private static final String DO_NOT_SPLIT = "es.unsafe.do_not_split_http_responses";
 
     private static final boolean DO_NOT_SPLIT_HTTP_RESPONSES;
-    private static final int SPLIT_THRESHOLD;
+    static final int SPLIT_THRESHOLD;
 
     static {
         DO_NOT_SPLIT_HTTP_RESPONSES = Booleans.parseBoolean(System.getProperty(DO_NOT_SPLIT), false);
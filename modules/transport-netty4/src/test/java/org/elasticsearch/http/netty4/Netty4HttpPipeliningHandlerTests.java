@@ -15,14 +15,20 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.embedded.EmbeddedChannel;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.QueryStringDecoder;
 import org.elasticsearch.common.Randomness;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.http.HttpPipelinedRequest;
 import org.elasticsearch.http.HttpPipelinedResponse;
 import org.elasticsearch.http.HttpResponse;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.test.ESTestCase;
 import org.junit.After;
@@ -37,11 +43,13 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.CONTENT_LENGTH;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.core.Is.is;
 
 public class Netty4HttpPipeliningHandlerTests extends ESTestCase {
@@ -194,6 +202,70 @@ public class Netty4HttpPipeliningHandlerTests extends ESTestCase {
     }
 
 
+    public void testChunkedResponsesAreWrittenWhileWritable() {
+        final EmbeddedChannel embeddedChannel = new EmbeddedChannel(new Netty4HttpPipeliningHandler(logger, 2));
+        embeddedChannel.writeInbound(createHttpRequest("/chunked"));
+        embeddedChannel.writeInbound(createHttpRequest("/full"));
+        final HttpPipelinedRequest chunkedRequest = embeddedChannel.readInbound();
+        final HttpPipelinedRequest fullRequest = embeddedChannel.readInbound();
+
+        final int numChunks = randomIntBetween(1, 20);
+        final AtomicInteger encodedChunks = new AtomicInteger();
+        final ChunkedRestResponseBody body = new ChunkedRestResponseBody() {
+            @Override
+            public boolean isDone() {
+                return encodedChunks.get() == numChunks;
+            }
+
+            @Override
+            public ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) {
+                final String chunk = "chunk-" + encodedChunks.incrementAndGet() + ";";
+                return ReleasableBytesReference.wrap(new BytesArray(chunk.getBytes(StandardCharsets.UTF_8)));
+            }
+
+            @Override
+            public String getResponseContentTypeString() {
+                return "text/plain";
+            }
+        };
+
+        // the body is only serialized while the channel is writable
+        embeddedChannel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+        final ChannelPromise fullPromise = embeddedChannel.newPromise();
+        embeddedChannel.writeAndFlush(fullRequest.createResponse(RestStatus.OK, new BytesArray("full")), fullPromise);
+        final ChannelPromise chunkedPromise = embeddedChannel.newPromise();
+        embeddedChannel.writeAndFlush(chunkedRequest.createResponse(RestStatus.OK, body), chunkedPromise);
+        assertThat(encodedChunks.get(), is(0));
+        assertFalse(chunkedPromise.isDone());
+        assertFalse(fullPromise.isDone());
+
+        embeddedChannel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+        embeddedChannel.runPendingTasks();
+        assertThat(encodedChunks.get(), is(numChunks));
+        assertTrue(chunkedPromise.isSuccess());
+        assertTrue(fullPromise.isSuccess());
+
+        final Object head = embeddedChannel.readOutbound();
+        assertThat(head, instanceOf(io.netty.handler.codec.http.HttpResponse.class));
+        assertTrue(HttpUtil.isTransferEncodingChunked((io.netty.handler.codec.http.HttpResponse) head));
+        final StringBuilder content = new StringBuilder();
+        Object message;
+        while ((message = embeddedChannel.readOutbound()) instanceof LastHttpContent == false) {
+            final HttpContent chunk = (HttpContent) message;
+            content.append(chunk.content().toString(StandardCharsets.UTF_8));
+            chunk.release();
+        }
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= numChunks; i++) {
+            expected.append("chunk-").append(i).append(";");
+        }
+        assertThat(content.toString(), is(expected.toString()));
+        // responses that become ready while a chunked response is being written are sent after it
+        assertReadHttpMessageHasContent(embeddedChannel, "full");
+        assertTrue(embeddedChannel.isOpen());
+    }
+
+
     private void assertReadHttpMessageHasContent(EmbeddedChannel embeddedChannel, String expectedContent) {
         FullHttpResponse response = (FullHttpResponse) embeddedChannel.outboundMessages().poll();
         assertNotNull("Expected response to exist, maybe you did not wait long enough?", response);
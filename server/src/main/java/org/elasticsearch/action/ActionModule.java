@@ -232,6 +232,7 @@ import org.elasticsearch.client.node.NodeClient;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.common.NamedRegistry;
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.inject.AbstractModule;
 import org.elasticsearch.common.inject.TypeLiteral;
 import org.elasticsearch.common.inject.multibindings.MapBinder;
@@ -386,6 +387,7 @@ import org.elasticsearch.usage.UsageService;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -438,7 +440,13 @@ public class ActionModule extends AbstractModule {
         Set<RestHeaderDefinition> headers = Stream.concat(
             actionPlugins.stream().flatMap(p -> p.getRestHeaders().stream()),
             Stream.of(new RestHeaderDefinition(Task.X_OPAQUE_ID, false))
-        ).collect(Collectors.toSet());
+        ).collect(Collectors.toCollection(HashSet::new));
+        final String tenantHeader = ThreadPool.TENANT_HEADER_SETTING.get(settings);
+        if (Strings.isEmpty(tenantHeader) == false
+            && headers.stream().noneMatch(header -> header.getName().equalsIgnoreCase(tenantHeader))) {
+            // the executors that queue tasks per tenant read the tenant from the thread context
+            headers.add(new RestHeaderDefinition(tenantHeader, false));
+        }
         UnaryOperator<RestHandler> restWrapper = null;
         for (ActionPlugin plugin : actionPlugins) {
             UnaryOperator<RestHandler> newRestWrapper = plugin.getRestHandlerWrapper(threadPool.getThreadContext());
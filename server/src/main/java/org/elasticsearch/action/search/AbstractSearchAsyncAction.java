@@ -225,9 +225,17 @@ abstract class AbstractSearchAsyncAction<Result extends SearchPhaseResult> exten
                 int shardIndex = shardItIndexMap.get(shardRoutings);
                 performPhaseOnShard(shardIndex, shardRoutings, shardRoutings.nextOrNull());
             }
+            onPhasePerformedOnAllShards();
         }
     }
 
+    /**
+     * Called once the phase has been performed on the first copy of every shard. Phases that hold back the requests to the shards in
+     * order to send them together can send them here.
+     */
+    protected void onPhasePerformedOnAllShards() {
+    }
+
     void skipShard(SearchShardIterator iterator) {
         successfulOps.incrementAndGet();
         skippedOps.incrementAndGet();
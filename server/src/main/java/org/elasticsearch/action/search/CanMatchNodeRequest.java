@@ -0,0 +1,90 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.action.IndicesRequest;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.search.internal.ShardSearchRequest;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.tasks.TaskId;
+import org.elasticsearch.transport.TransportRequest;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The can_match requests of a single search for all the shards it targets on one node, so that they take a single round trip and
+ * are evaluated by a single task on that node instead of one per shard.
+ */
+public final class CanMatchNodeRequest extends TransportRequest implements IndicesRequest {
+
+    private final List<ShardSearchRequest> shardRequests;
+
+    public CanMatchNodeRequest(List<ShardSearchRequest> shardRequests) {
+        assert shardRequests.isEmpty() == false : "no shard requests";
+        this.shardRequests = shardRequests;
+    }
+
+    public CanMatchNodeRequest(StreamInput in) throws IOException {
+        super(in);
+        shardRequests = in.readList(ShardSearchRequest::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeList(shardRequests);
+    }
+
+    public List<ShardSearchRequest> getShardRequests() {
+        return shardRequests;
+    }
+
+    @Override
+    public String[] indices() {
+        final Set<String> indices = new LinkedHashSet<>();
+        for (ShardSearchRequest shardRequest : shardRequests) {
+            final String[] shardIndices = shardRequest.indices();
+            if (shardIndices != null) {
+                indices.addAll(Arrays.asList(shardIndices));
+            }
+        }
+        return indices.toArray(String[]::new);
+    }
+
+    @Override
+    public IndicesOptions indicesOptions() {
+        // all the shard requests belong to the same search request
+        return shardRequests.get(0).indicesOptions();
+    }
+
+    @Override
+    public Task createTask(long id, String type, String action, TaskId parentTaskId, Map<String, String> headers) {
+        return new SearchShardTask(id, type, action, getDescription(), parentTaskId, headers);
+    }
+
+    @Override
+    public String getDescription() {
+        // the shard ids are enough here, the request itself can be found by looking at the parent task description
+        final StringBuilder description = new StringBuilder("shardIds[");
+        for (int i = 0; i < shardRequests.size(); i++) {
+            if (i > 0) {
+                description.append(", ");
+            }
+            description.append(shardRequests.get(i).shardId());
+        }
+        return description.append(']').toString();
+    }
+}
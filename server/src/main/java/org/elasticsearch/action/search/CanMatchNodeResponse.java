@@ -0,0 +1,97 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.action.search;
+
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.search.SearchService.CanMatchResponse;
+import org.elasticsearch.transport.TransportResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The responses to a {@link CanMatchNodeRequest}, one per shard request and in the same order.
+ */
+public final class CanMatchNodeResponse extends TransportResponse {
+
+    private final List<ResponseOrFailure> responses;
+
+    public CanMatchNodeResponse(List<ResponseOrFailure> responses) {
+        this.responses = responses;
+    }
+
+    public CanMatchNodeResponse(StreamInput in) throws IOException {
+        super(in);
+        responses = in.readList(ResponseOrFailure::new);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeList(responses);
+    }
+
+    public List<ResponseOrFailure> getResponses() {
+        return responses;
+    }
+
+    /**
+     * The response to one of the shard requests of a {@link CanMatchNodeRequest}, or the reason it failed.
+     */
+    public static final class ResponseOrFailure implements Writeable {
+
+        @Nullable
+        private final CanMatchResponse response;
+        @Nullable
+        private final Exception failure;
+
+        public ResponseOrFailure(CanMatchResponse response) {
+            this.response = response;
+            this.failure = null;
+        }
+
+        public ResponseOrFailure(Exception failure) {
+            this.response = null;
+            this.failure = failure;
+        }
+
+        ResponseOrFailure(StreamInput in) throws IOException {
+            if (in.readBoolean()) {
+                response = new CanMatchResponse(in);
+                failure = null;
+            } else {
+                response = null;
+                failure = in.readException();
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            if (response != null) {
+                out.writeBoolean(true);
+                response.writeTo(out);
+            } else {
+                out.writeBoolean(false);
+                out.writeException(failure);
+            }
+        }
+
+        @Nullable
+        public CanMatchResponse getResponse() {
+            return response;
+        }
+
+        @Nullable
+        public Exception getFailure() {
+            return failure;
+        }
+    }
+}
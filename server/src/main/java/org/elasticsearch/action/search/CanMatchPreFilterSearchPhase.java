@@ -12,6 +12,7 @@ import org.apache.lucene.util.FixedBitSet;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.routing.GroupShardsIterator;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.index.query.CoordinatorRewriteContext;
 import org.elasticsearch.index.query.CoordinatorRewriteContextProvider;
@@ -26,7 +27,9 @@ import org.elasticsearch.search.sort.MinAndMax;
 import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.transport.Transport;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
@@ -46,6 +49,7 @@ import java.util.stream.Stream;
  * When the query primary sort is perform on a field, this phase extracts the min/max value in each shard and
  * sort them according to the provided order. This can be useful for instance to ensure that shards that contain recent
  * data are executed first when sorting by descending timestamp.
+ * The requests for all the shards on the same node are sent to that node together, in a single {@link CanMatchNodeRequest}.
  */
 final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<CanMatchResponse> {
 
@@ -53,6 +57,12 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<CanMa
     private final GroupShardsIterator<SearchShardIterator> shardsIts;
     private final CoordinatorRewriteContextProvider coordinatorRewriteContextProvider;
 
+    /**
+     * The requests of the first round of this phase by cluster alias and node id, which are sent to each node together once the
+     * round is complete. Null once they have been sent.
+     */
+    private Map<Tuple<String, String>, List<PendingCanMatch>> pendingRequestsByNode = new LinkedHashMap<>();
+
     CanMatchPreFilterSearchPhase(Logger logger, SearchTransportService searchTransportService,
                                  BiFunction<String, String, Transport.Connection> nodeIdToConnection,
                                  Map<String, AliasFilter> aliasFilter, Map<String, Float> concreteIndexBoosts,
@@ -78,8 +88,74 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<CanMa
     @Override
     protected void executePhaseOnShard(SearchShardIterator shardIt, SearchShardTarget shard,
                                        SearchActionListener<CanMatchResponse> listener) {
-        getSearchTransport().sendCanMatch(getConnection(shard.getClusterAlias(), shard.getNodeId()),
-            buildShardSearchRequest(shardIt, listener.requestIndex), getTask(), listener);
+        final Transport.Connection connection = getConnection(shard.getClusterAlias(), shard.getNodeId());
+        final ShardSearchRequest request = buildShardSearchRequest(shardIt, listener.requestIndex);
+        synchronized (this) {
+            if (pendingRequestsByNode != null) {
+                pendingRequestsByNode.computeIfAbsent(new Tuple<>(shard.getClusterAlias(), shard.getNodeId()), n -> new ArrayList<>())
+                    .add(new PendingCanMatch(connection, request, listener));
+                return;
+            }
+        }
+        // retries on other shard copies are sent right away
+        getSearchTransport().sendCanMatch(connection, request, getTask(), listener);
+    }
+
+    @Override
+    protected void onPhasePerformedOnAllShards() {
+        final Map<Tuple<String, String>, List<PendingCanMatch>> requestsByNode;
+        synchronized (this) {
+            requestsByNode = pendingRequestsByNode;
+            pendingRequestsByNode = null;
+        }
+        for (List<PendingCanMatch> nodeRequests : requestsByNode.values()) {
+            sendCanMatch(nodeRequests);
+        }
+    }
+
+    private void sendCanMatch(List<PendingCanMatch> nodeRequests) {
+        final Transport.Connection connection = nodeRequests.get(0).connection;
+        if (nodeRequests.size() == 1) {
+            final PendingCanMatch pending = nodeRequests.get(0);
+            getSearchTransport().sendCanMatch(connection, pending.request, getTask(), pending.listener);
+            return;
+        }
+        final List<ShardSearchRequest> shardRequests = new ArrayList<>(nodeRequests.size());
+        for (PendingCanMatch pending : nodeRequests) {
+            shardRequests.add(pending.request);
+        }
+        final ActionListener<CanMatchNodeResponse> nodeListener = new ActionListener<>() {
+            @Override
+            public void onResponse(CanMatchNodeResponse response) {
+                final List<CanMatchNodeResponse.ResponseOrFailure> responses = response.getResponses();
+                if (responses.size() != nodeRequests.size()) {
+                    onFailure(new IllegalStateException("expected [" + nodeRequests.size() + "] can_match responses but got ["
+                        + responses.size() + "]"));
+                    return;
+                }
+                for (int i = 0; i < responses.size(); i++) {
+                    final CanMatchNodeResponse.ResponseOrFailure responseOrFailure = responses.get(i);
+                    if (responseOrFailure.getResponse() != null) {
+                        nodeRequests.get(i).listener.onResponse(responseOrFailure.getResponse());
+                    } else {
+                        nodeRequests.get(i).listener.onFailure(responseOrFailure.getFailure());
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                for (PendingCanMatch pending : nodeRequests) {
+                    pending.listener.onFailure(e);
+                }
+            }
+        };
+        try {
+            getSearchTransport().sendCanMatch(connection, new CanMatchNodeRequest(shardRequests), getTask(), nodeListener);
+        } catch (Exception e) {
+            // moves each shard on to its next copy, which we must not do on the thread that runs the phase, see #performPhaseOnShard
+            fork(() -> nodeListener.onFailure(e));
+        }
     }
 
     @Override
@@ -189,6 +265,19 @@ final class CanMatchPreFilterSearchPhase extends AbstractSearchAsyncAction<CanMa
         return comparator.thenComparing(index -> shardsIts.get(index));
     }
 
+    private static final class PendingCanMatch {
+        private final Transport.Connection connection;
+        private final ShardSearchRequest request;
+        private final SearchActionListener<CanMatchResponse> listener;
+
+        private PendingCanMatch(Transport.Connection connection, ShardSearchRequest request,
+                                SearchActionListener<CanMatchResponse> listener) {
+            this.connection = connection;
+            this.request = request;
+            this.listener = listener;
+        }
+    }
+
     private static final class CanMatchSearchPhaseResults extends SearchPhaseResults<CanMatchResponse> {
         private final FixedBitSet possibleMatches;
         private final MinAndMax<?>[] minAndMaxes;
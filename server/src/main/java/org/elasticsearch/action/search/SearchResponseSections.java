@@ -8,7 +8,9 @@
 
 package org.elasticsearch.action.search;
 
+import org.elasticsearch.common.collect.Iterators;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.SearchHits;
@@ -19,6 +21,7 @@ import org.elasticsearch.search.suggest.Suggest;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 
 /**
@@ -93,6 +96,18 @@ public class SearchResponseSections implements ToXContentFragment {
     @Override
     public final XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         hits.toXContent(builder, params);
+        return trailingSectionsToXContent(builder, params);
+    }
+
+    /**
+     * Returns the same x-content as {@link #toXContent} in fragments, see {@link SearchHits#toXContentChunked()}.
+     */
+    @SuppressWarnings("unchecked")
+    public final Iterator<ToXContent> toXContentChunked() {
+        return Iterators.<ToXContent>concat(hits.toXContentChunked(), Iterators.<ToXContent>single(this::trailingSectionsToXContent));
+    }
+
+    private XContentBuilder trailingSectionsToXContent(XContentBuilder builder, Params params) throws IOException {
         if (aggregations != null) {
             aggregations.toXContent(builder, params);
         }
@@ -8,6 +8,7 @@
 
 package org.elasticsearch.action.search;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionListenerResponseHandler;
 import org.elasticsearch.action.IndicesRequest;
@@ -24,7 +25,9 @@ import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.common.util.concurrent.CountDown;
 import org.elasticsearch.search.SearchPhaseResult;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.dfs.DfsSearchResult;
@@ -39,6 +42,7 @@ import org.elasticsearch.search.internal.ShardSearchRequest;
 import org.elasticsearch.search.query.QuerySearchRequest;
 import org.elasticsearch.search.query.QuerySearchResult;
 import org.elasticsearch.search.query.ScrollQuerySearchResult;
+import org.elasticsearch.tasks.CancellableTask;
 import org.elasticsearch.tasks.TaskId;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.RemoteClusterService;
@@ -52,6 +56,7 @@ import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.BiFunction;
@@ -73,6 +78,7 @@ public class SearchTransportService {
     public static final String FETCH_ID_SCROLL_ACTION_NAME = "indices:data/read/search[phase/fetch/id/scroll]";
     public static final String FETCH_ID_ACTION_NAME = "indices:data/read/search[phase/fetch/id]";
     public static final String QUERY_CAN_MATCH_NAME = "indices:data/read/search[can_match]";
+    public static final String QUERY_CAN_MATCH_NODE_NAME = "indices:data/read/search[can_match][n]";
 
     private final TransportService transportService;
     private final NodeClient client;
@@ -113,6 +119,52 @@ public class SearchTransportService {
             TransportRequestOptions.EMPTY, new ActionListenerResponseHandler<>(listener, SearchService.CanMatchResponse::new));
     }
 
+    public void sendCanMatch(Transport.Connection connection, final CanMatchNodeRequest request, SearchTask task, final
+                            ActionListener<CanMatchNodeResponse> listener) {
+        if (connection.getVersion().before(Version.V_8_0_0)) {
+            sendCanMatchPerShard(connection, request, task, listener);
+            return;
+        }
+        transportService.sendChildRequest(connection, QUERY_CAN_MATCH_NODE_NAME, request, task,
+            TransportRequestOptions.EMPTY, new ActionListenerResponseHandler<>(listener, CanMatchNodeResponse::new));
+    }
+
+    /**
+     * Sends the shard requests of the given node-level can_match request one by one, for nodes that do not know the node-level action.
+     */
+    protected void sendCanMatchPerShard(Transport.Connection connection, CanMatchNodeRequest request, SearchTask task,
+                                        ActionListener<CanMatchNodeResponse> listener) {
+        final List<ShardSearchRequest> shardRequests = request.getShardRequests();
+        final AtomicArray<CanMatchNodeResponse.ResponseOrFailure> responses = new AtomicArray<>(shardRequests.size());
+        final CountDown countDown = new CountDown(shardRequests.size());
+        for (int i = 0; i < shardRequests.size(); i++) {
+            final int index = i;
+            final ActionListener<SearchService.CanMatchResponse> shardListener = new ActionListener<>() {
+                @Override
+                public void onResponse(SearchService.CanMatchResponse response) {
+                    onShardDone(new CanMatchNodeResponse.ResponseOrFailure(response));
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    onShardDone(new CanMatchNodeResponse.ResponseOrFailure(e));
+                }
+
+                private void onShardDone(CanMatchNodeResponse.ResponseOrFailure responseOrFailure) {
+                    responses.set(index, responseOrFailure);
+                    if (countDown.countDown()) {
+                        listener.onResponse(new CanMatchNodeResponse(responses.asList()));
+                    }
+                }
+            };
+            try {
+                sendCanMatch(connection, shardRequests.get(i), task, shardListener);
+            } catch (Exception e) {
+                shardListener.onFailure(e);
+            }
+        }
+    }
+
     public void sendClearAllScrollContexts(Transport.Connection connection, final ActionListener<TransportResponse> listener) {
         transportService.sendRequest(connection, CLEAR_SCROLL_CONTEXTS_ACTION_NAME, TransportRequest.Empty.INSTANCE,
             TransportRequestOptions.EMPTY, new ActionListenerResponseHandler<>(listener, (in) -> TransportResponse.Empty.INSTANCE));
@@ -355,6 +407,14 @@ public class SearchTransportService {
                 searchService.canMatch(request, new ChannelActionListener<>(channel, QUERY_CAN_MATCH_NAME, request));
             });
         TransportActionProxy.registerProxyAction(transportService, QUERY_CAN_MATCH_NAME, true, SearchService.CanMatchResponse::new);
+
+        // the requests for all the shards of a node add up, so unlike the request for a single shard we fork them off the network thread
+        transportService.registerRequestHandler(QUERY_CAN_MATCH_NODE_NAME, ThreadPool.Names.GENERIC, CanMatchNodeRequest::new,
+            (request, channel, task) -> {
+                searchService.canMatch(request, (CancellableTask) task,
+                    new ChannelActionListener<>(channel, QUERY_CAN_MATCH_NODE_NAME, request));
+            });
+        TransportActionProxy.registerProxyAction(transportService, QUERY_CAN_MATCH_NODE_NAME, true, CanMatchNodeResponse::new);
     }
 
 
@@ -63,6 +63,7 @@ import org.elasticsearch.transport.ConnectTransportException;
 import org.elasticsearch.transport.TransportChannel;
 import org.elasticsearch.transport.TransportException;
 import org.elasticsearch.transport.TransportRequest;
+import org.elasticsearch.transport.TransportRequestBatcher;
 import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportResponseHandler;
 import org.elasticsearch.transport.TransportService;
@@ -114,6 +115,9 @@ public abstract class TransportReplicationAction<
     protected final String transportReplicaAction;
     protected final String transportPrimaryAction;
 
+    @Nullable
+    private final TransportRequestBatcher<ConcreteReplicaRequest<ReplicaRequest>, ReplicaResponse> replicaRequestBatcher;
+
     private final boolean syncGlobalCheckpointAfterOperation;
     private volatile TimeValue initialRetryBackoffBound;
     private volatile TimeValue retryTimeout;
@@ -160,6 +164,9 @@ public abstract class TransportReplicationAction<
 
         this.transportOptions = transportOptions();
 
+        this.replicaRequestBatcher = batchReplicaRequests() ? new TransportRequestBatcher<>(settings, transportService,
+            transportReplicaAction, in -> new ConcreteReplicaRequest<>(replicaRequestReader, in), ReplicaResponse::new) : null;
+
         this.syncGlobalCheckpointAfterOperation = syncGlobalCheckpointAfterOperation;
 
         ClusterSettings clusterSettings = clusterService.getClusterSettings();
@@ -241,6 +248,15 @@ public abstract class TransportReplicationAction<
         return TransportRequestOptions.EMPTY;
     }
 
+    /**
+     * Whether the requests to the replicas should be sent through a {@link TransportRequestBatcher}, which coalesces the replica requests
+     * of many shards that go to the same node into one message. Worthwhile for cheap actions that run for many shards at once in the
+     * system context, such as background syncs.
+     */
+    protected boolean batchReplicaRequests() {
+        return false;
+    }
+
     private ClusterBlockException blockExceptions(final ClusterState state, final String indexName) {
         ClusterBlockLevel globalBlockLevel = globalBlockLevel();
         if (globalBlockLevel != null) {
@@ -1073,7 +1089,11 @@ public abstract class TransportReplicationAction<
                 request, replica.allocationId().getId(), primaryTerm, globalCheckpoint, maxSeqNoOfUpdatesOrDeletes);
             final ActionListenerResponseHandler<ReplicaResponse> handler = new ActionListenerResponseHandler<>(listener,
                 ReplicaResponse::new);
-            transportService.sendRequest(node, transportReplicaAction, replicaRequest, transportOptions, handler);
+            if (replicaRequestBatcher != null) {
+                replicaRequestBatcher.sendRequest(node, replicaRequest, transportOptions, handler);
+            } else {
+                transportService.sendRequest(node, transportReplicaAction, replicaRequest, transportOptions, handler);
+            }
         }
 
         @Override
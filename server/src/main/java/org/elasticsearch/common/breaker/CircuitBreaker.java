@@ -49,6 +49,12 @@ public interface CircuitBreaker {
      * segments.
      */
     String ACCOUNTING = "accounting";
+    /**
+     * The off-heap breaker tracks the direct memory used by big arrays whose
+     * pages live off-heap. It is limited by the maximum direct memory of the
+     * JVM rather than the heap and is not part of the parent breaker.
+     */
+    String OFF_HEAP = "off_heap";
 
     enum Type {
         // A regular or ChildMemoryCircuitBreaker
@@ -11,10 +11,12 @@ import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FilterDirectoryReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.elasticsearch.common.SuppressForbidden;
 import org.elasticsearch.index.shard.ShardId;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * A {@link org.apache.lucene.index.FilterDirectoryReader} that exposes
@@ -115,4 +117,31 @@ public final class ElasticsearchDirectoryReader extends FilterDirectoryReader {
         }
         return null;
     }
+
+    /**
+     * Does {@code reader} read the segments of the {@link ElasticsearchDirectoryReader} it wraps as they are? Reader wrappers like
+     * the ones for field and document level security hide fields and documents from a request by wrapping the segments but pass
+     * the cache helper of the reader they wrap through, so anything computed from a reader that doesn't read the engine's segments
+     * must not be shared with other requests.
+     */
+    public static boolean readsEngineSegments(DirectoryReader reader) {
+        final ElasticsearchDirectoryReader engineReader = getElasticsearchDirectoryReader(reader);
+        if (engineReader == null) {
+            return false;
+        }
+        if (engineReader == reader) {
+            return true;
+        }
+        final List<LeafReaderContext> leaves = reader.leaves();
+        final List<LeafReaderContext> engineLeaves = engineReader.leaves();
+        if (leaves.size() != engineLeaves.size()) {
+            return false;
+        }
+        for (int i = 0; i < leaves.size(); i++) {
+            if (leaves.get(i).reader() != engineLeaves.get(i).reader()) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -30,7 +30,7 @@ abstract class AbstractArray implements BigArray {
     public final void close() {
         if (closed.compareAndSet(false, true)) {
             try {
-                bigArrays.adjustBreaker(-ramBytesUsed(), true);
+                bigArrays.adjustBreaker(-ramBytesUsed(), true, isOffHeap());
             } finally {
                 doClose();
             }
@@ -39,6 +39,13 @@ abstract class AbstractArray implements BigArray {
 
     protected abstract void doClose();
 
+    /**
+     * @return whether the pages of this array live off-heap
+     */
+    boolean isOffHeap() {
+        return false;
+    }
+
     @Override
     public Collection<Accountable> getChildResources() {
         return Collections.emptyList();
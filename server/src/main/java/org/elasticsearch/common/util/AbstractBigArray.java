@@ -14,6 +14,7 @@ import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.recycler.Recycler;
 
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /** Common implementation for array lists that slice data into fixed-size blocks. */
@@ -97,7 +98,7 @@ abstract class AbstractBigArray extends AbstractArray {
         cache = grow(cache, page + 1);
         assert cache[page] == null;
         cache[page] = v;
-        assert Array.getLength(v.v()) == expectedSize;
+        assert v.v() instanceof ByteBuffer ? ((ByteBuffer) v.v()).capacity() == expectedSize : Array.getLength(v.v()) == expectedSize;
         return v.v();
     }
 
@@ -137,6 +138,12 @@ abstract class AbstractBigArray extends AbstractArray {
         }
     }
 
+    protected final ByteBuffer newDirectPage(int page) {
+        assert recycler != null && recycler.isOffHeap();
+        final Recycler.V<ByteBuffer> v = recycler.directPage(clearOnResize);
+        return registerNewPage(v, page, PageCacheRecycler.PAGE_SIZE_IN_BYTES);
+    }
+
     protected final void releasePage(int page) {
         if (recycler != null) {
             cache[page].close();
@@ -27,6 +27,12 @@ public class BigArrays {
 
     public static final BigArrays NON_RECYCLING_INSTANCE = new BigArrays(null, null, CircuitBreaker.REQUEST);
 
+    /**
+     * The label of circuit breaker reservations for arrays whose pages live off-heap, which the parent breaker does not add to the
+     * real memory usage of the heap.
+     */
+    public static final String OFF_HEAP_LABEL = "<off_heap_arrays>";
+
     /** Returns the next size to grow when working with parallel arrays that
      *  may have different page sizes or number of bytes per element. */
     public static long overSize(long minTargetSize) {
@@ -384,31 +390,66 @@ public class BigArrays {
      * we do not add the delta to the breaker if it trips.
      */
     void adjustBreaker(final long delta, final boolean isDataAlreadyCreated) {
+        adjustBreaker(delta, isDataAlreadyCreated, false);
+    }
+
+    /**
+     * Same as {@link #adjustBreaker(long, boolean)} but for arrays that may be allocated off-heap. Off-heap arrays are accounted on
+     * the {@link CircuitBreaker#OFF_HEAP off-heap breaker}, which limits them to the direct memory of the node, as well as on the
+     * breaker of this instance.
+     */
+    void adjustBreaker(final long delta, final boolean isDataAlreadyCreated, final boolean offHeap) {
         if (this.breakerService != null) {
             CircuitBreaker breaker = this.breakerService.getBreaker(breakerName);
-            if (this.checkBreaker) {
-                // checking breaker means potentially tripping, but it doesn't
-                // have to if the delta is negative
-                if (delta > 0) {
-                    try {
-                        breaker.addEstimateBytesAndMaybeBreak(delta, "<reused_arrays>");
-                    } catch (CircuitBreakingException e) {
-                        if (isDataAlreadyCreated) {
-                            // since we've already created the data, we need to
-                            // add it so closing the stream re-adjusts properly
-                            breaker.addWithoutBreaking(delta);
-                        }
-                        // re-throw the original exception
-                        throw e;
-                    }
-                } else {
+            CircuitBreaker offHeapBreaker = offHeap ? this.breakerService.getBreaker(CircuitBreaker.OFF_HEAP) : null;
+            String label = offHeap ? OFF_HEAP_LABEL : "<reused_arrays>";
+            if (offHeapBreaker == null) {
+                adjustBreaker(breaker, delta, isDataAlreadyCreated, label);
+                return;
+            }
+            try {
+                adjustBreaker(offHeapBreaker, delta, isDataAlreadyCreated, label);
+            } catch (CircuitBreakingException e) {
+                if (isDataAlreadyCreated) {
+                    // closing the array releases it from both breakers
                     breaker.addWithoutBreaking(delta);
                 }
+                throw e;
+            }
+            try {
+                adjustBreaker(breaker, delta, isDataAlreadyCreated, label);
+            } catch (CircuitBreakingException e) {
+                if (isDataAlreadyCreated == false) {
+                    offHeapBreaker.addWithoutBreaking(-delta);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void adjustBreaker(CircuitBreaker breaker, long delta, boolean isDataAlreadyCreated, String label) {
+        if (this.checkBreaker) {
+            // checking breaker means potentially tripping, but it doesn't
+            // have to if the delta is negative
+            if (delta > 0) {
+                try {
+                    breaker.addEstimateBytesAndMaybeBreak(delta, label);
+                } catch (CircuitBreakingException e) {
+                    if (isDataAlreadyCreated) {
+                        // since we've already created the data, we need to
+                        // add it so closing the stream re-adjusts properly
+                        breaker.addWithoutBreaking(delta);
+                    }
+                    // re-throw the original exception
+                    throw e;
+                }
             } else {
-                // even if we are not checking the breaker, we need to adjust
-                // its' totals, so add without breaking
                 breaker.addWithoutBreaking(delta);
             }
+        } else {
+            // even if we are not checking the breaker, we need to adjust
+            // its' totals, so add without breaking
+            breaker.addWithoutBreaking(delta);
         }
     }
 
@@ -439,7 +480,7 @@ public class BigArrays {
             "ram bytes used should equal that which was previously estimated: ramBytesUsed=" +
             oldMemSize + ", ramBytesEstimated=" + array.ramBytesEstimated(oldSize);
         final long estimatedIncreaseInBytes = array.ramBytesEstimated(newSize) - oldMemSize;
-        adjustBreaker(estimatedIncreaseInBytes, false);
+        adjustBreaker(estimatedIncreaseInBytes, false, array.isOffHeap());
         array.resize(newSize);
         return array;
     }
@@ -484,10 +525,26 @@ public class BigArrays {
         return newByteArray(size, true);
     }
 
+    /**
+     * Allocate a new {@link ByteArray} initialized with zeros whose pages live off-heap if {@link PageCacheRecycler#OFF_HEAP_SETTING}
+     * is enabled, and which stays off-heap when it is resized. Reading a slice of such an array always copies it, so this is only
+     * meant for arrays that are mostly accessed one byte at a time, unlike the arrays that back streams or hashes of bytes.
+     * @param size          the initial length of the array
+     */
+    public ByteArray newOffHeapByteArray(long size) {
+        if (recycler != null && recycler.isOffHeap()) {
+            adjustBreaker(BigByteArray.estimateRamBytes(size), false, true);
+            return new DirectByteArray(size, this, true);
+        }
+        return newByteArray(size);
+    }
+
     /** Resize the array to the exact provided size. */
     public ByteArray resize(ByteArray array, long size) {
         if (array instanceof BigByteArray) {
             return resizeInPlace((BigByteArray) array, size);
+        } else if (array instanceof DirectByteArray) {
+            return resizeInPlace((DirectByteArray) array, size);
         } else {
             AbstractArray arr = (AbstractArray) array;
             final ByteArray newArray = newByteArray(size, arr.clearOnResize);
@@ -602,6 +659,10 @@ public class BigArrays {
         if (size > PageCacheRecycler.LONG_PAGE_SIZE) {
             // when allocating big arrays, we want to first ensure we have the capacity by
             // checking with the circuit breaker before attempting to allocate
+            if (recycler != null && recycler.isOffHeap()) {
+                adjustBreaker(BigLongArray.estimateRamBytes(size), false, true);
+                return new DirectLongArray(size, this, clearOnResize);
+            }
             adjustBreaker(BigLongArray.estimateRamBytes(size), false);
             return new BigLongArray(size, this, clearOnResize);
         } else if (size >= PageCacheRecycler.LONG_PAGE_SIZE / 2 && recycler != null) {
@@ -624,6 +685,8 @@ public class BigArrays {
     public LongArray resize(LongArray array, long size) {
         if (array instanceof BigLongArray) {
             return resizeInPlace((BigLongArray) array, size);
+        } else if (array instanceof DirectLongArray) {
+            return resizeInPlace((DirectLongArray) array, size);
         } else {
             AbstractArray arr = (AbstractArray) array;
             final LongArray newArray = newLongArray(size, arr.clearOnResize);
@@ -654,6 +717,10 @@ public class BigArrays {
         if (size > PageCacheRecycler.LONG_PAGE_SIZE) {
             // when allocating big arrays, we want to first ensure we have the capacity by
             // checking with the circuit breaker before attempting to allocate
+            if (recycler != null && recycler.isOffHeap()) {
+                adjustBreaker(BigDoubleArray.estimateRamBytes(size), false, true);
+                return new DirectDoubleArray(size, this, clearOnResize);
+            }
             adjustBreaker(BigDoubleArray.estimateRamBytes(size), false);
             return new BigDoubleArray(size, this, clearOnResize);
         } else if (size >= PageCacheRecycler.LONG_PAGE_SIZE / 2 && recycler != null) {
@@ -673,6 +740,8 @@ public class BigArrays {
     public DoubleArray resize(DoubleArray array, long size) {
         if (array instanceof BigDoubleArray) {
             return resizeInPlace((BigDoubleArray) array, size);
+        } else if (array instanceof DirectDoubleArray) {
+            return resizeInPlace((DirectDoubleArray) array, size);
         } else {
             AbstractArray arr = (AbstractArray) array;
             final DoubleArray newArray = newDoubleArray(size, arr.clearOnResize);
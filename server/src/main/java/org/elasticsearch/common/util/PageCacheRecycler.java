@@ -9,6 +9,7 @@
 package org.elasticsearch.common.util;
 
 import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.recycler.AbstractRecyclerC;
 import org.elasticsearch.common.recycler.Recycler;
 import org.elasticsearch.common.settings.Setting;
@@ -17,6 +18,8 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Locale;
 
@@ -41,6 +44,12 @@ public class PageCacheRecycler {
     // object pages are less useful to us so we give them a lower weight by default
     public static final Setting<Double> WEIGHT_OBJECTS_SETTING  =
         Setting.doubleSetting("cache.recycler.page.weight.objects", 0.1d, 0d, Property.NodeScope);
+    /**
+     * Whether the pages of big byte, long and double arrays are allocated off-heap, so that large aggregations do not fill the old
+     * generation. Direct pages are recycled like heap pages, up to the share of the limit of byte and long pages.
+     */
+    public static final Setting<Boolean> OFF_HEAP_SETTING =
+        Setting.boolSetting("cache.recycler.page.off_heap", false, Property.NodeScope);
 
     /** Page size in bytes: 16KB */
     public static final int PAGE_SIZE_IN_BYTES = 1 << 14;
@@ -53,6 +62,11 @@ public class PageCacheRecycler {
     private final Recycler<int[]> intPage;
     private final Recycler<long[]> longPage;
     private final Recycler<Object[]> objectPage;
+    @Nullable
+    private final Recycler<ByteBuffer> directPage;
+
+    /** A page of zeros to clear recycled direct pages with. */
+    private static final ByteBuffer ZERO_DIRECT_PAGE = ByteBuffer.allocateDirect(PAGE_SIZE_IN_BYTES).asReadOnlyBuffer();
 
     public static final PageCacheRecycler NON_RECYCLING_INSTANCE;
 
@@ -135,6 +149,23 @@ public class PageCacheRecycler {
         });
 
         assert PAGE_SIZE_IN_BYTES * (maxBytePageCount + maxIntPageCount + maxLongPageCount + maxObjectPageCount) <= limit;
+
+        if (OFF_HEAP_SETTING.get(settings)) {
+            // direct pages take over from byte and long pages for big arrays, and are worth recycling even more since freeing
+            // them is up to the garbage collector
+            directPage = build(type, maxBytePageCount + maxLongPageCount, allocatedProcessors, new AbstractRecyclerC<ByteBuffer>() {
+                @Override
+                public ByteBuffer newInstance() {
+                    return ByteBuffer.allocateDirect(PAGE_SIZE_IN_BYTES).order(ByteOrder.nativeOrder());
+                }
+                @Override
+                public void recycle(ByteBuffer value) {
+                    // nothing to do
+                }
+            });
+        } else {
+            directPage = null;
+        }
     }
 
     public Recycler.V<byte[]> bytePage(boolean clear) {
@@ -166,6 +197,29 @@ public class PageCacheRecycler {
         return objectPage.obtain();
     }
 
+    /**
+     * @return whether big byte, long and double arrays should be backed by {@link #directPage direct pages}
+     */
+    public boolean isOffHeap() {
+        return directPage != null;
+    }
+
+    /**
+     * Obtains a direct page of {@link #PAGE_SIZE_IN_BYTES} bytes in native byte order. Only available if {@link #isOffHeap()}.
+     */
+    public Recycler.V<ByteBuffer> directPage(boolean clear) {
+        if (directPage == null) {
+            throw new IllegalStateException("off-heap pages are disabled, see [" + OFF_HEAP_SETTING.getKey() + "]");
+        }
+        final Recycler.V<ByteBuffer> v = directPage.obtain();
+        if (v.isRecycled() && clear) {
+            v.v().clear();
+            v.v().put(ZERO_DIRECT_PAGE.duplicate());
+            v.v().clear();
+        }
+        return v;
+    }
+
     private static <T> Recycler<T> build(Type type, int limit, int availableProcessors, Recycler.C<T> c) {
         final Recycler<T> recycler;
         if (limit == 0) {
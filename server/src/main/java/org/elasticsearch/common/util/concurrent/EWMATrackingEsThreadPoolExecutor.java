@@ -17,7 +17,9 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 /**
- * An extension to thread pool executor, which tracks the exponentially weighted moving average of the task execution time.
+ * An extension to thread pool executor, which tracks the exponentially weighted moving average of the task execution time and the
+ * time tasks spend waiting in the queue. It can optionally reject tasks whose expected queue wait exceeds a limit, which bounds the
+ * latency added by queueing independently of how long the individual tasks are.
  */
 public final class EWMATrackingEsThreadPoolExecutor extends EsThreadPoolExecutor {
 
@@ -26,14 +28,29 @@ public final class EWMATrackingEsThreadPoolExecutor extends EsThreadPoolExecutor
 
     private final Function<Runnable, WrappedRunnable> runnableWrapper;
     private final ExponentiallyWeightedMovingAverage executionEWMA;
+    private final QueueLatencyTracker queueLatency = new QueueLatencyTracker();
+    private final long maxQueueWaitNanos;
 
     EWMATrackingEsThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
                                      BlockingQueue<Runnable> workQueue, Function<Runnable, WrappedRunnable> runnableWrapper,
                                      ThreadFactory threadFactory, XRejectedExecutionHandler handler, ThreadContext contextHolder) {
+        this(name, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, runnableWrapper, threadFactory, handler,
+            contextHolder, TimeValue.MINUS_ONE);
+    }
+
+    /**
+     * @param maxQueueWait tasks submitted while the expected time they would wait in the queue exceeds this value are rejected,
+     *                     a negative value disables this check so that only the queue capacity applies
+     */
+    EWMATrackingEsThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                     BlockingQueue<Runnable> workQueue, Function<Runnable, WrappedRunnable> runnableWrapper,
+                                     ThreadFactory threadFactory, XRejectedExecutionHandler handler, ThreadContext contextHolder,
+                                     TimeValue maxQueueWait) {
         super(name, corePoolSize, maximumPoolSize, keepAliveTime, unit,
             workQueue, threadFactory, handler, contextHolder);
         this.runnableWrapper = runnableWrapper;
         this.executionEWMA = new ExponentiallyWeightedMovingAverage(EWMA_ALPHA, 0);
+        this.maxQueueWaitNanos = maxQueueWait.nanos() < 0 ? -1 : maxQueueWait.nanos();
     }
 
     @Override
@@ -65,6 +82,31 @@ public final class EWMATrackingEsThreadPoolExecutor extends EsThreadPoolExecutor
         return getQueue().size();
     }
 
+    /**
+     * Returns the given percentiles of the time recently executed tasks spent in the queue, in nanoseconds, or {@code -1} for each
+     * percentile if no task was executed yet.
+     */
+    public long[] getQueueLatencyPercentiles(double... percentiles) {
+        return queueLatency.percentiles(percentiles);
+    }
+
+    /**
+     * Returns the time a task submitted now is expected to wait in the queue before it starts running, assuming the queued tasks
+     * take as long as the moving average of the task execution time and are spread over all threads.
+     */
+    public long getExpectedQueueWaitNanos() {
+        return (long) (getCurrentQueueSize() * executionEWMA.getAverage() / getMaximumPoolSize());
+    }
+
+    public TimeValue getMaxQueueWait() {
+        return TimeValue.timeValueNanos(maxQueueWaitNanos);
+    }
+
+    @Override
+    protected boolean rejectBeforeQueueing() {
+        return maxQueueWaitNanos >= 0 && isShutdown() == false && getExpectedQueueWaitNanos() > maxQueueWaitNanos;
+    }
+
     @Override
     protected void afterExecute(Runnable r, Throwable t) {
         super.afterExecute(r, t);
@@ -83,11 +125,18 @@ public final class EWMATrackingEsThreadPoolExecutor extends EsThreadPoolExecutor
             // taskExecutionNanos may be -1 if the task threw an exception
             executionEWMA.addValue(taskExecutionNanos);
         }
+        final long queueTimeNanos = timedRunnable.getQueueTimeNanos();
+        if (queueTimeNanos != -1) {
+            queueLatency.add(queueTimeNanos);
+        }
     }
 
     @Override
     protected void appendThreadPoolExecutorDetails(StringBuilder sb) {
         sb.append("task execution EWMA = ").append(TimeValue.timeValueNanos((long) executionEWMA.getAverage())).append(", ");
+        if (maxQueueWaitNanos >= 0) {
+            sb.append("max queue wait = ").append(TimeValue.timeValueNanos(maxQueueWaitNanos)).append(", ");
+        }
     }
 
 }
@@ -21,6 +21,10 @@ public class EsAbortPolicy implements XRejectedExecutionHandler {
         if (r instanceof AbstractRunnable) {
             if (((AbstractRunnable) r).isForceExecution()) {
                 BlockingQueue<Runnable> queue = executor.getQueue();
+                if (queue instanceof FairQueuingBlockingQueue) {
+                    ((FairQueuingBlockingQueue) queue).forcePut(r);
+                    return;
+                }
                 if ((queue instanceof SizeBlockingQueue) == false) {
                     throw new IllegalStateException("forced execution, but expected a size queue");
                 }
@@ -13,6 +13,7 @@ import org.elasticsearch.common.SuppressForbidden;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.node.Node;
 
 import java.util.List;
@@ -71,15 +72,33 @@ public class EsExecutors {
 
     public static EsThreadPoolExecutor newFixed(String name, int size, int queueCapacity,
                                                 ThreadFactory threadFactory, ThreadContext contextHolder, boolean trackEWMA) {
+        return newFixed(name, size, queueCapacity, threadFactory, contextHolder, trackEWMA, TimeValue.MINUS_ONE);
+    }
+
+    /**
+     * Creates a fixed executor that, if {@code trackEWMA} is set, also rejects tasks whose expected queue wait exceeds
+     * {@code maxQueueWait}. A negative {@code maxQueueWait} disables that check.
+     */
+    public static EsThreadPoolExecutor newFixed(String name, int size, int queueCapacity, ThreadFactory threadFactory,
+                                                ThreadContext contextHolder, boolean trackEWMA, TimeValue maxQueueWait) {
         BlockingQueue<Runnable> queue;
         if (queueCapacity < 0) {
             queue = ConcurrentCollections.newBlockingQueue();
         } else {
             queue = new SizeBlockingQueue<>(ConcurrentCollections.<Runnable>newBlockingQueue(), queueCapacity);
         }
+        return newFixed(name, size, queue, threadFactory, contextHolder, trackEWMA, maxQueueWait);
+    }
+
+    /**
+     * Creates a fixed executor backed by the given queue, e.g. a {@link FairQueuingBlockingQueue}. Tasks that must be executed even if
+     * the queue is full are only supported by {@link SizeBlockingQueue} and {@link FairQueuingBlockingQueue}.
+     */
+    public static EsThreadPoolExecutor newFixed(String name, int size, BlockingQueue<Runnable> queue, ThreadFactory threadFactory,
+                                                ThreadContext contextHolder, boolean trackEWMA, TimeValue maxQueueWait) {
         if (trackEWMA) {
             return new EWMATrackingEsThreadPoolExecutor(name, size, size, 0, TimeUnit.MILLISECONDS,
-                queue, TimedRunnable::new, threadFactory, new EsAbortPolicy(), contextHolder);
+                queue, TimedRunnable::new, threadFactory, new EsAbortPolicy(), contextHolder, maxQueueWait);
         } else {
             return new EsThreadPoolExecutor(name, size, size, 0, TimeUnit.MILLISECONDS,
                 queue, threadFactory, new EsAbortPolicy(), contextHolder);
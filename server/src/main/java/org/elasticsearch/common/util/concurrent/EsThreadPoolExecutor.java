@@ -70,7 +70,12 @@ public class EsThreadPoolExecutor extends ThreadPoolExecutor {
     public void execute(Runnable command) {
         command = wrapRunnable(command);
         try {
-            super.execute(command);
+            if (rejectBeforeQueueing()) {
+                // goes through the rejection handler so that forced executions are still queued and rejections are counted
+                getRejectedExecutionHandler().rejectedExecution(command, this);
+            } else {
+                super.execute(command);
+            }
         } catch (EsRejectedExecutionException ex) {
             if (command instanceof AbstractRunnable) {
                 // If we are an abstract runnable we can handle the rejection
@@ -137,6 +142,14 @@ public class EsThreadPoolExecutor extends ThreadPoolExecutor {
 
     }
 
+    /**
+     * Returns whether a newly submitted task should be rejected before it is even offered to the queue, for executors that admit
+     * tasks based on something other than the remaining queue capacity.
+     */
+    protected boolean rejectBeforeQueueing() {
+        return false;
+    }
+
     protected Runnable wrapRunnable(Runnable command) {
         return contextHolder.preserveContext(command);
     }
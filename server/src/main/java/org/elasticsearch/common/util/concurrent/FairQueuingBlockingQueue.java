@@ -0,0 +1,379 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.common.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded queue for {@link EsThreadPoolExecutor} that keeps a separate queue per tenant and hands out tasks by weighted deficit
+ * round-robin, so that a tenant submitting a burst of tasks delays the tasks of other tenants by at most one round instead of by the
+ * whole burst. The tenant of a task is the value of a request header in the {@link ThreadContext} of the thread that submits it, which
+ * is the context of the request the task belongs to.
+ * <p>
+ * Each round, every tenant with queued tasks may run as many tasks as its weight. Besides the total capacity, each tenant's queue has
+ * its own capacity so that a single tenant cannot fill the whole queue and cause the tasks of every other tenant to be rejected.
+ */
+public final class FairQueuingBlockingQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+    /** The tenant of tasks submitted without the tenant header. */
+    public static final String DEFAULT_TENANT = "_default";
+
+    /** Tenants without queued tasks are forgotten, along with their stats, once more than this many tenants are known. */
+    static final int MAX_IDLE_TENANTS = 1000;
+
+    private final ThreadContext threadContext;
+    private final String tenantHeader;
+    private final int capacity;
+    private final int tenantCapacity;
+    private final ToIntFunction<String> weights;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Map<String, TenantQueue> tenants = new HashMap<>();
+    /** Tenants with queued tasks, in round-robin order; the first one is the tenant currently being served. */
+    private final ArrayDeque<TenantQueue> active = new ArrayDeque<>();
+    private int size;
+
+    /**
+     * @param threadContext  the thread context to read the tenant header from
+     * @param tenantHeader   the request header that identifies the tenant of a task
+     * @param capacity       the maximum number of queued tasks across all tenants
+     * @param tenantCapacity the maximum number of queued tasks per tenant
+     * @param weights        the weight of each tenant, that is the number of tasks it may run per round
+     */
+    public FairQueuingBlockingQueue(ThreadContext threadContext, String tenantHeader, int capacity, int tenantCapacity,
+                                    ToIntFunction<String> weights) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative but was [" + capacity + "]");
+        }
+        if (tenantCapacity < 0) {
+            throw new IllegalArgumentException("tenant capacity must not be negative but was [" + tenantCapacity + "]");
+        }
+        this.threadContext = threadContext;
+        this.tenantHeader = tenantHeader;
+        this.capacity = capacity;
+        this.tenantCapacity = tenantCapacity;
+        this.weights = weights;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int tenantCapacity() {
+        return tenantCapacity;
+    }
+
+    private String currentTenant() {
+        final String tenant = tenantHeader == null ? null : threadContext.getHeader(tenantHeader);
+        return tenant == null ? DEFAULT_TENANT : tenant;
+    }
+
+    private TenantQueue tenantQueue(String tenant) {
+        assert lock.isHeldByCurrentThread();
+        TenantQueue queue = tenants.get(tenant);
+        if (queue == null) {
+            final int weight = weights.applyAsInt(tenant);
+            queue = new TenantQueue(tenant, Math.max(weight, 1));
+            tenants.put(tenant, queue);
+        }
+        return queue;
+    }
+
+    private void enqueue(TenantQueue queue, Runnable task) {
+        assert lock.isHeldByCurrentThread();
+        if (queue.tasks.isEmpty()) {
+            active.addLast(queue);
+        }
+        queue.tasks.addLast(task);
+        size++;
+        notEmpty.signal();
+    }
+
+    private Runnable dequeue() {
+        assert lock.isHeldByCurrentThread();
+        final TenantQueue queue = active.peekFirst();
+        if (queue == null) {
+            return null;
+        }
+        if (queue.deficit <= 0) {
+            // the tenant's turn starts, it may run as many tasks as its weight
+            queue.deficit += queue.weight;
+        }
+        final Runnable task = queue.tasks.pollFirst();
+        queue.deficit--;
+        size--;
+        if (queue.tasks.isEmpty()) {
+            active.pollFirst();
+            // an idle tenant does not accumulate credit for later
+            queue.deficit = 0;
+            maybeForget(queue);
+        } else if (queue.deficit <= 0) {
+            active.addLast(active.pollFirst());
+        }
+        return task;
+    }
+
+    private void maybeForget(TenantQueue queue) {
+        assert lock.isHeldByCurrentThread();
+        if (queue.tasks.isEmpty() && tenants.size() > MAX_IDLE_TENANTS) {
+            tenants.remove(queue.tenant);
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task) {
+        final String tenant = currentTenant();
+        lock.lock();
+        try {
+            final TenantQueue queue = tenantQueue(tenant);
+            if (size >= capacity || queue.tasks.size() >= tenantCapacity) {
+                queue.rejected++;
+                maybeForget(queue);
+                return false;
+            }
+            enqueue(queue, task);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces adding a task to the queue, without doing capacity checks.
+     */
+    public void forcePut(Runnable task) {
+        final String tenant = currentTenant();
+        lock.lock();
+        try {
+            enqueue(tenantQueue(tenant), task);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(Runnable task, long timeout, TimeUnit unit) {
+        // note, not used in ThreadPoolExecutor
+        throw new IllegalStateException("offer with timeout not allowed on fair queue");
+    }
+
+    @Override
+    public void put(Runnable task) {
+        // note, not used in ThreadPoolExecutor
+        throw new IllegalStateException("put not allowed on fair queue");
+    }
+
+    @Override
+    public Runnable poll() {
+        lock.lock();
+        try {
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Runnable peek() {
+        lock.lock();
+        try {
+            final TenantQueue queue = active.peekFirst();
+            return queue == null ? null : queue.tasks.peekFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return Math.max(capacity - size, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.lock();
+        try {
+            for (TenantQueue queue : active) {
+                if (queue.tasks.remove(o)) {
+                    size--;
+                    if (queue.tasks.isEmpty()) {
+                        active.remove(queue);
+                        queue.deficit = 0;
+                        maybeForget(queue);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && size > 0) {
+                c.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the queued tasks. Removing through the iterator removes the task from the queue.
+     */
+    @Override
+    public Iterator<Runnable> iterator() {
+        final List<Runnable> snapshot = new ArrayList<>();
+        lock.lock();
+        try {
+            for (TenantQueue queue : active) {
+                snapshot.addAll(queue.tasks);
+            }
+        } finally {
+            lock.unlock();
+        }
+        final Iterator<Runnable> it = snapshot.iterator();
+        return new Iterator<>() {
+            Runnable current;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                current = it.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                FairQueuingBlockingQueue.this.remove(current);
+            }
+        };
+    }
+
+    /**
+     * Returns the queue size and number of rejected tasks of each known tenant.
+     */
+    public Map<String, TenantStats> tenantStats() {
+        lock.lock();
+        try {
+            final Map<String, TenantStats> stats = new HashMap<>(tenants.size());
+            for (TenantQueue queue : tenants.values()) {
+                stats.put(queue.tenant, new TenantStats(queue.tasks.size(), queue.rejected));
+            }
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static final class TenantStats {
+        private final int queue;
+        private final long rejected;
+
+        TenantStats(int queue, long rejected) {
+            this.queue = queue;
+            this.rejected = rejected;
+        }
+
+        public int getQueue() {
+            return queue;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+    }
+
+    private static final class TenantQueue {
+        private final String tenant;
+        private final int weight;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private int deficit;
+        private long rejected;
+
+        private TenantQueue(String tenant, int weight) {
+            this.tenant = tenant;
+            this.weight = weight;
+        }
+    }
+}
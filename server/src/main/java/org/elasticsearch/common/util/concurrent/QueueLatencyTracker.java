@@ -0,0 +1,70 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.common.util.concurrent;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps the queue latencies of the most recently executed tasks of an executor in a fixed size ring buffer, so that percentiles
+ * reflect the current load of the executor rather than its whole lifetime.
+ */
+final class QueueLatencyTracker {
+
+    static final int DEFAULT_WINDOW_SIZE = 1024;
+
+    private final AtomicLongArray samples;
+    private final AtomicLong count = new AtomicLong();
+
+    QueueLatencyTracker() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    QueueLatencyTracker(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("window size must be positive but was [" + windowSize + "]");
+        }
+        this.samples = new AtomicLongArray(windowSize);
+    }
+
+    void add(long queueLatencyNanos) {
+        assert queueLatencyNanos >= 0 : "queue latency must not be negative but was " + queueLatencyNanos;
+        final long index = count.getAndIncrement();
+        samples.set((int) (index % samples.length()), queueLatencyNanos);
+    }
+
+    /**
+     * Returns the given percentiles (each in {@code [0, 100]}) of the recorded queue latencies in nanoseconds, or {@code -1} for each
+     * percentile if nothing was recorded yet.
+     */
+    long[] percentiles(double... percentiles) {
+        final long[] result = new long[percentiles.length];
+        final int size = (int) Math.min(count.get(), samples.length());
+        if (size == 0) {
+            Arrays.fill(result, -1L);
+            return result;
+        }
+        final long[] sorted = new long[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = samples.get(i);
+        }
+        Arrays.sort(sorted);
+        for (int i = 0; i < percentiles.length; i++) {
+            final double percentile = percentiles[i];
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be in [0, 100] but was [" + percentile + "]");
+            }
+            // nearest rank
+            final int rank = (int) Math.ceil(percentile * size / 100);
+            result[i] = sorted[Math.max(rank, 1) - 1];
+        }
+        return result;
+    }
+}
@@ -17,7 +17,7 @@ import org.elasticsearch.ExceptionsHelper;
 class TimedRunnable extends AbstractRunnable implements WrappedRunnable {
     private final Runnable original;
     private final long creationTimeNanos;
-    private long startTimeNanos;
+    private long startTimeNanos = -1;
     private long finishTimeNanos = -1;
     private boolean failedOrRejected = false;
 
@@ -81,6 +81,17 @@ class TimedRunnable extends AbstractRunnable implements WrappedRunnable {
         return Math.max(finishTimeNanos - startTimeNanos, 1);
     }
 
+    /**
+     * Return the time this task spent waiting in the queue before it started running.
+     * If the task has not started running yet, returns -1.
+     */
+    long getQueueTimeNanos() {
+        if (startTimeNanos == -1) {
+            return -1;
+        }
+        return Math.max(startTimeNanos - creationTimeNanos, 0);
+    }
+
     /**
      * If the task was failed or rejected, return true.
      * Otherwise, false.
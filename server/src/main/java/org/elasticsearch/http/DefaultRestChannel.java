@@ -12,6 +12,8 @@ import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.lease.Releasable;
@@ -20,11 +22,14 @@ import org.elasticsearch.common.network.CloseableChannel;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.rest.AbstractRestChannel;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestResponse;
 import org.elasticsearch.rest.RestStatus;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -92,17 +97,30 @@ public class DefaultRestChannel extends AbstractRestChannel implements RestChann
             }
             toClose.add(this::releaseOutputBuffer);
 
-            BytesReference finalContent = content;
+            boolean isHeadRequest = false;
             try {
-                if (request.method() == RestRequest.Method.HEAD) {
-                    finalContent = BytesArray.EMPTY;
-                }
+                isHeadRequest = request.method() == RestRequest.Method.HEAD;
             } catch (IllegalArgumentException ignored) {
                 assert restResponse.status() == RestStatus.METHOD_NOT_ALLOWED :
                     "request HTTP method is unsupported but HTTP status is not METHOD_NOT_ALLOWED(405)";
             }
 
-            final HttpResponse httpResponse = httpRequest.createResponse(restResponse.status(), finalContent);
+            BytesReference finalContent = isHeadRequest ? BytesArray.EMPTY : content;
+            HttpResponse httpResponse = null;
+            final ChunkedRestResponseBody chunkedContent = restResponse.chunkedContent();
+            if (chunkedContent != null && isHeadRequest == false) {
+                httpResponse = httpRequest.createResponse(restResponse.status(), chunkedContent);
+                if (httpResponse == null) {
+                    // the http implementation cannot send the body in chunks, so we have to serialize it completely up front
+                    final ReleasableBytesReference serialized = serializeFully(chunkedContent);
+                    toClose.add(serialized);
+                    finalContent = serialized;
+                }
+            }
+            final boolean chunked = httpResponse != null;
+            if (chunked == false) {
+                httpResponse = httpRequest.createResponse(restResponse.status(), finalContent);
+            }
 
             corsHandler.setCorsResponseHeaders(httpRequest, httpResponse);
 
@@ -117,9 +135,11 @@ public class DefaultRestChannel extends AbstractRestChannel implements RestChann
 
             // If our response doesn't specify a content-type header, set one
             setHeaderField(httpResponse, CONTENT_TYPE, restResponse.contentType(), false);
-            // If our response has no content-length, calculate and set one
-            contentLength = String.valueOf(restResponse.content().length());
-            setHeaderField(httpResponse, CONTENT_LENGTH, contentLength, false);
+            // If our response has no content-length, calculate and set one, unless the length is not known up front
+            if (chunked == false) {
+                contentLength = String.valueOf(isHeadRequest ? content.length() : finalContent.length());
+                setHeaderField(httpResponse, CONTENT_LENGTH, contentLength, false);
+            }
 
             addCookies(httpResponse);
 
@@ -136,6 +156,26 @@ public class DefaultRestChannel extends AbstractRestChannel implements RestChann
         }
     }
 
+    private ReleasableBytesReference serializeFully(ChunkedRestResponseBody body) {
+        final List<ReleasableBytesReference> chunks = new ArrayList<>();
+        boolean success = false;
+        try {
+            while (body.isDone() == false) {
+                chunks.add(body.encodeChunk(Integer.MAX_VALUE, bigArrays));
+            }
+            final BytesReference bytes = CompositeBytesReference.of(chunks.toArray(new BytesReference[0]));
+            final ReleasableBytesReference serialized = new ReleasableBytesReference(bytes, () -> Releasables.close(chunks));
+            success = true;
+            return serialized;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (success == false) {
+                Releasables.close(chunks);
+            }
+        }
+    }
+
     private void setHeaderField(HttpResponse response, String headerField, String value) {
         setHeaderField(response, headerField, value, true);
     }
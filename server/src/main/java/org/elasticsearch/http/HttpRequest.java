@@ -10,6 +10,7 @@ package org.elasticsearch.http;
 
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
 
@@ -75,6 +76,16 @@ public interface HttpRequest {
      */
     HttpResponse createResponse(RestStatus status, BytesReference content);
 
+    /**
+     * Create an http response from this request and the supplied status whose body is sent in chunks as it is serialized. Returns
+     * {@code null} if this request does not support chunked responses, in which case the body must be serialized completely and sent
+     * with {@link #createResponse(RestStatus, BytesReference)} instead.
+     */
+    @Nullable
+    default HttpResponse createResponse(RestStatus status, ChunkedRestResponseBody content) {
+        return null;
+    }
+
     @Nullable
     Exception getInboundException();
 
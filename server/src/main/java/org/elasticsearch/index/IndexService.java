@@ -78,6 +78,7 @@ import org.elasticsearch.threadpool.ThreadPool;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -165,6 +166,7 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
             IndicesFieldDataCache indicesFieldDataCache,
             List<SearchOperationListener> searchOperationListeners,
             List<IndexingOperationListener> indexingOperationListeners,
+            List<IndexWarmer.Listener> indexWarmerListeners,
             NamedWriteableRegistry namedWriteableRegistry,
             BooleanSupplier idFieldDataEnabled,
             BooleanSupplier allowExpensiveQueries,
@@ -202,7 +204,10 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
             }
             indexFieldData.setListener(new FieldDataCacheListener(this));
             this.bitsetFilterCache = new BitsetFilterCache(indexSettings, new BitsetCacheListener(this));
-            this.warmer = new IndexWarmer(threadPool, indexFieldData, bitsetFilterCache.createListener(threadPool));
+            final List<IndexWarmer.Listener> warmerListeners = new ArrayList<>(indexWarmerListeners.size() + 1);
+            warmerListeners.add(bitsetFilterCache.createListener(threadPool));
+            warmerListeners.addAll(indexWarmerListeners);
+            this.warmer = new IndexWarmer(threadPool, indexFieldData, warmerListeners.toArray(new IndexWarmer.Listener[0]));
             this.indexCache = new IndexCache(indexSettings, queryCache, bitsetFilterCache);
         } else {
             assert indexAnalyzers == null;
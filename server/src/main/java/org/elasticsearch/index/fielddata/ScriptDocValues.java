@@ -57,6 +57,16 @@ public abstract class ScriptDocValues<T> extends AbstractList<T> {
         throw new UnsupportedOperationException("doc values are unmodifiable");
     }
 
+    /**
+     * Throws an {@link IllegalStateException} if the current document has no values.
+     */
+    protected final void throwIfEmpty() {
+        if (size() == 0) {
+            throw new IllegalStateException("A document doesn't have a value for a field! " +
+                "Use doc[<field>].size()==0 to check if a document is missing a field!");
+        }
+    }
+
     @Override
     public final T set(int index, T element) {
         throw new UnsupportedOperationException("doc values are unmodifiable");
@@ -101,15 +111,13 @@ public abstract class ScriptDocValues<T> extends AbstractList<T> {
         }
 
         public long getValue() {
-            return get(0);
+            throwIfEmpty();
+            return values[0];
         }
 
         @Override
         public Long get(int index) {
-            if (count == 0) {
-                throw new IllegalStateException("A document doesn't have a value for a field! " +
-                    "Use doc[<field>].size()==0 to check if a document is missing a field!");
-            }
+            throwIfEmpty();
             return values[index];
         }
 
@@ -145,10 +153,7 @@ public abstract class ScriptDocValues<T> extends AbstractList<T> {
 
         @Override
         public JodaCompatibleZonedDateTime get(int index) {
-            if (count == 0) {
-                throw new IllegalStateException("A document doesn't have a value for a field! " +
-                    "Use doc[<field>].size()==0 to check if a document is missing a field!");
-            }
+            throwIfEmpty();
             if (index >= count) {
                 throw new IndexOutOfBoundsException(
                         "attempted to fetch the [" + index + "] date when there are only ["
@@ -229,15 +234,13 @@ public abstract class ScriptDocValues<T> extends AbstractList<T> {
         }
 
         public double getValue() {
-            return get(0);
+            throwIfEmpty();
+            return values[0];
         }
 
         @Override
         public Double get(int index) {
-            if (count == 0) {
-                throw new IllegalStateException("A document doesn't have a value for a field! " +
-                    "Use doc[<field>].size()==0 to check if a document is missing a field!");
-            }
+            throwIfEmpty();
             return values[index];
         }
 
@@ -315,10 +318,7 @@ public abstract class ScriptDocValues<T> extends AbstractList<T> {
 
         @Override
         public GeoPoint get(int index) {
-            if (count == 0) {
-                throw new IllegalStateException("A document doesn't have a value for a field! " +
-                    "Use doc[<field>].size()==0 to check if a document is missing a field!");
-            }
+            throwIfEmpty();
             final GeoPoint point = values[index];
             return new GeoPoint(point.lat(), point.lon());
         }
@@ -398,15 +398,13 @@ public abstract class ScriptDocValues<T> extends AbstractList<T> {
         }
 
         public boolean getValue() {
-            return get(0);
+            throwIfEmpty();
+            return values[0];
         }
 
         @Override
         public Boolean get(int index) {
-            if (count == 0) {
-                throw new IllegalStateException("A document doesn't have a value for a field! " +
-                    "Use doc[<field>].size()==0 to check if a document is missing a field!");
-            }
+            throwIfEmpty();
             return values[index];
         }
 
@@ -479,10 +477,7 @@ public abstract class ScriptDocValues<T> extends AbstractList<T> {
 
         @Override
         public final String get(int index) {
-            if (count == 0) {
-                throw new IllegalStateException("A document doesn't have a value for a field! " +
-                    "Use doc[<field>].size()==0 to check if a document is missing a field!");
-            }
+            throwIfEmpty();
             return bytesToString(values[index].get());
         }
 
@@ -506,10 +501,7 @@ public abstract class ScriptDocValues<T> extends AbstractList<T> {
 
         @Override
         public BytesRef get(int index) {
-            if (count == 0) {
-                throw new IllegalStateException("A document doesn't have a value for a field! " +
-                    "Use doc[<field>].size()==0 to check if a document is missing a field!");
-            }
+            throwIfEmpty();
             /**
              * We need to make a copy here because {@link BinaryScriptDocValues} might reuse the
              * returned value and the same instance might be used to
@@ -835,10 +835,10 @@ public final class DocumentParser {
                                     ObjectMapper objectMapper,
                                     String fieldName,
                                     String[] subfields) {
-        String fieldPath = context.path().pathAsText(fieldName);
-        // Check if mapper is a metadata mapper first
-        Mapper mapper = context.getMetadataMapper(fieldPath);
-        if (mapper != null) {
+        // Check if mapper is a metadata mapper first. Metadata mappers only live at the root, so we only need to
+        // build the full path (which allocates for every parsed field) if the name itself matches a metadata mapper
+        Mapper mapper = context.getMetadataMapper(fieldName);
+        if (mapper != null && fieldName.equals(context.path().pathAsText(fieldName))) {
             return mapper;
         }
 
@@ -14,15 +14,18 @@ import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.CheckedBiConsumer;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.util.CollectionUtils;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.index.query.SearchExecutionContext;
@@ -32,8 +35,6 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
 
 public class SourceFieldMapper extends MetadataFieldMapper {
 
@@ -41,11 +42,12 @@ public class SourceFieldMapper extends MetadataFieldMapper {
     public static final String RECOVERY_SOURCE_NAME = "_recovery_source";
 
     public static final String CONTENT_TYPE = "_source";
-    private final Function<Map<String, ?>, Map<String, Object>> filter;
+    private final CheckedBiConsumer<XContentParser, XContentBuilder, IOException> filter;
 
     public static class Defaults {
         public static final String NAME = SourceFieldMapper.NAME;
         public static final boolean ENABLED = true;
+        public static final String FORMAT = "original";
 
         public static final FieldType FIELD_TYPE = new FieldType();
 
@@ -68,6 +70,8 @@ public class SourceFieldMapper extends MetadataFieldMapper {
             = Parameter.stringArrayParam("includes", false, m -> Arrays.asList(toType(m).includes), Collections.emptyList());
         private final Parameter<List<String>> excludes
             = Parameter.stringArrayParam("excludes", false, m -> Arrays.asList(toType(m).excludes), Collections.emptyList());
+        private final Parameter<String> format
+            = Parameter.restrictedStringParam("format", false, m -> toType(m).format, Defaults.FORMAT, "smile");
 
         public Builder() {
             super(Defaults.NAME);
@@ -75,14 +79,15 @@ public class SourceFieldMapper extends MetadataFieldMapper {
 
         @Override
         protected List<Parameter<?>> getParameters() {
-            return List.of(enabled, includes, excludes);
+            return List.of(enabled, includes, excludes, format);
         }
 
         @Override
         public SourceFieldMapper build() {
             return new SourceFieldMapper(enabled.getValue(),
                 includes.getValue().toArray(String[]::new),
-                excludes.getValue().toArray(String[]::new));
+                excludes.getValue().toArray(String[]::new),
+                format.getValue());
         }
     }
 
@@ -121,18 +126,23 @@ public class SourceFieldMapper extends MetadataFieldMapper {
 
     private final String[] includes;
     private final String[] excludes;
+    /** either {@code original} to store the source as it was sent or {@code smile} to store it re-encoded as smile */
+    private final String format;
+    private final boolean storeAsSmile;
 
     private SourceFieldMapper() {
-        this(Defaults.ENABLED, Strings.EMPTY_ARRAY, Strings.EMPTY_ARRAY);
+        this(Defaults.ENABLED, Strings.EMPTY_ARRAY, Strings.EMPTY_ARRAY, Defaults.FORMAT);
     }
 
-    private SourceFieldMapper(boolean enabled, String[] includes, String[] excludes) {
+    private SourceFieldMapper(boolean enabled, String[] includes, String[] excludes, String format) {
         super(new SourceFieldType(enabled));
         this.enabled = enabled;
         this.includes = includes;
         this.excludes = excludes;
+        this.format = format;
+        this.storeAsSmile = "smile".equals(format);
         final boolean filtered = CollectionUtils.isEmpty(includes) == false || CollectionUtils.isEmpty(excludes) == false;
-        this.filter = enabled && filtered ? XContentMapValues.filter(includes, excludes) : null;
+        this.filter = enabled && filtered ? XContentMapValues.streamingFilter(includes, excludes) : null;
         this.complete = enabled && CollectionUtils.isEmpty(includes) && CollectionUtils.isEmpty(excludes);
     }
 
@@ -155,8 +165,9 @@ public class SourceFieldMapper extends MetadataFieldMapper {
             context.doc().add(new StoredField(fieldType().name(), ref.bytes, ref.offset, ref.length));
         }
 
-        if (originalSource != null && adaptedSource != originalSource) {
-            // if we omitted source or modified it we add the _recovery_source to ensure we have it for ops based recovery
+        if (originalSource != null && adaptedSource != originalSource && complete == false) {
+            // if we omitted source or modified it we add the _recovery_source to ensure we have it for ops based recovery.
+            // A complete source that was only re-encoded holds the same content, and replaying it detects its content type.
             BytesRef ref = originalSource.toBytesRef();
             context.doc().add(new StoredField(RECOVERY_SOURCE_NAME, ref.bytes, ref.offset, ref.length));
             context.doc().add(new NumericDocValuesField(RECOVERY_SOURCE_NAME, 1));
@@ -167,16 +178,20 @@ public class SourceFieldMapper extends MetadataFieldMapper {
     public BytesReference applyFilters(@Nullable BytesReference originalSource, @Nullable XContentType contentType) throws IOException {
         if (enabled && originalSource != null) {
             // Percolate and tv APIs may not set the source and that is ok, because these APIs will not index any data
-            if (filter != null) {
-                // we don't update the context source if we filter, we want to keep it as is...
-                Tuple<XContentType, Map<String, Object>> mapTuple =
-                    XContentHelper.convertToMap(originalSource, true, contentType);
-                Map<String, Object> filteredSource = filter.apply(mapTuple.v2());
-                BytesStreamOutput bStream = new BytesStreamOutput();
-                XContentType actualContentType = mapTuple.v1();
-                XContentBuilder builder = XContentFactory.contentBuilder(actualContentType, bStream).map(filteredSource);
-                builder.close();
-                return bStream.bytes();
+            if (filter != null || (storeAsSmile && contentType != XContentType.SMILE)) {
+                // we don't update the context source if we filter or re-encode, we want to keep it as is...
+                try (XContentParser parser = createParser(originalSource, contentType)) {
+                    BytesStreamOutput bStream = new BytesStreamOutput();
+                    XContentType actualContentType = storeAsSmile ? XContentType.SMILE : parser.contentType();
+                    XContentBuilder builder = XContentFactory.contentBuilder(actualContentType, bStream);
+                    if (filter != null) {
+                        filter.accept(parser, builder);
+                    } else {
+                        builder.copyCurrentStructure(parser);
+                    }
+                    builder.close();
+                    return bStream.bytes();
+                }
             } else {
                 return originalSource;
             }
@@ -185,6 +200,14 @@ public class SourceFieldMapper extends MetadataFieldMapper {
         }
     }
 
+    private static XContentParser createParser(BytesReference source, @Nullable XContentType contentType) throws IOException {
+        if (contentType == null) {
+            return XContentHelper.createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, source);
+        }
+        return XContentHelper.createParser(
+            NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, source, contentType);
+    }
+
     @Override
     protected String contentType() {
         return CONTENT_TYPE;
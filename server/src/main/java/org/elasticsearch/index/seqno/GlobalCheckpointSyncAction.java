@@ -64,6 +64,12 @@ public class GlobalCheckpointSyncAction extends TransportReplicationAction<
                 ThreadPool.Names.MANAGEMENT);
     }
 
+    @Override
+    protected boolean batchReplicaRequests() {
+        // the sync runs for every shard on the same schedule, so many of these tiny requests go to the same nodes at once
+        return true;
+    }
+
     @Override
     protected ReplicationResponse newResponseInstance(StreamInput in) throws IOException {
         return new ReplicationResponse(in);
@@ -85,6 +85,12 @@ public class RetentionLeaseBackgroundSyncAction extends TransportReplicationActi
                 ThreadPool.Names.MANAGEMENT);
     }
 
+    @Override
+    protected boolean batchReplicaRequests() {
+        // the sync runs for every shard on the same schedule, so many of these tiny requests go to the same nodes at once
+        return true;
+    }
+
     @Override
     protected void doExecute(Task task, Request request, ActionListener<ReplicationResponse> listener) {
         assert false : "use RetentionLeaseBackgroundSyncAction#backgroundSync";
@@ -23,6 +23,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
 import org.elasticsearch.monitor.jvm.GcNames;
 import org.elasticsearch.monitor.jvm.JvmInfo;
@@ -90,6 +91,14 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
     public static final Setting<CircuitBreaker.Type> ACCOUNTING_CIRCUIT_BREAKER_TYPE_SETTING =
         new Setting<>("indices.breaker.accounting.type", "memory", CircuitBreaker.Type::parseValue, Property.NodeScope);
 
+    /**
+     * Limit of the off-heap pages of big arrays, half of the maximum direct memory of the JVM by default. Running out of direct memory
+     * is fatal while the heap based breakers don't see these pages.
+     */
+    public static final Setting<ByteSizeValue> OFF_HEAP_CIRCUIT_BREAKER_LIMIT_SETTING =
+        Setting.byteSizeSetting("indices.breaker.off_heap.limit",
+            settings -> new ByteSizeValue(maxDirectMemory() / 2).getStringRep(), Property.Dynamic, Property.NodeScope);
+
     public static final Setting<ByteSizeValue> IN_FLIGHT_REQUESTS_CIRCUIT_BREAKER_LIMIT_SETTING =
         Setting.memorySizeSetting("network.breaker.inflight_requests.limit", "100%", Property.Dynamic, Property.NodeScope);
     public static final Setting<Double> IN_FLIGHT_REQUESTS_CIRCUIT_BREAKER_OVERHEAD_SETTING =
@@ -140,6 +149,12 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
                 ACCOUNTING_CIRCUIT_BREAKER_TYPE_SETTING.get(settings),
                 CircuitBreaker.Durability.PERMANENT
         )));
+        childCircuitBreakers.put(CircuitBreaker.OFF_HEAP, validateAndCreateBreaker(new BreakerSettings(CircuitBreaker.OFF_HEAP,
+                OFF_HEAP_CIRCUIT_BREAKER_LIMIT_SETTING.get(settings).getBytes(),
+                1.0,
+                CircuitBreaker.Type.MEMORY,
+                CircuitBreaker.Durability.TRANSIENT
+        )));
         for (BreakerSettings breakerSettings : customBreakers) {
             if (childCircuitBreakers.containsKey(breakerSettings.getName())) {
                 throw new IllegalArgumentException("More than one circuit breaker with the name ["
@@ -170,6 +185,8 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
         clusterSettings.addSettingsUpdateConsumer(ACCOUNTING_CIRCUIT_BREAKER_LIMIT_SETTING,
             ACCOUNTING_CIRCUIT_BREAKER_OVERHEAD_SETTING,
             (limit, overhead) -> updateCircuitBreakerSettings(CircuitBreaker.ACCOUNTING, limit, overhead));
+        clusterSettings.addSettingsUpdateConsumer(OFF_HEAP_CIRCUIT_BREAKER_LIMIT_SETTING,
+            limit -> updateCircuitBreakerSettings(CircuitBreaker.OFF_HEAP, limit, 1.0));
         clusterSettings.addAffixUpdateConsumer(CIRCUIT_BREAKER_LIMIT_SETTING,
             CIRCUIT_BREAKER_OVERHEAD_SETTING,
             (name, updatedValues) -> updateCircuitBreakerSettings(name, updatedValues.v1(), updatedValues.v2()),
@@ -258,6 +275,10 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
         long permanentUsage = 0;
 
         for (CircuitBreaker breaker : this.breakers.values()) {
+            if (CircuitBreaker.OFF_HEAP.equals(breaker.getName())) {
+                // direct memory is neither on the heap nor limited by it, the request breaker accounts these bytes too
+                continue;
+            }
             long breakerUsed = (long)(breaker.getUsed() * breaker.getOverhead());
             if (breaker.getDurability() == CircuitBreaker.Durability.TRANSIENT) {
                 transientUsage += breakerUsed;
@@ -274,6 +295,14 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
         }
     }
 
+    /**
+     * The maximum direct memory of the JVM, which defaults to the maximum heap size if it isn't set.
+     */
+    static long maxDirectMemory() {
+        long directMemoryMax = JvmInfo.jvmInfo().getMem().getDirectMemoryMax().getBytes();
+        return directMemoryMax > 0 ? directMemoryMax : JvmInfo.jvmInfo().getMem().getHeapMax().getBytes();
+    }
+
     //package private to allow overriding it in tests
     long currentMemoryUsage() {
         return realMemoryUsage();
@@ -300,7 +329,9 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
      * Checks whether the parent breaker has been tripped
      */
     public void checkParentLimit(long newBytesReserved, String label) throws CircuitBreakingException {
-        final MemoryUsage memoryUsed = memoryUsed(newBytesReserved);
+        // arrays that live off-heap are limited by their child breaker but never show up in the real memory usage of the heap
+        final boolean offHeap = this.trackRealMemoryUsage && BigArrays.OFF_HEAP_LABEL.equals(label);
+        final MemoryUsage memoryUsed = memoryUsed(offHeap ? 0L : newBytesReserved);
         long parentLimit = this.parentSettings.getLimit();
         if (memoryUsed.totalUsage > parentLimit && overLimitStrategy.overLimit(memoryUsed).totalUsage > parentLimit) {
             this.parentTripCount.incrementAndGet();
@@ -321,7 +352,7 @@ public class HierarchyCircuitBreakerService extends CircuitBreakerService {
                 message.append("]");
             }
             message.append(", usages [");
-            message.append(this.breakers.entrySet().stream().map(e -> {
+            message.append(this.breakers.entrySet().stream().filter(e -> CircuitBreaker.OFF_HEAP.equals(e.getKey()) == false).map(e -> {
                     final CircuitBreaker breaker = e.getValue();
                     final long breakerUsed = (long)(breaker.getUsed() * breaker.getOverhead());
                     return e.getKey() + "=" + breakerUsed + "/" + new ByteSizeValue(breakerUsed);
@@ -0,0 +1,140 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * The body of a {@link RestResponse} that is serialized lazily, one chunk at a time, while it is being sent. Only the chunk that is
+ * currently being written to the network needs to be held in memory, rather than the whole serialized response.
+ */
+public interface ChunkedRestResponseBody {
+
+    /**
+     * @return true once this body has been fully serialized, in which case {@link #encodeChunk} must not be called anymore
+     */
+    boolean isDone();
+
+    /**
+     * Serializes the next chunk of this body into pages obtained from the given {@link BigArrays}. The chunk is at least
+     * {@code sizeHint} bytes long, unless it is the last chunk, and may overshoot the hint by the size of a single fragment of the body.
+     *
+     * @param sizeHint  the size the chunk should have
+     * @param bigArrays the {@link BigArrays} to allocate the pages of the chunk from
+     * @return the serialized chunk, which must be released once it has been written to the network
+     */
+    ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) throws IOException;
+
+    /**
+     * @return the content type of the response, see {@link RestResponse#contentType()}
+     */
+    String getResponseContentTypeString();
+
+    /**
+     * Creates a chunked body that serializes the given fragments of x-content in order with a builder created by the given channel,
+     * so that the content type, pretty printing and response filtering of the request apply as for a regular response. Together the
+     * fragments must produce a complete x-content object, for instance a first fragment that starts the object and writes the leading
+     * fields, a fragment per element of a long array, and a last fragment that ends the array and the object.
+     *
+     * @param fragments the fragments of the response, which are only consumed as the response is sent
+     * @param params    the parameters to serialize the fragments with
+     * @param channel   the channel the response is going to be sent on
+     */
+    static ChunkedRestResponseBody fromXContent(Iterator<? extends ToXContent> fragments, ToXContent.Params params,
+                                                RestChannel channel) throws IOException {
+        final ChunkOutputStream out = new ChunkOutputStream();
+        final XContentBuilder builder = channel.newBuilder(channel.request().getXContentType(), null, true, out);
+        final String contentType = builder.getResponseContentTypeString();
+        return new ChunkedRestResponseBody() {
+
+            private boolean done = false;
+
+            @Override
+            public boolean isDone() {
+                return done;
+            }
+
+            @Override
+            public ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) throws IOException {
+                assert done == false : "body has already been fully serialized";
+                final ReleasableBytesStreamOutput chunk = new ReleasableBytesStreamOutput(bigArrays);
+                boolean success = false;
+                try {
+                    out.current = chunk;
+                    // the builder only hands bytes to the stream when flushed, so flush after each fragment to measure the chunk
+                    while (fragments.hasNext() && chunk.size() < sizeHint) {
+                        fragments.next().toXContent(builder, params);
+                        builder.flush();
+                    }
+                    if (fragments.hasNext() == false) {
+                        builder.close();
+                        done = true;
+                    }
+                    out.current = null;
+                    final ReleasableBytesReference result = new ReleasableBytesReference(chunk.bytes(), chunk);
+                    success = true;
+                    return result;
+                } finally {
+                    if (success == false) {
+                        out.current = null;
+                        chunk.close();
+                    }
+                }
+            }
+
+            @Override
+            public String getResponseContentTypeString() {
+                return contentType;
+            }
+        };
+    }
+
+    /**
+     * The stream a chunked body's {@link XContentBuilder} writes to, which forwards to the chunk that is currently being serialized.
+     */
+    final class ChunkOutputStream extends OutputStream {
+
+        private OutputStream current;
+
+        private OutputStream current() throws IOException {
+            if (current == null) {
+                throw new IOException("no chunk is being serialized");
+            }
+            return current;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            current().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            current().write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            // the chunk is flushed by whoever consumes it
+        }
+
+        @Override
+        public void close() {
+            // closing the builder must not release the chunk
+        }
+    }
+}
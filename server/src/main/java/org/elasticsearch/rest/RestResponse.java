@@ -9,6 +9,7 @@
 package org.elasticsearch.rest;
 
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 
 import java.util.ArrayList;
@@ -33,6 +34,15 @@ public abstract class RestResponse {
      */
     public abstract BytesReference content();
 
+    /**
+     * The response body if it is serialized in chunks while it is being sent, in which case {@link #content()} is empty, or
+     * {@code null} if the whole body is held by {@link #content()}.
+     */
+    @Nullable
+    public ChunkedRestResponseBody chunkedContent() {
+        return null;
+    }
+
     /**
      * The rest status code.
      */
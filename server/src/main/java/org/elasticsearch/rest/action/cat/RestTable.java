@@ -11,16 +11,23 @@ package org.elasticsearch.rest.action.cat;
 import org.elasticsearch.common.Booleans;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.Table;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.collect.Iterators;
 import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.io.UTF8StreamWriter;
 import org.elasticsearch.common.io.stream.BytesStream;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
 import org.elasticsearch.common.regex.Regex;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.SizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestResponse;
@@ -30,6 +37,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -38,6 +46,12 @@ import java.util.Set;
 
 public class RestTable {
 
+    /**
+     * Tables with at least this many rows are sent as a {@link ChunkedRestResponse}, which is serialized a chunk of rows at a time while
+     * it is sent instead of all at once.
+     */
+    public static final int CHUNKED_RESPONSE_MIN_ROWS = 1000;
+
     public static RestResponse buildResponse(Table table, RestChannel channel) throws Exception {
         RestRequest request = channel.request();
         XContentType xContentType = getResponseContentType(request);
@@ -59,59 +73,133 @@ public class RestTable {
 
     public static RestResponse buildXContentBuilder(Table table, RestChannel channel) throws Exception {
         RestRequest request = channel.request();
-        XContentBuilder builder = channel.newBuilder();
         List<DisplayHeader> displayHeaders = buildDisplayHeaders(table, request);
+        List<Integer> rowOrder = getRowOrder(table, request);
+
+        if (rowOrder.size() >= CHUNKED_RESPONSE_MIN_ROWS) {
+            Iterator<ToXContent> rows = rowOrder.stream()
+                .<ToXContent>map(row -> (builder, params) -> rowToXContent(table, request, displayHeaders, row, builder))
+                .iterator();
+            @SuppressWarnings("unchecked")
+            Iterator<ToXContent> fragments = Iterators.<ToXContent>concat(
+                Iterators.<ToXContent>single((builder, params) -> builder.startArray()),
+                rows,
+                Iterators.<ToXContent>single((builder, params) -> builder.endArray()));
+            return new ChunkedRestResponse(RestStatus.OK, ChunkedRestResponseBody.fromXContent(fragments, request, channel));
+        }
 
+        XContentBuilder builder = channel.newBuilder();
         builder.startArray();
-        List<Integer> rowOrder = getRowOrder(table, request);
         for (Integer row : rowOrder) {
-            builder.startObject();
-            for (DisplayHeader header : displayHeaders) {
-                builder.field(header.display, renderValue(request, table.getAsMap().get(header.name).get(row).value));
-            }
-            builder.endObject();
+            rowToXContent(table, request, displayHeaders, row, builder);
         }
         builder.endArray();
         return new BytesRestResponse(RestStatus.OK, builder);
     }
 
+    private static XContentBuilder rowToXContent(Table table, RestRequest request, List<DisplayHeader> displayHeaders, int row,
+                                                 XContentBuilder builder) throws IOException {
+        builder.startObject();
+        for (DisplayHeader header : displayHeaders) {
+            builder.field(header.display, renderValue(request, table.getAsMap().get(header.name).get(row).value));
+        }
+        return builder.endObject();
+    }
+
     public static RestResponse buildTextPlainResponse(Table table, RestChannel channel) throws IOException {
         RestRequest request = channel.request();
         boolean verbose = request.paramAsBoolean("v", false);
 
         List<DisplayHeader> headers = buildDisplayHeaders(table, request);
         int[] width = buildWidths(table, request, verbose, headers);
+        List<Integer> rowOrder = getRowOrder(table, request);
+
+        if (rowOrder.size() >= CHUNKED_RESPONSE_MIN_ROWS) {
+            return new ChunkedRestResponse(RestStatus.OK, buildTextPlainChunkedBody(table, request, verbose, headers, width, rowOrder));
+        }
 
         BytesStream bytesOut = Streams.flushOnCloseStream(channel.bytesOutput());
         UTF8StreamWriter out = new UTF8StreamWriter().setOutput(bytesOut);
-        int lastHeader = headers.size() - 1;
         if (verbose) {
-            for (int col = 0; col < headers.size(); col++) {
-                DisplayHeader header = headers.get(col);
-                boolean isLastColumn = col == lastHeader;
-                pad(new Table.Cell(header.display, table.findHeaderByName(header.name)), width[col], request, out, isLastColumn);
-                if (isLastColumn == false) {
-                    out.append(" ");
-                }
-            }
-            out.append("\n");
+            writeTextHeaderRow(table, request, headers, width, out);
+        }
+        for (Integer row: rowOrder) {
+            writeTextRow(table, request, headers, width, row, out);
         }
+        out.close();
+        return new BytesRestResponse(RestStatus.OK, BytesRestResponse.TEXT_CONTENT_TYPE, bytesOut.bytes());
+    }
 
-        List<Integer> rowOrder = getRowOrder(table, request);
+    private static ChunkedRestResponseBody buildTextPlainChunkedBody(Table table, RestRequest request, boolean verbose,
+                                                                     List<DisplayHeader> headers, int[] width, List<Integer> rowOrder) {
+        return new ChunkedRestResponseBody() {
 
-        for (Integer row: rowOrder) {
-            for (int col = 0; col < headers.size(); col++) {
-                DisplayHeader header = headers.get(col);
-                boolean isLastColumn = col == lastHeader;
-                pad(table.getAsMap().get(header.name).get(row), width[col], request, out, isLastColumn);
-                if (isLastColumn == false) {
-                    out.append(" ");
+            private boolean headerWritten = verbose == false;
+            private int nextRow = 0;
+
+            @Override
+            public boolean isDone() {
+                return headerWritten && nextRow == rowOrder.size();
+            }
+
+            @Override
+            public ReleasableBytesReference encodeChunk(int sizeHint, BigArrays bigArrays) throws IOException {
+                final ReleasableBytesStreamOutput chunk = new ReleasableBytesStreamOutput(bigArrays);
+                boolean success = false;
+                try {
+                    final UTF8StreamWriter out = new UTF8StreamWriter().setOutput(chunk);
+                    if (headerWritten == false) {
+                        writeTextHeaderRow(table, request, headers, width, out);
+                        headerWritten = true;
+                    }
+                    while (nextRow < rowOrder.size() && chunk.size() < sizeHint) {
+                        writeTextRow(table, request, headers, width, rowOrder.get(nextRow++), out);
+                        out.flush();
+                    }
+                    out.flush();
+                    final ReleasableBytesReference result = new ReleasableBytesReference(chunk.bytes(), chunk);
+                    success = true;
+                    return result;
+                } finally {
+                    if (success == false) {
+                        chunk.close();
+                    }
                 }
             }
-            out.append("\n");
+
+            @Override
+            public String getResponseContentTypeString() {
+                return BytesRestResponse.TEXT_CONTENT_TYPE;
+            }
+        };
+    }
+
+    private static void writeTextHeaderRow(Table table, RestRequest request, List<DisplayHeader> headers, int[] width,
+                                           UTF8StreamWriter out) throws IOException {
+        int lastHeader = headers.size() - 1;
+        for (int col = 0; col < headers.size(); col++) {
+            DisplayHeader header = headers.get(col);
+            boolean isLastColumn = col == lastHeader;
+            pad(new Table.Cell(header.display, table.findHeaderByName(header.name)), width[col], request, out, isLastColumn);
+            if (isLastColumn == false) {
+                out.append(" ");
+            }
         }
-        out.close();
-        return new BytesRestResponse(RestStatus.OK, BytesRestResponse.TEXT_CONTENT_TYPE, bytesOut.bytes());
+        out.append("\n");
+    }
+
+    private static void writeTextRow(Table table, RestRequest request, List<DisplayHeader> headers, int[] width, int row,
+                                     UTF8StreamWriter out) throws IOException {
+        int lastHeader = headers.size() - 1;
+        for (int col = 0; col < headers.size(); col++) {
+            DisplayHeader header = headers.get(col);
+            boolean isLastColumn = col == lastHeader;
+            pad(table.getAsMap().get(header.name).get(row), width[col], request, out, isLastColumn);
+            if (isLastColumn == false) {
+                out.append(" ");
+            }
+        }
+        out.append("\n");
     }
 
     static List<Integer> getRowOrder(Table table, RestRequest request) {
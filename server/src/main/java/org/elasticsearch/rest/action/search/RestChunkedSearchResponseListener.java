@@ -0,0 +1,47 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.rest.action.search;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponse;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.action.RestResponseListener;
+
+/**
+ * Sends search responses like {@link org.elasticsearch.rest.action.RestStatusToXContentListener} does, except for responses with many
+ * hits which are sent as a {@link ChunkedRestResponse}. Their hits are serialized one chunk at a time while the response is sent, so
+ * that the coordinating node does not need to hold the serialized form of the whole response on top of the response itself.
+ */
+public class RestChunkedSearchResponseListener extends RestResponseListener<SearchResponse> {
+
+    /**
+     * Responses with at least this many hits are sent in chunks.
+     */
+    public static final int CHUNKED_RESPONSE_MIN_HITS = 100;
+
+    public RestChunkedSearchResponseListener(RestChannel channel) {
+        super(channel);
+    }
+
+    @Override
+    public RestResponse buildResponse(SearchResponse response) throws Exception {
+        if (response.getHits().getHits().length < CHUNKED_RESPONSE_MIN_HITS) {
+            try (XContentBuilder builder = channel.newBuilder()) {
+                response.toXContent(builder, channel.request());
+                return new BytesRestResponse(response.status(), builder);
+            }
+        }
+        return new ChunkedRestResponse(response.status(),
+            ChunkedRestResponseBody.fromXContent(response.toXContentChunked(), channel.request(), channel));
+    }
+}
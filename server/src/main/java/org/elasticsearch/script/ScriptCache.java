@@ -115,6 +115,18 @@ public class ScriptCache {
         }
     }
 
+    /**
+     * Copy the compiled scripts of {@code previous} into this cache, up to this cache's maximum size. Used when the cache of
+     * a context is replaced because its settings changed so that the replacement doesn't have to compile every script again.
+     */
+    void copyCompiledScripts(ScriptCache previous) {
+        previous.cache.forEach((key, compiledScript) -> {
+            if (cacheSize < 0 || cache.count() < cacheSize) {
+                cache.put(key, compiledScript);
+            }
+        });
+    }
+
     /** Hack to rethrow unknown Exceptions from compile: */
     @SuppressWarnings("unchecked")
     static <T extends Throwable> void rethrow(Throwable t) throws T {
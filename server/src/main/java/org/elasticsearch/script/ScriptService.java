@@ -564,6 +564,7 @@ public class ScriptService implements Closeable, ClusterStateApplier, ScriptComp
             assert ref != null : "expected script cache to exist for context [" + name + "]";
             ScriptCache oldCache = ref.get();
             assert oldCache != null : "expected script cache to be non-null for context [" + name + "]";
+            cache.copyCompiledScripts(oldCache);
             ref.set(cache);
             logger.debug("Replaced context [" + name + "] with new settings");
         }
@@ -11,6 +11,9 @@ package org.elasticsearch.search;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.TopDocs;
@@ -19,6 +22,8 @@ import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRunnable;
 import org.elasticsearch.action.OriginalIndices;
+import org.elasticsearch.action.search.CanMatchNodeRequest;
+import org.elasticsearch.action.search.CanMatchNodeResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchShardTask;
 import org.elasticsearch.action.search.SearchType;
@@ -35,6 +40,7 @@ import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
@@ -68,6 +74,7 @@ import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.script.FieldScript;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.search.aggregations.AggregationInitializationException;
+import org.elasticsearch.search.aggregations.AggregationReducePool;
 import org.elasticsearch.search.aggregations.AggregatorFactories;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
@@ -111,6 +118,7 @@ import org.elasticsearch.search.sort.SortAndFormats;
 import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.suggest.Suggest;
 import org.elasticsearch.search.suggest.completion.CompletionSuggestion;
+import org.elasticsearch.tasks.CancellableTask;
 import org.elasticsearch.tasks.TaskCancelledException;
 import org.elasticsearch.threadpool.Scheduler.Cancellable;
 import org.elasticsearch.threadpool.ThreadPool;
@@ -118,12 +126,15 @@ import org.elasticsearch.threadpool.ThreadPool.Names;
 import org.elasticsearch.transport.TransportRequest;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -137,6 +148,12 @@ import static org.elasticsearch.common.unit.TimeValue.timeValueMinutes;
 public class SearchService extends AbstractLifecycleComponent implements IndexEventListener {
     private static final Logger logger = LogManager.getLogger(SearchService.class);
 
+    /**
+     * The key of the map that aggregations keep state in for the lifetime of
+     * a point in time.
+     */
+    private static final String POINT_IN_TIME_STATE_KEY = "aggregations.point_in_time_state";
+
     // we can have 5 minutes here, since we make sure to clean with search requests and when shard/index closes
     public static final Setting<TimeValue> DEFAULT_KEEPALIVE_SETTING =
         Setting.positiveTimeSetting("search.default_keep_alive", timeValueMinutes(5), Property.NodeScope, Property.Dynamic);
@@ -164,6 +181,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     public static final Setting<Integer> MAX_OPEN_SCROLL_CONTEXT =
         Setting.intSetting("search.max_open_scroll_context", 500, 0, Property.Dynamic, Property.NodeScope);
 
+    /**
+     * The number of threads that reduce the buckets of multi-bucket aggregations in parallel on the coordinating node. The default
+     * of {@code 1} reduces them in the thread that reduces the search responses.
+     */
+    public static final Setting<Integer> AGGS_REDUCE_PARALLELISM_SETTING =
+        Setting.intSetting("search.aggs.reduce_parallelism", 1, 1, Property.NodeScope);
+
     public static final int DEFAULT_SIZE = 10;
     public static final int DEFAULT_FROM = 0;
 
@@ -203,8 +227,17 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
     private final ConcurrentMapLong<ReaderContext> activeReaders = ConcurrentCollections.newConcurrentMapLongWithAggressiveConcurrency();
 
+    /**
+     * The min and max values of the primary sort fields of can_match requests per shard reader, so that they are only derived once per
+     * refresh rather than on every request. Entries are removed when their reader is closed.
+     */
+    private final Map<IndexReader.CacheKey, Map<String, Optional<MinAndMax<?>>>> canMatchMinAndMaxes =
+        ConcurrentCollections.newConcurrentMap();
+
     private final MultiBucketConsumerService multiBucketConsumerService;
 
+    private final AggregationReducePool aggsReducePool;
+
     private final AtomicInteger openScrollContexts = new AtomicInteger();
     private final String sessionId = UUIDs.randomBase64UUID();
 
@@ -222,6 +255,10 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         this.fetchPhase = fetchPhase;
         this.multiBucketConsumerService = new MultiBucketConsumerService(clusterService, settings,
             circuitBreakerService.getBreaker(CircuitBreaker.REQUEST));
+        final int aggsReduceParallelism = AGGS_REDUCE_PARALLELISM_SETTING.get(settings);
+        this.aggsReducePool = aggsReduceParallelism > 1
+            ? new AggregationReducePool(settings, aggsReduceParallelism, threadPool.getThreadContext())
+            : null;
 
         TimeValue keepAliveInterval = KEEPALIVE_INTERVAL_SETTING.get(settings);
         setKeepAlives(DEFAULT_KEEPALIVE_SETTING.get(settings), MAX_KEEPALIVE_SETTING.get(settings));
@@ -333,6 +370,9 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
     protected void doClose() {
         doStop();
         keepAliveReaper.cancel();
+        if (aggsReducePool != null) {
+            aggsReducePool.close();
+        }
     }
 
     public void executeDfsPhase(ShardSearchRequest request, SearchShardTask task, ActionListener<SearchPhaseResult> listener) {
@@ -894,6 +934,35 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         }
     }
 
+    /**
+     * State that aggregations keep for the lifetime of a point in time, or
+     * {@code null} if the reader isn't kept open for a point in time.
+     */
+    private static ConcurrentMap<String, Object> pointInTimeState(ReaderContext readerContext) {
+        if (readerContext.singleSession() || readerContext.scrollContext() != null) {
+            return null;
+        }
+        synchronized (readerContext) {
+            ConcurrentMap<String, Object> state = readerContext.getFromContext(POINT_IN_TIME_STATE_KEY);
+            if (state == null) {
+                final ConcurrentMap<String, Object> newState = new ConcurrentHashMap<>();
+                // requests hold a reference to the reader context so nothing is added to the state once it is closed
+                readerContext.addOnClose(() -> {
+                    final List<Releasable> releasables = new ArrayList<>();
+                    for (Object value : newState.values()) {
+                        if (value instanceof Releasable) {
+                            releasables.add((Releasable) value);
+                        }
+                    }
+                    Releasables.close(releasables);
+                });
+                readerContext.putInContext(POINT_IN_TIME_STATE_KEY, newState);
+                state = newState;
+            }
+            return state;
+        }
+    }
+
     private void parseSource(DefaultSearchContext context, SearchSourceBuilder source, boolean includeAggregations) {
         // nothing to parse...
         if (source == null) {
@@ -968,7 +1037,8 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                 context.indexShard().shardId().hashCode(),
                 context::getRelativeTimeInMillis,
                 context::isCancelled,
-                context::buildFilteredQuery
+                context::buildFilteredQuery,
+                () -> pointInTimeState(context.readerContext())
             );
             context.addReleasable(aggContext);
             try {
@@ -1179,6 +1249,27 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         return indicesService.buildAliasFilter(state, index, resolvedExpressions);
     }
 
+    /**
+     * Executes the can_match requests of the given node-level request one after the other within the single task of that request, see
+     * {@link #canMatch(ShardSearchRequest)}. The failure of a shard request does not affect the other shard requests.
+     */
+    public void canMatch(CanMatchNodeRequest request, CancellableTask task, ActionListener<CanMatchNodeResponse> listener) {
+        final List<ShardSearchRequest> shardRequests = request.getShardRequests();
+        final List<CanMatchNodeResponse.ResponseOrFailure> responses = new ArrayList<>(shardRequests.size());
+        for (ShardSearchRequest shardRequest : shardRequests) {
+            if (task.isCancelled()) {
+                responses.add(new CanMatchNodeResponse.ResponseOrFailure(new TaskCancelledException("cancelled")));
+                continue;
+            }
+            try {
+                responses.add(new CanMatchNodeResponse.ResponseOrFailure(canMatch(shardRequest)));
+            } catch (Exception e) {
+                responses.add(new CanMatchNodeResponse.ResponseOrFailure(e));
+            }
+        }
+        listener.onResponse(new CanMatchNodeResponse(responses));
+    }
+
     public void canMatch(ShardSearchRequest request, ActionListener<CanMatchResponse> listener) {
         try {
             listener.onResponse(canMatch(request));
@@ -1241,7 +1332,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
                 final MinAndMax<?> minMax;
                 if (canMatch || hasRefreshPending) {
                     FieldSortBuilder sortBuilder = FieldSortBuilder.getPrimaryFieldSortOrNull(request.source());
-                    minMax = sortBuilder != null ? FieldSortBuilder.getMinMaxOrNull(context, sortBuilder) : null;
+                    minMax = sortBuilder != null ? getMinMaxOrNull(request, canMatchSearcher, context, sortBuilder) : null;
                 } else {
                     minMax = null;
                 }
@@ -1252,6 +1343,41 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         }
     }
 
+    private MinAndMax<?> getMinMaxOrNull(ShardSearchRequest request, Engine.Searcher searcher, SearchExecutionContext context,
+                                         FieldSortBuilder sortBuilder) throws IOException {
+        final IndexReader.CacheHelper cacheHelper = searcher.getDirectoryReader().getReaderCacheHelper();
+        if (cacheHelper == null
+            // runtime fields of the request may shadow the sort field, so their values are specific to the request
+            || request.getRuntimeMappings().isEmpty() == false
+            // field and document level security wrap the segments but pass the cache helper through
+            || ElasticsearchDirectoryReader.readsEngineSegments(searcher.getDirectoryReader()) == false) {
+            return FieldSortBuilder.getMinMaxOrNull(context, sortBuilder);
+        }
+        Map<String, Optional<MinAndMax<?>>> readerMinAndMaxes = canMatchMinAndMaxes.get(cacheHelper.getKey());
+        if (readerMinAndMaxes == null) {
+            final Map<String, Optional<MinAndMax<?>>> newMinAndMaxes = ConcurrentCollections.newConcurrentMap();
+            readerMinAndMaxes = canMatchMinAndMaxes.putIfAbsent(cacheHelper.getKey(), newMinAndMaxes);
+            if (readerMinAndMaxes == null) {
+                readerMinAndMaxes = newMinAndMaxes;
+                // a refresh opens a new reader, so this also invalidates the values once the old reader is closed
+                cacheHelper.addClosedListener(canMatchMinAndMaxes::remove);
+            }
+        }
+        // the min and max only depend on the values of the field and the type they are read as, not on the order or mode of the sort
+        final String key = sortBuilder.getFieldName() + ":" + sortBuilder.getNumericType();
+        Optional<MinAndMax<?>> minAndMax = readerMinAndMaxes.get(key);
+        if (minAndMax == null) {
+            minAndMax = Optional.ofNullable(FieldSortBuilder.getMinMaxOrNull(context, sortBuilder));
+            readerMinAndMaxes.put(key, minAndMax);
+        }
+        return minAndMax.orElse(null);
+    }
+
+    // package private for testing
+    int canMatchMinAndMaxesCacheSize() {
+        return canMatchMinAndMaxes.size();
+    }
+
     public static boolean queryStillMatchesAfterRewrite(ShardSearchRequest request, QueryRewriteContext context) throws IOException {
         Rewriteable.rewrite(request.getRewriteable(), context, false);
         final boolean aliasFilterCanMatch = request.getAliasFilter()
@@ -1319,14 +1445,14 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             @Override
             public InternalAggregation.ReduceContext forPartialReduction() {
                 return InternalAggregation.ReduceContext.forPartialReduction(bigArrays, scriptService,
-                        () -> requestToPipelineTree(request));
+                        () -> requestToPipelineTree(request), aggsReducePool);
             }
 
             @Override
             public ReduceContext forFinalReduction() {
                 PipelineTree pipelineTree = requestToPipelineTree(request);
                 return InternalAggregation.ReduceContext.forFinalReduction(
-                        bigArrays, scriptService, multiBucketConsumerService.create(), pipelineTree);
+                        bigArrays, scriptService, multiBucketConsumerService.create(), pipelineTree, aggsReducePool);
             }
         };
     }
@@ -174,6 +174,16 @@ public abstract class AggregationBuilder
         return DEFAULT_PREALLOCATION;
     }
 
+    /**
+     * Can the results of this aggregation be computed on a random sample of
+     * the documents and {@link InternalAggregation#finalizeSampling scaled}
+     * up to estimates for all documents? Only these aggregations are allowed
+     * under the {@code random_sampler} aggregation.
+     */
+    public boolean supportsSampling() {
+        return false;
+    }
+
     /** Common xcontent fields shared among aggregator builders */
     public static final class CommonFields extends ParseField.CommonFields {
         public static final ParseField VALUE_TYPE = new ParseField("value_type");
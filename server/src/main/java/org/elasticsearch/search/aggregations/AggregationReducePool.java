@@ -0,0 +1,132 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * A fork-join pool that reduces the buckets of multi-bucket aggregations in parallel. The buckets are split in partitions that are
+ * reduced by different threads, and reductions of sub-aggregations that run in the pool split their own buckets further, so that a
+ * deep aggregation tree keeps every thread of the pool busy without blocking any of them while waiting for a partition.
+ */
+public final class AggregationReducePool implements Closeable {
+
+    /**
+     * Partitions smaller than this are not worth handing to another thread.
+     */
+    static final int MIN_PARTITION_SIZE = 64;
+
+    /**
+     * How many partitions per thread of the pool to split the buckets in, so that threads that are done early can steal work.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+    private final ThreadContext threadContext;
+
+    public AggregationReducePool(Settings settings, int parallelism, ThreadContext threadContext) {
+        if (parallelism < 2) {
+            throw new IllegalArgumentException("parallelism must be at least [2] but was [" + parallelism + "]");
+        }
+        final String threadName = EsExecutors.threadName(settings, "search_reduce");
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName(threadName + "[T#" + thread.getPoolIndex() + "]");
+            return thread;
+        }, null, false);
+        this.threadContext = threadContext;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Applies {@code function} to every element of {@code inputs} in parallel and returns the results in the order of the inputs.
+     * Falls back to applying it sequentially in the calling thread if there are too few inputs to be worth splitting. The first
+     * exception thrown by {@code function} is rethrown once all partitions stopped.
+     */
+    <T, R> List<R> map(List<T> inputs, Function<T, R> function) {
+        final int partitions = Math.min(pool.getParallelism() * PARTITIONS_PER_THREAD, inputs.size() / MIN_PARTITION_SIZE);
+        if (partitions < 2) {
+            return sequentialMap(inputs, function);
+        }
+        final Object[] results = new Object[inputs.size()];
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final int partitionSize = (inputs.size() + partitions - 1) / partitions;
+        final List<ForkJoinTask<?>> tasks = new ArrayList<>(partitions);
+        for (int start = 0; start < inputs.size(); start += partitionSize) {
+            final int from = start;
+            final int to = Math.min(start + partitionSize, inputs.size());
+            // the partition runs in the context of the request, for instance to keep its response headers
+            tasks.add(ForkJoinTask.adapt(threadContext.preserveContext(() -> {
+                try {
+                    for (int i = from; i < to && failure.get() == null; i++) {
+                        results[i] = function.apply(inputs.get(i));
+                    }
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            })));
+        }
+        if (ForkJoinTask.getPool() == pool) {
+            // a sub-aggregation is reduced by a thread of the pool, which helps with its partitions rather than blocking on them
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        }
+        final Exception e = failure.get();
+        if (e != null) {
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new IllegalStateException(e);
+        }
+        @SuppressWarnings("unchecked")
+        final List<R> list = (List<R>) Arrays.asList(results);
+        return list;
+    }
+
+    static <T, R> List<R> sequentialMap(List<T> inputs, Function<T, R> function) {
+        final List<R> results = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            results.add(function.apply(input));
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
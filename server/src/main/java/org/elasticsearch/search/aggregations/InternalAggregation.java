@@ -7,6 +7,7 @@
  */
 package org.elasticsearch.search.aggregations;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.io.stream.NamedWriteable;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -15,6 +16,7 @@ import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.rest.action.search.RestSearchAction;
 import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.aggregations.bucket.sampler.SamplingContext;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator.PipelineTree;
 import org.elasticsearch.search.aggregations.support.AggregationPath;
@@ -59,13 +61,24 @@ public abstract class InternalAggregation implements Aggregation, NamedWriteable
          * to them.
          */
         private final Supplier<PipelineTree> pipelineTreeForBwcSerialization;
+        @Nullable
+        private final AggregationReducePool reducePool;
 
         /**
          * Build a {@linkplain ReduceContext} to perform a partial reduction.
          */
         public static ReduceContext forPartialReduction(BigArrays bigArrays, ScriptService scriptService,
                 Supplier<PipelineTree> pipelineTreeForBwcSerialization) {
-            return new ReduceContext(bigArrays, scriptService, (s) -> {}, null, pipelineTreeForBwcSerialization);
+            return forPartialReduction(bigArrays, scriptService, pipelineTreeForBwcSerialization, null);
+        }
+
+        /**
+         * Build a {@linkplain ReduceContext} to perform a partial reduction.
+         * @param reducePool The pool to reduce buckets in parallel with, or {@code null} to reduce them in the calling thread
+         */
+        public static ReduceContext forPartialReduction(BigArrays bigArrays, ScriptService scriptService,
+                Supplier<PipelineTree> pipelineTreeForBwcSerialization, @Nullable AggregationReducePool reducePool) {
+            return new ReduceContext(bigArrays, scriptService, (s) -> {}, null, pipelineTreeForBwcSerialization, reducePool);
         }
 
         /**
@@ -74,17 +87,29 @@ public abstract class InternalAggregation implements Aggregation, NamedWriteable
          */
         public static ReduceContext forFinalReduction(BigArrays bigArrays, ScriptService scriptService,
                 IntConsumer multiBucketConsumer, PipelineTree pipelineTreeRoot) {
+            return forFinalReduction(bigArrays, scriptService, multiBucketConsumer, pipelineTreeRoot, null);
+        }
+
+        /**
+         * Build a {@linkplain ReduceContext} to perform the final reduction.
+         * @param pipelineTreeRoot The root of tree of pipeline aggregations for this request
+         * @param reducePool The pool to reduce buckets in parallel with, or {@code null} to reduce them in the calling thread
+         */
+        public static ReduceContext forFinalReduction(BigArrays bigArrays, ScriptService scriptService,
+                IntConsumer multiBucketConsumer, PipelineTree pipelineTreeRoot, @Nullable AggregationReducePool reducePool) {
             return new ReduceContext(bigArrays, scriptService, multiBucketConsumer,
-                    requireNonNull(pipelineTreeRoot, "prefer EMPTY to null"), () -> pipelineTreeRoot);
+                    requireNonNull(pipelineTreeRoot, "prefer EMPTY to null"), () -> pipelineTreeRoot, reducePool);
         }
 
         private ReduceContext(BigArrays bigArrays, ScriptService scriptService, IntConsumer multiBucketConsumer,
-                PipelineTree pipelineTreeRoot, Supplier<PipelineTree> pipelineTreeForBwcSerialization) {
+                PipelineTree pipelineTreeRoot, Supplier<PipelineTree> pipelineTreeForBwcSerialization,
+                @Nullable AggregationReducePool reducePool) {
             this.bigArrays = bigArrays;
             this.scriptService = scriptService;
             this.multiBucketConsumer = multiBucketConsumer;
             this.pipelineTreeRoot = pipelineTreeRoot;
             this.pipelineTreeForBwcSerialization = pipelineTreeForBwcSerialization;
+            this.reducePool = reducePool;
         }
 
         /**
@@ -125,7 +150,26 @@ public abstract class InternalAggregation implements Aggregation, NamedWriteable
          * the maximum number of buckets allowed in a response
          */
         public void consumeBucketsAndMaybeBreak(int size) {
-            multiBucketConsumer.accept(size);
+            if (reducePool == null) {
+                multiBucketConsumer.accept(size);
+            } else {
+                // buckets may be reduced by several threads of the pool, and the consumer isn't thread safe
+                synchronized (multiBucketConsumer) {
+                    multiBucketConsumer.accept(size);
+                }
+            }
+        }
+
+        /**
+         * Applies {@code reducer} to every element of {@code inputs}, in parallel if this reduce has a pool to reduce buckets
+         * with, and returns the results in the order of the inputs. Aggregations use this to reduce independent buckets, so
+         * {@code reducer} must not share any state between the elements other than this context.
+         */
+        public <T, R> List<R> parallelMap(List<T> inputs, Function<T, R> reducer) {
+            if (reducePool == null) {
+                return AggregationReducePool.sequentialMap(inputs, reducer);
+            }
+            return reducePool.map(inputs, reducer);
         }
 
     }
@@ -207,6 +251,16 @@ public abstract class InternalAggregation implements Aggregation, NamedWriteable
         return reducedAggs;
     }
 
+    /**
+     * Scales this fully reduced aggregation, which was computed over a random sample of the docs, up to an estimate of what it would
+     * have been over all the docs. Counts and sums are scaled up by the inverse of the sampling probability, while values that are
+     * already estimated correctly from a sample, like averages, minimums and percentiles, are left as they are. Aggregations that
+     * don't know how to scale their results, which is the default, return themselves.
+     */
+    public InternalAggregation finalizeSampling(SamplingContext samplingContext) {
+        return this;
+    }
+
     /**
      * Reduces the given aggregations to a single one and returns it. In <b>most</b> cases, the assumption will be the all given
      * aggregations are of the same type (the same type as this aggregation). For best efficiency, when implementing,
@@ -11,6 +11,7 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+import org.elasticsearch.search.aggregations.bucket.sampler.SamplingContext;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.SiblingPipelineAggregator;
 import org.elasticsearch.search.aggregations.support.AggregationPath;
@@ -56,6 +57,23 @@ public final class InternalAggregations extends Aggregations implements Writeabl
         return new InternalAggregations(aggregations);
     }
 
+    /**
+     * Scales each of the given aggregations up from a random sample of the docs.
+     *
+     * @see InternalAggregation#finalizeSampling(SamplingContext)
+     */
+    public static InternalAggregations finalizeSampling(InternalAggregations aggregations, SamplingContext samplingContext) {
+        List<InternalAggregation> internalAggregations = aggregations.getInternalAggregations();
+        if (internalAggregations.isEmpty()) {
+            return aggregations;
+        }
+        List<InternalAggregation> finalized = new ArrayList<>(internalAggregations.size());
+        for (InternalAggregation aggregation : internalAggregations) {
+            finalized.add(aggregation.finalizeSampling(samplingContext));
+        }
+        return from(finalized);
+    }
+
     public static InternalAggregations readFrom(StreamInput in) throws IOException {
         return from(in.readList(stream -> in.readNamedWriteable(InternalAggregation.class)));
     }
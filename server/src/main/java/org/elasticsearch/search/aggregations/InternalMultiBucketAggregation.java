@@ -12,6 +12,9 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
 import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregation;
+import org.elasticsearch.search.aggregations.pipeline.BucketHelpers;
+import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.BucketValues;
+import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.GapPolicy;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator.PipelineTree;
 
 import java.io.IOException;
@@ -67,6 +70,15 @@ public abstract class InternalMultiBucketAggregation<A extends InternalMultiBuck
     @Override
     public abstract List<B> getBuckets();
 
+    /**
+     * Resolve the value at {@code aggPath} in each of our buckets into a
+     * column so pipeline aggregations can compute over an array of values
+     * rather than resolving them bucket by bucket.
+     */
+    public BucketValues resolveBucketValues(String aggPath, GapPolicy gapPolicy) {
+        return BucketHelpers.resolveBucketValues(this, getBuckets(), aggPath, gapPolicy);
+    }
+
     @Override
     public Object getProperty(List<String> path) {
         if (path.isEmpty()) {
@@ -362,6 +362,25 @@ public abstract class InternalOrder extends BucketOrder {
         return isOrder(order, KEY_DESC);
     }
 
+    /**
+     * Determine if the ordering strategy sorts on a sub-aggregation, either directly or as one of the criteria of a compound order.
+     *
+     * @param order bucket ordering strategy to check.
+     * @return {@code true} if the ordering strategy needs the sub-aggregations of the buckets, {@code false} otherwise.
+     */
+    public static boolean isAggregationOrder(BucketOrder order) {
+        if (order instanceof Aggregation) {
+            return true;
+        } else if (order instanceof CompoundOrder) {
+            for (BucketOrder element : ((CompoundOrder) order).orderElements) {
+                if (element instanceof Aggregation) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Determine if the ordering strategy matches the expected one.
      *
@@ -86,6 +86,36 @@ public abstract class BucketsAggregator extends AggregatorBase {
         subCollector.collect(doc, bucketOrd);
     }
 
+    /**
+     * Collect every doc from {@code from} (inclusive) to {@code to} (exclusive)
+     * into the given bucket. Same as calling
+     * {@link #collectBucket(LeafBucketCollector, int, long)} for each of them
+     * but it increments the doc count once for the whole range when none of
+     * the docs in the segment have a {@code _doc_count}.
+     */
+    public final void collectBucketRange(LeafBucketCollector subCollector, int from, int to, long bucketOrd) throws IOException {
+        if (from >= to) {
+            return;
+        }
+        grow(bucketOrd + 1);
+        if (docCountProvider.alwaysOne() == false) {
+            for (int doc = from; doc < to; doc++) {
+                collectExistingBucket(subCollector, doc, bucketOrd);
+            }
+            return;
+        }
+        int docCount = to - from;
+        if (docCounts.increment(bucketOrd, docCount) == docCount) {
+            multiBucketConsumer.accept(0);
+        }
+        if (subCollector.isNoop()) {
+            return;
+        }
+        for (int doc = from; doc < to; doc++) {
+            subCollector.collect(doc, bucketOrd);
+        }
+    }
+
     /**
      * Merge doc counts. If the {@linkplain Aggregator} is delayed then you must also call
      * {@link BestBucketsDeferringCollector#rewriteBuckets(LongUnaryOperator)} to merge the delayed buckets.
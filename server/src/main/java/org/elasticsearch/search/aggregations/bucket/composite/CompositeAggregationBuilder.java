@@ -8,6 +8,7 @@
 
 package org.elasticsearch.search.aggregations.bucket.composite;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -38,6 +39,7 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
     public static final ParseField AFTER_FIELD_NAME = new ParseField("after");
     public static final ParseField SIZE_FIELD_NAME = new ParseField("size");
     public static final ParseField SOURCES_FIELD_NAME = new ParseField("sources");
+    public static final ParseField CURSOR_PAGES_FIELD_NAME = new ParseField("cursor_pages");
 
     public static final ConstructingObjectParser<CompositeAggregationBuilder, String> PARSER = new ConstructingObjectParser<>(
             NAME, false, (args, name) -> {
@@ -50,6 +52,7 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
             (p, c) -> CompositeValuesSourceParserHelper.fromXContent(p), SOURCES_FIELD_NAME);
         PARSER.declareInt(CompositeAggregationBuilder::size, SIZE_FIELD_NAME);
         PARSER.declareObject(CompositeAggregationBuilder::aggregateAfter, (p, context) -> p.map(), AFTER_FIELD_NAME);
+        PARSER.declareInt(CompositeAggregationBuilder::cursorPages, CURSOR_PAGES_FIELD_NAME);
     }
 
     public static void registerAggregators(ValuesSourceRegistry.Builder builder) {
@@ -63,6 +66,7 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
     private List<CompositeValuesSourceBuilder<?>> sources;
     private Map<String, Object> after;
     private int size = 10;
+    private int cursorPages = 1;
 
     public CompositeAggregationBuilder(String name, List<CompositeValuesSourceBuilder<?>> sources) {
         super(name);
@@ -76,6 +80,7 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
         this.sources = new ArrayList<>(clone.sources);
         this.after = clone.after;
         this.size = clone.size;
+        this.cursorPages = clone.cursorPages;
     }
 
     @Override
@@ -95,6 +100,9 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
         if (in.readBoolean()) {
             this.after = in.readMap();
         }
+        if (in.getVersion().onOrAfter(Version.V_8_0_0)) {
+            this.cursorPages = in.readVInt();
+        }
     }
 
     @Override
@@ -108,6 +116,9 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
         if (after != null) {
             out.writeMap(after);
         }
+        if (out.getVersion().onOrAfter(Version.V_8_0_0)) {
+            out.writeVInt(cursorPages);
+        }
     }
 
     @Override
@@ -146,6 +157,29 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
         return size;
     }
 
+    /**
+     * The number of pages that each shard finds in one pass over the matching
+     * documents when the search runs against a point in time. The shard keeps
+     * the pages after the one it returns, along with the documents that belong
+     * to them, so the requests for these pages only visit those documents.
+     * Defaults to {@code 1} which finds a single page per pass.
+     */
+    public CompositeAggregationBuilder cursorPages(int cursorPages) {
+        if (cursorPages < 1) {
+            throw new IllegalArgumentException("[" + CURSOR_PAGES_FIELD_NAME.getPreferredName() + "] must be greater than 0. Found ["
+                + cursorPages + "] in [" + name + "]");
+        }
+        this.cursorPages = cursorPages;
+        return this;
+    }
+
+    /**
+     * @return the number of pages that each shard finds in one pass over the matching documents.
+     */
+    public int cursorPages() {
+        return cursorPages;
+    }
+
     @Override
     public BucketCardinality bucketCardinality() {
         /*
@@ -234,7 +268,11 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
         } else {
             afterKey = null;
         }
-        return new CompositeAggregationFactory(name, context, parent, subfactoriesBuilder, metadata, size, configs, afterKey);
+        // the cursor of a point in time can be read by requests that only differ from this one by the page they ask for
+        CompositeAggregationBuilder cursorRequest = new CompositeAggregationBuilder(this, subfactoriesBuilder, metadata)
+            .aggregateAfter(null);
+        return new CompositeAggregationFactory(name, context, parent, subfactoriesBuilder, metadata, size, configs, afterKey,
+            cursorPages, cursorRequest);
     }
 
 
@@ -250,13 +288,16 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
         if (after != null) {
             CompositeAggregation.buildCompositeMap(AFTER_FIELD_NAME.getPreferredName(), after, builder);
         }
+        if (cursorPages != 1) {
+            builder.field(CURSOR_PAGES_FIELD_NAME.getPreferredName(), cursorPages);
+        }
         builder.endObject();
         return builder;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), sources, size, after);
+        return Objects.hash(super.hashCode(), sources, size, after, cursorPages);
     }
 
     @Override
@@ -267,6 +308,7 @@ public class CompositeAggregationBuilder extends AbstractAggregationBuilder<Comp
         CompositeAggregationBuilder other = (CompositeAggregationBuilder) obj;
         return size == other.size &&
             Objects.equals(sources, other.sources) &&
-            Objects.equals(after, other.after);
+            Objects.equals(after, other.after) &&
+            cursorPages == other.cursorPages;
     }
 }
@@ -8,7 +8,9 @@
 
 package org.elasticsearch.search.aggregations.bucket.composite;
 
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SortedNumericDocValues;
@@ -22,6 +24,7 @@ import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.FieldComparator;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.LeafFieldComparator;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Sort;
@@ -31,9 +34,14 @@ import org.apache.lucene.search.SortedNumericSortField;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.comparators.LongComparator;
 import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.RoaringDocIdSet;
 import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.index.IndexSortConfig;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.Aggregator;
@@ -56,6 +64,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.LongUnaryOperator;
 import java.util.stream.Collectors;
 
@@ -67,6 +77,10 @@ final class CompositeAggregator extends BucketsAggregator {
     private final int[] reverseMuls;
     private final List<DocValueFormat> formats;
     private final CompositeKey rawAfterKey;
+    /**
+     * The {@link #rawAfterKey} parsed into the same types as the keys of the buckets.
+     */
+    private final CompositeKey afterKey;
 
     private final CompositeValuesSourceConfig[] sourceConfigs;
     private final SingleDimensionValuesSource<?>[] sources;
@@ -79,9 +93,28 @@ final class CompositeAggregator extends BucketsAggregator {
 
     private boolean earlyTerminated;
 
+    /**
+     * Where to keep the {@link Cursor} between the requests for the pages of
+     * a point in time or {@code null} if this request doesn't keep one.
+     */
+    private final ConcurrentMap<String, Object> pointInTimeState;
+    private final CircuitBreaker pointInTimeBreaker;
+    private final CompositeAggregationBuilder cursorRequest;
+    /**
+     * The number of buckets to find in one pass, {@link #size} unless we keep
+     * a {@link Cursor} for the following pages.
+     */
+    private final int queueSize;
+    /**
+     * The cursor that this page is read from, {@code null} if it is read
+     * from the documents that match the query.
+     */
+    private Cursor cursor;
+
     CompositeAggregator(String name, AggregatorFactories factories, AggregationContext context, Aggregator parent,
                         Map<String, Object> metadata,
-                        int size, CompositeValuesSourceConfig[] sourceConfigs, CompositeKey rawAfterKey) throws IOException {
+                        int size, CompositeValuesSourceConfig[] sourceConfigs, CompositeKey rawAfterKey,
+                        int cursorPages, CompositeAggregationBuilder cursorRequest) throws IOException {
         super(name, factories, context, parent, CardinalityUpperBound.MANY, metadata);
         this.size = size;
         this.sourceNames = Arrays.stream(sourceConfigs).map(CompositeValuesSourceConfig::name).collect(Collectors.toList());
@@ -96,15 +129,19 @@ final class CompositeAggregator extends BucketsAggregator {
                 "] cluster level setting.", bucketLimit);
         }
         this.sourceConfigs = sourceConfigs;
+        this.pointInTimeState = parent == null && cursorPages > 1 && readsEngineSegments(context) ? context.pointInTimeState() : null;
+        this.pointInTimeBreaker = pointInTimeState == null ? null : context.pointInTimeBreaker();
+        this.cursorRequest = cursorRequest;
+        this.queueSize = pointInTimeState == null ? size : (int) Math.min(bucketLimit, (long) size * cursorPages);
         for (int i = 0; i < sourceConfigs.length; i++) {
             this.sources[i] = sourceConfigs[i].createValuesSource(
                 context.bigArrays(),
                 context.searcher().getIndexReader(),
-                size,
+                queueSize,
                 this::addRequestCircuitBreakerBytes
             );
         }
-        this.queue = new CompositeValuesCollectorQueue(context.bigArrays(), sources, size);
+        this.queue = new CompositeValuesCollectorQueue(context.bigArrays(), sources, queueSize);
         if (rawAfterKey != null) {
             try {
                 this.queue.setAfterKey(rawAfterKey);
@@ -112,6 +149,9 @@ final class CompositeAggregator extends BucketsAggregator {
                 throw new ElasticsearchParseException("Cannot set after key in the composite aggregation [" + name + "] - " +
                     ex.getMessage(), ex);
             }
+            this.afterKey = new CompositeKey(Arrays.stream(sources).map(SingleDimensionValuesSource::getAfter).toArray(Comparable[]::new));
+        } else {
+            this.afterKey = null;
         }
         this.rawAfterKey = rawAfterKey;
     }
@@ -129,6 +169,27 @@ final class CompositeAggregator extends BucketsAggregator {
     protected void doPreCollection() throws IOException {
         deferredCollectors = MultiBucketCollector.wrap(false, Arrays.asList(subAggregators));
         collectableSubAggregators = BucketCollector.NO_OP_COLLECTOR;
+        if (pointInTimeState != null) {
+            Cursor previous = (Cursor) pointInTimeState.get(cursorStateKey());
+            if (previous != null && previous.canRead(this)) {
+                cursor = previous;
+            }
+        }
+    }
+
+    /**
+     * The {@link Cursor} is shared by all requests for the point in time so we only keep one if
+     * the request reads the engine's segments as they are. Field and document level security
+     * wrap the segments to hide documents from the request and the cursor must not leak them
+     * to requests that see other documents.
+     */
+    private static boolean readsEngineSegments(AggregationContext context) {
+        IndexReader reader = context.searcher().getIndexReader();
+        return reader instanceof DirectoryReader && ElasticsearchDirectoryReader.readsEngineSegments((DirectoryReader) reader);
+    }
+
+    private String cursorStateKey() {
+        return "composite_cursor/" + name;
     }
 
     @Override
@@ -140,6 +201,9 @@ final class CompositeAggregator extends BucketsAggregator {
     public InternalAggregation[] buildAggregations(long[] owningBucketOrds) throws IOException {
         // Composite aggregator must be at the top of the aggregation tree
         assert owningBucketOrds.length == 1 && owningBucketOrds[0] == 0L;
+        boolean queueFull = queue.size() >= queueSize;
+        // the buckets past this page are only kept for the cursor so we don't collect their sub-aggregations
+        List<CompositeKey> nextPages = queue.trim(size);
         if (deferredCollectors != NO_OP_COLLECTOR) {
             // Replay all documents that contain at least one top bucket (collected during the first pass).
             runDeferredCollections();
@@ -148,16 +212,18 @@ final class CompositeAggregator extends BucketsAggregator {
         int num = Math.min(size, queue.size());
         final InternalComposite.InternalBucket[] buckets = new InternalComposite.InternalBucket[num];
         long[] bucketOrdsToCollect = new long[queue.size()];
-        for (int i = 0; i < queue.size(); i++) {
-            bucketOrdsToCollect[i] = i;
+        for (int i = queue.size() - 1; i >= 0; i--) {
+            bucketOrdsToCollect[i] = queue.pop();
         }
         InternalAggregations[] subAggsForBuckets = buildSubAggsForBuckets(bucketOrdsToCollect);
-        while (queue.size() > 0) {
-            int slot = queue.pop();
+        for (int i = 0; i < num; i++) {
+            int slot = (int) bucketOrdsToCollect[i];
             CompositeKey key = queue.toCompositeKey(slot);
-            InternalAggregations aggs = subAggsForBuckets[slot];
             long docCount = queue.getDocCount(slot);
-            buckets[queue.size()] = new InternalComposite.InternalBucket(sourceNames, formats, key, reverseMuls, docCount, aggs);
+            buckets[i] = new InternalComposite.InternalBucket(sourceNames, formats, key, reverseMuls, docCount, subAggsForBuckets[i]);
+        }
+        if (pointInTimeState != null) {
+            saveCursor(buckets, nextPages, queueFull);
         }
         CompositeKey lastBucket = num > 0 ? buckets[num-1].getRawKey() : null;
         return new InternalAggregation[] {
@@ -377,7 +443,12 @@ final class CompositeAggregator extends BucketsAggregator {
     protected LeafBucketCollector getLeafCollector(LeafReaderContext ctx, LeafBucketCollector sub) throws IOException {
         finishLeaf();
 
-        boolean fillDocIdSet = deferredCollectors != NO_OP_COLLECTOR;
+        boolean fillDocIdSet = deferredCollectors != NO_OP_COLLECTOR || pointInTimeState != null;
+
+        if (cursor != null) {
+            processLeafFromCursor(ctx, fillDocIdSet);
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
 
         Sort indexSortPrefix = buildIndexSortPrefix(ctx);
         int sortPrefixLen = computeSortPrefixLen(indexSortPrefix);
@@ -433,6 +504,99 @@ final class CompositeAggregator extends BucketsAggregator {
         }
     }
 
+    /**
+     * Collect the documents that the {@link #cursor} kept for this segment rather than
+     * the documents that match the query. They contain all documents of the buckets
+     * in the cursor.
+     */
+    private void processLeafFromCursor(LeafReaderContext ctx, boolean fillDocIdSet) throws IOException {
+        DocIdSet docIdSet = cursor.docs[ctx.ord];
+        DocIdSetIterator docIt = docIdSet.iterator();
+        if (docIt == null) {
+            return;
+        }
+        if (fillDocIdSet) {
+            currentLeaf = ctx;
+            docIdSetBuilder = new RoaringDocIdSet.Builder(ctx.reader().maxDoc());
+        }
+        final LeafBucketCollector inner;
+        try {
+            inner = queue.getLeafCollector(ctx, getFirstPassCollector(docIdSetBuilder, 0));
+        } catch (CollectionTerminatedException e) {
+            return;
+        }
+        // the cursor's doc ids don't go through the searcher so we skip the deleted documents ourselves
+        Bits liveDocs = ctx.reader().getLiveDocs();
+        for (int doc = docIt.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docIt.nextDoc()) {
+            if (liveDocs == null || liveDocs.get(doc)) {
+                inner.collect(doc);
+            }
+        }
+    }
+
+    /**
+     * Keep the buckets found after this page and the documents that belong to them so that
+     * the requests for the following pages can read them rather than all documents that
+     * match the query.
+     */
+    private void saveCursor(InternalComposite.InternalBucket[] page, List<CompositeKey> nextPages, boolean queueFull) {
+        List<CompositeKey> keys = new ArrayList<>(page.length + nextPages.size());
+        for (InternalComposite.InternalBucket bucket : page) {
+            keys.add(bucket.getRawKey());
+        }
+        for (int i = nextPages.size() - 1; i >= 0; i--) {
+            keys.add(nextPages.get(i));
+        }
+        boolean complete = queueFull == false;
+        if (cursor != null && cursor.complete == false) {
+            /*
+             * A multi-valued document kept for the buckets of the cursor can have values in
+             * buckets past the end of the cursor. We didn't see all documents of these buckets
+             * so we drop them, along with anything found after them.
+             */
+            CompositeKey last = cursor.keys.get(cursor.keys.size() - 1);
+            int end = keys.size();
+            while (end > 0 && compareKeys(keys.get(end - 1), last) > 0) {
+                end--;
+            }
+            keys = keys.subList(0, end);
+            complete = false;
+        }
+        if (keys.isEmpty()) {
+            releaseCursor(pointInTimeState.remove(cursorStateKey()));
+            return;
+        }
+        List<LeafReaderContext> leaves = searcher().getIndexReader().leaves();
+        DocIdSet[] docs = new DocIdSet[leaves.size()];
+        Arrays.fill(docs, DocIdSet.EMPTY);
+        for (Entry entry : entries) {
+            docs[entry.context.ord] = entry.docIdSet;
+        }
+        Cursor next = new Cursor(cursorRequest, topLevelQuery(), afterKey, keys, complete, docs, pointInTimeBreaker);
+        try {
+            // the cursor outlives this request so it is accounted on its own rather than with the aggregator
+            next.breaker.addEstimateBytesAndMaybeBreak(next.bytes, "<composite_cursor>");
+        } catch (CircuitBreakingException e) {
+            // the cursor only saves work, the next page can always be read from the documents that match the query
+            releaseCursor(pointInTimeState.remove(cursorStateKey()));
+            return;
+        }
+        releaseCursor(pointInTimeState.put(cursorStateKey(), next));
+    }
+
+    private static void releaseCursor(Object cursor) {
+        if (cursor != null) {
+            ((Cursor) cursor).close();
+        }
+    }
+
+    /**
+     * Compare two keys in the order of the buckets.
+     */
+    private int compareKeys(CompositeKey lhs, CompositeKey rhs) {
+        return InternalComposite.InternalBucket.compareKeys(lhs, rhs, reverseMuls);
+    }
+
     /**
      * The first pass selects the top composite buckets from all matching documents.
      */
@@ -525,5 +689,84 @@ final class CompositeAggregator extends BucketsAggregator {
             this.docIdSet = docIdSet;
         }
     }
+
+    /**
+     * The buckets that one pass over the documents found after {@link #after} and
+     * the documents of each segment that belong to them. It lives in the state of
+     * the point in time so the request for the next page can visit these documents
+     * rather than all documents that match the query.
+     */
+    private static class Cursor implements Releasable {
+        final CompositeAggregationBuilder request;
+        final Query query;
+        final CompositeKey after;
+        /**
+         * The keys of the buckets in order.
+         */
+        final List<CompositeKey> keys;
+        /**
+         * Are these all the buckets after {@link #after}?
+         */
+        final boolean complete;
+        final DocIdSet[] docs;
+        final CircuitBreaker breaker;
+        /**
+         * The bytes that the keys and documents take, accounted on the {@link #breaker}
+         * until the cursor is replaced, removed or the point in time closes.
+         */
+        final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Cursor(CompositeAggregationBuilder request, Query query, CompositeKey after, List<CompositeKey> keys, boolean complete,
+                DocIdSet[] docs, CircuitBreaker breaker) {
+            this.request = request;
+            this.query = query;
+            this.after = after;
+            this.keys = keys;
+            this.complete = complete;
+            this.docs = docs;
+            this.breaker = breaker;
+            long bytes = RamUsageEstimator.shallowSizeOf(docs);
+            for (CompositeKey key : keys) {
+                bytes += key.ramBytesUsed();
+            }
+            for (DocIdSet docIdSet : docs) {
+                bytes += docIdSet.ramBytesUsed();
+            }
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                breaker.addWithoutBreaking(-bytes);
+            }
+        }
+
+        /**
+         * Does this cursor contain the page that {@code aggregator} is asked for?
+         */
+        boolean canRead(CompositeAggregator aggregator) {
+            if (request.equals(aggregator.cursorRequest) == false
+                || query.equals(aggregator.topLevelQuery()) == false
+                || docs.length != aggregator.searcher().getIndexReader().leaves().size()) {
+                return false;
+            }
+            if (after != null && (aggregator.afterKey == null || aggregator.compareKeys(aggregator.afterKey, after) < 0)) {
+                // the page starts before the buckets of this cursor
+                return false;
+            }
+            if (complete) {
+                return true;
+            }
+            int first = 0;
+            if (aggregator.afterKey != null) {
+                while (first < keys.size() && aggregator.compareKeys(keys.get(first), aggregator.afterKey) <= 0) {
+                    first++;
+                }
+            }
+            return keys.size() - first >= aggregator.size;
+        }
+    }
 }
 
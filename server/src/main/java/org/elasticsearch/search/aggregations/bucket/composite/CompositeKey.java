@@ -8,6 +8,9 @@
 
 package org.elasticsearch.search.aggregations.bucket.composite;
 
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -18,7 +21,10 @@ import java.util.Arrays;
 /**
  * A key that is composed of multiple {@link Comparable} values.
  */
-class CompositeKey implements Writeable {
+class CompositeKey implements Writeable, Accountable {
+    private static final long SHALLOW_SIZE = RamUsageEstimator.shallowSizeOfInstance(CompositeKey.class);
+    private static final long BYTES_REF_SHALLOW_SIZE = RamUsageEstimator.shallowSizeOfInstance(BytesRef.class);
+
     private final Comparable[] values;
 
     CompositeKey(Comparable... values) {
@@ -47,6 +53,19 @@ class CompositeKey implements Writeable {
         return values[pos];
     }
 
+    @Override
+    public long ramBytesUsed() {
+        long bytes = SHALLOW_SIZE + RamUsageEstimator.shallowSizeOf(values);
+        for (Comparable value : values) {
+            if (value instanceof BytesRef) {
+                bytes += BYTES_REF_SHALLOW_SIZE + RamUsageEstimator.sizeOf(((BytesRef) value).bytes);
+            } else if (value != null) {
+                bytes += RamUsageEstimator.shallowSizeOf(value);
+            }
+        }
+        return bytes;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -18,7 +18,10 @@ import org.elasticsearch.common.util.LongArray;
 import org.elasticsearch.search.aggregations.LeafBucketCollector;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -312,6 +315,24 @@ final class CompositeValuesCollectorQueue extends PriorityQueue<Integer> impleme
         return true;
     }
 
+    /**
+     * Removes the greatest keys from the queue until it contains at most {@code newSize} keys.
+     *
+     * @return the removed keys, greatest first
+     */
+    List<CompositeKey> trim(int newSize) throws IOException {
+        if (size() <= newSize) {
+            return Collections.emptyList();
+        }
+        List<CompositeKey> removed = new ArrayList<>(size() - newSize);
+        while (size() > newSize) {
+            int slot = pop();
+            map.remove(new Slot(slot));
+            removed.add(toCompositeKey(slot));
+        }
+        return removed;
+    }
+
     @Override
     public void close() {
         Releasables.close(docCounts);
@@ -166,14 +166,14 @@ public class InternalComposite
         }
         InternalBucket lastBucket = null;
         List<InternalBucket> buckets = new ArrayList<>();
-        List<InternalBucket> result = new ArrayList<>();
+        // the buckets of the different aggregations that have the same key, which are reduced together once we know the top buckets
+        List<List<InternalBucket>> bucketGroups = new ArrayList<>();
         while (pq.size() > 0) {
             BucketIterator bucketIt = pq.top();
             if (lastBucket != null && bucketIt.current.compareKey(lastBucket) != 0) {
-                InternalBucket reduceBucket = reduceBucket(buckets, reduceContext);
-                buckets.clear();
-                result.add(reduceBucket);
-                if (result.size() >= size) {
+                bucketGroups.add(buckets);
+                buckets = new ArrayList<>();
+                if (bucketGroups.size() >= size) {
                     break;
                 }
             }
@@ -186,9 +186,9 @@ public class InternalComposite
             }
         }
         if (buckets.size() > 0) {
-            InternalBucket reduceBucket = reduceBucket(buckets, reduceContext);
-            result.add(reduceBucket);
+            bucketGroups.add(buckets);
         }
+        List<InternalBucket> result = reduceContext.parallelMap(bucketGroups, group -> reduceBucket(group, reduceContext));
 
         List<DocValueFormat> reducedFormats = formats;
         CompositeKey lastKey = null;
@@ -358,18 +358,25 @@ public class InternalComposite
 
         @Override
         public int compareKey(InternalBucket other) {
-            for (int i = 0; i < key.size(); i++) {
-                if (key.get(i) == null) {
-                    if (other.key.get(i) == null) {
+            return compareKeys(key, other.key, reverseMuls);
+        }
+
+        /**
+         * Compare two keys in the order of the buckets.
+         */
+        static int compareKeys(CompositeKey lhs, CompositeKey rhs, int[] reverseMuls) {
+            for (int i = 0; i < lhs.size(); i++) {
+                if (lhs.get(i) == null) {
+                    if (rhs.get(i) == null) {
                         continue;
                     }
                     return -1 * reverseMuls[i];
-                } else if (other.key.get(i) == null) {
+                } else if (rhs.get(i) == null) {
                     return reverseMuls[i];
                 }
-                assert key.get(i).getClass() == other.key.get(i).getClass();
+                assert lhs.get(i).getClass() == rhs.get(i).getClass();
                 @SuppressWarnings("unchecked")
-                int cmp = key.get(i).compareTo(other.key.get(i)) * reverseMuls[i];
+                int cmp = lhs.get(i).compareTo(rhs.get(i)) * reverseMuls[i];
                 if (cmp != 0) {
                     return cmp;
                 }
@@ -11,8 +11,12 @@ package org.elasticsearch.search.aggregations.bucket.filter;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.LeafCollector;
 import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Bits;
 import org.elasticsearch.common.CheckedSupplier;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.ParseField;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -178,6 +182,36 @@ public abstract class FiltersAggregator extends BucketsAggregator {
         return parent == null && otherBucketKey == null;
     }
 
+    /**
+     * Finds the filters that documents match by reading their values rather
+     * than by running the filters. Aggregations that adapt themselves into a
+     * {@code filters} aggregation provide one so {@link FilterByFilter} can
+     * collect the segments where running every filter would cost more than
+     * visiting the documents that match the top level query one at a time.
+     */
+    public interface DocByDoc {
+        /**
+         * Estimate the cost of finding the filters that one document in
+         * {@code ctx} matches, relative to the cost of visiting one document
+         * that matches a filter.
+         */
+        double costPerDoc(LeafReaderContext ctx) throws IOException;
+
+        /**
+         * Build a collector for {@code ctx} that calls {@code onMatch} once
+         * for every filter that each collected document matches.
+         */
+        LeafBucketCollector getLeafCollector(LeafReaderContext ctx, OnMatch onMatch) throws IOException;
+
+        /**
+         * Called for each filter that a document matches.
+         */
+        @FunctionalInterface
+        interface OnMatch {
+            void accept(int doc, int filterOrd) throws IOException;
+        }
+    }
+
     /**
      * Build an {@link Aggregator} for a {@code filters} aggregation if we
      * can collect {@link FilterByFilter}, otherwise return {@code null}. We can
@@ -199,6 +233,27 @@ public abstract class FiltersAggregator extends BucketsAggregator {
         Aggregator parent,
         CardinalityUpperBound cardinality,
         Map<String, Object> metadata
+    ) throws IOException {
+        return buildFilterByFilter(name, factories, filters, keyed, otherBucketKey, context, parent, cardinality, metadata, null);
+    }
+
+    /**
+     * Build a {@link FilterByFilter} aggregator that can collect the segments
+     * where that is cheaper document by document with {@code docByDoc}. See
+     * {@link #buildFilterByFilter(String, AggregatorFactories, List, boolean, String, AggregationContext,
+     * Aggregator, CardinalityUpperBound, Map)}.
+     */
+    public static FilterByFilter buildFilterByFilter(
+        String name,
+        AggregatorFactories factories,
+        List<QueryToFilterAdapter<?>> filters,
+        boolean keyed,
+        String otherBucketKey,
+        AggregationContext context,
+        Aggregator parent,
+        CardinalityUpperBound cardinality,
+        Map<String, Object> metadata,
+        @Nullable DocByDoc docByDoc
     ) throws IOException {
         if (false == canUseFilterByFilter(parent, otherBucketKey)) {
             throw new IllegalStateException("Can't execute filter-by-filter");
@@ -215,7 +270,8 @@ public abstract class FiltersAggregator extends BucketsAggregator {
             context,
             parent,
             cardinality,
-            metadata
+            metadata,
+            docByDoc
         );
     }
 
@@ -282,15 +338,35 @@ public abstract class FiltersAggregator extends BucketsAggregator {
      * build any {@link LeafBucketCollector}s which is generally faster than
      * {@link Compatible} but doesn't support when there is a parent aggregator
      * or any child aggregators.
+     * <p>
+     * If it has a {@link DocByDoc} it'll {@link #planSegments plan} each
+     * segment, collecting the ones where running the filters looks more
+     * expensive document by document instead.
      */
     public static class FilterByFilter extends FiltersAggregator {
         private final boolean profiling;
+        @Nullable
+        private final DocByDoc docByDoc;
         private long estimatedCost = -1;
         /**
          * The maximum allowed estimated cost. Defaults to {@code -1} meaning no
-         * max but can be set. Used for emitting debug info.
+         * max but can be set. When we plan the segments this is the estimated
+         * cost of collecting them all document by document. Used for emitting
+         * debug info.
          */
         private long maxCost = -1;
+        /**
+         * Should we collect each segment document by document? Indexed by the
+         * segment's ord and {@code null} until we {@link #planSegments plan}.
+         */
+        private boolean[] collectDocByDoc;
+        private int segmentsPlannedForFilters;
+        /**
+         * The estimates behind the plan for each segment. Only kept if we're
+         * profiling.
+         */
+        private List<Map<String, Object>> segmentPlans;
+        private int segmentsCollectedDocByDoc;
         private long estimateCostTime;
         private int segmentsWithDeletedDocs;
         /**
@@ -309,10 +385,12 @@ public abstract class FiltersAggregator extends BucketsAggregator {
             AggregationContext context,
             Aggregator parent,
             CardinalityUpperBound cardinality,
-            Map<String, Object> metadata
+            Map<String, Object> metadata,
+            @Nullable DocByDoc docByDoc
         ) throws IOException {
             super(name, factories, filters, keyed, null, context, parent, cardinality, metadata);
             this.profiling = context.profiling();
+            this.docByDoc = docByDoc;
         }
 
         /**
@@ -366,12 +444,107 @@ public abstract class FiltersAggregator extends BucketsAggregator {
             return estimatedCost;
         }
 
+        /**
+         * Decide which segments to collect by running the filters and which
+         * to collect document by document with the {@link DocByDoc}. Running
+         * the filters costs about as much as the number of documents that
+         * match them, which the filters can often estimate from index
+         * statistics like the points tree without visiting any documents.
+         * Collecting document by document costs about as much as the number
+         * of documents that match the top level query times the cost of
+         * finding the filters each of them matches. We pick the cheaper one
+         * for every segment.
+         * <p>
+         * We stop estimating the filters in a segment as soon as they cost
+         * more than collecting it document by document unless we're
+         * profiling, so we don't prepare many scorers that we won't use.
+         *
+         * @return the number of segments that will run the filters
+         */
+        public int planSegments() throws IOException {
+            assert scoreMode().needsScores() == false;
+            if (docByDoc == null) {
+                throw new IllegalStateException("Can't plan segments without collecting doc by doc");
+            }
+            if (collectDocByDoc != null) {
+                return segmentsPlannedForFilters;
+            }
+            long start = profiling ? System.nanoTime() : 0;
+            List<LeafReaderContext> leaves = searcher().getIndexReader().leaves();
+            collectDocByDoc = new boolean[leaves.size()];
+            if (profiling) {
+                segmentPlans = new ArrayList<>(leaves.size());
+            }
+            estimatedCost = 0;
+            maxCost = 0;
+            Weight topLevelWeight = topLevelQuery() == null || leaves.isEmpty()
+                ? null
+                : searcher().createWeight(searcher().rewrite(topLevelQuery()), ScoreMode.COMPLETE_NO_SCORES, 1f);
+            for (LeafReaderContext ctx : leaves) {
+                long topLevelCost;
+                if (topLevelWeight == null) {
+                    topLevelCost = ctx.reader().maxDoc();
+                } else {
+                    ScorerSupplier topLevelScorer = topLevelWeight.scorerSupplier(ctx);
+                    topLevelCost = topLevelScorer == null ? 0 : topLevelScorer.cost();
+                }
+                double docByDocCost = topLevelCost * docByDoc.costPerDoc(ctx);
+                long maxFiltersCost = docByDocCost >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) Math.ceil(docByDocCost);
+                long filtersCost = estimateFiltersCost(ctx, profiling ? Long.MAX_VALUE : maxFiltersCost);
+                collectDocByDoc[ctx.ord] = maxFiltersCost < filtersCost;
+                if (collectDocByDoc[ctx.ord] == false) {
+                    segmentsPlannedForFilters++;
+                }
+                estimatedCost = saturatingAdd(estimatedCost, filtersCost);
+                maxCost = saturatingAdd(maxCost, maxFiltersCost);
+                if (profiling) {
+                    Map<String, Object> plan = new HashMap<>();
+                    plan.put("max_doc", ctx.reader().maxDoc());
+                    plan.put("top_level_query_cost", topLevelCost);
+                    plan.put("filters_cost", filtersCost);
+                    plan.put("doc_by_doc_cost", maxFiltersCost);
+                    plan.put("collect", collectDocByDoc[ctx.ord] ? "doc_by_doc" : "filters");
+                    segmentPlans.add(plan);
+                }
+            }
+            if (profiling) {
+                estimateCostTime = System.nanoTime() - start;
+            }
+            return segmentsPlannedForFilters;
+        }
+
+        /**
+         * Estimate the cost of running all filters in a segment, stopping
+         * once the estimate passes {@code maxCost}.
+         */
+        private long estimateFiltersCost(LeafReaderContext ctx, long maxCost) throws IOException {
+            CheckedSupplier<Boolean, IOException> canUseMetadata = canUseMetadata(ctx);
+            long cost = 0;
+            for (QueryToFilterAdapter<?> filter : filters()) {
+                cost = saturatingAdd(
+                    cost,
+                    subAggregators().length > 0 ? filter.estimateCollectCost(ctx) : filter.estimateCountCost(ctx, canUseMetadata)
+                );
+                if (cost > maxCost) {
+                    return cost;
+                }
+            }
+            return cost;
+        }
+
+        private static long saturatingAdd(long lhs, long rhs) {
+            long result = lhs + rhs;
+            return result < 0 ? Long.MAX_VALUE : result;
+        }
+
         /**
          * Instead of returning a {@link LeafBucketCollector} we do the
          * collection ourselves by running the filters directly. This is safe
          * because we only use this aggregator if there isn't a {@code parent}
          * which would change how we collect buckets and because we take the
-         * top level query into account when building the filters.
+         * top level query into account when building the filters. Segments
+         * that we {@link #planSegments planned} to collect document by
+         * document are the exception.
          */
         @Override
         protected LeafBucketCollector getLeafCollector(LeafReaderContext ctx, LeafBucketCollector sub) throws IOException {
@@ -383,6 +556,13 @@ public abstract class FiltersAggregator extends BucketsAggregator {
             if (false == docCountProvider.alwaysOne()) {
                 segmentsWithDocCountField++;
             }
+            if (docByDoc != null) {
+                planSegments();
+                if (collectDocByDoc[ctx.ord]) {
+                    segmentsCollectedDocByDoc++;
+                    return docByDoc.getLeafCollector(ctx, (doc, filterOrd) -> collectBucket(sub, doc, filterOrd));
+                }
+            }
             if (subAggregators.length == 0) {
                 // TOOD we'd be better off if we could do sub.isNoop() or something.
                 /*
@@ -459,6 +639,12 @@ public abstract class FiltersAggregator extends BucketsAggregator {
             add.accept("segments_collected", segmentsCollected);
             add.accept("segments_with_deleted_docs", segmentsWithDeletedDocs);
             add.accept("segments_with_doc_count_field", segmentsWithDocCountField);
+            if (docByDoc != null) {
+                add.accept("segments_collected_doc_by_doc", segmentsCollectedDocByDoc);
+            }
+            if (segmentPlans != null) {
+                add.accept("segment_plans", segmentPlans);
+            }
             if (estimatedCost != -1) {
                 // -1 means we didn't estimate it.
                 add.accept("estimated_cost", estimatedCost);
@@ -409,6 +409,11 @@ public class DateHistogramAggregationBuilder extends ValuesSourceAggregationBuil
         return builder;
     }
 
+    @Override
+    public boolean supportsSampling() {
+        return true;
+    }
+
     @Override
     public String getType() {
         return NAME;
@@ -8,6 +8,7 @@
 package org.elasticsearch.search.aggregations.bucket.histogram;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.util.CollectionUtil;
@@ -43,6 +44,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Aggregator for {@code date_histogram} that rounds values using
@@ -219,6 +221,22 @@ class DateHistogramAggregator extends BucketsAggregator implements SizedBucketAg
 
     private final LongKeyedBucketOrds bucketOrds;
 
+    /**
+     * Reads the points of the field, or {@code null} if the points don't line up with the values we aggregate. Used
+     * to find out if all the values of a segment round into the same bucket.
+     */
+    private final Function<byte[], Number> pointReader;
+    private final String pointField;
+    /**
+     * Can we count segments whose values all round into the same bucket straight from their points? That
+     * needs every live document of the segment to be collected into the bucket of a top level aggregation.
+     */
+    private final boolean canCountSegmentsFromPoints;
+
+    private int segmentsCounted;
+    private int segmentsWithOneBucket;
+    private int segmentsCollected;
+
     DateHistogramAggregator(
         String name,
         AggregatorFactories factories,
@@ -247,6 +265,11 @@ class DateHistogramAggregator extends BucketsAggregator implements SizedBucketAg
         // TODO: Stop using null here
         this.valuesSource = valuesSourceConfig.hasValues() ? (ValuesSource.Numeric) valuesSourceConfig.getValuesSource() : null;
         this.formatter = valuesSourceConfig.format();
+        this.pointReader = valuesSource == null ? null : valuesSourceConfig.getPointReaderOrNull();
+        this.pointField = pointReader == null ? null : valuesSourceConfig.fieldContext().field();
+        this.canCountSegmentsFromPoints = pointReader != null
+            && subAggregators.length == 0
+            && pointReaderIfAvailable(valuesSourceConfig) != null;
 
         bucketOrds = LongKeyedBucketOrds.build(bigArrays(), cardinality);
     }
@@ -264,34 +287,97 @@ class DateHistogramAggregator extends BucketsAggregator implements SizedBucketAg
         if (valuesSource == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
+        final PointValues points = pointReader == null ? null : ctx.reader().getPointValues(pointField);
+        final boolean oneBucket;
+        final long segmentRounded;
+        if (points != null) {
+            segmentRounded = preparedRounding.round(pointReader.apply(points.getMinPackedValue()).longValue());
+            oneBucket = segmentRounded == preparedRounding.round(pointReader.apply(points.getMaxPackedValue()).longValue());
+        } else {
+            segmentRounded = Long.MIN_VALUE;
+            oneBucket = false;
+        }
+        if (oneBucket && canCountSegmentsFromPoints && ctx.reader().getLiveDocs() == null && docCountProvider.alwaysOne()) {
+            /*
+             * Every document of the segment matches and all of their values round into the same
+             * bucket so the number of documents with a point is the doc count of that bucket.
+             */
+            if (hardBounds == null || hardBounds.contain(segmentRounded)) {
+                long bucketOrd = bucketOrds.add(0, segmentRounded);
+                if (bucketOrd < 0) { // already seen
+                    bucketOrd = -1 - bucketOrd;
+                }
+                incrementBucketDocCount(bucketOrd, points.getDocCount());
+            }
+            segmentsCounted++;
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
+        if (oneBucket) {
+            segmentsWithOneBucket++;
+        } else {
+            segmentsCollected++;
+        }
         SortedNumericDocValues values = valuesSource.longValues(ctx);
         return new LeafBucketCollectorBase(sub, values) {
+            /*
+             * Time series data tends to be indexed in timestamp order so consecutive documents usually
+             * land in the same bucket. Once two values in a row round into the same bucket we remember the
+             * range of that bucket so the values that follow skip both the rounding and the bucket lookup.
+             */
+            private long lastOwningBucketOrd = -1;
+            private long lastRounded = Long.MIN_VALUE;
+            private long lastBucketOrd = -1;
+            private long runStart = Long.MAX_VALUE;
+            private long runEnd = Long.MIN_VALUE;
+
             @Override
             public void collect(int doc, long owningBucketOrd) throws IOException {
                 if (values.advanceExact(doc)) {
                     int valuesCount = values.docValueCount();
 
-                    long previousRounded = Long.MIN_VALUE;
+                    long previousBucketOrd = -1;
                     for (int i = 0; i < valuesCount; ++i) {
-                        long value = values.nextValue();
-                        long rounded = preparedRounding.round(value);
-                        assert rounded >= previousRounded;
-                        if (rounded == previousRounded) {
+                        long bucketOrd = bucketOrd(owningBucketOrd, values.nextValue());
+                        // the values are sorted so values that round into the same bucket are next to each other
+                        if (bucketOrd < 0 || bucketOrd == previousBucketOrd) {
                             continue;
                         }
-                        if (hardBounds == null || hardBounds.contain(rounded)) {
-                            long bucketOrd = bucketOrds.add(owningBucketOrd, rounded);
-                            if (bucketOrd < 0) { // already seen
-                                bucketOrd = -1 - bucketOrd;
-                                collectExistingBucket(sub, doc, bucketOrd);
-                            } else {
-                                collectBucket(sub, doc, bucketOrd);
-                            }
-                        }
-                        previousRounded = rounded;
+                        collectBucket(sub, doc, bucketOrd);
+                        previousBucketOrd = bucketOrd;
                     }
                 }
             }
+
+            /**
+             * The ordinal of the bucket that {@code value} rounds into or {@code -1} if the bucket is outside of the hard bounds.
+             */
+            private long bucketOrd(long owningBucketOrd, long value) {
+                if (owningBucketOrd == lastOwningBucketOrd && value >= runStart && value < runEnd) {
+                    return lastBucketOrd;
+                }
+                long rounded = oneBucket ? segmentRounded : preparedRounding.round(value);
+                if (owningBucketOrd == lastOwningBucketOrd && rounded == lastRounded) {
+                    if (oneBucket) {
+                        runStart = Long.MIN_VALUE;
+                        runEnd = Long.MAX_VALUE;
+                    } else {
+                        runStart = rounded;
+                        runEnd = preparedRounding.nextRoundingValue(rounded);
+                    }
+                    return lastBucketOrd;
+                }
+                lastOwningBucketOrd = owningBucketOrd;
+                lastRounded = rounded;
+                runStart = Long.MAX_VALUE;
+                runEnd = Long.MIN_VALUE;
+                if (hardBounds != null && hardBounds.contain(rounded) == false) {
+                    lastBucketOrd = -1;
+                } else {
+                    long bucketOrd = bucketOrds.add(owningBucketOrd, rounded);
+                    lastBucketOrd = bucketOrd < 0 ? -1 - bucketOrd : bucketOrd;
+                }
+                return lastBucketOrd;
+            }
         };
     }
 
@@ -329,6 +415,9 @@ class DateHistogramAggregator extends BucketsAggregator implements SizedBucketAg
     @Override
     public void collectDebugInfo(BiConsumer<String, Object> add) {
         add.accept("total_buckets", bucketOrds.size());
+        add.accept("segments_counted", segmentsCounted);
+        add.accept("segments_with_one_bucket", segmentsWithOneBucket);
+        add.accept("segments_collected", segmentsCollected);
     }
 
     /**
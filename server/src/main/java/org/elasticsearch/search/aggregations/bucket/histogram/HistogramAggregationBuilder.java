@@ -333,6 +333,11 @@ public class HistogramAggregationBuilder extends ValuesSourceAggregationBuilder<
         return builder;
     }
 
+    @Override
+    public boolean supportsSampling() {
+        return true;
+    }
+
     @Override
     public String getType() {
         return NAME;
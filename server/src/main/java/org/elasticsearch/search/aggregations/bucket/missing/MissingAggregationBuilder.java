@@ -103,6 +103,11 @@ public class MissingAggregationBuilder extends ValuesSourceAggregationBuilder<Mi
         return builder;
     }
 
+    @Override
+    public boolean supportsSampling() {
+        return true;
+    }
+
     @Override
     public String getType() {
         return NAME;
@@ -9,16 +9,9 @@ package org.elasticsearch.search.aggregations.bucket.nested;
 
 import com.carrotsearch.hppc.LongArrayList;
 
-import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
-import org.apache.lucene.index.ReaderUtil;
-import org.apache.lucene.search.DocIdSetIterator;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorable;
-import org.apache.lucene.search.ScoreMode;
-import org.apache.lucene.search.Scorer;
-import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.join.BitSetProducer;
 import org.apache.lucene.util.BitSet;
 import org.elasticsearch.common.ParseField;
@@ -42,7 +35,7 @@ public class NestedAggregator extends BucketsAggregator implements SingleBucketA
     static final ParseField PATH_FIELD = new ParseField("path");
 
     private final BitSetProducer parentFilter;
-    private final Query childFilter;
+    private final BitSetProducer childFilter;
     private final boolean collectsFromSingleBucket;
 
     private BufferingNestedLeafBucketCollector bufferingNestedLeafBucketCollector;
@@ -55,43 +48,54 @@ public class NestedAggregator extends BucketsAggregator implements SingleBucketA
         Query parentFilter = parentObjectMapper != null ? parentObjectMapper.nestedTypeFilter()
             : Queries.newNonNestedFilter();
         this.parentFilter = context.bitsetFilterCache().getBitSetProducer(parentFilter);
-        this.childFilter = childObjectMapper.nestedTypeFilter();
+        this.childFilter = context.bitsetFilterCache().getBitSetProducer(childObjectMapper.nestedTypeFilter());
         this.collectsFromSingleBucket = cardinality.map(estimate -> estimate < 2);
     }
 
     @Override
     public LeafBucketCollector getLeafCollector(final LeafReaderContext ctx, final LeafBucketCollector sub) throws IOException {
-        IndexReaderContext topLevelContext = ReaderUtil.getTopLevelContext(ctx);
-        IndexSearcher searcher = new IndexSearcher(topLevelContext);
-        searcher.setQueryCache(null);
-        Weight weight = searcher.createWeight(searcher.rewrite(childFilter), ScoreMode.COMPLETE_NO_SCORES, 1f);
-        Scorer childDocsScorer = weight.scorer(ctx);
-
         final BitSet parentDocs = parentFilter.getBitSet(ctx);
-        final DocIdSetIterator childDocs = childDocsScorer != null ? childDocsScorer.iterator() : null;
+        final BitSet childDocs = childFilter.getBitSet(ctx);
+        if (parentDocs == null || childDocs == null) {
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
+        /*
+         * When every doc in the segment is either a parent or one of our
+         * children, which is what you get from a mapping with a single
+         * nested field, the children of a parent are all of the docs
+         * between it and the previous parent so we don't need to look
+         * them up one at a time.
+         */
+        final boolean contiguousChildren = parentDocs.cardinality() + childDocs.cardinality() == ctx.reader().maxDoc();
         if (collectsFromSingleBucket) {
             return new LeafBucketCollectorBase(sub, null) {
+                /**
+                 * Children before this doc have already been collected.
+                 */
+                int nextChildDoc = 0;
+
                 @Override
                 public void collect(int parentDoc, long bucket) throws IOException {
                     // if parentDoc is 0 then this means that this parent doesn't have child docs (b/c these appear always before the parent
                     // doc), so we can skip:
-                    if (parentDoc == 0 || parentDocs == null || childDocs == null) {
+                    if (parentDoc == 0) {
                         return;
                     }
-
-                    final int prevParentDoc = parentDocs.prevSetBit(parentDoc - 1);
-                    int childDocId = childDocs.docID();
-                    if (childDocId <= prevParentDoc) {
-                        childDocId = childDocs.advance(prevParentDoc + 1);
+                    final int firstChildDoc = Math.max(parentDocs.prevSetBit(parentDoc - 1) + 1, nextChildDoc);
+                    nextChildDoc = parentDoc;
+                    if (contiguousChildren) {
+                        collectBucketRange(sub, firstChildDoc, parentDoc, bucket);
+                        return;
                     }
-
-                    for (; childDocId < parentDoc; childDocId = childDocs.nextDoc()) {
-                        collectBucket(sub, childDocId, bucket);
+                    int childDoc = childDocs.nextSetBit(firstChildDoc);
+                    for (; childDoc < parentDoc; childDoc = childDocs.nextSetBit(childDoc + 1)) {
+                        collectBucket(sub, childDoc, bucket);
                     }
                 }
             };
         } else {
-            return bufferingNestedLeafBucketCollector = new BufferingNestedLeafBucketCollector(sub, parentDocs, childDocs);
+            bufferingNestedLeafBucketCollector = new BufferingNestedLeafBucketCollector(sub, parentDocs, childDocs, contiguousChildren);
+            return bufferingNestedLeafBucketCollector;
         }
     }
 
@@ -127,18 +131,24 @@ public class NestedAggregator extends BucketsAggregator implements SingleBucketA
 
         final BitSet parentDocs;
         final LeafBucketCollector sub;
-        final DocIdSetIterator childDocs;
+        final BitSet childDocs;
+        final boolean contiguousChildren;
         final LongArrayList bucketBuffer = new LongArrayList();
 
         Scorable scorer;
         int currentParentDoc = -1;
+        /**
+         * Children before this doc have already been collected.
+         */
+        int nextChildDoc = 0;
         final CachedScorable cachedScorer = new CachedScorable();
 
-        BufferingNestedLeafBucketCollector(LeafBucketCollector sub, BitSet parentDocs, DocIdSetIterator childDocs) {
+        BufferingNestedLeafBucketCollector(LeafBucketCollector sub, BitSet parentDocs, BitSet childDocs, boolean contiguousChildren) {
             super(sub, null);
             this.sub = sub;
             this.parentDocs = parentDocs;
             this.childDocs = childDocs;
+            this.contiguousChildren = contiguousChildren;
         }
 
         @Override
@@ -151,7 +161,7 @@ public class NestedAggregator extends BucketsAggregator implements SingleBucketA
         public void collect(int parentDoc, long bucket) throws IOException {
             // if parentDoc is 0 then this means that this parent doesn't have child docs (b/c these appear always before the parent
             // doc), so we can skip:
-            if (parentDoc == 0 || parentDocs == null || childDocs == null) {
+            if (parentDoc == 0) {
                 return;
             }
 
@@ -172,20 +182,26 @@ public class NestedAggregator extends BucketsAggregator implements SingleBucketA
                 return;
             }
 
-
-            final int prevParentDoc = parentDocs.prevSetBit(currentParentDoc - 1);
-            int childDocId = childDocs.docID();
-            if (childDocId <= prevParentDoc) {
-                childDocId = childDocs.advance(prevParentDoc + 1);
+            final int firstChildDoc = Math.max(parentDocs.prevSetBit(currentParentDoc - 1) + 1, nextChildDoc);
+            nextChildDoc = currentParentDoc;
+            final long[] buffer = bucketBuffer.buffer;
+            final int size = bucketBuffer.size();
+            if (contiguousChildren && sub.isNoop()) {
+                // nothing sees the order we collect in so count each bucket's children in one go
+                for (int i = 0; i < size; i++) {
+                    collectBucketRange(sub, firstChildDoc, currentParentDoc, buffer[i]);
+                }
+                bucketBuffer.clear();
+                return;
             }
 
-            for (; childDocId < currentParentDoc; childDocId = childDocs.nextDoc()) {
+            int childDocId = contiguousChildren ? firstChildDoc : childDocs.nextSetBit(firstChildDoc);
+            while (childDocId < currentParentDoc) {
                 cachedScorer.doc = childDocId;
-                final long[] buffer = bucketBuffer.buffer;
-                final int size = bucketBuffer.size();
                 for (int i = 0; i < size; i++) {
                     collectBucket(sub, childDocId, buffer[i]);
                 }
+                childDocId = contiguousChildren ? childDocId + 1 : childDocs.nextSetBit(childDocId + 1);
             }
             bucketBuffer.clear();
         }
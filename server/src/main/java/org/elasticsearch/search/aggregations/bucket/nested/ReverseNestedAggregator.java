@@ -36,6 +36,7 @@ public class ReverseNestedAggregator extends BucketsAggregator implements Single
 
     private final Query parentFilter;
     private final BitSetProducer parentBitsetProducer;
+    private final boolean collectsFromSingleBucket;
 
     public ReverseNestedAggregator(String name, AggregatorFactories factories, ObjectMapper objectMapper,
             AggregationContext context, Aggregator parent, CardinalityUpperBound cardinality, Map<String, Object> metadata)
@@ -47,6 +48,7 @@ public class ReverseNestedAggregator extends BucketsAggregator implements Single
             parentFilter = objectMapper.nestedTypeFilter();
         }
         parentBitsetProducer = context.bitsetFilterCache().getBitSetProducer(parentFilter);
+        collectsFromSingleBucket = cardinality.map(estimate -> estimate < 2);
     }
 
     @Override
@@ -57,14 +59,25 @@ public class ReverseNestedAggregator extends BucketsAggregator implements Single
         if (parentDocs == null) {
             return LeafBucketCollector.NO_OP_COLLECTOR;
         }
+        if (collectsFromSingleBucket) {
+            return new ParentDocLeafBucketCollector(sub, parentDocs) {
+                int lastCollectedParentDoc = -1;
+
+                @Override
+                public void collect(int childDoc, long bucket) throws IOException {
+                    final int parentDoc = parentDoc(childDoc);
+                    if (parentDoc > lastCollectedParentDoc) {
+                        collectBucket(sub, parentDoc, bucket);
+                        lastCollectedParentDoc = parentDoc;
+                    }
+                }
+            };
+        }
         final LongIntHashMap bucketOrdToLastCollectedParentDoc = new LongIntHashMap(32);
-        return new LeafBucketCollectorBase(sub, null) {
+        return new ParentDocLeafBucketCollector(sub, parentDocs) {
             @Override
             public void collect(int childDoc, long bucket) throws IOException {
-                // fast forward to retrieve the parentDoc this childDoc belongs to
-                final int parentDoc = parentDocs.nextSetBit(childDoc);
-                assert childDoc <= parentDoc && parentDoc != DocIdSetIterator.NO_MORE_DOCS;
-
+                final int parentDoc = parentDoc(childDoc);
                 int keySlot = bucketOrdToLastCollectedParentDoc.indexOf(bucket);
                 if (bucketOrdToLastCollectedParentDoc.indexExists(keySlot)) {
                     int lastCollectedParentDoc = bucketOrdToLastCollectedParentDoc.indexGet(keySlot);
@@ -80,6 +93,32 @@ public class ReverseNestedAggregator extends BucketsAggregator implements Single
         };
     }
 
+    /**
+     * Finds the parent of each child doc, only searching the parent bitset
+     * when the child isn't in the same block as the previous one. Nested
+     * docs mostly arrive in order, many children to a block.
+     */
+    private abstract static class ParentDocLeafBucketCollector extends LeafBucketCollectorBase {
+        private final BitSet parentDocs;
+        private int lastChildDoc = -1;
+        private int parentDoc = -1;
+
+        ParentDocLeafBucketCollector(LeafBucketCollector sub, BitSet parentDocs) {
+            super(sub, null);
+            this.parentDocs = parentDocs;
+        }
+
+        protected final int parentDoc(int childDoc) {
+            if (childDoc > parentDoc || childDoc < lastChildDoc) {
+                // fast forward to retrieve the parentDoc this childDoc belongs to
+                parentDoc = parentDocs.nextSetBit(childDoc);
+                assert childDoc <= parentDoc && parentDoc != DocIdSetIterator.NO_MORE_DOCS;
+            }
+            lastChildDoc = childDoc;
+            return parentDoc;
+        }
+    }
+
     @Override
     public InternalAggregation[] buildAggregations(long[] owningBucketOrds) throws IOException {
         return buildAggregationsForSingleBucket(owningBucketOrds, (owningBucketOrd, subAggregationResults) ->
@@ -8,6 +8,7 @@
 package org.elasticsearch.search.aggregations.bucket.range;
 
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.ScorerSupplier;
 import org.elasticsearch.common.CheckedFunction;
@@ -47,6 +48,7 @@ import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -293,14 +295,18 @@ public abstract class RangeAggregator extends BucketsAggregator {
         );
         Map<String, Object> filtersDebug = null;
         if (adapted != null) {
-            long maxEstimatedFiltersCost = context.searcher().getIndexReader().maxDoc();
-            long estimatedFiltersCost = adapted.estimateCost(maxEstimatedFiltersCost);
-            if (estimatedFiltersCost <= maxEstimatedFiltersCost) {
+            /*
+             * Plan which segments are cheaper to collect by running the
+             * filters and which are cheaper to collect doc by doc. If any
+             * segment runs the filters then we use the filter-by-filter
+             * aggregator and it'll collect the rest doc by doc.
+             */
+            if (context.searcher().getIndexReader().leaves().isEmpty() || adapted.planSegments() > 0) {
                 return adapted;
             }
             /*
-             * Looks like it'd be more expensive to use the filter-by-filter
-             * aggregator. Oh well. Snapshot the the filter-by-filter
+             * Looks like it'd be more expensive to run the filters on every
+             * segment. Oh well. Snapshot the the filter-by-filter
              * aggregator's debug information if we're profiling bececause it
              * is useful even if the aggregator isn't.
              */
@@ -382,6 +388,11 @@ public abstract class RangeAggregator extends BucketsAggregator {
             builder.to(ranges[i].to == Double.POSITIVE_INFINITY ? null : format.format(ranges[i].to)).includeUpper(false);
             filters.add(QueryToFilterAdapter.build(context.searcher(), Integer.toString(i), context.buildQuery(builder)));
         }
+        FiltersAggregator.DocByDoc docByDoc = new DocByDoc(
+            (ValuesSource.Numeric) valuesSourceConfig.getValuesSource(),
+            valuesSourceConfig.fieldType().name(),
+            ranges
+        );
         RangeAggregator.FromFilters<?> fromFilters = new RangeAggregator.FromFilters<>(
             parent,
             factories,
@@ -395,7 +406,8 @@ public abstract class RangeAggregator extends BucketsAggregator {
                     context,
                     parent,
                     cardinality,
-                    metadata
+                    metadata,
+                    docByDoc
                 );
             },
             valuesSourceConfig.format(),
@@ -771,10 +783,11 @@ public abstract class RangeAggregator extends BucketsAggregator {
         }
 
         /**
-         * Estimate the number of documents that this aggregation must visit.
+         * Plan how to collect each segment, returning the number of segments
+         * that will run the filters.
          */
-        long estimateCost(long maxEstimatedCost) throws IOException {
-            return ((FiltersAggregator.FilterByFilter) delegate()).estimateCost(maxEstimatedCost);
+        int planSegments() throws IOException {
+            return ((FiltersAggregator.FilterByFilter) delegate()).planSegments();
         }
 
         @Override
@@ -812,6 +825,90 @@ public abstract class RangeAggregator extends BucketsAggregator {
         }
     }
 
+    /**
+     * Collects segments that {@link FromFilters} would rather not run its
+     * filters on by reading the values of each document and looking up the
+     * ranges that contain them, much like {@link NoOverlap} and
+     * {@link Overlap} do.
+     */
+    private static class DocByDoc implements FiltersAggregator.DocByDoc {
+        private final ValuesSource.Numeric valuesSource;
+        private final String field;
+        private final Range[] ranges;
+        private final boolean overlap;
+
+        DocByDoc(ValuesSource.Numeric valuesSource, String field, Range[] ranges) {
+            this.valuesSource = valuesSource;
+            this.field = field;
+            this.ranges = ranges;
+            this.overlap = hasOverlap(ranges);
+        }
+
+        /**
+         * Each value costs a binary search over the ranges if they don't
+         * overlap and a scan of all of them if they do. We use the points
+         * tree to estimate the number of values in each document.
+         */
+        @Override
+        public double costPerDoc(LeafReaderContext ctx) throws IOException {
+            PointValues points = ctx.reader().getPointValues(field);
+            double valuesPerDoc = points == null || points.getDocCount() == 0 ? 1 : ((double) points.size()) / points.getDocCount();
+            int comparisonsPerValue = overlap ? ranges.length : Integer.SIZE - Integer.numberOfLeadingZeros(ranges.length);
+            return valuesPerDoc * (1 + comparisonsPerValue);
+        }
+
+        @Override
+        public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, OnMatch onMatch) throws IOException {
+            SortedNumericDoubleValues values = valuesSource.doubleValues(ctx);
+            if (overlap) {
+                int[] lastCollected = new int[ranges.length];
+                Arrays.fill(lastCollected, -1);
+                return new LeafBucketCollector() {
+                    @Override
+                    public void collect(int doc, long bucket) throws IOException {
+                        if (false == values.advanceExact(doc)) {
+                            return;
+                        }
+                        for (int i = 0; i < values.docValueCount(); i++) {
+                            double value = values.nextValue();
+                            for (int r = 0; r < ranges.length; r++) {
+                                if (lastCollected[r] != doc && ranges[r].matches(value)) {
+                                    lastCollected[r] = doc;
+                                    onMatch.accept(doc, r);
+                                }
+                            }
+                        }
+                    }
+                };
+            }
+            return new LeafBucketCollector() {
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    if (false == values.advanceExact(doc)) {
+                        return;
+                    }
+                    for (int i = 0, lo = 0; i < values.docValueCount(); i++) {
+                        double value = values.nextValue();
+                        int hi = ranges.length - 1;
+                        while (lo <= hi) {
+                            int mid = (lo + hi) >>> 1;
+                            if (value < ranges[mid].from) {
+                                hi = mid - 1;
+                            } else if (value >= ranges[mid].to) {
+                                lo = mid + 1;
+                            } else {
+                                onMatch.accept(doc, mid);
+                                // The next value must fall in the next range to be collected.
+                                lo = mid + 1;
+                                break;
+                            }
+                        }
+                    }
+                }
+            };
+        }
+    }
+
     private static boolean hasOverlap(Range[] ranges) {
         double lastEnd = ranges[0].to;
         for (int i = 1; i < ranges.length; ++i) {
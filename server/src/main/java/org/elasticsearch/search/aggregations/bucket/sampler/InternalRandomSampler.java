@@ -0,0 +1,128 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.bucket.InternalSingleBucketAggregation;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The result of the {@code random_sampler} aggregation. Shards and partial reductions only ever hold the counts of the sampled docs,
+ * the final reduction scales the doc count and the sub-aggregations up to estimates for all the docs and reports the standard error
+ * of the estimated doc count.
+ */
+public class InternalRandomSampler extends InternalSingleBucketAggregation implements Sampler {
+    public static final String NAME = RandomSamplerAggregationBuilder.NAME;
+    static final ParseField DOC_COUNT_STANDARD_ERROR = new ParseField("doc_count_standard_error");
+
+    private final double probability;
+    private final int seed;
+    private final double docCountStandardError;
+
+    InternalRandomSampler(String name, long docCount, double probability, int seed, InternalAggregations subAggregations,
+                          Map<String, Object> metadata) {
+        this(name, docCount, probability, seed, 0, subAggregations, metadata);
+    }
+
+    InternalRandomSampler(String name, long docCount, double probability, int seed, double docCountStandardError,
+                          InternalAggregations subAggregations, Map<String, Object> metadata) {
+        super(name, docCount, subAggregations, metadata);
+        this.probability = probability;
+        this.seed = seed;
+        this.docCountStandardError = docCountStandardError;
+    }
+
+    /**
+     * Read from a stream.
+     */
+    public InternalRandomSampler(StreamInput in) throws IOException {
+        super(in);
+        probability = in.readDouble();
+        seed = in.readInt();
+        docCountStandardError = in.readDouble();
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput out) throws IOException {
+        super.doWriteTo(out);
+        out.writeDouble(probability);
+        out.writeInt(seed);
+        out.writeDouble(docCountStandardError);
+    }
+
+    @Override
+    public String getWriteableName() {
+        return NAME;
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    public int getSeed() {
+        return seed;
+    }
+
+    /**
+     * The standard error of the estimated doc count, {@code 0} until the final reduction scaled the counts up.
+     */
+    public double getDocCountStandardError() {
+        return docCountStandardError;
+    }
+
+    @Override
+    protected InternalSingleBucketAggregation newAggregation(String name, long docCount, InternalAggregations subAggregations) {
+        return new InternalRandomSampler(name, docCount, probability, seed, docCountStandardError, subAggregations, metadata);
+    }
+
+    @Override
+    public InternalAggregation reduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
+        InternalRandomSampler reduced = (InternalRandomSampler) super.reduce(aggregations, reduceContext);
+        if (reduceContext.isFinalReduce() && probability < 1) {
+            // the error has to be estimated from the count of the sampled docs, so before scaling them up
+            SamplingContext samplingContext = new SamplingContext(probability);
+            InternalRandomSampler scaled = (InternalRandomSampler) reduced.finalizeSampling(samplingContext);
+            return new InternalRandomSampler(getName(), scaled.getDocCount(), probability, seed,
+                samplingContext.standardError(reduced.getDocCount()), scaled.getAggregations(), metadata);
+        }
+        return reduced;
+    }
+
+    @Override
+    public XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
+        super.doXContentBody(builder, params);
+        if (probability < 1) {
+            builder.field(DOC_COUNT_STANDARD_ERROR.getPreferredName(), docCountStandardError);
+        }
+        return builder;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        if (super.equals(obj) == false) return false;
+
+        InternalRandomSampler other = (InternalRandomSampler) obj;
+        return probability == other.probability && seed == other.seed && docCountStandardError == other.docCountStandardError;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), probability, seed, docCountStandardError);
+    }
+}
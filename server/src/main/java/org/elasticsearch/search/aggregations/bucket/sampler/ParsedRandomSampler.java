@@ -0,0 +1,51 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.search.aggregations.bucket.ParsedSingleBucketAggregation;
+
+import java.io.IOException;
+
+public class ParsedRandomSampler extends ParsedSingleBucketAggregation implements Sampler {
+
+    private Double docCountStandardError;
+
+    @Override
+    public String getType() {
+        return InternalRandomSampler.NAME;
+    }
+
+    /**
+     * The standard error of the estimated doc count, {@code 0} if all documents were sampled.
+     */
+    public double getDocCountStandardError() {
+        return docCountStandardError == null ? 0 : docCountStandardError;
+    }
+
+    @Override
+    protected void parseValue(String fieldName, XContentParser parser) throws IOException {
+        if (InternalRandomSampler.DOC_COUNT_STANDARD_ERROR.getPreferredName().equals(fieldName)) {
+            docCountStandardError = parser.doubleValue();
+        }
+    }
+
+    @Override
+    public XContentBuilder doXContentBody(XContentBuilder builder, Params params) throws IOException {
+        super.doXContentBody(builder, params);
+        if (docCountStandardError != null) {
+            builder.field(InternalRandomSampler.DOC_COUNT_STANDARD_ERROR.getPreferredName(), docCountStandardError);
+        }
+        return builder;
+    }
+
+    public static ParsedRandomSampler fromXContent(XContentParser parser, final String name) throws IOException {
+        return parseXContent(parser, new ParsedRandomSampler(), name);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ConstructingObjectParser;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.aggregations.AbstractAggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.AggregatorFactories.Builder;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.elasticsearch.common.xcontent.ConstructingObjectParser.constructorArg;
+
+/**
+ * Aggregates a random sample of the documents that match the query, in which every document is included independently with the
+ * given probability, and scales the counts and sums of its sub-aggregations back up to estimates for all documents. Only
+ * sub-aggregations that {@link AggregationBuilder#supportsSampling() support sampling} are allowed.
+ */
+public class RandomSamplerAggregationBuilder extends AbstractAggregationBuilder<RandomSamplerAggregationBuilder> {
+    public static final String NAME = "random_sampler";
+
+    static final ParseField PROBABILITY = new ParseField("probability");
+    static final ParseField SEED = new ParseField("seed");
+
+    public static final ConstructingObjectParser<RandomSamplerAggregationBuilder, String> PARSER =
+        new ConstructingObjectParser<>(NAME, false, (args, name) -> new RandomSamplerAggregationBuilder(name, (double) args[0]));
+    static {
+        PARSER.declareDouble(constructorArg(), PROBABILITY);
+        PARSER.declareInt(RandomSamplerAggregationBuilder::seed, SEED);
+    }
+
+    private final double probability;
+    private int seed;
+
+    /**
+     * @param probability the probability with which each document is sampled, in {@code (0, 1]}
+     */
+    public RandomSamplerAggregationBuilder(String name, double probability) {
+        super(name);
+        if (probability <= 0 || probability > 1) {
+            throw new IllegalArgumentException("[" + PROBABILITY.getPreferredName() + "] must be in (0, 1] but was [" + probability + "]");
+        }
+        this.probability = probability;
+    }
+
+    protected RandomSamplerAggregationBuilder(RandomSamplerAggregationBuilder clone, Builder factoriesBuilder,
+                                              Map<String, Object> metadata) {
+        super(clone, factoriesBuilder, metadata);
+        this.probability = clone.probability;
+        this.seed = clone.seed;
+    }
+
+    @Override
+    protected AggregationBuilder shallowCopy(Builder factoriesBuilder, Map<String, Object> metadata) {
+        return new RandomSamplerAggregationBuilder(this, factoriesBuilder, metadata);
+    }
+
+    /**
+     * Read from a stream.
+     */
+    public RandomSamplerAggregationBuilder(StreamInput in) throws IOException {
+        super(in);
+        probability = in.readDouble();
+        seed = in.readInt();
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput out) throws IOException {
+        out.writeDouble(probability);
+        out.writeInt(seed);
+    }
+
+    /**
+     * Set the seed of the sample. Each shard derives its own sample from the seed, so that the same request samples the same
+     * documents as long as the shards are not modified.
+     */
+    public RandomSamplerAggregationBuilder seed(int seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public int seed() {
+        return seed;
+    }
+
+    public double probability() {
+        return probability;
+    }
+
+    @Override
+    public BucketCardinality bucketCardinality() {
+        return BucketCardinality.ONE;
+    }
+
+    @Override
+    protected AggregatorFactory doBuild(AggregationContext context, AggregatorFactory parent, Builder subFactoriesBuilder)
+            throws IOException {
+        validateSubAggregations(subFactoriesBuilder.getAggregatorFactories());
+        return new RandomSamplerAggregatorFactory(name, probability, seed, context, parent, subFactoriesBuilder, metadata);
+    }
+
+    /**
+     * Reject the sub-aggregations whose results we can't scale up from the sample, they'd silently report the values of
+     * the sampled documents only.
+     */
+    private void validateSubAggregations(Collection<AggregationBuilder> subAggregations) {
+        for (AggregationBuilder sub : subAggregations) {
+            if (sub.supportsSampling() == false) {
+                throw new IllegalArgumentException("[" + NAME + "] aggregation [" + name + "] does not support sampling [" + sub.getType()
+                    + "] aggregation [" + sub.getName() + "]");
+            }
+            validateSubAggregations(sub.getSubAggregations());
+        }
+    }
+
+    @Override
+    protected XContentBuilder internalXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject();
+        builder.field(PROBABILITY.getPreferredName(), probability);
+        builder.field(SEED.getPreferredName(), seed);
+        builder.endObject();
+        return builder;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), probability, seed);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        if (super.equals(obj) == false) return false;
+        RandomSamplerAggregationBuilder other = (RandomSamplerAggregationBuilder) obj;
+        return probability == other.probability && seed == other.seed;
+    }
+
+    @Override
+    public String getType() {
+        return NAME;
+    }
+}
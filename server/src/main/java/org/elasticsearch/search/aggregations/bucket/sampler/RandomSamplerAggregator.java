@@ -0,0 +1,131 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import com.carrotsearch.hppc.BitMixer;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.ConjunctionDISI;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Bits;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.CardinalityUpperBound;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
+import org.elasticsearch.search.aggregations.LeafBucketCollectorBase;
+import org.elasticsearch.search.aggregations.bucket.BucketsAggregator;
+import org.elasticsearch.search.aggregations.bucket.SingleBucketAggregator;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Aggregate a random sample of the docs that match the query.
+ * <p>
+ * At the top level, this aggregator doesn't wait for the query to hand it every matching doc. Instead it intersects the query with
+ * a {@link RandomSamplingIterator} and collects the intersection itself, so that the query only has to advance to the sampled docs
+ * and most of the docs are never visited. Below another bucketing aggregator, or when the sub-aggregations need scores, it has to
+ * filter the docs it is handed instead.
+ */
+public class RandomSamplerAggregator extends BucketsAggregator implements SingleBucketAggregator {
+
+    private final double probability;
+    private final int seed;
+    private Weight weight;
+    private int segmentsSampled;
+    private int segmentsFiltered;
+
+    RandomSamplerAggregator(String name, double probability, int seed, AggregatorFactories factories, AggregationContext context,
+                            Aggregator parent, CardinalityUpperBound cardinality, Map<String, Object> metadata) throws IOException {
+        super(name, factories, context, parent, cardinality, metadata);
+        this.probability = probability;
+        this.seed = seed;
+    }
+
+    /**
+     * Can this aggregator sample the query itself rather than filter the docs it is handed?
+     */
+    private boolean canSampleTopLevelQuery() {
+        return parent == null && scoreMode().needsScores() == false;
+    }
+
+    @Override
+    protected LeafBucketCollector getLeafCollector(LeafReaderContext ctx, LeafBucketCollector sub) throws IOException {
+        if (probability >= 1) {
+            return new LeafBucketCollectorBase(sub, null) {
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    collectBucket(sub, doc, bucket);
+                }
+            };
+        }
+        // every segment of every shard gets its own sample, derived from the seed so that it is stable for the same request
+        final long segmentSeed = BitMixer.mix64(31L * (31L * seed + context.shardRandomSeed()) + ctx.ord);
+        final RandomSamplingIterator sample = new RandomSamplingIterator(ctx.reader().maxDoc(), probability, segmentSeed);
+        if (canSampleTopLevelQuery()) {
+            segmentsSampled++;
+            final Scorer scorer = weight().scorer(ctx);
+            if (scorer != null) {
+                final DocIdSetIterator docs = ConjunctionDISI.intersectIterators(List.of(scorer.iterator(), sample));
+                final Bits live = ctx.reader().getLiveDocs();
+                for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+                    if (live == null || live.get(doc)) {
+                        collectBucket(sub, doc, 0);
+                    }
+                }
+            }
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
+        segmentsFiltered++;
+        return new LeafBucketCollectorBase(sub, null) {
+            @Override
+            public void collect(int doc, long bucket) throws IOException {
+                if (sample.docID() < doc) {
+                    sample.advance(doc);
+                }
+                if (sample.docID() == doc) {
+                    collectBucket(sub, doc, bucket);
+                }
+            }
+        };
+    }
+
+    private Weight weight() throws IOException {
+        if (weight == null) {
+            final IndexSearcher searcher = context.searcher();
+            weight = searcher.createWeight(searcher.rewrite(context.query()), ScoreMode.COMPLETE_NO_SCORES, 1f);
+        }
+        return weight;
+    }
+
+    @Override
+    public InternalAggregation[] buildAggregations(long[] owningBucketOrds) throws IOException {
+        return buildAggregationsForSingleBucket(owningBucketOrds, (owningBucketOrd, subAggregationResults) ->
+            new InternalRandomSampler(name, bucketDocCount(owningBucketOrd), probability, seed, subAggregationResults, metadata()));
+    }
+
+    @Override
+    public InternalAggregation buildEmptyAggregation() {
+        return new InternalRandomSampler(name, 0, probability, seed, buildEmptySubAggregations(), metadata());
+    }
+
+    @Override
+    public void collectDebugInfo(BiConsumer<String, Object> add) {
+        super.collectDebugInfo(add);
+        add.accept("segments_sampled", segmentsSampled);
+        add.accept("segments_filtered", segmentsFiltered);
+    }
+}
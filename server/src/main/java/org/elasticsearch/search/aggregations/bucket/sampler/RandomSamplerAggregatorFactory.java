@@ -0,0 +1,38 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorFactories;
+import org.elasticsearch.search.aggregations.AggregatorFactory;
+import org.elasticsearch.search.aggregations.CardinalityUpperBound;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class RandomSamplerAggregatorFactory extends AggregatorFactory {
+
+    private final double probability;
+    private final int seed;
+
+    RandomSamplerAggregatorFactory(String name, double probability, int seed, AggregationContext context, AggregatorFactory parent,
+                                   AggregatorFactories.Builder subFactories, Map<String, Object> metadata) throws IOException {
+        super(name, context, parent, subFactories, metadata);
+        this.probability = probability;
+        this.seed = seed;
+    }
+
+    @Override
+    public Aggregator createInternal(Aggregator parent, CardinalityUpperBound cardinality, Map<String, Object> metadata)
+        throws IOException {
+        return new RandomSamplerAggregator(name, probability, seed, factories, context, parent, cardinality, metadata);
+    }
+
+}
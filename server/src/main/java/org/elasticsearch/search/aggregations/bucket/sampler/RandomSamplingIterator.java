@@ -0,0 +1,68 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.apache.lucene.search.DocIdSetIterator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Iterates over a random sample of the documents of a segment in which every document is included independently with the same
+ * probability. Rather than flipping a coin per document, the gap to the next sampled document is drawn from the geometric
+ * distribution, so the cost of iterating is proportional to the number of sampled documents rather than to the number of documents.
+ * Since the distribution is memoryless, {@link #advance} draws the gap from the target on, which keeps the sample uniform even when
+ * this iterator is led by a more selective one.
+ */
+final class RandomSamplingIterator extends DocIdSetIterator {
+
+    private final int maxDoc;
+    private final double probability;
+    /** {@code log(1 - probability)}, the denominator of the inverse of the geometric distribution's cumulative distribution function. */
+    private final double logComplement;
+    private final SplittableRandom random;
+    private int doc = -1;
+
+    RandomSamplingIterator(int maxDoc, double probability, long seed) {
+        assert probability > 0 && probability < 1 : "sampling with probability [" + probability + "] doesn't need skipping";
+        this.maxDoc = maxDoc;
+        this.probability = probability;
+        this.logComplement = Math.log1p(-probability);
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Draws the number of documents to skip before the next sampled one.
+     */
+    private long gap() {
+        // 1 - nextDouble() is in (0, 1] so its logarithm is finite
+        return (long) Math.floor(Math.log(1 - random.nextDouble()) / logComplement);
+    }
+
+    @Override
+    public int docID() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        final long next = target + gap();
+        doc = next >= maxDoc ? NO_MORE_DOCS : (int) next;
+        return doc;
+    }
+
+    @Override
+    public long cost() {
+        return (long) Math.ceil(maxDoc * probability);
+    }
+}
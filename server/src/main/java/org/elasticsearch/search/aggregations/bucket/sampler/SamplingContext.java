@@ -0,0 +1,56 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.search.aggregations.InternalAggregation;
+
+/**
+ * Scales the results of aggregations that ran on a random sample of documents back up to estimates for all documents, see
+ * {@link InternalAggregation#finalizeSampling(SamplingContext)}.
+ */
+public final class SamplingContext {
+
+    private final double probability;
+
+    /**
+     * @param probability the probability with which each document was sampled
+     */
+    public SamplingContext(double probability) {
+        if (probability <= 0 || probability > 1) {
+            throw new IllegalArgumentException("[probability] must be in (0, 1] but was [" + probability + "]");
+        }
+        this.probability = probability;
+    }
+
+    public double probability() {
+        return probability;
+    }
+
+    /**
+     * Estimates a count over all documents from the count over the sampled documents.
+     */
+    public long scaleUp(long sampledCount) {
+        return Math.round(sampledCount / probability);
+    }
+
+    /**
+     * Estimates a sum over all documents from the sum over the sampled documents.
+     */
+    public double scaleUp(double sampledSum) {
+        return sampledSum / probability;
+    }
+
+    /**
+     * Estimates the standard error of {@link #scaleUp(long) the estimated count} of documents from the count of sampled documents,
+     * as every document is sampled independently with the same probability.
+     */
+    public double standardError(long sampledCount) {
+        return Math.sqrt(sampledCount * (1 - probability)) / probability;
+    }
+}
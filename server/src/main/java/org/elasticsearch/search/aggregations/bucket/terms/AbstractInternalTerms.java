@@ -19,15 +19,18 @@ import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
 import org.elasticsearch.search.aggregations.InternalOrder;
 import org.elasticsearch.search.aggregations.bucket.IteratorAndCurrent;
+import org.elasticsearch.search.aggregations.bucket.sampler.SamplingContext;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
+import static org.elasticsearch.search.aggregations.InternalOrder.isAggregationOrder;
 import static org.elasticsearch.search.aggregations.InternalOrder.isKeyAsc;
 import static org.elasticsearch.search.aggregations.InternalOrder.isKeyOrder;
 import static org.elasticsearch.search.aggregations.bucket.terms.InternalTerms.DOC_COUNT_ERROR_UPPER_BOUND_FIELD_NAME;
@@ -93,26 +96,48 @@ public abstract class AbstractInternalTerms<
     @Override
     public B reduceBucket(List<B> buckets, ReduceContext context) {
         assert buckets.size() > 0;
+        return createBucket(sumDocCount(buckets), reduceAggregations(buckets, context), sumDocCountError(buckets), buckets.get(0));
+    }
+
+    private InternalAggregations reduceAggregations(List<B> buckets, ReduceContext context) {
+        List<InternalAggregations> aggregationsList = new ArrayList<>(buckets.size());
+        for (B bucket : buckets) {
+            aggregationsList.add((InternalAggregations) bucket.getAggregations());
+        }
+        return InternalAggregations.reduce(aggregationsList, context);
+    }
+
+    /**
+     * Merges the counts of buckets that have the same key but leaves their sub-aggregations alone, which is enough to know whether
+     * the bucket makes it to the top buckets when they are not sorted by a sub-aggregation.
+     */
+    private B reduceBucketCounts(List<B> buckets) {
+        assert buckets.size() > 0;
+        final B first = buckets.get(0);
+        return createBucket(sumDocCount(buckets), (InternalAggregations) first.getAggregations(), sumDocCountError(buckets), first);
+    }
+
+    private long sumDocCount(List<B> buckets) {
         long docCount = 0;
+        for (B bucket : buckets) {
+            docCount += bucket.getDocCount();
+        }
+        return docCount;
+    }
+
+    private long sumDocCountError(List<B> buckets) {
         // For the per term doc count error we add up the errors from the
         // shards that did not respond with the term. To do this we add up
         // the errors from the shards that did respond with the terms and
         // subtract that from the sum of the error from all shards
         long docCountError = 0;
-        List<InternalAggregations> aggregationsList = new ArrayList<>(buckets.size());
         for (B bucket : buckets) {
-            docCount += bucket.getDocCount();
-            if (docCountError != -1) {
-                if (bucket.getShowDocCountError() == false || bucket.getDocCountError() == -1) {
-                    docCountError = -1;
-                } else {
-                    docCountError += bucket.getDocCountError();
-                }
+            if (bucket.getShowDocCountError() == false || bucket.getDocCountError() == -1) {
+                return -1;
             }
-            aggregationsList.add((InternalAggregations) bucket.getAggregations());
+            docCountError += bucket.getDocCountError();
         }
-        InternalAggregations aggs = InternalAggregations.reduce(aggregationsList, context);
-        return createBucket(docCount, aggs, docCountError, buckets.get(0));
+        return docCountError;
     }
 
     private BucketOrder getReduceOrder(List<InternalAggregation> aggregations) {
@@ -151,8 +176,10 @@ public abstract class AbstractInternalTerms<
         }
     }
 
-    private List<B> reduceMergeSort(List<InternalAggregation> aggregations,
-                                    BucketOrder thisReduceOrder, InternalAggregation.ReduceContext reduceContext) {
+    /**
+     * Merges the buckets of aggregations that are sorted by key and returns the buckets that have the same key together.
+     */
+    private List<List<B>> groupMergeSort(List<InternalAggregation> aggregations, BucketOrder thisReduceOrder) {
         assert isKeyOrder(thisReduceOrder);
         final Comparator<Bucket> cmp = thisReduceOrder.comparator();
         final PriorityQueue<IteratorAndCurrent<B>> pq = new PriorityQueue<>(aggregations.size()) {
@@ -168,7 +195,7 @@ public abstract class AbstractInternalTerms<
                 pq.add(new IteratorAndCurrent<>(terms.getBuckets().iterator()));
             }
         }
-        List<B> reducedBuckets = new ArrayList<>();
+        List<List<B>> bucketGroups = new ArrayList<>();
         // list of buckets coming from different shards that have the same key
         List<B> currentBuckets = new ArrayList<>();
         B lastBucket = null;
@@ -176,10 +203,9 @@ public abstract class AbstractInternalTerms<
             final IteratorAndCurrent<B> top = pq.top();
             assert lastBucket == null || cmp.compare(top.current(), lastBucket) >= 0;
             if (lastBucket != null && cmp.compare(top.current(), lastBucket) != 0) {
-                // the key changes, reduce what we already buffered and reset the buffer for current buckets
-                final B reduced = reduceBucket(currentBuckets, reduceContext);
-                reducedBuckets.add(reduced);
-                currentBuckets.clear();
+                // the key changes, keep what we already buffered and start a new buffer for current buckets
+                bucketGroups.add(currentBuckets);
+                currentBuckets = new ArrayList<>();
             }
             lastBucket = top.current();
             currentBuckets.add(top.current());
@@ -198,13 +224,15 @@ public abstract class AbstractInternalTerms<
         }
 
         if (currentBuckets.isEmpty() == false) {
-            final B reduced = reduceBucket(currentBuckets, reduceContext);
-            reducedBuckets.add(reduced);
+            bucketGroups.add(currentBuckets);
         }
-        return reducedBuckets;
+        return bucketGroups;
     }
 
-    private List<B> reduceLegacy(List<InternalAggregation> aggregations, InternalAggregation.ReduceContext reduceContext) {
+    /**
+     * Returns the buckets of the aggregations that have the same key together, whatever the order of the buckets.
+     */
+    private List<List<B>> groupLegacy(List<InternalAggregation> aggregations) {
         Map<Object, List<B>> bucketMap = new HashMap<>();
         for (InternalAggregation aggregation : aggregations) {
             @SuppressWarnings("unchecked")
@@ -215,12 +243,7 @@ public abstract class AbstractInternalTerms<
                 }
             }
         }
-        List<B> reducedBuckets = new ArrayList<>();
-        for (List<B> sameTermBuckets : bucketMap.values()) {
-            final B b = reduceBucket(sameTermBuckets, reduceContext);
-            reducedBuckets.add(b);
-        }
-        return reducedBuckets;
+        return new ArrayList<>(bucketMap.values());
     }
 
     public InternalAggregation reduce(List<InternalAggregation> aggregations, InternalAggregation.ReduceContext reduceContext) {
@@ -262,27 +285,45 @@ public abstract class AbstractInternalTerms<
             }
         }
 
-        final List<B> reducedBuckets;
+        final List<List<B>> bucketGroups;
         /**
          * Buckets returned by a partial reduce or a shard response are sorted by key since {@link Version#V_7_10_0}.
          * That allows to perform a merge sort when reducing multiple aggregations together.
-         * For backward compatibility, we disable the merge sort and use ({@link #reduceLegacy} if any of
+         * For backward compatibility, we disable the merge sort and use ({@link #groupLegacy} if any of
          * the provided aggregations use a different {@link #reduceOrder}.
          */
         BucketOrder thisReduceOrder = getReduceOrder(aggregations);
         if (isKeyOrder(thisReduceOrder)) {
             // extract the primary sort in case this is a compound order.
             thisReduceOrder = InternalOrder.key(isKeyAsc(thisReduceOrder));
-            reducedBuckets = reduceMergeSort(aggregations, thisReduceOrder, reduceContext);
+            bucketGroups = groupMergeSort(aggregations, thisReduceOrder);
         } else {
-            reducedBuckets = reduceLegacy(aggregations, reduceContext);
+            bucketGroups = groupLegacy(aggregations);
         }
         final B[] list;
         if (reduceContext.isFinalReduce()) {
-            final int size = Math.min(getRequiredSize(), reducedBuckets.size());
+            /*
+             * Unless the buckets are sorted on a sub-aggregation, the top buckets only depend on the doc counts, so we pick
+             * them first and only reduce the sub-aggregations of the buckets that make it to the response. That saves
+             * reducing, and holding on to, the sub-aggregations of all the buckets that get pruned.
+             */
+            final boolean pruneBeforeReduce = isAggregationOrder(getOrder()) == false;
+            final Map<B, List<B>> groupsByBucket = pruneBeforeReduce ? new IdentityHashMap<>(bucketGroups.size()) : null;
+            final List<B> candidates;
+            if (pruneBeforeReduce) {
+                candidates = new ArrayList<>(bucketGroups.size());
+                for (List<B> group : bucketGroups) {
+                    final B bucket = reduceBucketCounts(group);
+                    groupsByBucket.put(bucket, group);
+                    candidates.add(bucket);
+                }
+            } else {
+                candidates = reduceContext.parallelMap(bucketGroups, group -> reduceBucket(group, reduceContext));
+            }
+            final int size = Math.min(getRequiredSize(), candidates.size());
             // final comparator
             final BucketPriorityQueue<B> ordered = new BucketPriorityQueue<>(size, getOrder().comparator());
-            for (B bucket : reducedBuckets) {
+            for (B bucket : candidates) {
                 if (sumDocCountError == -1) {
                     bucket.setDocCountError(-1);
                 } else {
@@ -292,11 +333,13 @@ public abstract class AbstractInternalTerms<
                     B removed = ordered.insertWithOverflow(bucket);
                     if (removed != null) {
                         otherDocCount += removed.getDocCount();
-                        reduceContext.consumeBucketsAndMaybeBreak(-countInnerBucket(removed));
+                        if (pruneBeforeReduce == false) {
+                            reduceContext.consumeBucketsAndMaybeBreak(-countInnerBucket(removed));
+                        }
                     } else {
                         reduceContext.consumeBucketsAndMaybeBreak(1);
                     }
-                } else {
+                } else if (pruneBeforeReduce == false) {
                     reduceContext.consumeBucketsAndMaybeBreak(-countInnerBucket(bucket));
                 }
             }
@@ -304,11 +347,20 @@ public abstract class AbstractInternalTerms<
             for (int i = ordered.size() - 1; i >= 0; i--) {
                 list[i] = ordered.pop();
             }
+            if (pruneBeforeReduce) {
+                final List<B> reduced = reduceContext.parallelMap(Arrays.asList(list), bucket -> createBucket(bucket.getDocCount(),
+                    reduceAggregations(groupsByBucket.get(bucket), reduceContext), bucket.getDocCountError(), bucket));
+                for (int i = 0; i < list.length; i++) {
+                    list[i] = reduced.get(i);
+                }
+            }
         } else {
             // we can prune the list on partial reduce if the aggregation is ordered by key
             // and not filtered (minDocCount == 0)
-            int size = isKeyOrder(getOrder()) && getMinDocCount() == 0 ? Math.min(getRequiredSize(), reducedBuckets.size()) :
-                reducedBuckets.size();
+            int size = isKeyOrder(getOrder()) && getMinDocCount() == 0 ? Math.min(getRequiredSize(), bucketGroups.size()) :
+                bucketGroups.size();
+            final List<B> reducedBuckets = reduceContext.parallelMap(bucketGroups.subList(0, size),
+                group -> reduceBucket(group, reduceContext));
             list = createBucketsArray(size);
             for (int i = 0; i < size; i++) {
                 reduceContext.consumeBucketsAndMaybeBreak(1);
@@ -330,6 +382,27 @@ public abstract class AbstractInternalTerms<
             otherDocCount);
     }
 
+    @Override
+    public InternalAggregation finalizeSampling(SamplingContext samplingContext) {
+        if (isMapped() == false) {
+            return this;
+        }
+        List<B> buckets = new ArrayList<>(getBuckets().size());
+        for (B bucket : getBuckets()) {
+            long docCountError = bucket.getShowDocCountError() ? scaleDocCountError(bucket.getDocCountError(), samplingContext) : 0;
+            InternalAggregations aggs = InternalAggregations.finalizeSampling((InternalAggregations) bucket.getAggregations(),
+                samplingContext);
+            buckets.add(createBucket(samplingContext.scaleUp(bucket.getDocCount()), aggs, docCountError, bucket));
+        }
+        return create(name, buckets, getReduceOrder(), scaleDocCountError(getDocCountError(), samplingContext),
+            samplingContext.scaleUp(getSumOfOtherDocCounts()));
+    }
+
+    private static long scaleDocCountError(long docCountError, SamplingContext samplingContext) {
+        // -1 means the error is unbounded
+        return docCountError == -1 ? -1 : samplingContext.scaleUp(docCountError);
+    }
+
     protected static XContentBuilder doXContentCommon(XContentBuilder builder,
                                                       Params params,
                                                       long docCountError,
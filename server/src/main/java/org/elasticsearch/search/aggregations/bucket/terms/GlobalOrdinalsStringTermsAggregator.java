@@ -12,7 +12,16 @@ import org.apache.lucene.index.DocValues;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.PriorityQueue;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -21,6 +30,7 @@ import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.LongArray;
 import org.elasticsearch.common.util.LongHash;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.IndexSortConfig;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.aggregations.AggregationExecutionException;
 import org.elasticsearch.search.aggregations.Aggregator;
@@ -182,6 +192,14 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
         return resultStrategy.buildAggregations(owningBucketOrds);
     }
 
+    /**
+     * The number of documents that count towards {@code sum_other_doc_count}
+     * but weren't collected into any bucket.
+     */
+    protected long uncollectedOtherDocCount(long owningBucketOrd) {
+        return 0;
+    }
+
     @Override
     public InternalAggregation buildEmptyAggregation() {
         return resultStrategy.buildEmptyResult();
@@ -367,6 +385,173 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
         }
     }
 
+    /**
+     * Variant of {@link GlobalOrdinalsStringTermsAggregator} for top level
+     * {@code terms} aggregations on a field that the index is sorted on.
+     * Every matching document of a term is next to the others in segments
+     * that are sorted on the field so this counts the length of each run
+     * of documents with the same ordinal rather than collecting them one
+     * by one. When the buckets are ordered by key in the direction of the
+     * index sort it stops counting a segment as soon as it has seen
+     * {@code shard_size} terms, because the terms that follow can't make
+     * it into the top buckets anyway.
+     * <p>
+     * Segments that aren't sorted on the field, that contain more than one
+     * value per document or that contain a {@code _doc_count} field are
+     * collected like {@link GlobalOrdinalsStringTermsAggregator} does.
+     */
+    static class SortedRuns extends GlobalOrdinalsStringTermsAggregator {
+        private final String field;
+        private Weight weight;
+        private long uncollectedOtherDocCount;
+        private int segmentsCountedInRuns;
+        private int segmentsTerminatedEarly;
+
+        SortedRuns(
+            String name,
+            String field,
+            Function<GlobalOrdinalsStringTermsAggregator, ResultStrategy<?, ?, ?>> resultStrategy,
+            ValuesSource.Bytes.WithOrdinals valuesSource,
+            SortedSetDocValues values,
+            BucketOrder order,
+            DocValueFormat format,
+            BucketCountThresholds bucketCountThresholds,
+            AggregationContext context,
+            SubAggCollectionMode collectionMode,
+            boolean showTermDocCountError,
+            Map<String, Object> metadata
+        ) throws IOException {
+            super(
+                name,
+                AggregatorFactories.EMPTY,
+                resultStrategy,
+                valuesSource,
+                values,
+                order,
+                format,
+                bucketCountThresholds,
+                ALWAYS_TRUE,
+                context,
+                null,
+                false,
+                collectionMode,
+                showTermDocCountError,
+                CardinalityUpperBound.ONE,
+                metadata
+            );
+            this.field = field;
+        }
+
+        @Override
+        public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, LeafBucketCollector sub) throws IOException {
+            final Sort indexSort = ctx.reader().getMetaData().getSort();
+            if (indexSort == null
+                    || indexSort.getSort()[0].getField().equals(field) == false
+                    || IndexSortConfig.getSortFieldType(indexSort.getSort()[0]) != SortField.Type.STRING
+                    || scoreMode().needsScores()
+                    || docCountProvider.alwaysOne() == false) {
+                return super.getLeafCollector(ctx, sub);
+            }
+            final SortedSetDocValues globalOrds = valuesSource.globalOrdinalsValues(ctx);
+            final SortedDocValues singleValues = DocValues.unwrapSingleton(globalOrds);
+            if (singleValues == null) {
+                return super.getLeafCollector(ctx, sub);
+            }
+            collectionStrategy.globalOrdsReady(globalOrds);
+            segmentsWithSingleValuedOrds++;
+            segmentsCountedInRuns++;
+            final Scorer scorer = weight().scorer(ctx);
+            if (scorer == null) {
+                return LeafBucketCollector.NO_OP_COLLECTOR;
+            }
+            final boolean reverse = indexSort.getSort()[0].getReverse();
+            final boolean terminateEarly = bucketCountThresholds.getMinDocCount() <= 1
+                && bucketCountThresholds.getShardMinDocCount() <= 1
+                && (reverse ? InternalOrder.isKeyDesc(order) : InternalOrder.isKeyAsc(order));
+            final Bits liveDocs = ctx.reader().getLiveDocs();
+            final DocIdSetIterator docs = scorer.iterator();
+            long runOrd = -1;
+            long runLength = 0;
+            long runs = 0;
+            for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+                if ((liveDocs != null && liveDocs.get(doc) == false) || singleValues.advanceExact(doc) == false) {
+                    continue;
+                }
+                long globalOrd = singleValues.ordValue();
+                if (globalOrd != runOrd) {
+                    if (runLength > 0) {
+                        incrementBucketDocCount(collectionStrategy.globalOrdToBucketOrd(0, runOrd), runLength);
+                        runLength = 0;
+                    }
+                    if (terminateEarly && runs == bucketCountThresholds.getShardSize()) {
+                        segmentsTerminatedEarly++;
+                        uncollectedOtherDocCount += countRemainingDocsWithValue(ctx, docs, liveDocs);
+                        break;
+                    }
+                    runOrd = globalOrd;
+                    runs++;
+                }
+                runLength++;
+            }
+            if (runLength > 0) {
+                incrementBucketDocCount(collectionStrategy.globalOrdToBucketOrd(0, runOrd), runLength);
+            }
+            return LeafBucketCollector.NO_OP_COLLECTOR;
+        }
+
+        /**
+         * Count the matching documents from the current one of {@code docs}
+         * to the last document with a value. The documents with a value are
+         * contiguous in a segment that is sorted on the field so we can find
+         * the last of them with a binary search rather than by reading every
+         * document's value.
+         */
+        private long countRemainingDocsWithValue(LeafReaderContext ctx, DocIdSetIterator docs, Bits liveDocs) throws IOException {
+            // lo always has a value, hi never does or is past the last doc
+            int lo = docs.docID();
+            int hi = ctx.reader().maxDoc();
+            while (lo + 1 < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (valuesSource.ordinalsValues(ctx).advanceExact(mid)) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+            }
+            if (liveDocs == null && weight.getQuery() instanceof MatchAllDocsQuery) {
+                return hi - docs.docID();
+            }
+            long count = 0;
+            for (int doc = docs.docID(); doc < hi; doc = docs.nextDoc()) {
+                if (liveDocs == null || liveDocs.get(doc)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private Weight weight() throws IOException {
+            if (weight == null) {
+                IndexSearcher searcher = searcher();
+                weight = searcher.createWeight(searcher.rewrite(topLevelQuery()), ScoreMode.COMPLETE_NO_SCORES, 1f);
+            }
+            return weight;
+        }
+
+        @Override
+        protected long uncollectedOtherDocCount(long owningBucketOrd) {
+            assert owningBucketOrd == 0;
+            return uncollectedOtherDocCount;
+        }
+
+        @Override
+        public void collectDebugInfo(BiConsumer<String, Object> add) {
+            super.collectDebugInfo(add);
+            add.accept("segments_counted_in_runs", segmentsCountedInRuns);
+            add.accept("segments_terminated_early", segmentsTerminatedEarly);
+        }
+    }
+
     /**
      * Strategy for collecting global ordinals.
      * <p>
@@ -578,6 +763,7 @@ public class GlobalOrdinalsStringTermsAggregator extends AbstractStringTermsAggr
                 } else {
                     size = (int) Math.min(maxBucketOrd(), bucketCountThresholds.getShardSize());
                 }
+                otherDocCount[ordIdx] = uncollectedOtherDocCount(owningBucketOrds[ordIdx]);
                 PriorityQueue<TB> ordered = buildPriorityQueue(size);
                 final int finalOrdIdx = ordIdx;
                 BucketUpdater<TB> updater = bucketUpdater(owningBucketOrds[ordIdx]);
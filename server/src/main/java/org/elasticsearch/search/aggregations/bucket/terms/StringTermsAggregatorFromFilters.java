@@ -8,7 +8,9 @@
 
 package org.elasticsearch.search.aggregations.bucket.terms;
 
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.PriorityQueue;
@@ -22,6 +24,7 @@ import org.elasticsearch.search.aggregations.BucketOrder;
 import org.elasticsearch.search.aggregations.CardinalityUpperBound;
 import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalOrder;
+import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
 import org.elasticsearch.search.aggregations.bucket.filter.FiltersAggregator;
 import org.elasticsearch.search.aggregations.bucket.filter.InternalFilters;
@@ -29,10 +32,12 @@ import org.elasticsearch.search.aggregations.bucket.filter.QueryToFilterAdapter;
 import org.elasticsearch.search.aggregations.bucket.terms.GlobalOrdinalsStringTermsAggregator.OrdBucket;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregator.BucketCountThresholds;
 import org.elasticsearch.search.aggregations.support.AggregationContext;
+import org.elasticsearch.search.aggregations.support.ValuesSource;
 import org.elasticsearch.search.aggregations.support.ValuesSourceConfig;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -73,10 +78,17 @@ public class StringTermsAggregatorFromFilters extends AdaptingAggregator {
         }
         List<QueryToFilterAdapter<?>> filters = new ArrayList<>();
         TermsEnum terms = values.termsEnum();
+        /*
+         * The caller only adapts fields with few enough global ordinals that
+         * we can afford to map every one of them to its filter.
+         */
+        int[] globalOrdToFilter = new int[Math.toIntExact(values.getValueCount())];
+        Arrays.fill(globalOrdToFilter, -1);
         for (long ord = 0; ord < values.getValueCount(); ord++) {
             if (acceptedOrds.test(ord) == false) {
                 continue;
             }
+            globalOrdToFilter[(int) ord] = filters.size();
             terms.seekExact(ord);
             /*
              * It *feels* like there should be a query that operates
@@ -92,6 +104,11 @@ public class StringTermsAggregatorFromFilters extends AdaptingAggregator {
             );
             filters.add(QueryToFilterAdapter.build(context.searcher(), Long.toString(ord), context.buildQuery(b)));
         }
+        FiltersAggregator.DocByDoc docByDoc = new DocByDoc(
+            (ValuesSource.Bytes.WithOrdinals) valuesSourceConfig.getValuesSource(),
+            valuesSourceConfig.fieldContext().field(),
+            globalOrdToFilter
+        );
         StringTermsAggregatorFromFilters adapted = new StringTermsAggregatorFromFilters(
             parent,
             factories,
@@ -104,7 +121,8 @@ public class StringTermsAggregatorFromFilters extends AdaptingAggregator {
                 context,
                 parent,
                 cardinality,
-                metadata
+                metadata,
+                docByDoc
             ),
             showTermDocCountError,
             valuesSourceConfig.format(),
@@ -257,4 +275,53 @@ public class StringTermsAggregatorFromFilters extends AdaptingAggregator {
             format
         );
     }
+
+    /**
+     * Collects segments that the filters would be expensive for by reading
+     * the global ordinals of each document and looking up their filters.
+     */
+    private static class DocByDoc implements FiltersAggregator.DocByDoc {
+        private final ValuesSource.Bytes.WithOrdinals valuesSource;
+        private final String field;
+        private final int[] globalOrdToFilter;
+
+        DocByDoc(ValuesSource.Bytes.WithOrdinals valuesSource, String field, int[] globalOrdToFilter) {
+            this.valuesSource = valuesSource;
+            this.field = field;
+            this.globalOrdToFilter = globalOrdToFilter;
+        }
+
+        /**
+         * Each term costs reading its global ordinal and looking up its
+         * filter. We use the terms dictionary to estimate the number of terms
+         * in each document.
+         */
+        @Override
+        public double costPerDoc(LeafReaderContext ctx) throws IOException {
+            Terms terms = ctx.reader().terms(field);
+            if (terms == null || terms.getDocCount() <= 0 || terms.getSumDocFreq() < 0) {
+                return 2;
+            }
+            return 2 * ((double) terms.getSumDocFreq()) / terms.getDocCount();
+        }
+
+        @Override
+        public LeafBucketCollector getLeafCollector(LeafReaderContext ctx, OnMatch onMatch) throws IOException {
+            SortedSetDocValues globalOrds = valuesSource.globalOrdinalsValues(ctx);
+            return new LeafBucketCollector() {
+                @Override
+                public void collect(int doc, long bucket) throws IOException {
+                    if (false == globalOrds.advanceExact(doc)) {
+                        return;
+                    }
+                    for (long ord = globalOrds.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = globalOrds.nextOrd()) {
+                        int filterOrd = globalOrdToFilter[(int) ord];
+                        if (filterOrd != -1) {
+                            onMatch.accept(doc, filterOrd);
+                        }
+                    }
+                }
+            };
+        }
+    }
 }
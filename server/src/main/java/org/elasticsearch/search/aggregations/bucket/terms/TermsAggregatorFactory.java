@@ -383,7 +383,9 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory {
                          * checking the cost is a defense against runtime fields
                          * which *have* queries but they are slow and have high
                          * cost. But runtime fields don't have global ords
-                         * so we won't have got here anyway.
+                         * so we won't have got here anyway. And filter-by-filter
+                         * plans each segment when it collects it, reading the
+                         * global ords doc by doc when that looks cheaper.
                          *
                          * It's totally possible that there might be a top level
                          * query that was generated by a runtime field. That
@@ -395,6 +397,38 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory {
                     }
                 }
 
+                if (parent == null &&
+                        factories == AggregatorFactories.EMPTY &&
+                        includeExclude == null &&
+                        cardinality == CardinalityUpperBound.ONE &&
+                        valuesSourceConfig.fieldContext() != null &&
+                        valuesSourceConfig.script() == null &&
+                        valuesSourceConfig.missing() == null &&
+                        context.getIndexSettings().getIndexSortConfig().hasPrimarySortOnField(valuesSourceConfig.fieldContext().field())) {
+                    /*
+                     * The documents of each term are next to each other in
+                     * segments that are sorted on the field so we can count
+                     * them in runs. This needs to be the top level aggregator
+                     * because it iterates the query itself. The documents that
+                     * get the missing value aren't in a run so that needs the
+                     * normal collector.
+                     */
+                    return new GlobalOrdinalsStringTermsAggregator.SortedRuns(
+                        name,
+                        valuesSourceConfig.fieldContext().field(),
+                        a -> a.new StandardTermsResults(),
+                        ordinalsValuesSource,
+                        values,
+                        order,
+                        valuesSourceConfig.format(),
+                        bucketCountThresholds,
+                        context,
+                        subAggCollectMode,
+                        showTermDocCountError,
+                        metadata
+                    );
+                }
+
                 final double ratio = maxOrd / ((double) context.searcher().getIndexReader().numDocs());
                 if (factories == AggregatorFactories.EMPTY &&
                         includeExclude == null &&
@@ -98,13 +98,20 @@ abstract class AbstractInternalTDigestPercentiles extends InternalNumericMetrics
 
     @Override
     public AbstractInternalTDigestPercentiles reduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
-        TDigestState merged = null;
-        for (InternalAggregation aggregation : aggregations) {
-            final AbstractInternalTDigestPercentiles percentiles = (AbstractInternalTDigestPercentiles) aggregation;
-            if (merged == null) {
-                merged = new TDigestState(percentiles.state.compression());
+        /*
+         * Merge the centroids in a TDigestArray rather than adding them to a TDigestState one at a time.
+         * It sorts and compresses them in place, in memory that the request circuit breaker knows about.
+         */
+        double compression = ((AbstractInternalTDigestPercentiles) aggregations.get(0)).state.compression();
+        TDigestState merged;
+        try (TDigestArray digest = new TDigestArray(compression, reduceContext.bigArrays(), 1)) {
+            for (InternalAggregation aggregation : aggregations) {
+                digest.add(0, ((AbstractInternalTDigestPercentiles) aggregation).state);
             }
-            merged.add(percentiles.state);
+            merged = digest.toState(0);
+        }
+        if (merged == null) {
+            merged = new TDigestState(compression);
         }
         return createReduced(getName(), keys, merged, keyed, getMetadata());
     }
@@ -12,7 +12,6 @@ import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.ScoreMode;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.ArrayUtils;
-import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.ObjectArray;
 import org.elasticsearch.index.fielddata.SortedNumericDoubleValues;
 import org.elasticsearch.search.DocValueFormat;
@@ -34,7 +33,12 @@ abstract class AbstractTDigestPercentilesAggregator extends NumericMetricsAggreg
     protected final double[] keys;
     protected final ValuesSource valuesSource;
     protected final DocValueFormat formatter;
-    protected ObjectArray<TDigestState> states;
+    private final TDigestArray digests;
+    /**
+     * The {@link TDigestState}s built from {@link #digests} when results are
+     * needed, kept so sorting on a percentile doesn't build them over and over.
+     */
+    private ObjectArray<TDigestState> states;
     protected final double compression;
     protected final boolean keyed;
 
@@ -45,6 +49,7 @@ abstract class AbstractTDigestPercentilesAggregator extends NumericMetricsAggreg
         this.valuesSource = valuesSource;
         this.keyed = keyed;
         this.formatter = formatter;
+        this.digests = new TDigestArray(compression, context.bigArrays(), 1);
         this.states = context.bigArrays().newObjectArray(1);
         this.keys = keys;
         this.compression = compression;
@@ -65,43 +70,36 @@ abstract class AbstractTDigestPercentilesAggregator extends NumericMetricsAggreg
         return new LeafBucketCollectorBase(sub, values) {
             @Override
             public void collect(int doc, long bucket) throws IOException {
-                TDigestState state = getExistingOrNewHistogram(bigArrays(), bucket);
                 if (values.advanceExact(doc)) {
                     final int valueCount = values.docValueCount();
                     for (int i = 0; i < valueCount; i++) {
-                        state.add(values.nextValue());
+                        digests.add(bucket, values.nextValue());
                     }
                 }
             }
         };
     }
 
-    private TDigestState getExistingOrNewHistogram(final BigArrays bigArrays, long bucket) {
-        states = bigArrays.grow(states, bucket + 1);
-        TDigestState state = states.get(bucket);
-        if (state == null) {
-            state = new TDigestState(compression);
-            states.set(bucket, state);
-        }
-        return state;
-    }
-
     @Override
     public boolean hasMetric(String name) {
         return indexOfKey(keys, Double.parseDouble(name)) >= 0;
     }
 
     protected TDigestState getState(long bucketOrd) {
-        if (bucketOrd >= states.size()) {
-            return null;
+        TDigestState state = bucketOrd < states.size() ? states.get(bucketOrd) : null;
+        if (state == null) {
+            state = digests.toState(bucketOrd);
+            if (state != null) {
+                states = bigArrays().grow(states, bucketOrd + 1);
+                states.set(bucketOrd, state);
+            }
         }
-        final TDigestState state = states.get(bucketOrd);
         return state;
     }
 
     @Override
     protected void doClose() {
-        Releasables.close(states);
+        Releasables.close(digests, states);
     }
 
 }
@@ -8,16 +8,17 @@
 
 package org.elasticsearch.search.aggregations.metrics;
 
-import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.packed.PackedInts;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.BitArray;
 import org.elasticsearch.common.util.ByteArray;
-import org.elasticsearch.common.util.ByteUtils;
 import org.elasticsearch.common.util.IntArray;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
@@ -164,9 +165,7 @@ public final class HyperLogLogPlusPlus extends AbstractHyperLogLogPlusPlus {
     }
 
     public void merge(long thisBucket, AbstractHyperLogLogPlusPlus other, long otherBucket) {
-        if (precision() != other.precision()) {
-            throw new IllegalArgumentException();
-        }
+        checkPrecision(other.precision());
         hll.ensureCapacity(thisBucket + 1);
         if (other.getAlgorithm(otherBucket) == LINEAR_COUNTING) {
             merge(thisBucket, other.getLinearCounting(otherBucket));
@@ -175,17 +174,50 @@ public final class HyperLogLogPlusPlus extends AbstractHyperLogLogPlusPlus {
         }
     }
 
+    /**
+     * Merges a sketch that was serialized with {@link #writeTo(long, StreamOutput)} into the given bucket. Unlike
+     * {@link #readFrom(StreamInput, BigArrays)} followed by {@link #merge(long, AbstractHyperLogLogPlusPlus, long)}, this reads the
+     * hashes or registers straight into this counter, which matters when merging one pre-aggregated sketch per document.
+     */
+    public void merge(long thisBucket, StreamInput in) throws IOException {
+        checkPrecision(in.readVInt());
+        hll.ensureCapacity(thisBucket + 1);
+        if (in.readBoolean() == LINEAR_COUNTING) {
+            final long size = in.readVLong();
+            for (long i = 0; i < size; ++i) {
+                mergeEncoded(thisBucket, in.readInt());
+            }
+        } else {
+            if (algorithm.get(thisBucket) != HYPERLOGLOG) {
+                upgradeToHll(thisBucket);
+            }
+            for (int i = 0; i < hll.m; ++i) {
+                hll.addRunLen(thisBucket, i, in.readByte());
+            }
+        }
+    }
+
+    private void checkPrecision(int otherPrecision) {
+        if (precision() != otherPrecision) {
+            throw new IllegalArgumentException("Cannot merge a HyperLogLog++ sketch with precision [" + otherPrecision
+                + "] into one with precision [" + precision() + "]");
+        }
+    }
+
     private void merge(long thisBucket, AbstractLinearCounting.HashesIterator values) {
         while (values.next()) {
-            final int encoded = values.value();
-            if (algorithm.get(thisBucket) == LINEAR_COUNTING) {
-                final int newSize = lc.addEncoded(thisBucket, encoded);
-                if (newSize > lc.threshold) {
-                    upgradeToHll(thisBucket);
-                }
-            } else {
-                hll.collectEncoded(thisBucket, encoded);
+            mergeEncoded(thisBucket, values.value());
+        }
+    }
+
+    private void mergeEncoded(long thisBucket, int encoded) {
+        if (algorithm.get(thisBucket) == LINEAR_COUNTING) {
+            final int newSize = lc.addEncoded(thisBucket, encoded);
+            if (newSize > lc.threshold) {
+                upgradeToHll(thisBucket);
             }
+        } else {
+            hll.collectEncoded(thisBucket, encoded);
         }
     }
 
@@ -208,7 +240,7 @@ public final class HyperLogLogPlusPlus extends AbstractHyperLogLogPlusPlus {
 
         HyperLogLog(BigArrays bigArrays, long initialBucketCount, int precision) {
             super(precision);
-            this.runLens =  bigArrays.newByteArray(initialBucketCount << precision);
+            this.runLens = bigArrays.newOffHeapByteArray(initialBucketCount << precision);
             this.bigArrays = bigArrays;
             this.iterator = new HyperLogLogIterator(this, precision, m);
         }
@@ -282,7 +314,6 @@ public final class HyperLogLogPlusPlus extends AbstractHyperLogLogPlusPlus {
 
         protected final int threshold;
         private final int mask;
-        private final BytesRef readSpare;
         private final ByteBuffer writeSpare;
         private final BigArrays bigArrays;
         private final LinearCountingIterator iterator;
@@ -299,7 +330,6 @@ public final class HyperLogLogPlusPlus extends AbstractHyperLogLogPlusPlus {
             threshold = (int) (capacity * MAX_LOAD_FACTOR);
             mask = capacity - 1;
             sizes = bigArrays.newIntArray(initialBucketCount);
-            readSpare = new BytesRef();
             writeSpare = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
             iterator = new LinearCountingIterator(this, capacity);
         }
@@ -342,8 +372,11 @@ public final class HyperLogLogPlusPlus extends AbstractHyperLogLogPlusPlus {
         }
 
         private int get(long bucketOrd, int index) {
-            hll.runLens.get(index(bucketOrd, index), 4, readSpare);
-            return ByteUtils.readIntLE(readSpare.bytes, readSpare.offset);
+            // read the int byte by byte: slicing it into a BytesRef copies it when runLens lives off-heap
+            final long i = index(bucketOrd, index);
+            final ByteArray runLens = hll.runLens;
+            return (runLens.get(i) & 0xFF) | (runLens.get(i + 1) & 0xFF) << 8 | (runLens.get(i + 2) & 0xFF) << 16
+                | (runLens.get(i + 3) & 0xFF) << 24;
         }
 
         private void set(long bucketOrd, int index, int value) {
@@ -89,6 +89,11 @@ public class PercentileRanksAggregationBuilder extends AbstractPercentilesAggreg
                     parent, subFactoriesBuilder, metadata, aggregatorSupplier);
     }
 
+    @Override
+    public boolean supportsSampling() {
+        return true;
+    }
+
     @Override
     public String getType() {
         return NAME;
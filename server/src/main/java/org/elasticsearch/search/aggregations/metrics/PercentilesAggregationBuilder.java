@@ -130,6 +130,11 @@ public class PercentilesAggregationBuilder extends AbstractPercentilesAggregatio
             context, parent, subFactoriesBuilder, metadata, aggregatorSupplier);
     }
 
+    @Override
+    public boolean supportsSampling() {
+        return true;
+    }
+
     @Override
     public String getType() {
         return NAME;
@@ -0,0 +1,275 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.metrics;
+
+import com.tdunning.math.stats.Centroid;
+import org.apache.lucene.util.IntroSorter;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.DoubleArray;
+import org.elasticsearch.common.util.IntArray;
+import org.elasticsearch.common.util.LongArray;
+
+import java.util.Arrays;
+
+/**
+ * Stores many t-digests, identified by a bucket number, in a handful of
+ * {@link BigArrays} so they don't cost an object graph per bucket and are
+ * accounted for by the request circuit breaker.
+ * <p>
+ * Each bucket owns a block of centroids in a shared arena. Values are
+ * appended to the block as centroids of weight one. When the block is full
+ * it either moves to a block twice as large or, once it has reached the
+ * size where that is worth it, it is compressed in place: its centroids are
+ * sorted by mean and neighbours are merged while they fit the same size
+ * bound that {@link TDigestState} uses. Blocks freed by moving are reused
+ * by buckets that grow later.
+ * <p>
+ * Digests are only turned into {@link TDigestState}s when they are needed
+ * for a result. Until a bucket is compressed the state contains the values
+ * that were added, so small buckets are exact.
+ */
+public final class TDigestArray implements Releasable {
+
+    private static final int MIN_CAPACITY = 4;
+    private static final int MIN_CAPACITY_SHIFT = Integer.numberOfTrailingZeros(MIN_CAPACITY);
+
+    private final BigArrays bigArrays;
+    private final double compression;
+    /**
+     * Blocks at least this large are compressed when they fill up rather
+     * than moved to a larger block.
+     */
+    private final int compressCapacity;
+    private final Sorter sorter = new Sorter();
+    /**
+     * The head of a linked list of free blocks for each capacity. The next
+     * block in the list is stored in the first mean of the block.
+     */
+    private final long[] freeBlocks = new long[Integer.SIZE - MIN_CAPACITY_SHIFT];
+
+    private LongArray starts;
+    private IntArray sizes;
+    private IntArray capacities;
+    private DoubleArray means;
+    private IntArray counts;
+    private long arenaSize;
+
+    public TDigestArray(double compression, BigArrays bigArrays, long initialBucketCount) {
+        this.bigArrays = bigArrays;
+        this.compression = compression;
+        int centroids = (int) Math.min(Integer.MAX_VALUE >> 2, Math.ceil(compression));
+        this.compressCapacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(centroids) << 1);
+        Arrays.fill(freeBlocks, -1);
+        boolean success = false;
+        try {
+            starts = bigArrays.newLongArray(initialBucketCount, false);
+            sizes = bigArrays.newIntArray(initialBucketCount, true);
+            capacities = bigArrays.newIntArray(initialBucketCount, true);
+            means = bigArrays.newDoubleArray(0, false);
+            counts = bigArrays.newIntArray(0, false);
+            success = true;
+        } finally {
+            if (success == false) {
+                close();
+            }
+        }
+    }
+
+    public double compression() {
+        return compression;
+    }
+
+    /**
+     * Add a value to the digest of a bucket.
+     */
+    public void add(long bucket, double value) {
+        add(bucket, value, 1);
+    }
+
+    /**
+     * Add a centroid to the digest of a bucket.
+     */
+    public void add(long bucket, double mean, int count) {
+        long index = nextFreeSlot(bucket);
+        means.set(index, mean);
+        counts.set(index, count);
+        sizes.increment(bucket, 1);
+    }
+
+    /**
+     * Add all centroids of {@code state} to the digest of a bucket.
+     */
+    public void add(long bucket, TDigestState state) {
+        for (Centroid centroid : state.centroids()) {
+            add(bucket, centroid.mean(), centroid.count());
+        }
+    }
+
+    /**
+     * Build the {@link TDigestState} for a bucket or {@code null} if nothing
+     * was added to the bucket.
+     */
+    public TDigestState toState(long bucket) {
+        if (bucket >= capacities.size() || sizes.get(bucket) == 0) {
+            return null;
+        }
+        long start = starts.get(bucket);
+        int size = compress(start, sizes.get(bucket));
+        sizes.set(bucket, size);
+        TDigestState state = new TDigestState(compression);
+        // the centroids are sorted by now so the state can't merge them back into fewer, less accurate centroids
+        for (long i = start; i < start + size; i++) {
+            state.add(means.get(i), counts.get(i));
+        }
+        return state;
+    }
+
+    /**
+     * The index in the arena where the next centroid of {@code bucket} goes.
+     */
+    private long nextFreeSlot(long bucket) {
+        if (bucket >= capacities.size()) {
+            starts = bigArrays.grow(starts, bucket + 1);
+            sizes = bigArrays.grow(sizes, bucket + 1);
+            capacities = bigArrays.grow(capacities, bucket + 1);
+        }
+        int size = sizes.get(bucket);
+        int capacity = capacities.get(bucket);
+        long start = starts.get(bucket);
+        if (size < capacity) {
+            return start + size;
+        }
+        if (capacity >= compressCapacity) {
+            size = compress(start, size);
+            sizes.set(bucket, size);
+            // keep the block unless compressing it couldn't free up a useful amount of room
+            if (size <= capacity - (capacity >> 2)) {
+                return start + size;
+            }
+        }
+        int newCapacity = capacity == 0 ? MIN_CAPACITY : capacity << 1;
+        long newStart = allocate(newCapacity);
+        for (int i = 0; i < size; i++) {
+            means.set(newStart + i, means.get(start + i));
+            counts.set(newStart + i, counts.get(start + i));
+        }
+        if (capacity > 0) {
+            free(start, capacity);
+        }
+        starts.set(bucket, newStart);
+        capacities.set(bucket, newCapacity);
+        return newStart + size;
+    }
+
+    private long allocate(int capacity) {
+        int freeList = freeList(capacity);
+        long start = freeBlocks[freeList];
+        if (start >= 0) {
+            freeBlocks[freeList] = Double.doubleToRawLongBits(means.get(start));
+            return start;
+        }
+        start = arenaSize;
+        arenaSize += capacity;
+        means = bigArrays.grow(means, arenaSize);
+        counts = bigArrays.grow(counts, arenaSize);
+        return start;
+    }
+
+    private void free(long start, int capacity) {
+        int freeList = freeList(capacity);
+        means.set(start, Double.longBitsToDouble(freeBlocks[freeList]));
+        freeBlocks[freeList] = start;
+    }
+
+    private static int freeList(int capacity) {
+        assert Integer.bitCount(capacity) == 1 && capacity >= MIN_CAPACITY;
+        return Integer.numberOfTrailingZeros(capacity) - MIN_CAPACITY_SHIFT;
+    }
+
+    /**
+     * Sort the centroids of a block and merge neighbours that fit the size
+     * bound of {@link TDigestState}, returning the number of centroids left.
+     * The bound is tight at the tails so the smallest and largest centroids
+     * are never merged into their neighbours.
+     */
+    private int compress(long start, int size) {
+        sorter.sort(start, size);
+        long total = 0;
+        for (long i = start; i < start + size; i++) {
+            total += counts.get(i);
+        }
+        int compressed = 0;
+        double mean = means.get(start);
+        long count = counts.get(start);
+        long before = 0;
+        for (long i = start + 1; i < start + size; i++) {
+            double nextMean = means.get(i);
+            int nextCount = counts.get(i);
+            long proposed = count + nextCount;
+            double q = (before + proposed / 2.0) / total;
+            if (proposed <= Integer.MAX_VALUE && proposed <= 4 * total * q * (1 - q) / compression) {
+                mean += (nextMean - mean) * nextCount / proposed;
+                count = proposed;
+            } else {
+                means.set(start + compressed, mean);
+                counts.set(start + compressed, (int) count);
+                compressed++;
+                before += count;
+                mean = nextMean;
+                count = nextCount;
+            }
+        }
+        means.set(start + compressed, mean);
+        counts.set(start + compressed, (int) count);
+        return compressed + 1;
+    }
+
+    @Override
+    public void close() {
+        Releasables.close(starts, sizes, capacities, means, counts);
+    }
+
+    /**
+     * Sorts the centroids of a block by mean without allocating.
+     */
+    private class Sorter extends IntroSorter {
+        private long offset;
+        private double pivot;
+
+        void sort(long start, int size) {
+            offset = start;
+            sort(0, size);
+        }
+
+        @Override
+        protected void swap(int i, int j) {
+            long a = offset + i;
+            long b = offset + j;
+            means.set(a, means.set(b, means.get(a)));
+            counts.set(a, counts.set(b, counts.get(a)));
+        }
+
+        @Override
+        protected int compare(int i, int j) {
+            return Double.compare(means.get(offset + i), means.get(offset + j));
+        }
+
+        @Override
+        protected void setPivot(int i) {
+            pivot = means.get(offset + i);
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+            return Double.compare(pivot, means.get(offset + j));
+        }
+    }
+}
@@ -113,6 +113,11 @@ public class WeightedAvgAggregationBuilder extends MultiValuesSourceAggregationB
         return builder;
     }
 
+    @Override
+    public boolean supportsSampling() {
+        return true;
+    }
+
     @Override
     public String getType() {
         return NAME;
@@ -25,6 +25,7 @@ import org.elasticsearch.search.aggregations.support.AggregationPath;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -146,36 +147,103 @@ public class BucketHelpers {
     public static Double resolveBucketValue(MultiBucketsAggregation agg,
             InternalMultiBucketAggregation.InternalBucket bucket, List<String> aggPathAsList, GapPolicy gapPolicy) {
         try {
-            Object propertyValue = bucket.getProperty(agg.getName(), aggPathAsList);
+            return resolveBucketValueOrThrow(agg, bucket, aggPathAsList, gapPolicy);
+        } catch (InvalidAggregationPathException e) {
+            return null;
+        }
+    }
 
-            if (propertyValue == null) {
-                throw new AggregationExecutionException(AbstractPipelineAggregationBuilder.BUCKETS_PATH_FIELD.getPreferredName()
-                        + " must reference either a number value or a single value numeric metric aggregation");
-            } else {
-                double value;
-                if (propertyValue instanceof Number) {
-                    value = ((Number) propertyValue).doubleValue();
-                } else if (propertyValue instanceof InternalNumericMetricsAggregation.SingleValue) {
-                    value = ((InternalNumericMetricsAggregation.SingleValue) propertyValue).value();
-                } else {
-                    throw formatResolutionError(agg, aggPathAsList, propertyValue);
+    /**
+     * Resolve the value at a path for every bucket in {@code buckets} at
+     * once, parsing the path a single time and keeping the values in an
+     * array rather than boxing them. Pipeline aggregations that need the
+     * value in many buckets should prefer this to calling
+     * {@link #resolveBucketValue} for each bucket.
+     */
+    public static BucketValues resolveBucketValues(MultiBucketsAggregation agg,
+            List<? extends InternalMultiBucketAggregation.InternalBucket> buckets, String aggPath, GapPolicy gapPolicy) {
+        List<String> aggPathAsList = AggregationPath.parse(aggPath).getPathElementsAsStringList();
+        double[] values = new double[buckets.size()];
+        BitSet unresolved = null;
+        for (int b = 0; b < values.length; b++) {
+            try {
+                values[b] = resolveBucketValueOrThrow(agg, buckets.get(b), aggPathAsList, gapPolicy);
+            } catch (InvalidAggregationPathException e) {
+                if (unresolved == null) {
+                    unresolved = new BitSet(values.length);
                 }
-                // doc count never has missing values so gap policy doesn't apply here
-                boolean isDocCountProperty = aggPathAsList.size() == 1 && "_count".equals(aggPathAsList.get(0));
-                if (Double.isInfinite(value) || Double.isNaN(value) || (bucket.getDocCount() == 0 && isDocCountProperty == false)) {
-                    switch (gapPolicy) {
-                    case INSERT_ZEROS:
-                        return 0.0;
-                    case SKIP:
-                    default:
-                        return Double.NaN;
-                    }
-                } else {
-                    return value;
+                unresolved.set(b);
+                values[b] = Double.NaN;
+            }
+        }
+        return new BucketValues(values, unresolved);
+    }
+
+    private static double resolveBucketValueOrThrow(MultiBucketsAggregation agg,
+            InternalMultiBucketAggregation.InternalBucket bucket, List<String> aggPathAsList, GapPolicy gapPolicy) {
+        Object propertyValue = bucket.getProperty(agg.getName(), aggPathAsList);
+
+        if (propertyValue == null) {
+            throw new AggregationExecutionException(AbstractPipelineAggregationBuilder.BUCKETS_PATH_FIELD.getPreferredName()
+                    + " must reference either a number value or a single value numeric metric aggregation");
+        } else {
+            double value;
+            if (propertyValue instanceof Number) {
+                value = ((Number) propertyValue).doubleValue();
+            } else if (propertyValue instanceof InternalNumericMetricsAggregation.SingleValue) {
+                value = ((InternalNumericMetricsAggregation.SingleValue) propertyValue).value();
+            } else {
+                throw formatResolutionError(agg, aggPathAsList, propertyValue);
+            }
+            // doc count never has missing values so gap policy doesn't apply here
+            boolean isDocCountProperty = aggPathAsList.size() == 1 && "_count".equals(aggPathAsList.get(0));
+            if (Double.isInfinite(value) || Double.isNaN(value) || (bucket.getDocCount() == 0 && isDocCountProperty == false)) {
+                switch (gapPolicy) {
+                case INSERT_ZEROS:
+                    return 0.0;
+                case SKIP:
+                default:
+                    return Double.NaN;
                 }
+            } else {
+                return value;
             }
-        } catch (InvalidAggregationPathException e) {
-            return null;
+        }
+    }
+
+    /**
+     * The values at a path for each bucket of a multi-bucket aggregation,
+     * in bucket order. Buckets where the path doesn't resolve are the ones
+     * that {@link #resolveBucketValue} would return {@code null} for.
+     */
+    public static final class BucketValues {
+        private final double[] values;
+        private final BitSet unresolved;
+
+        private BucketValues(double[] values, BitSet unresolved) {
+            this.values = values;
+            this.unresolved = unresolved;
+        }
+
+        /**
+         * The number of buckets.
+         */
+        public int size() {
+            return values.length;
+        }
+
+        /**
+         * Did the path resolve in the bucket?
+         */
+        public boolean isResolved(int bucket) {
+            return unresolved == null || unresolved.get(bucket) == false;
+        }
+
+        /**
+         * The value for a bucket, {@link Double#NaN} if it didn't resolve.
+         */
+        public double get(int bucket) {
+            return values[bucket];
         }
     }
 
@@ -15,6 +15,7 @@ import org.elasticsearch.search.aggregations.InternalAggregation;
 import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
 import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
+import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.BucketValues;
 import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.GapPolicy;
 
 import java.util.ArrayList;
@@ -24,8 +25,6 @@ import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
-import static org.elasticsearch.search.aggregations.pipeline.BucketHelpers.resolveBucketValue;
-
 public class BucketScriptPipelineAggregator extends PipelineAggregator {
     private final DocValueFormat formatter;
     private final GapPolicy gapPolicy;
@@ -47,29 +46,45 @@ public class BucketScriptPipelineAggregator extends PipelineAggregator {
                 (InternalMultiBucketAggregation<InternalMultiBucketAggregation, InternalMultiBucketAggregation.InternalBucket>) aggregation;
         List<? extends InternalMultiBucketAggregation.InternalBucket> buckets = originalAgg.getBuckets();
 
+        // We compile the script even if we don't run it so we respect the settings that restrict scripts.
         BucketAggregationScript.Factory factory =
             reduceContext.scriptService().compile(script, BucketAggregationScript.CONTEXT);
-        List<InternalMultiBucketAggregation.InternalBucket> newBuckets = new ArrayList<>();
-        for (InternalMultiBucketAggregation.InternalBucket bucket : buckets) {
-            Map<String, Object> vars = new HashMap<>();
-            if (script.getParams() != null) {
-                vars.putAll(script.getParams());
-            }
+        List<String> varNames = new ArrayList<>(bucketsPathsMap.keySet());
+        BuiltInPipelineScripts.BucketExpression builtIn = BuiltInPipelineScripts.bucketExpression(script, varNames);
+        BucketValues[] columns = new BucketValues[varNames.size()];
+        for (int v = 0; v < columns.length; v++) {
+            columns[v] = originalAgg.resolveBucketValues(bucketsPathsMap.get(varNames.get(v)), gapPolicy);
+        }
+        double[] bucketVars = new double[columns.length];
+        List<InternalMultiBucketAggregation.InternalBucket> newBuckets = new ArrayList<>(buckets.size());
+        for (int b = 0; b < buckets.size(); b++) {
+            InternalMultiBucketAggregation.InternalBucket bucket = buckets.get(b);
             boolean skipBucket = false;
-            for (Map.Entry<String, String> entry : bucketsPathsMap.entrySet()) {
-                String varName = entry.getKey();
-                String bucketsPath = entry.getValue();
-                Double value = resolveBucketValue(originalAgg, bucket, bucketsPath, gapPolicy);
-                if (GapPolicy.SKIP == gapPolicy && (value == null || Double.isNaN(value))) {
+            boolean allResolved = true;
+            for (int v = 0; v < columns.length; v++) {
+                if (GapPolicy.SKIP == gapPolicy && (columns[v].isResolved(b) == false || Double.isNaN(columns[v].get(b)))) {
                     skipBucket = true;
                     break;
                 }
-                vars.put(varName, value);
+                allResolved &= columns[v].isResolved(b);
+                bucketVars[v] = columns[v].get(b);
             }
             if (skipBucket) {
                 newBuckets.add(bucket);
             } else {
-                Number returned = factory.newInstance(vars).execute();
+                Number returned;
+                if (builtIn != null && allResolved) {
+                    returned = builtIn.execute(bucketVars);
+                } else {
+                    Map<String, Object> vars = new HashMap<>();
+                    if (script.getParams() != null) {
+                        vars.putAll(script.getParams());
+                    }
+                    for (int v = 0; v < columns.length; v++) {
+                        vars.put(varNames.get(v), columns[v].isResolved(b) ? bucketVars[v] : null);
+                    }
+                    returned = factory.newInstance(vars).execute();
+                }
                 if (returned == null) {
                     newBuckets.add(bucket);
                 } else {
@@ -0,0 +1,375 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.pipeline;
+
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleBinaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recognizes the pipeline aggregation scripts that only call built in
+ * functions so we can run them over arrays of bucket values without building
+ * a {@link Map} of variables or invoking a script for every bucket. Anything
+ * we don't recognize runs as a script like it always has. Everything we do
+ * recognize must produce exactly the same result as the script would.
+ */
+final class BuiltInPipelineScripts {
+    private static final String PAINLESS = Script.DEFAULT_SCRIPT_LANG;
+    private static final String EXPRESSION = "expression";
+
+    private static final Pattern MOVING_FUNCTION = Pattern.compile(
+        "\\s*(?:return\\s+)?MovingFunctions\\s*\\.\\s*(\\w+)\\s*\\(\\s*values\\s*((?:,[^,()]*)*)\\)\\s*;?\\s*"
+    );
+    private static final Pattern MOVING_STD_DEV = Pattern.compile(
+        "\\s*(?:return\\s+)?MovingFunctions\\s*\\.\\s*stdDev\\s*\\(\\s*values\\s*,"
+            + "\\s*MovingFunctions\\s*\\.\\s*unweightedAvg\\s*\\(\\s*values\\s*\\)\\s*\\)\\s*;?\\s*"
+    );
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(?:\\.\\d+)?");
+    private static final Pattern PARAM = Pattern.compile("params\\s*(?:\\.\\s*(\\w+)|\\[\\s*(['\"])(\\w+)\\2\\s*\\])");
+
+    private BuiltInPipelineScripts() {}
+
+    /**
+     * A moving function computed over {@code values[from:to]}.
+     */
+    @FunctionalInterface
+    interface MovingFunction {
+        double apply(double[] values, int from, int to);
+    }
+
+    /**
+     * Build a {@link MovingFunction} for scripts like
+     * {@code MovingFunctions.unweightedAvg(values)}, returning {@code null}
+     * if the script does anything else.
+     */
+    static MovingFunction movingFunction(Script script) {
+        if (script.getType() != ScriptType.INLINE || false == PAINLESS.equals(script.getLang())) {
+            return null;
+        }
+        String source = script.getIdOrCode();
+        if (MOVING_STD_DEV.matcher(source).matches()) {
+            return (values, from, to) -> MovingFunctions.stdDev(values, from, to, MovingFunctions.unweightedAvg(values, from, to));
+        }
+        Matcher m = MOVING_FUNCTION.matcher(source);
+        if (false == m.matches()) {
+            return null;
+        }
+        String[] args = m.group(2).isEmpty() ? new String[0] : m.group(2).substring(1).split(",");
+        double[] constants = new double[args.length];
+        for (int i = 0; i < args.length; i++) {
+            Double constant = constant(args[i].trim(), script.getParams());
+            if (constant == null) {
+                return null;
+            }
+            constants[i] = constant;
+        }
+        switch (m.group(1) + "/" + args.length) {
+            case "max/0":
+                return MovingFunctions::max;
+            case "min/0":
+                return MovingFunctions::min;
+            case "sum/0":
+                return MovingFunctions::sum;
+            case "unweightedAvg/0":
+                return MovingFunctions::unweightedAvg;
+            case "linearWeightedAvg/0":
+                return MovingFunctions::linearWeightedAvg;
+            case "ewma/1":
+                return (values, from, to) -> MovingFunctions.ewma(values, from, to, constants[0]);
+            case "holt/2":
+                return (values, from, to) -> MovingFunctions.holt(values, from, to, constants[0], constants[1]);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Resolve a numeric literal or a numeric script parameter.
+     */
+    private static Double constant(String arg, Map<String, Object> params) {
+        if (NUMBER.matcher(arg).matches()) {
+            return Double.parseDouble(arg);
+        }
+        Matcher m = PARAM.matcher(arg);
+        if (false == m.matches()) {
+            return null;
+        }
+        Object value = params == null ? null : params.get(m.group(1) != null ? m.group(1) : m.group(3));
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    /**
+     * Arithmetic over the values of a bucket.
+     */
+    @FunctionalInterface
+    interface BucketExpression {
+        /**
+         * Evaluate the expression.
+         * @param vars the value of each variable in the order they were
+         *        passed to {@link #bucketExpression}
+         */
+        double execute(double[] vars);
+    }
+
+    /**
+     * Build a {@link BucketExpression} for {@code bucket_script}s that only
+     * add, subtract, multiply, divide and take the remainder of their
+     * variables, like {@code params.sales / params.count}, returning
+     * {@code null} if the script does anything else.
+     * <p>
+     * We refuse expressions that combine two constants because painless
+     * would do integer arithmetic on them.
+     */
+    static BucketExpression bucketExpression(Script script, List<String> varNames) {
+        if (script.getType() != ScriptType.INLINE) {
+            return null;
+        }
+        boolean painless = PAINLESS.equals(script.getLang());
+        if (false == painless && false == EXPRESSION.equals(script.getLang())) {
+            return null;
+        }
+        ExpressionParser parser = new ExpressionParser(script.getIdOrCode(), painless, varNames, script.getParams());
+        return parser.parse();
+    }
+
+    private abstract static class Node implements BucketExpression {
+        /**
+         * Does this node always evaluate to the same value?
+         */
+        abstract boolean constant();
+    }
+
+    /**
+     * A small recursive descent parser for arithmetic expressions.
+     */
+    private static class ExpressionParser {
+        private final String source;
+        private final boolean painless;
+        private final List<String> varNames;
+        private final Map<String, Object> params;
+        private int pos;
+
+        ExpressionParser(String source, boolean painless, List<String> varNames, Map<String, Object> params) {
+            this.source = source;
+            this.painless = painless;
+            this.varNames = varNames;
+            this.params = params;
+        }
+
+        BucketExpression parse() {
+            skipWhitespace();
+            if (painless && source.startsWith("return", pos)
+                && pos + 6 < source.length() && Character.isWhitespace(source.charAt(pos + 6))) {
+                pos += 6;
+            }
+            Node node = parseSum();
+            if (node == null || node.constant()) {
+                return null;
+            }
+            skipWhitespace();
+            if (painless && pos < source.length() && source.charAt(pos) == ';') {
+                pos++;
+                skipWhitespace();
+            }
+            return pos == source.length() ? node : null;
+        }
+
+        private Node parseSum() {
+            Node lhs = parseProduct();
+            while (lhs != null) {
+                skipWhitespace();
+                if (pos == source.length()) {
+                    return lhs;
+                }
+                char op = source.charAt(pos);
+                if (op != '+' && op != '-') {
+                    return lhs;
+                }
+                pos++;
+                lhs = binary(op, lhs, parseProduct());
+            }
+            return null;
+        }
+
+        private Node parseProduct() {
+            Node lhs = parseUnary();
+            while (lhs != null) {
+                skipWhitespace();
+                if (pos == source.length()) {
+                    return lhs;
+                }
+                char op = source.charAt(pos);
+                if (op != '*' && op != '/' && op != '%') {
+                    return lhs;
+                }
+                pos++;
+                lhs = binary(op, lhs, parseUnary());
+            }
+            return null;
+        }
+
+        private Node parseUnary() {
+            skipWhitespace();
+            if (pos < source.length() && source.charAt(pos) == '-') {
+                pos++;
+                Node operand = parseUnary();
+                if (operand == null) {
+                    return null;
+                }
+                return new Node() {
+                    @Override
+                    boolean constant() {
+                        return operand.constant();
+                    }
+
+                    @Override
+                    public double execute(double[] vars) {
+                        return -operand.execute(vars);
+                    }
+                };
+            }
+            return parsePrimary();
+        }
+
+        private Node parsePrimary() {
+            skipWhitespace();
+            if (pos == source.length()) {
+                return null;
+            }
+            char c = source.charAt(pos);
+            if (c == '(') {
+                pos++;
+                Node inner = parseSum();
+                skipWhitespace();
+                if (inner == null || pos == source.length() || source.charAt(pos) != ')') {
+                    return null;
+                }
+                pos++;
+                return inner;
+            }
+            if (Character.isDigit(c)) {
+                return parseNumber();
+            }
+            return parseVariable();
+        }
+
+        private Node parseNumber() {
+            int start = pos;
+            while (pos < source.length() && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                pos++;
+            }
+            // Suffixes like 2L or 2f change the type of the arithmetic in painless
+            if (pos < source.length() && Character.isLetter(source.charAt(pos))) {
+                return null;
+            }
+            String number = source.substring(start, pos);
+            if (false == NUMBER.matcher(number).matches()) {
+                return null;
+            }
+            return literal(Double.parseDouble(number));
+        }
+
+        private Node parseVariable() {
+            String name;
+            if (painless) {
+                Matcher m = PARAM.matcher(source);
+                m.region(pos, source.length());
+                if (false == m.lookingAt()) {
+                    return null;
+                }
+                pos = m.end();
+                name = m.group(1) != null ? m.group(1) : m.group(3);
+            } else {
+                int start = pos;
+                while (pos < source.length() && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) {
+                    pos++;
+                }
+                if (start == pos) {
+                    return null;
+                }
+                name = source.substring(start, pos);
+            }
+            int var = varNames.indexOf(name);
+            if (var >= 0) {
+                return new Node() {
+                    @Override
+                    boolean constant() {
+                        return false;
+                    }
+
+                    @Override
+                    public double execute(double[] vars) {
+                        return vars[var];
+                    }
+                };
+            }
+            Object param = params == null ? null : params.get(name);
+            return param instanceof Number ? literal(((Number) param).doubleValue()) : null;
+        }
+
+        private static Node literal(double value) {
+            return new Node() {
+                @Override
+                boolean constant() {
+                    return true;
+                }
+
+                @Override
+                public double execute(double[] vars) {
+                    return value;
+                }
+            };
+        }
+
+        private static Node binary(char op, Node lhs, Node rhs) {
+            if (rhs == null || (lhs.constant() && rhs.constant())) {
+                return null;
+            }
+            switch (op) {
+                case '+':
+                    return binary(lhs, rhs, (l, r) -> l + r);
+                case '-':
+                    return binary(lhs, rhs, (l, r) -> l - r);
+                case '*':
+                    return binary(lhs, rhs, (l, r) -> l * r);
+                case '/':
+                    return binary(lhs, rhs, (l, r) -> l / r);
+                case '%':
+                    return binary(lhs, rhs, (l, r) -> l % r);
+                default:
+                    throw new IllegalArgumentException("unknown operator [" + op + "]");
+            }
+        }
+
+        private static Node binary(Node lhs, Node rhs, DoubleBinaryOperator op) {
+            return new Node() {
+                @Override
+                boolean constant() {
+                    return false;
+                }
+
+                @Override
+                public double execute(double[] vars) {
+                    return op.applyAsDouble(lhs.execute(vars), rhs.execute(vars));
+                }
+            };
+        }
+
+        private void skipWhitespace() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
 import org.elasticsearch.search.aggregations.bucket.histogram.HistogramFactory;
+import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.BucketValues;
 import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.GapPolicy;
 
 import java.util.ArrayList;
@@ -23,8 +24,6 @@ import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
-import static org.elasticsearch.search.aggregations.pipeline.BucketHelpers.resolveBucketValue;
-
 public class CumulativeSumPipelineAggregator extends PipelineAggregator {
     private final DocValueFormat formatter;
 
@@ -42,12 +41,14 @@ public class CumulativeSumPipelineAggregator extends PipelineAggregator {
         List<? extends InternalMultiBucketAggregation.InternalBucket> buckets = histo.getBuckets();
         HistogramFactory factory = (HistogramFactory) histo;
         List<Bucket> newBuckets = new ArrayList<>(buckets.size());
+        BucketValues values = histo.resolveBucketValues(bucketsPaths()[0], GapPolicy.INSERT_ZEROS);
         double sum = 0;
-        for (InternalMultiBucketAggregation.InternalBucket bucket : buckets) {
-            Double thisBucketValue = resolveBucketValue(histo, bucket, bucketsPaths()[0], GapPolicy.INSERT_ZEROS);
+        for (int b = 0; b < buckets.size(); b++) {
+            InternalMultiBucketAggregation.InternalBucket bucket = buckets.get(b);
+            double thisBucketValue = values.get(b);
 
             // Only increment the sum if it's a finite value, otherwise "increment by zero" is correct
-            if (thisBucketValue != null && thisBucketValue.isInfinite() == false && thisBucketValue.isNaN() == false) {
+            if (Double.isInfinite(thisBucketValue) == false && Double.isNaN(thisBucketValue) == false) {
                 sum += thisBucketValue;
             }
 
@@ -15,6 +15,7 @@ import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation.Bucket;
 import org.elasticsearch.search.aggregations.bucket.histogram.HistogramFactory;
+import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.BucketValues;
 import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.GapPolicy;
 
 import java.util.ArrayList;
@@ -23,8 +24,6 @@ import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
-import static org.elasticsearch.search.aggregations.pipeline.BucketHelpers.resolveBucketValue;
-
 public class DerivativePipelineAggregator extends PipelineAggregator {
     private final DocValueFormat formatter;
     private final GapPolicy gapPolicy;
@@ -46,13 +45,17 @@ public class DerivativePipelineAggregator extends PipelineAggregator {
         List<? extends InternalMultiBucketAggregation.InternalBucket> buckets = histo.getBuckets();
         HistogramFactory factory = (HistogramFactory) histo;
 
-        List<Bucket> newBuckets = new ArrayList<>();
+        List<Bucket> newBuckets = new ArrayList<>(buckets.size());
+        BucketValues values = histo.resolveBucketValues(bucketsPaths()[0], gapPolicy);
         Number lastBucketKey = null;
-        Double lastBucketValue = null;
-        for (InternalMultiBucketAggregation.InternalBucket bucket : buckets) {
+        boolean lastBucketResolved = false;
+        double lastBucketValue = 0;
+        for (int b = 0; b < buckets.size(); b++) {
+            InternalMultiBucketAggregation.InternalBucket bucket = buckets.get(b);
             Number thisBucketKey = factory.getKey(bucket);
-            Double thisBucketValue = resolveBucketValue(histo, bucket, bucketsPaths()[0], gapPolicy);
-            if (lastBucketValue != null && thisBucketValue != null) {
+            boolean thisBucketResolved = values.isResolved(b);
+            double thisBucketValue = values.get(b);
+            if (lastBucketResolved && thisBucketResolved) {
                 double gradient = thisBucketValue - lastBucketValue;
                 double xDiff = -1;
                 if (xAxisUnits != null) {
@@ -68,6 +71,7 @@ public class DerivativePipelineAggregator extends PipelineAggregator {
                 newBuckets.add(bucket);
             }
             lastBucketKey = thisBucketKey;
+            lastBucketResolved = thisBucketResolved;
             lastBucketValue = thisBucketValue;
         }
         return factory.createAggregation(newBuckets);
@@ -15,16 +15,16 @@ import org.elasticsearch.search.aggregations.InternalAggregations;
 import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
 import org.elasticsearch.search.aggregations.bucket.histogram.HistogramFactory;
+import org.elasticsearch.search.aggregations.pipeline.BucketHelpers.BucketValues;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
-import static org.elasticsearch.search.aggregations.pipeline.BucketHelpers.resolveBucketValue;
-
 /**
  * This pipeline aggregation gives the user the ability to script functions that "move" across a window
  * of data, instead of single data points.  It is the scripted version of MovingAvg pipeline agg.
@@ -41,6 +41,9 @@ import static org.elasticsearch.search.aggregations.pipeline.BucketHelpers.resol
  *  - holtWintersMovAvg
  *
  *  The user can also define any arbitrary logic via their own scripting, or combine with the above methods.
+ *
+ *  Scripts that just call one of those methods on the window are computed directly over an array of the
+ *  bucket values rather than by invoking the script for every bucket.
  */
 public class MovFnPipelineAggregator extends PipelineAggregator {
     private final DocValueFormat formatter;
@@ -69,42 +72,44 @@ public class MovFnPipelineAggregator extends PipelineAggregator {
         List<? extends InternalMultiBucketAggregation.InternalBucket> buckets = histo.getBuckets();
         HistogramFactory factory = (HistogramFactory) histo;
 
-        List<MultiBucketsAggregation.Bucket> newBuckets = new ArrayList<>();
+        List<MultiBucketsAggregation.Bucket> newBuckets = new ArrayList<>(buckets.size());
 
-        // Initialize the script
+        // Initialize the script. We compile it even if we don't run it so we respect the settings that restrict scripts.
         MovingFunctionScript.Factory scriptFactory = reduceContext.scriptService().compile(script, MovingFunctionScript.CONTEXT);
+        BuiltInPipelineScripts.MovingFunction builtIn = BuiltInPipelineScripts.movingFunction(script);
         Map<String, Object> vars = new HashMap<>();
         if (script.getParams() != null) {
             vars.putAll(script.getParams());
         }
 
-        MovingFunctionScript executableScript = scriptFactory.newInstance();
+        MovingFunctionScript executableScript = builtIn == null ? scriptFactory.newInstance() : null;
 
-        List<Double> values = buckets.stream()
-            .map(b -> resolveBucketValue(histo, b, bucketsPaths()[0], gapPolicy))
-            .filter(v -> v != null && v.isNaN() == false)
-            .collect(Collectors.toList());
+        BucketValues bucketValues = histo.resolveBucketValues(bucketsPaths()[0], gapPolicy);
+        double[] values = new double[bucketValues.size()];
+        int valueCount = 0;
+        for (int b = 0; b < bucketValues.size(); b++) {
+            if (bucketValues.isResolved(b) && Double.isNaN(bucketValues.get(b)) == false) {
+                values[valueCount++] = bucketValues.get(b);
+            }
+        }
 
         int index = 0;
-        for (InternalMultiBucketAggregation.InternalBucket bucket : buckets) {
-            Double thisBucketValue = resolveBucketValue(histo, bucket, bucketsPaths()[0], gapPolicy);
+        for (int b = 0; b < buckets.size(); b++) {
+            InternalMultiBucketAggregation.InternalBucket bucket = buckets.get(b);
 
             // Default is to reuse existing bucket.  Simplifies the rest of the logic,
             // since we only change newBucket if we can add to it
             MultiBucketsAggregation.Bucket newBucket = bucket;
 
-            if (thisBucketValue != null && thisBucketValue.isNaN() == false) {
+            if (bucketValues.isResolved(b) && Double.isNaN(bucketValues.get(b)) == false) {
 
                 // The custom context mandates that the script returns a double (not Double) so we
                 // don't need null checks, etc.
-                int fromIndex = clamp(index - window + shift, values);
-                int toIndex = clamp(index + shift, values);
-                double movavg = executableScript.execute(
-                    vars,
-                    values.subList(fromIndex, toIndex).stream()
-                        .mapToDouble(Double::doubleValue)
-                        .toArray()
-                );
+                int fromIndex = clamp(index - window + shift, valueCount);
+                int toIndex = clamp(index + shift, valueCount);
+                double movavg = builtIn != null
+                    ? builtIn.apply(values, fromIndex, toIndex)
+                    : executableScript.execute(vars, Arrays.copyOfRange(values, fromIndex, toIndex));
 
                 List<InternalAggregation> aggs = StreamSupport
                     .stream(bucket.getAggregations().spliterator(), false)
@@ -120,12 +125,12 @@ public class MovFnPipelineAggregator extends PipelineAggregator {
         return factory.createAggregation(newBuckets);
     }
 
-    private int clamp(int index, List<Double> list) {
+    private int clamp(int index, int size) {
         if (index < 0) {
             return 0;
         }
-        if (index > list.size()) {
-            return list.size();
+        if (index > size) {
+            return size;
         }
         return index;
     }
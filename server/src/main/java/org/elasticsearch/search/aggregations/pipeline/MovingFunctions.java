@@ -20,7 +20,15 @@ public class MovingFunctions {
      * If all values are missing/null/NaN, the return value will be NaN
      */
     public static double max(double[] values) {
-        return Arrays.stream(values).max().orElse(Double.NaN);
+        return max(values, 0, values.length);
+    }
+
+    /**
+     * Find the maximum value in {@code values[from:to]}. Used by
+     * {@link MovFnPipelineAggregator} to slide the window without copying it.
+     */
+    static double max(double[] values, int from, int to) {
+        return Arrays.stream(values, from, to).max().orElse(Double.NaN);
     }
 
     /**
@@ -28,7 +36,14 @@ public class MovingFunctions {
      * If all values are missing/null/NaN, the return value will be NaN
      */
     public static double min(double[] values) {
-        return Arrays.stream(values).min().orElse(Double.NaN);
+        return min(values, 0, values.length);
+    }
+
+    /**
+     * Find the minimum value in {@code values[from:to]}.
+     */
+    static double min(double[] values, int from, int to) {
+        return Arrays.stream(values, from, to).min().orElse(Double.NaN);
     }
 
     /**
@@ -36,10 +51,17 @@ public class MovingFunctions {
      * If all values are missing/null/NaN, the return value will be 0.0
      */
     public static double sum(double[] values) {
-        if (values.length == 0) {
+        return sum(values, 0, values.length);
+    }
+
+    /**
+     * Find the sum of {@code values[from:to]}.
+     */
+    static double sum(double[] values, int from, int to) {
+        if (from == to) {
             return 0.0;
         }
-        return Arrays.stream(values).map(value -> {
+        return Arrays.stream(values, from, to).map(value -> {
             if (Double.isNaN(value) == false) {
                 return value;
             }
@@ -55,9 +77,17 @@ public class MovingFunctions {
      * The average is based on the count of non-null, non-NaN values.
      */
     public static double unweightedAvg(double[] values) {
+        return unweightedAvg(values, 0, values.length);
+    }
+
+    /**
+     * Calculate a simple unweighted (arithmetic) moving average of {@code values[from:to]}.
+     */
+    static double unweightedAvg(double[] values, int from, int to) {
         double avg = 0.0;
         long count = 0;
-        for (double v : values) {
+        for (int i = from; i < to; i++) {
+            double v = values[i];
             if (Double.isNaN(v) == false) {
                 avg += v;
                 count += 1;
@@ -74,12 +104,20 @@ public class MovingFunctions {
      * The average is based on the count of non-null, non-NaN values.
      */
     public static double stdDev(double[] values, double avg) {
+        return stdDev(values, 0, values.length, avg);
+    }
+
+    /**
+     * Calculate a standard deviation over {@code values[from:to]} using the provided average.
+     */
+    static double stdDev(double[] values, int from, int to, double avg) {
         if (Double.isNaN(avg)) {
             return Double.NaN;
         } else {
             long count = 0;
             double squaredMean = 0;
-            for (double v : values) {
+            for (int i = from; i < to; i++) {
+                double v = values[i];
                 if (Double.isNaN(v) == false) {
                     squaredMean += Math.pow(v - avg, 2);
                     count += 1;
@@ -98,11 +136,19 @@ public class MovingFunctions {
      * The average is based on the count of non-null, non-NaN values.
      */
     public static double linearWeightedAvg(double[] values) {
+        return linearWeightedAvg(values, 0, values.length);
+    }
+
+    /**
+     * Calculate a linearly weighted moving average of {@code values[from:to]}.
+     */
+    static double linearWeightedAvg(double[] values, int from, int to) {
         double avg = 0;
         long totalWeight = 1;
         long current = 1;
 
-        for (double v : values) {
+        for (int i = from; i < to; i++) {
+            double v = values[i];
             if (Double.isNaN(v) == false) {
                 avg += v * current;
                 totalWeight += current;
@@ -127,10 +173,18 @@ public class MovingFunctions {
      * @param alpha A double between 0-1 inclusive, controls data smoothing
      */
     public static double ewma(double[] values, double alpha) {
+        return ewma(values, 0, values.length, alpha);
+    }
+
+    /**
+     * Calculate a exponentially weighted moving average of {@code values[from:to]}.
+     */
+    static double ewma(double[] values, int from, int to, double alpha) {
         double avg = Double.NaN;
         boolean first = true;
 
-        for (double v : values) {
+        for (int i = from; i < to; i++) {
+            double v = values[i];
             if (Double.isNaN(v) == false) {
                 if (first) {
                     avg = v;
@@ -160,7 +214,14 @@ public class MovingFunctions {
      * @param beta a double between 0-1 inclusive, controls trend smoothing
      */
     public static double holt(double[] values, double alpha, double beta) {
-        if (values.length == 0) {
+        return holt(values, 0, values.length, alpha, beta);
+    }
+
+    /**
+     * Calculate a doubly exponential weighted moving average of {@code values[from:to]}.
+     */
+    static double holt(double[] values, int from, int to, double alpha, double beta) {
+        if (from == to) {
             return Double.NaN;
         }
 
@@ -175,7 +236,8 @@ public class MovingFunctions {
         int counter = 0;
 
         Double last;
-        for (double v : values) {
+        for (int i = from; i < to; i++) {
+            double v = values[i];
             if (Double.isNaN(v) == false) {
                 last = v;
                 if (counter == 0) {
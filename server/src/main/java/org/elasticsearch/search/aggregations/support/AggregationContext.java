@@ -44,6 +44,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
@@ -244,6 +245,24 @@ public abstract class AggregationContext implements Releasable {
      */
     public abstract boolean isCacheable();
 
+    /**
+     * State that lives as long as the point in time that this request runs
+     * against, or {@code null} if it doesn't run against a point in time.
+     * Aggregations can keep things in it for the requests that follow this
+     * one, like the request for the next page. Values that are
+     * {@link Releasable} are released when the point in time is closed.
+     */
+    @Nullable
+    public abstract ConcurrentMap<String, Object> pointInTimeState();
+
+    /**
+     * The circuit breaker used to account for what aggs keep in the
+     * {@link #pointInTimeState()}. Unlike {@link #breaker()} the bytes
+     * outlive this request so they mustn't come out of the bytes
+     * preallocated for it.
+     */
+    public abstract CircuitBreaker pointInTimeBreaker();
+
     /**
      * Implementation of {@linkplain AggregationContext} for production usage
      * that wraps our ubiquitous {@link SearchExecutionContext} and anything else
@@ -264,6 +283,8 @@ public abstract class AggregationContext implements Releasable {
         private final LongSupplier relativeTimeInMillis;
         private final Supplier<Boolean> isCancelled;
         private final Function<Query, Query> filterQuery;
+        private final Supplier<ConcurrentMap<String, Object>> pointInTimeState;
+        private final CircuitBreaker pointInTimeBreaker;
 
         private final List<Aggregator> releaseMe = new ArrayList<>();
 
@@ -279,7 +300,8 @@ public abstract class AggregationContext implements Releasable {
             int randomSeed,
             LongSupplier relativeTimeInMillis,
             Supplier<Boolean> isCancelled,
-            Function<Query, Query> filterQuery
+            Function<Query, Query> filterQuery,
+            Supplier<ConcurrentMap<String, Object>> pointInTimeState
         ) {
             this.context = context;
             if (bytesToPreallocate == 0) {
@@ -310,6 +332,8 @@ public abstract class AggregationContext implements Releasable {
             this.relativeTimeInMillis = relativeTimeInMillis;
             this.isCancelled = isCancelled;
             this.filterQuery = filterQuery;
+            this.pointInTimeState = pointInTimeState;
+            this.pointInTimeBreaker = bigArrays.breakerService().getBreaker(CircuitBreaker.REQUEST);
         }
 
         @Override
@@ -466,6 +490,16 @@ public abstract class AggregationContext implements Releasable {
             return context.isCacheable();
         }
 
+        @Override
+        public ConcurrentMap<String, Object> pointInTimeState() {
+            return pointInTimeState.get();
+        }
+
+        @Override
+        public CircuitBreaker pointInTimeBreaker() {
+            return pointInTimeBreaker;
+        }
+
         @Override
         public void close() {
             /*
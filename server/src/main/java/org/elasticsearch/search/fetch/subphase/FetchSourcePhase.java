@@ -64,7 +64,19 @@ public final class FetchSourcePhase implements FetchSubPhase {
             return;
         }
 
-        // Otherwise, filter the source and add it to the hit.
+        // Otherwise, filter the source and add it to the hit. For parent documents whose source
+        // hasn't been parsed yet we filter the bytes directly rather than building a map first.
+        if (nestedHit == false) {
+            try {
+                BytesReference filtered = source.filterBytes(fetchSourceContext);
+                if (filtered != null) {
+                    hitContext.hit().sourceRef(filtered);
+                    return;
+                }
+            } catch (IOException e) {
+                throw new ElasticsearchException("Error filtering source", e);
+            }
+        }
         Object value = source.filter(fetchSourceContext);
         if (nestedHit) {
             value = getNestedSource((Map<String, Object>) value, hitContext);
@@ -14,8 +14,13 @@ import org.elasticsearch.common.CheckedBiConsumer;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.lucene.index.SequentialStoredFieldsLeafReader;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
@@ -177,6 +182,28 @@ public class SourceLookup implements Map<String, Object> {
         return context.getFilter().apply(source());
     }
 
+    /**
+     * Filter the source straight from its bytes and return the filtered bytes, without
+     * parsing the whole source into a map. Returns {@code null} if the source isn't
+     * available as bytes or has already been parsed into a map, in which case
+     * {@link #filter(FetchSourceContext)} is the cheaper option.
+     */
+    @Nullable
+    public BytesReference filterBytes(FetchSourceContext context) throws IOException {
+        if (source != null || sourceAsBytes == null) {
+            return null;
+        }
+        try (XContentParser parser = sourceContentType == null
+                ? XContentHelper.createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, sourceAsBytes)
+                : XContentHelper.createParser(
+                    NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, sourceAsBytes, sourceContentType)) {
+            BytesStreamOutput streamOutput = new BytesStreamOutput(Math.min(1024, sourceAsBytes.length()));
+            XContentBuilder builder = new XContentBuilder(parser.contentType().xContent(), streamOutput);
+            context.getStreamingFilter().accept(parser, builder);
+            return BytesReference.bytes(builder);
+        }
+    }
+
     @Override
     public Object get(Object key) {
         return source().get(key);
@@ -8,13 +8,17 @@
 
 package org.elasticsearch.threadpool;
 
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.SizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.FairQueuingBlockingQueue;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.node.Node;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
@@ -28,6 +32,10 @@ public final class FixedExecutorBuilder extends ExecutorBuilder<FixedExecutorBui
 
     private final Setting<Integer> sizeSetting;
     private final Setting<Integer> queueSizeSetting;
+    private final Setting<TimeValue> maxQueueWaitSetting;
+    private final Setting<Boolean> fairQueuingSetting;
+    private final Setting<Integer> tenantQueueSizeSetting;
+    private final Setting<Settings> tenantWeightsSetting;
     private final boolean trackEWMA;
 
     /**
@@ -40,7 +48,22 @@ public final class FixedExecutorBuilder extends ExecutorBuilder<FixedExecutorBui
      * @param trackEWMA whether to track the exponentially weighted moving average of the task execution time
      */
     FixedExecutorBuilder(final Settings settings, final String name, final int size, final int queueSize, final boolean trackEWMA) {
-        this(settings, name, size, queueSize, "thread_pool." + name, trackEWMA);
+        this(settings, name, size, queueSize, "thread_pool." + name, trackEWMA, false);
+    }
+
+    /**
+     * Construct a fixed executor builder; the settings will have the key prefix "thread_pool." followed by the executor name.
+     *
+     * @param settings    the node-level settings
+     * @param name        the name of the executor
+     * @param size        the fixed number of threads
+     * @param queueSize   the size of the backing queue, -1 for unbounded
+     * @param trackEWMA   whether to track the exponentially weighted moving average of the task execution time
+     * @param fairQueuing whether the executor can be configured to queue tasks per tenant, see {@link FairQueuingBlockingQueue}
+     */
+    FixedExecutorBuilder(final Settings settings, final String name, final int size, final int queueSize, final boolean trackEWMA,
+                         final boolean fairQueuing) {
+        this(settings, name, size, queueSize, "thread_pool." + name, trackEWMA, fairQueuing);
     }
 
     /**
@@ -55,6 +78,11 @@ public final class FixedExecutorBuilder extends ExecutorBuilder<FixedExecutorBui
      */
     public FixedExecutorBuilder(final Settings settings, final String name, final int size, final int queueSize, final String prefix,
                                 final boolean trackEWMA) {
+        this(settings, name, size, queueSize, prefix, trackEWMA, false);
+    }
+
+    private FixedExecutorBuilder(final Settings settings, final String name, final int size, final int queueSize, final String prefix,
+                                 final boolean trackEWMA, final boolean fairQueuing) {
         super(name);
         final String sizeKey = settingsKey(prefix, "size");
         this.sizeSetting =
@@ -65,12 +93,39 @@ public final class FixedExecutorBuilder extends ExecutorBuilder<FixedExecutorBui
                         Setting.Property.NodeScope);
         final String queueSizeKey = settingsKey(prefix, "queue_size");
         this.queueSizeSetting = Setting.intSetting(queueSizeKey, queueSize, Setting.Property.NodeScope);
+        // admission by expected queue wait relies on the task execution time, so it only exists for executors that track it
+        this.maxQueueWaitSetting = trackEWMA
+            ? Setting.timeSetting(settingsKey(prefix, "max_queue_wait"), TimeValue.MINUS_ONE, Setting.Property.NodeScope)
+            : null;
+        if (fairQueuing) {
+            this.fairQueuingSetting = Setting.boolSetting(settingsKey(prefix, "fair_queuing.enabled"), false, Setting.Property.NodeScope);
+            this.tenantQueueSizeSetting =
+                Setting.intSetting(settingsKey(prefix, "fair_queuing.tenant_queue_size"), -1, -1, Setting.Property.NodeScope);
+            this.tenantWeightsSetting = Setting.groupSetting(settingsKey(prefix, "fair_queuing.weights."), weights -> {
+                for (String tenant : weights.keySet()) {
+                    if (weights.getAsInt(tenant, 1) < 1) {
+                        throw new IllegalArgumentException("the weight of tenant [" + tenant + "] must be at least 1");
+                    }
+                }
+            }, Setting.Property.NodeScope);
+        } else {
+            this.fairQueuingSetting = null;
+            this.tenantQueueSizeSetting = null;
+            this.tenantWeightsSetting = null;
+        }
         this.trackEWMA = trackEWMA;
     }
 
     @Override
     public List<Setting<?>> getRegisteredSettings() {
-        return Arrays.asList(sizeSetting, queueSizeSetting);
+        final List<Setting<?>> settings = new ArrayList<>(Arrays.asList(sizeSetting, queueSizeSetting));
+        if (maxQueueWaitSetting != null) {
+            settings.add(maxQueueWaitSetting);
+        }
+        if (fairQueuingSetting != null) {
+            settings.addAll(Arrays.asList(fairQueuingSetting, tenantQueueSizeSetting, tenantWeightsSetting));
+        }
+        return settings;
     }
 
     @Override
@@ -78,7 +133,19 @@ public final class FixedExecutorBuilder extends ExecutorBuilder<FixedExecutorBui
         final String nodeName = Node.NODE_NAME_SETTING.get(settings);
         final int size = sizeSetting.get(settings);
         final int queueSize = queueSizeSetting.get(settings);
-        return new FixedExecutorSettings(nodeName, size, queueSize);
+        final TimeValue maxQueueWait = maxQueueWaitSetting == null ? TimeValue.MINUS_ONE : maxQueueWaitSetting.get(settings);
+        if (fairQueuingSetting != null && fairQueuingSetting.get(settings)) {
+            final String tenantHeader = ThreadPool.TENANT_HEADER_SETTING.get(settings);
+            if (Strings.hasText(tenantHeader) == false) {
+                // without a header every task would land in the same tenant and fair queuing would silently do nothing
+                throw new IllegalArgumentException("[" + fairQueuingSetting.getKey() + "] requires ["
+                    + ThreadPool.TENANT_HEADER_SETTING.getKey() + "] to be set");
+            }
+            final int tenantQueueSize = tenantQueueSizeSetting.get(settings);
+            return new FixedExecutorSettings(nodeName, size, queueSize, maxQueueWait, tenantHeader, tenantQueueSize,
+                tenantWeightsSetting.get(settings));
+        }
+        return new FixedExecutorSettings(nodeName, size, queueSize, maxQueueWait, null, -1, Settings.EMPTY);
     }
 
     @Override
@@ -86,8 +153,19 @@ public final class FixedExecutorBuilder extends ExecutorBuilder<FixedExecutorBui
         int size = settings.size;
         int queueSize = settings.queueSize;
         final ThreadFactory threadFactory = EsExecutors.daemonThreadFactory(EsExecutors.threadName(settings.nodeName, name()));
-        final ExecutorService executor =
-                EsExecutors.newFixed(settings.nodeName + "/" + name(), size, queueSize, threadFactory, threadContext, trackEWMA);
+        final ExecutorService executor;
+        if (settings.tenantHeader != null) {
+            final int capacity = queueSize < 0 ? Integer.MAX_VALUE : queueSize;
+            final int tenantCapacity = settings.tenantQueueSize < 0 ? capacity : Math.min(settings.tenantQueueSize, capacity);
+            final Settings weights = settings.tenantWeights;
+            final FairQueuingBlockingQueue queue = new FairQueuingBlockingQueue(threadContext, settings.tenantHeader, capacity,
+                tenantCapacity, tenant -> weights.getAsInt(tenant, 1));
+            executor = EsExecutors.newFixed(settings.nodeName + "/" + name(), size, queue, threadFactory, threadContext, trackEWMA,
+                settings.maxQueueWait);
+        } else {
+            executor = EsExecutors.newFixed(settings.nodeName + "/" + name(), size, queueSize, threadFactory, threadContext, trackEWMA,
+                settings.maxQueueWait);
+        }
         final ThreadPool.Info info =
             new ThreadPool.Info(name(), ThreadPool.ThreadPoolType.FIXED, size, size, null, queueSize < 0 ? null : new SizeValue(queueSize));
         return new ThreadPool.ExecutorHolder(executor, info);
@@ -107,11 +185,21 @@ public final class FixedExecutorBuilder extends ExecutorBuilder<FixedExecutorBui
 
         private final int size;
         private final int queueSize;
-
-        FixedExecutorSettings(final String nodeName, final int size, final int queueSize) {
+        private final TimeValue maxQueueWait;
+        /** The header that identifies the tenant of a task if fair queuing is enabled, {@code null} otherwise. */
+        private final String tenantHeader;
+        private final int tenantQueueSize;
+        private final Settings tenantWeights;
+
+        FixedExecutorSettings(final String nodeName, final int size, final int queueSize, final TimeValue maxQueueWait,
+                              final String tenantHeader, final int tenantQueueSize, final Settings tenantWeights) {
             super(nodeName);
             this.size = size;
             this.queueSize = queueSize;
+            this.maxQueueWait = maxQueueWait;
+            this.tenantHeader = tenantHeader;
+            this.tenantQueueSize = tenantQueueSize;
+            this.tenantWeights = tenantWeights;
         }
 
     }
@@ -19,9 +19,11 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.SizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.EWMATrackingEsThreadPoolExecutor;
 import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
 import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
+import org.elasticsearch.common.util.concurrent.FairQueuingBlockingQueue;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.util.concurrent.XRejectedExecutionHandler;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
@@ -159,6 +161,15 @@ public class ThreadPool implements ReportingService<ThreadPoolInfo>, Scheduler {
             Setting.Property.NodeScope
     );
 
+    /**
+     * The request header that identifies the tenant of a task for the executors that queue tasks per tenant, see
+     * {@link FairQueuingBlockingQueue}. The header is copied from REST requests into the thread context.
+     */
+    public static final Setting<String> TENANT_HEADER_SETTING = Setting.simpleString(
+            "thread_pool.fair_queuing.tenant_header",
+            Setting.Property.NodeScope
+    );
+
     public static final Setting<TimeValue> SLOW_SCHEDULER_TASK_WARN_THRESHOLD_SETTING = Setting.timeSetting(
             "thread_pool.scheduler.warn_threshold",
             TimeValue.timeValueSeconds(5),
@@ -176,10 +187,11 @@ public class ThreadPool implements ReportingService<ThreadPoolInfo>, Scheduler {
         final int halfProcMaxAt10 = halfAllocatedProcessorsMaxTen(allocatedProcessors);
         final int genericThreadPoolMax = boundedBy(4 * allocatedProcessors, 128, 512);
         builders.put(Names.GENERIC, new ScalingExecutorBuilder(Names.GENERIC, 4, genericThreadPoolMax, TimeValue.timeValueSeconds(30)));
-        builders.put(Names.WRITE, new FixedExecutorBuilder(settings, Names.WRITE, allocatedProcessors, 10000, false));
+        builders.put(Names.WRITE, new FixedExecutorBuilder(settings, Names.WRITE, allocatedProcessors, 10000, false, true));
         builders.put(Names.GET, new FixedExecutorBuilder(settings, Names.GET, allocatedProcessors, 1000, false));
         builders.put(Names.ANALYZE, new FixedExecutorBuilder(settings, Names.ANALYZE, 1, 16, false));
-        builders.put(Names.SEARCH, new FixedExecutorBuilder(settings, Names.SEARCH, searchThreadPoolSize(allocatedProcessors), 1000, true));
+        builders.put(Names.SEARCH,
+            new FixedExecutorBuilder(settings, Names.SEARCH, searchThreadPoolSize(allocatedProcessors), 1000, true, true));
         builders.put(
             Names.AUTO_COMPLETE,
             new FixedExecutorBuilder(settings, Names.AUTO_COMPLETE, Math.max(allocatedProcessors / 4, 1), 100, true)
@@ -300,6 +312,8 @@ public class ThreadPool implements ReportingService<ThreadPoolInfo>, Scheduler {
             long rejected = -1;
             int largest = -1;
             long completed = -1;
+            long[] queueLatency = new long[] { -1, -1, -1 };
+            Map<String, FairQueuingBlockingQueue.TenantStats> tenants = Collections.emptyMap();
             if (holder.executor() instanceof ThreadPoolExecutor) {
                 ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) holder.executor();
                 threads = threadPoolExecutor.getPoolSize();
@@ -311,8 +325,15 @@ public class ThreadPool implements ReportingService<ThreadPoolInfo>, Scheduler {
                 if (rejectedExecutionHandler instanceof XRejectedExecutionHandler) {
                     rejected = ((XRejectedExecutionHandler) rejectedExecutionHandler).rejected();
                 }
+                if (threadPoolExecutor instanceof EWMATrackingEsThreadPoolExecutor) {
+                    queueLatency = ((EWMATrackingEsThreadPoolExecutor) threadPoolExecutor).getQueueLatencyPercentiles(50, 90, 99);
+                }
+                if (threadPoolExecutor.getQueue() instanceof FairQueuingBlockingQueue) {
+                    tenants = ((FairQueuingBlockingQueue) threadPoolExecutor.getQueue()).tenantStats();
+                }
             }
-            stats.add(new ThreadPoolStats.Stats(name, threads, queue, active, rejected, largest, completed));
+            stats.add(new ThreadPoolStats.Stats(name, threads, queue, active, rejected, largest, completed,
+                queueLatency[0], queueLatency[1], queueLatency[2], ThreadPoolStats.TenantStats.fromQueueStats(tenants)));
         }
         return new ThreadPoolStats(stats);
     }
@@ -8,17 +8,22 @@
 
 package org.elasticsearch.threadpool;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.util.concurrent.FairQueuingBlockingQueue;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.ToXContentFragment;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<ThreadPoolStats.Stats> {
 
@@ -31,8 +36,31 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
         private final long rejected;
         private final int largest;
         private final long completed;
+        private final long queueLatencyP50;
+        private final long queueLatencyP90;
+        private final long queueLatencyP99;
+        private final List<TenantStats> tenants;
 
         public Stats(String name, int threads, int queue, int active, long rejected, int largest, long completed) {
+            this(name, threads, queue, active, rejected, largest, completed, -1, -1, -1);
+        }
+
+        /**
+         * @param queueLatencyP50 the median time recently executed tasks spent in the queue in nanoseconds, or -1 if not tracked
+         * @param queueLatencyP90 the 90th percentile of that time in nanoseconds, or -1 if not tracked
+         * @param queueLatencyP99 the 99th percentile of that time in nanoseconds, or -1 if not tracked
+         */
+        public Stats(String name, int threads, int queue, int active, long rejected, int largest, long completed,
+                     long queueLatencyP50, long queueLatencyP90, long queueLatencyP99) {
+            this(name, threads, queue, active, rejected, largest, completed, queueLatencyP50, queueLatencyP90, queueLatencyP99,
+                Collections.emptyList());
+        }
+
+        /**
+         * @param tenants the per tenant stats of a thread pool that queues tasks per tenant, empty otherwise
+         */
+        public Stats(String name, int threads, int queue, int active, long rejected, int largest, long completed,
+                     long queueLatencyP50, long queueLatencyP90, long queueLatencyP99, List<TenantStats> tenants) {
             this.name = name;
             this.threads = threads;
             this.queue = queue;
@@ -40,6 +68,10 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
             this.rejected = rejected;
             this.largest = largest;
             this.completed = completed;
+            this.queueLatencyP50 = queueLatencyP50;
+            this.queueLatencyP90 = queueLatencyP90;
+            this.queueLatencyP99 = queueLatencyP99;
+            this.tenants = tenants;
         }
 
         public Stats(StreamInput in) throws IOException {
@@ -50,6 +82,17 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
             rejected = in.readLong();
             largest = in.readInt();
             completed = in.readLong();
+            if (in.getVersion().onOrAfter(Version.V_8_0_0)) {
+                queueLatencyP50 = in.readLong();
+                queueLatencyP90 = in.readLong();
+                queueLatencyP99 = in.readLong();
+                tenants = in.readList(TenantStats::new);
+            } else {
+                queueLatencyP50 = -1;
+                queueLatencyP90 = -1;
+                queueLatencyP99 = -1;
+                tenants = Collections.emptyList();
+            }
         }
 
         @Override
@@ -61,6 +104,12 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
             out.writeLong(rejected);
             out.writeInt(largest);
             out.writeLong(completed);
+            if (out.getVersion().onOrAfter(Version.V_8_0_0)) {
+                out.writeLong(queueLatencyP50);
+                out.writeLong(queueLatencyP90);
+                out.writeLong(queueLatencyP99);
+                out.writeList(tenants);
+            }
         }
 
         public String getName() {
@@ -91,6 +140,22 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
             return this.completed;
         }
 
+        public long getQueueLatencyP50() {
+            return queueLatencyP50;
+        }
+
+        public long getQueueLatencyP90() {
+            return queueLatencyP90;
+        }
+
+        public long getQueueLatencyP99() {
+            return queueLatencyP99;
+        }
+
+        public List<TenantStats> getTenants() {
+            return tenants;
+        }
+
         @Override
         public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
             builder.startObject(name);
@@ -112,6 +177,20 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
             if (completed != -1) {
                 builder.field(Fields.COMPLETED, completed);
             }
+            if (queueLatencyP50 != -1) {
+                builder.startObject(Fields.QUEUE_LATENCY);
+                builder.field(Fields.P50_IN_NANOS, queueLatencyP50);
+                builder.field(Fields.P90_IN_NANOS, queueLatencyP90);
+                builder.field(Fields.P99_IN_NANOS, queueLatencyP99);
+                builder.endObject();
+            }
+            if (tenants.isEmpty() == false) {
+                builder.startObject(Fields.TENANTS);
+                for (TenantStats tenant : tenants) {
+                    tenant.toXContent(builder, params);
+                }
+                builder.endObject();
+            }
             builder.endObject();
             return builder;
         }
@@ -134,6 +213,63 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
         }
     }
 
+    /**
+     * The queue size and number of rejected tasks of a tenant of a thread pool that queues tasks per tenant.
+     */
+    public static class TenantStats implements Writeable, ToXContentFragment {
+
+        private final String tenant;
+        private final int queue;
+        private final long rejected;
+
+        public TenantStats(String tenant, int queue, long rejected) {
+            this.tenant = tenant;
+            this.queue = queue;
+            this.rejected = rejected;
+        }
+
+        public TenantStats(StreamInput in) throws IOException {
+            tenant = in.readString();
+            queue = in.readVInt();
+            rejected = in.readVLong();
+        }
+
+        static List<TenantStats> fromQueueStats(Map<String, FairQueuingBlockingQueue.TenantStats> stats) {
+            return stats.entrySet().stream()
+                .map(e -> new TenantStats(e.getKey(), e.getValue().getQueue(), e.getValue().getRejected()))
+                .sorted(Comparator.comparing(TenantStats::getTenant))
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(tenant);
+            out.writeVInt(queue);
+            out.writeVLong(rejected);
+        }
+
+        public String getTenant() {
+            return tenant;
+        }
+
+        public int getQueue() {
+            return queue;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject(tenant);
+            builder.field(Fields.QUEUE, queue);
+            builder.field(Fields.REJECTED, rejected);
+            builder.endObject();
+            return builder;
+        }
+    }
+
     private List<Stats> stats;
 
     public ThreadPoolStats(List<Stats> stats) {
@@ -163,6 +299,11 @@ public class ThreadPoolStats implements Writeable, ToXContentFragment, Iterable<
         static final String REJECTED = "rejected";
         static final String LARGEST = "largest";
         static final String COMPLETED = "completed";
+        static final String QUEUE_LATENCY = "queue_latency";
+        static final String P50_IN_NANOS = "p50_in_nanos";
+        static final String P90_IN_NANOS = "p90_in_nanos";
+        static final String P99_IN_NANOS = "p99_in_nanos";
+        static final String TENANTS = "tenants";
     }
 
     @Override
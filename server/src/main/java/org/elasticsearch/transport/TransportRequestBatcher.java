@@ -0,0 +1,419 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.transport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.AtomicArray;
+import org.elasticsearch.common.util.concurrent.CountDown;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces requests of a single action that are sent to the same node within a short window into one batch request, and fans the
+ * per-request responses of the batch back out to the handlers of the individual requests. This saves the per-message overhead of
+ * actions that send many small shard-level requests to the same nodes at once, for instance the background syncs that run for every
+ * shard of every index on the same schedule.
+ * <p>
+ * The receiving node executes each request of a batch as if it had been sent on its own, so the batched action's handler needs no
+ * changes. Since the batch is sent under the {@code internal:} action {@link #getBatchAction(String)} only requests that are sent in
+ * the system context are batched, every other request as well as requests with a timeout are sent on their own.
+ */
+public final class TransportRequestBatcher<Request extends TransportRequest, Response extends TransportResponse> {
+
+    private static final Logger logger = LogManager.getLogger(TransportRequestBatcher.class);
+
+    /**
+     * How long the first request to a node waits for further requests to batch it with. A window of zero disables batching.
+     */
+    public static final Setting<TimeValue> BATCH_WINDOW_SETTING = Setting.timeSetting("transport.batching.window",
+        TimeValue.timeValueMillis(2), TimeValue.ZERO, Setting.Property.NodeScope);
+
+    /**
+     * The maximum number of requests per batch, a batch is sent as soon as it reaches this size.
+     */
+    public static final Setting<Integer> BATCH_MAX_SIZE_SETTING = Setting.intSetting("transport.batching.max_size", 256, 1,
+        Setting.Property.NodeScope);
+
+    private static final String BATCH_ACTION_PREFIX = "internal:transport/batch/";
+
+    private final TransportService transportService;
+    private final ThreadPool threadPool;
+    private final String action;
+    private final String batchAction;
+    private final Writeable.Reader<Response> responseReader;
+    private final TimeValue window;
+    private final int maxSize;
+
+    private final Map<BatchKey, PendingBatch> pendingBatches = new HashMap<>();
+
+    /**
+     * Creates a batcher for the given action and registers the handler for its batches. Every node that may receive batches of the
+     * action must have created a batcher for it.
+     *
+     * @param action         the action whose requests are batched, its handler must already be registered
+     * @param requestReader  the reader for the requests of the action
+     * @param responseReader the reader for the responses of the action
+     */
+    public TransportRequestBatcher(Settings settings, TransportService transportService, String action,
+                                   Writeable.Reader<Request> requestReader, Writeable.Reader<Response> responseReader) {
+        this.transportService = transportService;
+        this.threadPool = transportService.getThreadPool();
+        this.action = action;
+        this.batchAction = getBatchAction(action);
+        this.responseReader = responseReader;
+        this.window = BATCH_WINDOW_SETTING.get(settings);
+        this.maxSize = BATCH_MAX_SIZE_SETTING.get(settings);
+        // the requests of a batch are dispatched to the action's own handler which forks as needed, so the batch is not rejected
+        transportService.registerRequestHandler(batchAction, ThreadPool.Names.SAME, true, false,
+            in -> new BatchRequest<>(in, requestReader), this::handleBatch);
+    }
+
+    /**
+     * Sends the given request, possibly as part of a batch with other requests to the same node.
+     */
+    public void sendRequest(DiscoveryNode node, Request request, TransportRequestOptions options,
+                            TransportResponseHandler<Response> handler) {
+        final ThreadContext threadContext = threadPool.getThreadContext();
+        if (window.millis() == 0 || options.timeout() != null || threadContext.isSystemContext() == false
+            || node.getVersion().before(Version.V_8_0_0)) {
+            transportService.sendRequest(node, action, request, options, handler);
+            return;
+        }
+        final BatchKey key = new BatchKey(node, options, threadContext.getHeaders());
+        final PendingRequest<Request, Response> pendingRequest =
+            new PendingRequest<>(request, handler, threadContext.newRestorableContext(false));
+        final PendingBatch batch;
+        final boolean full;
+        synchronized (pendingBatches) {
+            PendingBatch current = pendingBatches.get(key);
+            if (current == null) {
+                current = new PendingBatch(key);
+                pendingBatches.put(key, current);
+                final PendingBatch scheduled = current;
+                threadPool.schedule(() -> flush(scheduled), window, ThreadPool.Names.GENERIC);
+            }
+            current.requests.add(pendingRequest);
+            full = current.requests.size() >= maxSize;
+            if (full) {
+                pendingBatches.remove(key);
+            }
+            batch = current;
+        }
+        if (full) {
+            sendBatch(batch);
+        }
+    }
+
+    private void flush(PendingBatch batch) {
+        synchronized (pendingBatches) {
+            if (pendingBatches.remove(batch.key, batch) == false) {
+                // the batch filled up and was sent already
+                return;
+            }
+        }
+        sendBatch(batch);
+    }
+
+    private void sendBatch(PendingBatch batch) {
+        final List<PendingRequest<Request, Response>> requests = batch.requests;
+        final DiscoveryNode node = batch.key.node;
+        if (requests.size() == 1) {
+            final PendingRequest<Request, Response> pendingRequest = requests.get(0);
+            try (ThreadContext.StoredContext ignore = pendingRequest.context.get()) {
+                transportService.sendRequest(node, action, pendingRequest.request, batch.key.options, pendingRequest.handler);
+            }
+            return;
+        }
+        final List<Request> items = new ArrayList<>(requests.size());
+        for (PendingRequest<Request, Response> pendingRequest : requests) {
+            items.add(pendingRequest.request);
+        }
+        // all requests of a batch share the same headers, so the batch is sent in the context of any of them
+        try (ThreadContext.StoredContext ignore = requests.get(0).context.get()) {
+            transportService.sendRequest(node, batchAction, new BatchRequest<>(items), batch.key.options,
+                new TransportResponseHandler<BatchResponse<Response>>() {
+                    @Override
+                    public BatchResponse<Response> read(StreamInput in) throws IOException {
+                        return new BatchResponse<>(in, responseReader);
+                    }
+
+                    @Override
+                    public void handleResponse(BatchResponse<Response> response) {
+                        if (response.responses.size() != requests.size()) {
+                            handleException(new TransportException("expected [" + requests.size() + "] responses in batch of ["
+                                + action + "] but got [" + response.responses.size() + "]"));
+                            return;
+                        }
+                        for (int i = 0; i < requests.size(); i++) {
+                            final Exception failure = response.failures.get(i);
+                            if (failure == null) {
+                                requests.get(i).onResponse(threadPool, response.responses.get(i));
+                            } else {
+                                requests.get(i).onFailure(threadPool, failure instanceof TransportException
+                                    ? (TransportException) failure
+                                    : new RemoteTransportException(node.getName(), node.getAddress(), action, failure));
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void handleException(TransportException exp) {
+                        logger.trace(() -> new ParameterizedMessage("failed to send batch of [{}] requests of [{}]",
+                            requests.size(), action), exp);
+                        for (PendingRequest<Request, Response> pendingRequest : requests) {
+                            pendingRequest.onFailure(threadPool, exp);
+                        }
+                    }
+
+                    @Override
+                    public String toString() {
+                        return "batch of [" + requests.size() + "] requests of [" + action + "] to " + node;
+                    }
+                });
+        }
+    }
+
+    private void handleBatch(BatchRequest<Request> batch, TransportChannel channel, Task task) {
+        final List<Request> items = batch.items;
+        final AtomicArray<Response> responses = new AtomicArray<>(items.size());
+        final AtomicArray<Exception> failures = new AtomicArray<>(items.size());
+        final CountDown countDown = new CountDown(items.size());
+        final Runnable onItemDone = () -> {
+            if (countDown.countDown()) {
+                try {
+                    channel.sendResponse(new BatchResponse<>(toList(responses), toList(failures)));
+                } catch (Exception e) {
+                    logger.warn(() -> new ParameterizedMessage("failed to send response to batch of [{}]", action), e);
+                }
+            }
+        };
+        for (int i = 0; i < items.size(); i++) {
+            final int index = i;
+            transportService.sendRequest(transportService.getLocalNode(), action, items.get(i),
+                new TransportResponseHandler<Response>() {
+                    @Override
+                    public Response read(StreamInput in) throws IOException {
+                        return responseReader.read(in);
+                    }
+
+                    @Override
+                    public void handleResponse(Response response) {
+                        responses.set(index, response);
+                        onItemDone.run();
+                    }
+
+                    @Override
+                    public void handleException(TransportException exp) {
+                        failures.set(index, exp);
+                        onItemDone.run();
+                    }
+                });
+        }
+    }
+
+    private static <T> List<T> toList(AtomicArray<T> array) {
+        final List<T> list = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            list.add(array.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * Returns the action the batches of the given action are sent under.
+     */
+    public static String getBatchAction(String action) {
+        return BATCH_ACTION_PREFIX + action;
+    }
+
+    /**
+     * Returns <code>true</code> iff the given action is the batch action of some action.
+     */
+    public static boolean isBatchAction(String action) {
+        return action.startsWith(BATCH_ACTION_PREFIX);
+    }
+
+    private static final class BatchKey {
+        private final DiscoveryNode node;
+        private final TransportRequestOptions options;
+        private final Map<String, String> headers;
+
+        private BatchKey(DiscoveryNode node, TransportRequestOptions options, Map<String, String> headers) {
+            this.node = node;
+            this.options = options;
+            this.headers = headers;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final BatchKey other = (BatchKey) o;
+            // requests with a timeout are never batched, so the options only differ by their type
+            return node.equals(other.node) && options.type() == other.options.type() && headers.equals(other.headers);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(node, options.type(), headers);
+        }
+    }
+
+    private final class PendingBatch {
+        private final BatchKey key;
+        private final List<PendingRequest<Request, Response>> requests = new ArrayList<>();
+
+        private PendingBatch(BatchKey key) {
+            this.key = key;
+        }
+    }
+
+    private static final class PendingRequest<Request extends TransportRequest, Response extends TransportResponse> {
+        private final Request request;
+        private final TransportResponseHandler<Response> handler;
+        private final Supplier<ThreadContext.StoredContext> context;
+
+        private PendingRequest(Request request, TransportResponseHandler<Response> handler,
+                               Supplier<ThreadContext.StoredContext> context) {
+            this.request = request;
+            this.handler = handler;
+            this.context = context;
+        }
+
+        void onResponse(ThreadPool threadPool, Response response) {
+            dispatch(threadPool, () -> handler.handleResponse(response));
+        }
+
+        void onFailure(ThreadPool threadPool, TransportException exp) {
+            dispatch(threadPool, () -> handler.handleException(exp));
+        }
+
+        private void dispatch(ThreadPool threadPool, Runnable runnable) {
+            final String executor = handler.executor();
+            if (ThreadPool.Names.SAME.equals(executor)) {
+                try (ThreadContext.StoredContext ignore = context.get()) {
+                    runnable.run();
+                }
+                return;
+            }
+            threadPool.executor(executor).execute(new AbstractRunnable() {
+                @Override
+                protected void doRun() {
+                    try (ThreadContext.StoredContext ignore = context.get()) {
+                        runnable.run();
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    try (ThreadContext.StoredContext ignore = context.get()) {
+                        handler.handleException(e instanceof TransportException ? (TransportException) e : new TransportException(e));
+                    }
+                }
+
+                @Override
+                public boolean isForceExecution() {
+                    // the response arrived already, so it must be handled
+                    return true;
+                }
+            });
+        }
+    }
+
+    static final class BatchRequest<Request extends TransportRequest> extends TransportRequest {
+        final List<Request> items;
+
+        BatchRequest(List<Request> items) {
+            this.items = items;
+        }
+
+        BatchRequest(StreamInput in, Writeable.Reader<Request> reader) throws IOException {
+            super(in);
+            items = in.readList(reader);
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeCollection(items);
+        }
+
+        @Override
+        public String getDescription() {
+            return "batch of [" + items.size() + "] requests";
+        }
+    }
+
+    static final class BatchResponse<Response extends TransportResponse> extends TransportResponse {
+        /** The response of each request of the batch, or null if the request failed. */
+        final List<Response> responses;
+        /** The failure of each request of the batch, or null if the request succeeded. */
+        final List<Exception> failures;
+
+        BatchResponse(List<Response> responses, List<Exception> failures) {
+            assert responses.size() == failures.size();
+            this.responses = responses;
+            this.failures = failures;
+        }
+
+        BatchResponse(StreamInput in, Writeable.Reader<Response> reader) throws IOException {
+            super(in);
+            final int size = in.readVInt();
+            responses = new ArrayList<>(size);
+            failures = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                if (in.readBoolean()) {
+                    responses.add(reader.read(in));
+                    failures.add(null);
+                } else {
+                    responses.add(null);
+                    failures.add(in.readException());
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeVInt(responses.size());
+            for (int i = 0; i < responses.size(); i++) {
+                final Response response = responses.get(i);
+                if (response != null) {
+                    out.writeBoolean(true);
+                    response.writeTo(out);
+                } else {
+                    out.writeBoolean(false);
+                    out.writeException(failures.get(i));
+                }
+            }
+        }
+    }
+}
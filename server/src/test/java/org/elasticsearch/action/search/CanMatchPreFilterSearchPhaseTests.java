@@ -85,7 +85,7 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
         final boolean shard1 = randomBoolean();
         final boolean shard2 = randomBoolean();
 
-        SearchTransportService searchTransportService = new SearchTransportService(null, null, null) {
+        SearchTransportService searchTransportService = new PerShardSearchTransportService() {
             @Override
             public void sendCanMatch(Transport.Connection connection, ShardSearchRequest request, SearchTask task,
                                      ActionListener<SearchService.CanMatchResponse> listener) {
@@ -133,6 +133,58 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
         }
     }
 
+    public void testRequestsAreGroupedByNode() throws InterruptedException {
+        final TransportSearchAction.SearchTimeProvider timeProvider = new TransportSearchAction.SearchTimeProvider(0, System.nanoTime(),
+            System::nanoTime);
+        final DiscoveryNode node = new DiscoveryNode("node_1", buildNewFakeTransportAddress(), Version.CURRENT);
+        final int numShards = randomIntBetween(2, 20);
+        final List<CanMatchNodeRequest> nodeRequests = Collections.synchronizedList(new ArrayList<>());
+        final SearchTransportService searchTransportService = new PerShardSearchTransportService() {
+            @Override
+            public void sendCanMatch(Transport.Connection connection, CanMatchNodeRequest request, SearchTask task,
+                                     ActionListener<CanMatchNodeResponse> listener) {
+                nodeRequests.add(request);
+                super.sendCanMatch(connection, request, task, listener);
+            }
+
+            @Override
+            public void sendCanMatch(Transport.Connection connection, ShardSearchRequest request, SearchTask task,
+                                     ActionListener<SearchService.CanMatchResponse> listener) {
+                final boolean canMatch = request.shardId().id() % 2 == 0;
+                new Thread(() -> listener.onResponse(new SearchService.CanMatchResponse(canMatch, null))).start();
+            }
+        };
+
+        AtomicReference<GroupShardsIterator<SearchShardIterator>> result = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        GroupShardsIterator<SearchShardIterator> shardsIter = getShardsIter("idx",
+            new OriginalIndices(new String[]{"idx"}, SearchRequest.DEFAULT_INDICES_OPTIONS), numShards, false, node, null);
+        final SearchRequest searchRequest = new SearchRequest();
+        searchRequest.allowPartialSearchResults(true);
+
+        CanMatchPreFilterSearchPhase canMatchPhase = new CanMatchPreFilterSearchPhase(logger,
+            searchTransportService,
+            (clusterAlias, nodeId) -> new SearchAsyncActionTests.MockConnection(node),
+            Collections.singletonMap("_na_", new AliasFilter(null, Strings.EMPTY_ARRAY)),
+            Collections.emptyMap(), EsExecutors.DIRECT_EXECUTOR_SERVICE,
+            searchRequest, null, shardsIter, timeProvider, ClusterState.EMPTY_STATE, null,
+            (iter) -> new SearchPhase("test") {
+                @Override
+                public void run() {
+                    result.set(iter);
+                    latch.countDown();
+                }}, SearchResponse.Clusters.EMPTY, EMPTY_CONTEXT_PROVIDER);
+
+        canMatchPhase.start();
+        latch.await();
+
+        assertThat(nodeRequests.size(), equalTo(1));
+        assertThat(nodeRequests.get(0).getShardRequests().size(), equalTo(numShards));
+        for (SearchShardIterator iterator : result.get()) {
+            assertThat(iterator.skip(), equalTo(iterator.shardId().id() % 2 != 0));
+        }
+    }
+
     public void testFilterWithFailure() throws InterruptedException {
         final TransportSearchAction.SearchTimeProvider timeProvider = new TransportSearchAction.SearchTimeProvider(0, System.nanoTime(),
             System::nanoTime);
@@ -142,7 +194,7 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
         lookup.put("node1", new SearchAsyncActionTests.MockConnection(primaryNode));
         lookup.put("node2", new SearchAsyncActionTests.MockConnection(replicaNode));
         final boolean shard1 = randomBoolean();
-        SearchTransportService searchTransportService = new SearchTransportService(null, null, null) {
+        SearchTransportService searchTransportService = new PerShardSearchTransportService() {
             @Override
             public void sendCanMatch(Transport.Connection connection, ShardSearchRequest request, SearchTask task,
                                      ActionListener<SearchService.CanMatchResponse> listener) {
@@ -208,7 +260,7 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
 
 
         final SearchTransportService searchTransportService =
-            new SearchTransportService(null, null, null) {
+            new PerShardSearchTransportService() {
                 @Override
                 public void sendCanMatch(
                     Transport.Connection connection,
@@ -307,7 +359,7 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
             List<MinAndMax<?>> minAndMaxes = new ArrayList<>();
             Set<ShardId> shardToSkip = new HashSet<>();
 
-            SearchTransportService searchTransportService = new SearchTransportService(null, null, null) {
+            SearchTransportService searchTransportService = new PerShardSearchTransportService() {
                 @Override
                 public void sendCanMatch(Transport.Connection connection, ShardSearchRequest request, SearchTask task,
                                          ActionListener<SearchService.CanMatchResponse> listener) {
@@ -383,7 +435,7 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
             List<ShardId> shardIds = new ArrayList<>();
             Set<ShardId> shardToSkip = new HashSet<>();
 
-            SearchTransportService searchTransportService = new SearchTransportService(null, null, null) {
+            SearchTransportService searchTransportService = new PerShardSearchTransportService() {
                 @Override
                 public void sendCanMatch(Transport.Connection connection, ShardSearchRequest request, SearchTask task,
                                          ActionListener<SearchService.CanMatchResponse> listener) {
@@ -704,7 +756,7 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
 
         // We respond by default that the query can match
         final List<ShardSearchRequest> requests = Collections.synchronizedList(new ArrayList<>());
-        SearchTransportService searchTransportService = new SearchTransportService(null, null, null) {
+        SearchTransportService searchTransportService = new PerShardSearchTransportService() {
             @Override
             public void sendCanMatch(Transport.Connection connection, ShardSearchRequest request, SearchTask task,
                                      ActionListener<SearchService.CanMatchResponse> listener) {
@@ -792,4 +844,20 @@ public class CanMatchPreFilterSearchPhaseTests extends ESTestCase {
                 fields::get);
         }
     }
+
+    /**
+     * Answers the can_match requests that the phase sends per node with the responses that the test gives for each of their shards.
+     */
+    private static class PerShardSearchTransportService extends SearchTransportService {
+
+        PerShardSearchTransportService() {
+            super(null, null, null);
+        }
+
+        @Override
+        public void sendCanMatch(Transport.Connection connection, CanMatchNodeRequest request, SearchTask task,
+                                 ActionListener<CanMatchNodeResponse> listener) {
+            sendCanMatchPerShard(connection, request, task, listener);
+        }
+    }
 }
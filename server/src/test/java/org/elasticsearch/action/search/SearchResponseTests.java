@@ -41,6 +41,7 @@ import org.junit.Before;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import static java.util.Collections.emptyList;
@@ -265,6 +266,24 @@ public class SearchResponseTests extends ESTestCase {
         }
     }
 
+    public void testToXContentChunked() throws IOException {
+        SearchResponse response = randomBoolean() ? createMinimalTestItem() : createTestItem();
+        XContentType xContentType = randomFrom(XContentType.values());
+        ToXContent.Params params = randomBoolean() ? ToXContent.EMPTY_PARAMS
+            : new ToXContent.MapParams(singletonMap(RestSearchAction.TOTAL_HITS_AS_INT_PARAM, "true"));
+        BytesReference expected = XContentHelper.toXContent(response, xContentType, params, false);
+
+        XContentBuilder builder = XContentBuilder.builder(xContentType.xContent());
+        Iterator<ToXContent> fragments = response.toXContentChunked();
+        int numFragments = 0;
+        while (fragments.hasNext()) {
+            fragments.next().toXContent(builder, params);
+            numFragments++;
+        }
+        assertEquals(response.getHits().getHits().length + 5, numFragments);
+        assertToXContentEquivalent(expected, BytesReference.bytes(builder), xContentType);
+    }
+
     public void testSerialization() throws IOException {
         SearchResponse searchResponse = createTestItem(false);
         SearchResponse deserialized = copyWriteable(searchResponse, namedWriteableRegistry, SearchResponse::new, Version.CURRENT);
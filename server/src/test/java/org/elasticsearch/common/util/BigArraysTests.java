@@ -29,13 +29,18 @@ import java.util.List;
 import java.util.function.Function;
 
 import static org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
 
 public class BigArraysTests extends ESTestCase {
-    private final BigArrays bigArrays = new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService());
+    private final BigArrays bigArrays = new MockBigArrays(
+        new MockPageCacheRecycler(Settings.builder().put(PageCacheRecycler.OFF_HEAP_SETTING.getKey(), randomBoolean()).build()),
+        new NoneCircuitBreakerService());
 
     public void testByteArrayGrowth() {
         final int totalLen = randomIntBetween(1, 4000000);
@@ -253,6 +258,107 @@ public class BigArraysTests extends ESTestCase {
         array2.close();
     }
 
+    public void testOffHeapByteArray() {
+        final BigArrays offHeapBigArrays = new BigArrays(
+            new MockPageCacheRecycler(Settings.builder().put(PageCacheRecycler.OFF_HEAP_SETTING.getKey(), true).build()),
+            null, CircuitBreaker.REQUEST);
+        final byte[] array1 = new byte[randomIntBetween(1, 100000)];
+        random().nextBytes(array1);
+        ByteArray array2 = offHeapBigArrays.newOffHeapByteArray(randomIntBetween(0, array1.length));
+        assertThat(array2, instanceOf(DirectByteArray.class));
+        for (int i = 0; i < array1.length; ) {
+            final int len = Math.min(array1.length - i, randomBoolean() ? randomInt(10) : randomInt(3 * PageCacheRecycler.BYTE_PAGE_SIZE));
+            array2 = offHeapBigArrays.grow(array2, i + len);
+            array2.set(i, array1, i, len);
+            i += len;
+        }
+        assertThat(array2, instanceOf(DirectByteArray.class));
+        for (int i = 0; i < array1.length; ++i) {
+            assertEquals(array1[i], array2.get(i));
+        }
+        final BytesRef ref = new BytesRef();
+        for (int i = 0; i < 100; ++i) {
+            final int offset = randomInt(array1.length - 1);
+            final int len = randomInt(array1.length - offset);
+            assertTrue(array2.get(offset, len, ref));
+            assertEquals(new BytesRef(array1, offset, len), ref);
+        }
+        final int fromIndex = randomIntBetween(0, array1.length - 1);
+        final int toIndex = randomIntBetween(fromIndex, array1.length);
+        Arrays.fill(array1, fromIndex, toIndex, (byte) 7);
+        array2.fill(fromIndex, toIndex, (byte) 7);
+        for (int i = 0; i < array1.length; ++i) {
+            assertEquals(array1[i], array2.get(i));
+        }
+        array2.close();
+    }
+
+    public void testOffHeapLongAndDoubleArrays() {
+        final BigArrays offHeapBigArrays = new BigArrays(
+            new MockPageCacheRecycler(Settings.builder().put(PageCacheRecycler.OFF_HEAP_SETTING.getKey(), true).build()),
+            null, CircuitBreaker.REQUEST);
+        final int len = randomIntBetween(PageCacheRecycler.LONG_PAGE_SIZE + 1, 100000);
+        final LongArray longs = offHeapBigArrays.newLongArray(len);
+        final DoubleArray doubles = offHeapBigArrays.newDoubleArray(len);
+        assertThat(longs, instanceOf(DirectLongArray.class));
+        assertThat(doubles, instanceOf(DirectDoubleArray.class));
+        for (int i = 0; i < len; ++i) {
+            assertEquals(0L, longs.set(i, i));
+            assertEquals(0d, doubles.set(i, i / 2d), 0d);
+        }
+        for (int i = 0; i < len; ++i) {
+            assertEquals(i + 3L, longs.increment(i, 3));
+            assertEquals(i / 2d + 0.5d, doubles.increment(i, 0.5d), 0d);
+        }
+        longs.fill(1, len, 42L);
+        doubles.fill(1, len, 42d);
+        assertEquals(3L, longs.get(0));
+        assertEquals(42L, longs.get(len - 1));
+        assertEquals(42d, doubles.get(len - 1), 0d);
+        Releasables.close(longs, doubles);
+
+        // small arrays stay on the heap
+        final LongArray small = offHeapBigArrays.newLongArray(randomIntBetween(1, PageCacheRecycler.LONG_PAGE_SIZE));
+        assertThat(small, not(instanceOf(DirectLongArray.class)));
+        small.close();
+    }
+
+    public void testOffHeapArraysAreLimitedByTheOffHeapBreaker() {
+        final long offHeapLimit = randomLongBetween(PageCacheRecycler.PAGE_SIZE_IN_BYTES * 4, PageCacheRecycler.PAGE_SIZE_IN_BYTES * 16);
+        final HierarchyCircuitBreakerService hcbs = new HierarchyCircuitBreakerService(
+            Settings.builder()
+                .put(HierarchyCircuitBreakerService.OFF_HEAP_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), offHeapLimit, ByteSizeUnit.BYTES)
+                .put(HierarchyCircuitBreakerService.USE_REAL_MEMORY_USAGE_SETTING.getKey(), false)
+                .build(),
+            Collections.emptyList(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final BigArrays offHeapBigArrays = new BigArrays(
+            new MockPageCacheRecycler(Settings.builder().put(PageCacheRecycler.OFF_HEAP_SETTING.getKey(), true).build()),
+            hcbs, CircuitBreaker.REQUEST).withCircuitBreaking();
+        final CircuitBreaker offHeapBreaker = hcbs.getBreaker(CircuitBreaker.OFF_HEAP);
+        final CircuitBreaker requestBreaker = hcbs.getBreaker(CircuitBreaker.REQUEST);
+
+        // off-heap arrays are accounted on both breakers
+        final LongArray longs = offHeapBigArrays.newLongArray(PageCacheRecycler.LONG_PAGE_SIZE * 2);
+        assertEquals(longs.ramBytesUsed(), offHeapBreaker.getUsed());
+        assertEquals(longs.ramBytesUsed(), requestBreaker.getUsed());
+        // heap arrays only on the request breaker
+        final IntArray ints = offHeapBigArrays.newIntArray(PageCacheRecycler.INT_PAGE_SIZE * 2);
+        assertEquals(longs.ramBytesUsed(), offHeapBreaker.getUsed());
+        assertEquals(longs.ramBytesUsed() + ints.ramBytesUsed(), requestBreaker.getUsed());
+
+        // the direct memory runs out long before the request breaker trips
+        CircuitBreakingException e = expectThrows(CircuitBreakingException.class,
+            () -> offHeapBigArrays.resize(longs, offHeapLimit / Long.BYTES + 1));
+        assertThat(e.getMessage(), containsString("[off_heap] Data too large"));
+        assertEquals(longs.ramBytesUsed(), offHeapBreaker.getUsed());
+        assertEquals(longs.ramBytesUsed() + ints.ramBytesUsed(), requestBreaker.getUsed());
+
+        Releasables.close(longs, ints);
+        assertEquals(0, offHeapBreaker.getUsed());
+        assertEquals(0, requestBreaker.getUsed());
+    }
+
     public void testByteArrayEquals() {
         final ByteArray empty1 = byteArrayWithBytes(BytesRef.EMPTY_BYTES);
         final ByteArray empty2 = byteArrayWithBytes(BytesRef.EMPTY_BYTES);
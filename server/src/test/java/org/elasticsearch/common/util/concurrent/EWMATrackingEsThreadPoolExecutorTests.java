@@ -9,12 +9,16 @@
 package org.elasticsearch.common.util.concurrent;
 
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.test.ESTestCase;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 
 /**
  * Tests for the automatic queue resizing of the {@code QueueResizingEsThreadPoolExecutorTests}
@@ -76,6 +80,96 @@ public class EWMATrackingEsThreadPoolExecutorTests extends ESTestCase {
         executor.awaitTermination(10, TimeUnit.SECONDS);
     }
 
+    public void testQueueLatencyPercentiles() {
+        final QueueLatencyTracker tracker = new QueueLatencyTracker(10);
+        assertArrayEquals(new long[] { -1, -1 }, tracker.percentiles(50, 99));
+        for (int i = 1; i <= 10; i++) {
+            tracker.add(i);
+        }
+        assertArrayEquals(new long[] { 1, 5, 9, 10 }, tracker.percentiles(0, 50, 90, 99));
+        // only the most recent samples are kept
+        for (int i = 91; i <= 100; i++) {
+            tracker.add(i);
+        }
+        assertArrayEquals(new long[] { 91, 95, 100 }, tracker.percentiles(0, 50, 100));
+        expectThrows(IllegalArgumentException.class, () -> tracker.percentiles(101));
+    }
+
+    public void testQueueLatencyIsTracked() throws Exception {
+        ThreadContext context = new ThreadContext(Settings.EMPTY);
+        EWMATrackingEsThreadPoolExecutor executor = (EWMATrackingEsThreadPoolExecutor) EsExecutors.newFixed("test-threadpool", 1, 10,
+            EsExecutors.daemonThreadFactory("queuetest"), context, true);
+        assertArrayEquals(new long[] { -1 }, executor.getQueueLatencyPercentiles(50));
+        final CountDownLatch done = new CountDownLatch(1);
+        executor.execute(done::countDown);
+        done.await();
+        assertBusy(() -> assertThat(executor.getQueueLatencyPercentiles(50)[0], greaterThan(-1L)));
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    public void testRejectsOnExpectedQueueWait() throws Exception {
+        ThreadContext context = new ThreadContext(Settings.EMPTY);
+        EWMATrackingEsThreadPoolExecutor executor = (EWMATrackingEsThreadPoolExecutor) EsExecutors.newFixed("test-threadpool", 1, 100,
+            EsExecutors.daemonThreadFactory("queuetest"), context, true, TimeValue.timeValueMillis(1));
+        assertThat(executor.getMaxQueueWait(), equalTo(TimeValue.timeValueMillis(1)));
+
+        // seed the execution time average with a slow task
+        executor.execute(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertBusy(() -> assertThat(executor.getTaskExecutionEWMA(), greaterThan((double) TimeUnit.MILLISECONDS.toNanos(1))));
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        started.await();
+        // nothing is queued yet so this one is admitted
+        executor.execute(() -> {});
+        assertThat(executor.getCurrentQueueSize(), equalTo(1));
+        assertThat(executor.getExpectedQueueWaitNanos(), greaterThan(TimeUnit.MILLISECONDS.toNanos(1)));
+
+        // the queue has plenty of capacity left but the expected wait is too long
+        expectThrows(EsRejectedExecutionException.class, () -> executor.execute(() -> {}));
+        assertThat(((EsAbortPolicy) executor.getRejectedExecutionHandler()).rejected(), equalTo(1L));
+
+        // forced executions are still queued
+        final AtomicBoolean forcedRan = new AtomicBoolean();
+        executor.execute(new AbstractRunnable() {
+            @Override
+            public boolean isForceExecution() {
+                return true;
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                throw new AssertionError(e);
+            }
+
+            @Override
+            protected void doRun() {
+                forcedRan.set(true);
+            }
+        });
+        assertThat(executor.getCurrentQueueSize(), equalTo(2));
+
+        release.countDown();
+        assertBusy(() -> assertTrue(forcedRan.get()));
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
     private Function<Runnable, WrappedRunnable> fastWrapper() {
         return (runnable) -> new SettableTimedRunnable(TimeUnit.NANOSECONDS.toNanos(100), false);
     }
@@ -0,0 +1,182 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.common.util.concurrent;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class FairQueuingBlockingQueueTests extends ESTestCase {
+
+    private static final String HEADER = "X-Tenant";
+
+    private final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+
+    private void offer(FairQueuingBlockingQueue queue, String tenant, String task, boolean expectAccepted) {
+        try (ThreadContext.StoredContext ignored = threadContext.stashContext()) {
+            if (tenant != null) {
+                threadContext.putHeader(HEADER, tenant);
+            }
+            assertThat(queue.offer(new NamedTask(task)), equalTo(expectAccepted));
+        }
+    }
+
+    private static List<String> drain(FairQueuingBlockingQueue queue) {
+        final List<String> tasks = new ArrayList<>();
+        Runnable task;
+        while ((task = queue.poll()) != null) {
+            tasks.add(task.toString());
+        }
+        return tasks;
+    }
+
+    public void testRoundRobinAcrossTenants() {
+        final FairQueuingBlockingQueue queue = new FairQueuingBlockingQueue(threadContext, HEADER, 100, 100, tenant -> 1);
+        for (int i = 0; i < 4; i++) {
+            offer(queue, "noisy", "noisy-" + i, true);
+        }
+        offer(queue, "quiet", "quiet-0", true);
+        offer(queue, null, "anonymous-0", true);
+        assertThat(queue.size(), equalTo(6));
+
+        assertThat(drain(queue), contains("noisy-0", "quiet-0", "anonymous-0", "noisy-1", "noisy-2", "noisy-3"));
+        assertThat(queue.size(), equalTo(0));
+        assertThat(queue.peek(), nullValue());
+    }
+
+    public void testWeights() {
+        final FairQueuingBlockingQueue queue =
+            new FairQueuingBlockingQueue(threadContext, HEADER, 100, 100, tenant -> tenant.equals("gold") ? 3 : 1);
+        for (int i = 0; i < 6; i++) {
+            offer(queue, "gold", "gold-" + i, true);
+        }
+        for (int i = 0; i < 3; i++) {
+            offer(queue, "bronze", "bronze-" + i, true);
+        }
+        assertThat(drain(queue),
+            contains("gold-0", "gold-1", "gold-2", "bronze-0", "gold-3", "gold-4", "gold-5", "bronze-1", "bronze-2"));
+    }
+
+    public void testCapacities() {
+        final FairQueuingBlockingQueue queue = new FairQueuingBlockingQueue(threadContext, HEADER, 5, 3, tenant -> 1);
+        for (int i = 0; i < 3; i++) {
+            offer(queue, "noisy", "noisy-" + i, true);
+        }
+        // the noisy tenant has used its share of the queue, the other tenants have not
+        offer(queue, "noisy", "noisy-3", false);
+        offer(queue, "quiet", "quiet-0", true);
+        offer(queue, "other", "other-0", true);
+        // the whole queue is full
+        offer(queue, "third", "third-0", false);
+        assertThat(queue.remainingCapacity(), equalTo(0));
+
+        final Map<String, FairQueuingBlockingQueue.TenantStats> stats = queue.tenantStats();
+        assertThat(stats.get("noisy").getQueue(), equalTo(3));
+        assertThat(stats.get("noisy").getRejected(), equalTo(1L));
+        assertThat(stats.get("quiet").getQueue(), equalTo(1));
+        assertThat(stats.get("quiet").getRejected(), equalTo(0L));
+        assertThat(stats.get("third").getRejected(), equalTo(1L));
+
+        // forced tasks bypass both limits
+        try (ThreadContext.StoredContext ignored = threadContext.stashContext()) {
+            threadContext.putHeader(HEADER, "noisy");
+            queue.forcePut(new NamedTask("noisy-forced"));
+        }
+        assertThat(queue.size(), equalTo(6));
+        assertThat(drain(queue), contains("noisy-0", "quiet-0", "other-0", "noisy-1", "noisy-2", "noisy-forced"));
+    }
+
+    public void testRemoveAndDrain() {
+        final FairQueuingBlockingQueue queue = new FairQueuingBlockingQueue(threadContext, HEADER, 100, 100, tenant -> 1);
+        offer(queue, "a", "a-0", true);
+        offer(queue, "b", "b-0", true);
+        offer(queue, "a", "a-1", true);
+        final Runnable b0 = queue.stream().filter(task -> task.toString().equals("b-0")).findFirst().get();
+        assertTrue(queue.remove(b0));
+        assertFalse(queue.remove(b0));
+        assertThat(queue.size(), equalTo(2));
+
+        final List<Runnable> drained = new ArrayList<>();
+        assertThat(queue.drainTo(drained, 1), equalTo(1));
+        assertThat(queue.drainTo(drained), equalTo(1));
+        assertThat(drained.toString(), equalTo("[a-0, a-1]"));
+        assertThat(queue.size(), equalTo(0));
+    }
+
+    public void testPollWithTimeout() throws InterruptedException {
+        final FairQueuingBlockingQueue queue = new FairQueuingBlockingQueue(threadContext, HEADER, 100, 100, tenant -> 1);
+        assertThat(queue.poll(1, TimeUnit.MILLISECONDS), nullValue());
+        offer(queue, "a", "a-0", true);
+        assertThat(queue.poll(1, TimeUnit.MILLISECONDS).toString(), equalTo("a-0"));
+    }
+
+    public void testExecutorRunsTasksFairly() throws Exception {
+        final FairQueuingBlockingQueue queue = new FairQueuingBlockingQueue(threadContext, HEADER, 100, 100, tenant -> 1);
+        final EsThreadPoolExecutor executor = EsExecutors.newFixed(getTestName(), 1, queue,
+            EsExecutors.daemonThreadFactory("queuetest"), threadContext, randomBoolean(), TimeValue.MINUS_ONE);
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch started = new CountDownLatch(1);
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            started.await();
+
+            final List<String> order = Collections.synchronizedList(new ArrayList<>());
+            final CountDownLatch done = new CountDownLatch(4);
+            for (String task : new String[] { "noisy-0", "noisy-1", "noisy-2", "quiet-0" }) {
+                try (ThreadContext.StoredContext ignored = threadContext.stashContext()) {
+                    threadContext.putHeader(HEADER, task.substring(0, task.indexOf('-')));
+                    executor.execute(() -> {
+                        order.add(task);
+                        done.countDown();
+                    });
+                }
+            }
+            release.countDown();
+            done.await();
+            assertThat(order, contains("noisy-0", "quiet-0", "noisy-1", "noisy-2"));
+        } finally {
+            terminate(executor);
+        }
+    }
+
+    private static class NamedTask implements Runnable {
+        private final String name;
+
+        NamedTask(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
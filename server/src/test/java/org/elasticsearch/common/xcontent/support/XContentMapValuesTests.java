@@ -64,6 +64,15 @@ public class XContentMapValuesTests extends AbstractFilteringTestCase {
         assertEquals("Filtered map must be equal to the expected map",
                 toMap(expected, xContentType, humanReadable),
                 XContentMapValues.filter(toMap(actual, xContentType, humanReadable), sourceIncludes, sourceExcludes));
+
+        ToXContentObject actualToXContent = (builder, params) -> actual.apply(builder);
+        try (XContentParser parser = createParser(xContentType.xContent(), toXContent(actualToXContent, xContentType, humanReadable))) {
+            XContentBuilder filtered = XContentBuilder.builder(xContentType.xContent());
+            XContentMapValues.streamingFilter(sourceIncludes, sourceExcludes).accept(parser, filtered);
+            assertEquals("Streaming filtered source must be equal to the expected map",
+                    toMap(expected, xContentType, humanReadable),
+                    convertToMap(BytesReference.bytes(filtered), true, xContentType).v2());
+        }
     }
 
     @SuppressWarnings({"unchecked"})
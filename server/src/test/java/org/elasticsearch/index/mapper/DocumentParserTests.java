@@ -1440,6 +1440,15 @@ public class DocumentParserTests extends MapperServiceTestCase {
             IndexableField field = doc.rootDoc().getField(DocumentParserTestsPlugin.MockMetadataMapper.CONTENT_TYPE);
             assertEquals("mock-metadata-field-value", field.stringValue());
         }
+        {
+            // A metadata field name is a regular field once it is inside an object
+            ParsedDocument doc = mapper.parse(source(b ->
+                b.startObject("foo").field(DocumentParserTestsPlugin.MockMetadataMapper.CONTENT_TYPE, "value").endObject()
+            ));
+            assertNull(doc.rootDoc().getField(DocumentParserTestsPlugin.MockMetadataMapper.CONTENT_TYPE));
+            assertNotNull(doc.dynamicMappingsUpdate());
+            assertNotNull(doc.rootDoc().getField("foo." + DocumentParserTestsPlugin.MockMetadataMapper.CONTENT_TYPE));
+        }
     }
 
     public void testSimpleMapper() throws Exception {
@@ -35,6 +35,7 @@ public class SourceFieldMapperTests extends MetadataMapperTestCase {
         checker.registerConflictCheck("enabled", b -> b.field("enabled", false));
         checker.registerConflictCheck("includes", b -> b.array("includes", "foo*"));
         checker.registerConflictCheck("excludes", b -> b.array("excludes", "foo*"));
+        checker.registerConflictCheck("format", b -> b.field("format", "smile"));
     }
 
     public void testNoFormat() throws Exception {
@@ -57,6 +58,48 @@ public class SourceFieldMapperTests extends MetadataMapperTestCase {
         assertThat(XContentHelper.xContentType(doc.source()), equalTo(XContentType.SMILE));
     }
 
+    public void testSmileFormat() throws Exception {
+        DocumentMapper documentMapper = createDocumentMapper(topMapping(
+            b -> b.startObject("_source").field("format", "smile").endObject()));
+        ParsedDocument doc = documentMapper.parse(source(b -> {
+            b.startObject("path1").field("field1", "value1").endObject();
+            b.array("path2", 1, 2, 3);
+        }));
+
+        IndexableField sourceField = doc.rootDoc().getField("_source");
+        BytesReference storedSource = new BytesArray(sourceField.binaryValue());
+        assertThat(XContentHelper.xContentType(storedSource), equalTo(XContentType.SMILE));
+        assertThat(XContentHelper.convertToMap(storedSource, true, XContentType.SMILE).v2(),
+            equalTo(XContentHelper.convertToMap(doc.source(), true, XContentType.JSON).v2()));
+        // the stored source is complete so there is no need to keep the original for recovery
+        assertNull(doc.rootDoc().getField(SourceFieldMapper.RECOVERY_SOURCE_NAME));
+        assertTrue(documentMapper.sourceMapper().isComplete());
+
+        BytesReference smileSource = BytesReference.bytes(XContentFactory.smileBuilder().startObject()
+            .field("field", "value")
+            .endObject());
+        doc = documentMapper.parse(new SourceToParse("_doc", "1", smileSource, XContentType.SMILE));
+        assertThat(doc.rootDoc().getField("_source").binaryValue(), equalTo(smileSource.toBytesRef()));
+    }
+
+    public void testSmileFormatWithIncludes() throws Exception {
+        DocumentMapper documentMapper = createDocumentMapper(topMapping(
+            b -> b.startObject("_source").field("format", "smile").array("includes", "path1*").endObject()));
+
+        ParsedDocument doc = documentMapper.parse(source(b -> {
+            b.startObject("path1").field("field1", "value1").endObject();
+            b.startObject("path2").field("field2", "value2").endObject();
+        }));
+
+        IndexableField sourceField = doc.rootDoc().getField("_source");
+        BytesReference storedSource = new BytesArray(sourceField.binaryValue());
+        assertThat(XContentHelper.xContentType(storedSource), equalTo(XContentType.SMILE));
+        Map<String, Object> sourceAsMap = XContentHelper.convertToMap(storedSource, true, XContentType.SMILE).v2();
+        assertThat(sourceAsMap.containsKey("path1"), equalTo(true));
+        assertThat(sourceAsMap.containsKey("path2"), equalTo(false));
+        assertNotNull(doc.rootDoc().getField(SourceFieldMapper.RECOVERY_SOURCE_NAME));
+    }
+
     public void testIncludes() throws Exception {
         DocumentMapper documentMapper = createDocumentMapper(topMapping(
             b -> b.startObject("_source").array("includes", "path1*").endObject()));
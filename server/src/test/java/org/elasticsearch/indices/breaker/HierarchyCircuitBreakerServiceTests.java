@@ -17,6 +17,7 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.monitor.jvm.JvmInfo;
 import org.elasticsearch.search.aggregations.MultiBucketConsumerService;
 import org.elasticsearch.test.ESTestCase;
@@ -272,6 +273,71 @@ public class HierarchyCircuitBreakerServiceTests extends ESTestCase {
         assertEquals(0, requestBreaker.getTrippedCount());
     }
 
+    public void testOffHeapReservationsDoNotCountTowardsRealMemoryUsage() {
+        Settings clusterSettings = Settings.builder()
+            .put(HierarchyCircuitBreakerService.USE_REAL_MEMORY_USAGE_SETTING.getKey(), Boolean.TRUE)
+            .put(HierarchyCircuitBreakerService.TOTAL_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "200b")
+            .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "300b")
+            .build();
+
+        AtomicLong memoryUsage = new AtomicLong(150);
+        final CircuitBreakerService service = new HierarchyCircuitBreakerService(clusterSettings,
+            Collections.emptyList(),
+            new ClusterSettings(clusterSettings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS)) {
+            @Override
+            long currentMemoryUsage() {
+                return memoryUsage.get();
+            }
+        };
+        final CircuitBreaker requestBreaker = service.getBreaker(CircuitBreaker.REQUEST);
+
+        // the same reservation breaks the parent if it is on heap but not if it is off-heap
+        expectThrows(CircuitBreakingException.class, () -> requestBreaker.addEstimateBytesAndMaybeBreak(100, "request"));
+        requestBreaker.addEstimateBytesAndMaybeBreak(100, BigArrays.OFF_HEAP_LABEL);
+        assertEquals(100, requestBreaker.getUsed());
+
+        // off-heap reservations are still limited by the child breaker
+        CircuitBreakingException exception = expectThrows(CircuitBreakingException.class,
+            () -> requestBreaker.addEstimateBytesAndMaybeBreak(250, BigArrays.OFF_HEAP_LABEL));
+        assertThat(exception.getMessage(), containsString("[request] Data too large"));
+        assertEquals(1, requestBreaker.getTrippedCount());
+
+        // and the parent still breaks if the heap itself is full
+        memoryUsage.set(201);
+        exception = expectThrows(CircuitBreakingException.class,
+            () -> requestBreaker.addEstimateBytesAndMaybeBreak(1, BigArrays.OFF_HEAP_LABEL));
+        assertThat(exception.getMessage(), containsString("[parent] Data too large"));
+    }
+
+    public void testOffHeapBreakerIsNotPartOfTheParent() {
+        Settings clusterSettings = Settings.builder()
+            .put(HierarchyCircuitBreakerService.USE_REAL_MEMORY_USAGE_SETTING.getKey(), Boolean.FALSE)
+            .put(HierarchyCircuitBreakerService.TOTAL_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "200b")
+            .put(HierarchyCircuitBreakerService.REQUEST_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "300b")
+            .put(HierarchyCircuitBreakerService.OFF_HEAP_CIRCUIT_BREAKER_LIMIT_SETTING.getKey(), "500b")
+            .build();
+        final CircuitBreakerService service = new HierarchyCircuitBreakerService(clusterSettings,
+            Collections.emptyList(),
+            new ClusterSettings(clusterSettings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        final CircuitBreaker offHeapBreaker = service.getBreaker(CircuitBreaker.OFF_HEAP);
+        assertEquals(500, offHeapBreaker.getLimit());
+
+        // the direct memory is limited by its own breaker but doesn't fill the parent
+        offHeapBreaker.addEstimateBytesAndMaybeBreak(400, BigArrays.OFF_HEAP_LABEL);
+        service.getBreaker(CircuitBreaker.REQUEST).addEstimateBytesAndMaybeBreak(150, "request");
+        CircuitBreakingException exception = expectThrows(CircuitBreakingException.class,
+            () -> offHeapBreaker.addEstimateBytesAndMaybeBreak(101, BigArrays.OFF_HEAP_LABEL));
+        assertThat(exception.getMessage(), containsString("[off_heap] Data too large"));
+        assertEquals(150, service.stats().getStats(CircuitBreaker.PARENT).getEstimated());
+    }
+
+    public void testOffHeapBreakerDefaultsToHalfOfTheDirectMemory() {
+        final CircuitBreakerService service = new HierarchyCircuitBreakerService(Settings.EMPTY,
+            Collections.emptyList(),
+            new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+        assertEquals(HierarchyCircuitBreakerService.maxDirectMemory() / 2, service.getBreaker(CircuitBreaker.OFF_HEAP).getLimit());
+    }
+
     /**
      * "Integration test" checking that we ask the G1 over limit check before parent breaking.
      * Given that it depends on GC, the main assertion that we do not get a circuit breaking exception in the threads towards
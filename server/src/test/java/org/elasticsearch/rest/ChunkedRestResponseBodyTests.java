@@ -0,0 +1,97 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.rest;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.collect.Iterators;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.MockBigArrays;
+import org.elasticsearch.common.util.MockPageCacheRecycler;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.rest.FakeRestRequest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class ChunkedRestResponseBodyTests extends ESTestCase {
+
+    private final MockBigArrays bigArrays = new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService());
+
+    @SuppressWarnings("unchecked")
+    private static Iterator<ToXContent> fragments(int numDocs) {
+        return Iterators.<ToXContent>concat(
+            Iterators.<ToXContent>single((builder, params) -> builder.startObject().field("took", 1).startArray("docs")),
+            IntStream.range(0, numDocs).<ToXContent>mapToObj(i -> (builder, params) -> builder.startObject()
+                .field("id", i)
+                .field("value", "value-" + i)
+                .endObject()).iterator(),
+            Iterators.<ToXContent>single((builder, params) -> builder.endArray().endObject()));
+    }
+
+    public void testEncodesSameContentAsBuilder() throws IOException {
+        final Map<String, String> params = new HashMap<>();
+        if (randomBoolean()) {
+            params.put("pretty", "true");
+        }
+        if (randomBoolean()) {
+            params.put("filter_path", "docs.id");
+        }
+        final RestRequest request = new FakeRestRequest.Builder(xContentRegistry()).withParams(params).build();
+        final RestChannel channel = new AbstractRestChannel(request, true) {
+            @Override
+            public void sendResponse(RestResponse response) {
+            }
+        };
+        final int numDocs = randomIntBetween(0, 1000);
+
+        final BytesReference expected;
+        final String expectedContentType;
+        try (XContentBuilder builder = channel.newBuilder()) {
+            expectedContentType = builder.getResponseContentTypeString();
+            final Iterator<ToXContent> fragments = fragments(numDocs);
+            while (fragments.hasNext()) {
+                fragments.next().toXContent(builder, request);
+            }
+            expected = BytesReference.bytes(builder);
+        }
+
+        final ChunkedRestResponseBody body = ChunkedRestResponseBody.fromXContent(fragments(numDocs), request, channel);
+        assertThat(body.getResponseContentTypeString(), equalTo(expectedContentType));
+        final int sizeHint = randomIntBetween(1, 1024);
+        final List<ReleasableBytesReference> chunks = new ArrayList<>();
+        try {
+            while (body.isDone() == false) {
+                final ReleasableBytesReference chunk = body.encodeChunk(sizeHint, bigArrays);
+                chunks.add(chunk);
+                if (body.isDone() == false) {
+                    // only the last chunk may be smaller than the size hint
+                    assertThat(chunk.length(), greaterThan(sizeHint - 1));
+                }
+            }
+            final BytesReference actual = CompositeBytesReference.of(chunks.toArray(new BytesReference[0]));
+            assertThat(actual.utf8ToString(), equalTo(expected.utf8ToString()));
+        } finally {
+            Releasables.close(chunks);
+        }
+    }
+}
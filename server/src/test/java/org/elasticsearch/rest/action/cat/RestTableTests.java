@@ -9,8 +9,13 @@
 package org.elasticsearch.rest.action.cat;
 
 import org.elasticsearch.common.Table;
+import org.elasticsearch.common.bytes.ReleasableBytesReference;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.rest.AbstractRestChannel;
+import org.elasticsearch.rest.ChunkedRestResponseBody;
 import org.elasticsearch.rest.RestResponse;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.rest.FakeRestRequest;
@@ -19,6 +24,7 @@ import org.junit.Before;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -242,6 +248,56 @@ public class RestTableTests extends ESTestCase {
         assertEquals(Arrays.asList(1,0,2), rowOrder);
     }
 
+    public void testLargeTablesAreChunked() throws Exception {
+        Table largeTable = new Table();
+        largeTable.startHeaders();
+        largeTable.addCell("id");
+        largeTable.addCell("name");
+        largeTable.endHeaders();
+        int numRows = randomIntBetween(RestTable.CHUNKED_RESPONSE_MIN_ROWS, RestTable.CHUNKED_RESPONSE_MIN_ROWS * 2);
+        for (int i = 0; i < numRows; i++) {
+            largeTable.startRow();
+            largeTable.addCell(i);
+            largeTable.addCell("name-" + i);
+            largeTable.endRow();
+        }
+        boolean json = randomBoolean();
+        Map<String, String> params = new HashMap<>();
+        params.put("format", json ? "json" : "txt");
+        params.put("v", "true");
+        FakeRestRequest request = new FakeRestRequest.Builder(xContentRegistry()).withParams(params).build();
+        RestResponse response = buildResponse(largeTable, new AbstractRestChannel(request, true) {
+            @Override
+            public void sendResponse(RestResponse response) {
+            }
+        });
+        ChunkedRestResponseBody body = response.chunkedContent();
+        assertNotNull(body);
+
+        StringBuilder content = new StringBuilder();
+        while (body.isDone() == false) {
+            try (ReleasableBytesReference chunk = body.encodeChunk(randomIntBetween(1, 4096), BigArrays.NON_RECYCLING_INSTANCE)) {
+                content.append(chunk.utf8ToString());
+            }
+        }
+        if (json) {
+            try (XContentParser parser = createParser(JsonXContent.jsonXContent, content.toString())) {
+                List<Object> rows = parser.list();
+                assertThat(rows.size(), equalTo(numRows));
+                for (int i = 0; i < numRows; i++) {
+                    assertThat(rows.get(i), equalTo(Map.of("id", Integer.toString(i), "name", "name-" + i)));
+                }
+            }
+        } else {
+            String[] lines = content.toString().split("\n");
+            assertThat(lines.length, equalTo(numRows + 1));
+            assertThat(lines[0].trim().split(" +"), equalTo(new String[] { "id", "name" }));
+            for (int i = 0; i < numRows; i++) {
+                assertThat(lines[i + 1].trim().split(" +"), equalTo(new String[] { Integer.toString(i), "name-" + i }));
+            }
+        }
+    }
+
     private RestResponse assertResponseContentType(Map<String, List<String>> headers, String mediaType) throws Exception {
         FakeRestRequest requestWithAcceptHeader = new FakeRestRequest.Builder(xContentRegistry()).withHeaders(headers).build();
         table.startRow();
@@ -224,6 +224,27 @@ public class ScriptServiceTests extends ESTestCase {
         assertEquals(1L, scriptService.stats().getCompilations());
     }
 
+    public void testCompiledScriptsSurviveCacheSettingsChange() throws IOException {
+        buildScriptService(Settings.EMPTY);
+        Script script = new Script(ScriptType.INLINE, "test", "1+1", Collections.emptyMap());
+        ScriptContext<?> context = randomFrom(contexts.values());
+        scriptService.compile(script, context);
+        assertEquals(1L, getByContext(scriptService.stats(), context.name).getCompilations());
+
+        scriptService.cacheHolder.get().set(context.name, scriptService.contextCache(Settings.builder()
+                .put(SCRIPT_MAX_COMPILATIONS_RATE_SETTING.getConcreteSettingForNamespace(context.name).getKey(), "77/5m").build(),
+            context));
+        scriptService.compile(script, context);
+        assertEquals(0L, getByContext(scriptService.stats(), context.name).getCompilations());
+
+        // a cache that can't hold any scripts doesn't take over the compiled scripts
+        scriptService.cacheHolder.get().set(context.name, scriptService.contextCache(Settings.builder()
+                .put(SCRIPT_CACHE_SIZE_SETTING.getConcreteSettingForNamespace(context.name).getKey(), 0).build(),
+            context));
+        scriptService.compile(script, context);
+        assertEquals(1L, getByContext(scriptService.stats(), context.name).getCompilations());
+    }
+
     public void testIndexedScriptCountedInCompilationStats() throws IOException {
         buildScriptService(Settings.EMPTY);
         ScriptContext<?> ctx = randomFrom(contexts.values());
@@ -8,17 +8,25 @@
 package org.elasticsearch.search;
 
 import com.carrotsearch.hppc.IntArrayList;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FilterDirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.PointValues;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.OriginalIndices;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.CanMatchNodeRequest;
+import org.elasticsearch.action.search.CanMatchNodeResponse;
 import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchRequest;
@@ -37,6 +45,7 @@ import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.UUIDs;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
@@ -59,6 +68,7 @@ import org.elasticsearch.index.search.stats.SearchStats;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.SearchOperationListener;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.shard.ShardNotFoundException;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.settings.InternalOrPrivateSettingsPlugin;
 import org.elasticsearch.plugins.Plugin;
@@ -800,6 +810,56 @@ public class SearchServiceTests extends ESSingleNodeTestCase {
         latch.await();
     }
 
+    public void testCanMatchNodeRequest() throws Exception {
+        createIndex("index");
+        client().prepareIndex("index").setId("1").setSource("num", 5).setRefreshPolicy(IMMEDIATE).get();
+        final SearchService service = getInstanceFromNode(SearchService.class);
+        final IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        final IndexShard indexShard = indicesService.indexServiceSafe(resolveIndex("index")).getShard(0);
+        final SearchRequest matchNone = new SearchRequest().allowPartialSearchResults(true)
+            .source(new SearchSourceBuilder().query(new MatchNoneQueryBuilder()));
+        final SearchRequest sorted = new SearchRequest().allowPartialSearchResults(true)
+            .source(new SearchSourceBuilder().sort("num"));
+        final ShardId missingShard = new ShardId(indexShard.shardId().getIndex(), 1);
+        final CanMatchNodeRequest nodeRequest = new CanMatchNodeRequest(List.of(
+            new ShardSearchRequest(OriginalIndices.NONE, matchNone, indexShard.shardId(), 0, 3,
+                new AliasFilter(null, Strings.EMPTY_ARRAY), 1f, -1, null),
+            new ShardSearchRequest(OriginalIndices.NONE, sorted, missingShard, 1, 3,
+                new AliasFilter(null, Strings.EMPTY_ARRAY), 1f, -1, null),
+            new ShardSearchRequest(OriginalIndices.NONE, sorted, indexShard.shardId(), 2, 3,
+                new AliasFilter(null, Strings.EMPTY_ARRAY), 1f, -1, null)));
+
+        PlainActionFuture<CanMatchNodeResponse> future = new PlainActionFuture<>();
+        service.canMatch(nodeRequest, new SearchShardTask(123L, "", "", "", null, Collections.emptyMap()), future);
+        List<CanMatchNodeResponse.ResponseOrFailure> responses = future.get().getResponses();
+        assertThat(responses.size(), equalTo(3));
+        assertFalse(responses.get(0).getResponse().canMatch());
+        assertThat(responses.get(1).getFailure(), instanceOf(ShardNotFoundException.class));
+        assertTrue(responses.get(2).getResponse().canMatch());
+        assertEquals(5L, responses.get(2).getResponse().estimatedMinAndMax().getMax());
+        assertThat(service.canMatchMinAndMaxesCacheSize(), equalTo(1));
+
+        // the min and max are derived again after a refresh
+        client().prepareIndex("index").setId("2").setSource("num", 7).setRefreshPolicy(IMMEDIATE).get();
+        future = new PlainActionFuture<>();
+        service.canMatch(nodeRequest, new SearchShardTask(123L, "", "", "", null, Collections.emptyMap()), future);
+        responses = future.get().getResponses();
+        assertEquals(5L, responses.get(2).getResponse().estimatedMinAndMax().getMin());
+        assertEquals(7L, responses.get(2).getResponse().estimatedMinAndMax().getMax());
+
+        final SearchShardTask cancelledTask = new SearchShardTask(123L, "", "", "", null, Collections.emptyMap()) {
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+        future = new PlainActionFuture<>();
+        service.canMatch(nodeRequest, cancelledTask, future);
+        for (CanMatchNodeResponse.ResponseOrFailure response : future.get().getResponses()) {
+            assertThat(response.getFailure(), instanceOf(TaskCancelledException.class));
+        }
+    }
+
     public void testCanRewriteToMatchNone() {
         assertFalse(SearchService.canRewriteToMatchNone(new SearchSourceBuilder().query(new MatchNoneQueryBuilder())
             .aggregation(new GlobalAggregationBuilder("test"))));
@@ -1333,6 +1393,55 @@ public class SearchServiceTests extends ESSingleNodeTestCase {
         client().clearScroll(clearScrollRequest);
     }
 
+    public void testReadsEngineSegments() throws IOException {
+        try (Directory dir = newDirectory(); IndexWriter w = new IndexWriter(dir, newIndexWriterConfig())) {
+            Document doc = new Document();
+            doc.add(new LongPoint("field", 42));
+            w.addDocument(doc);
+            try (DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(w), new ShardId("index", "_na_", 0))) {
+                assertTrue(ElasticsearchDirectoryReader.readsEngineSegments(reader));
+                // wrappers that pass the segments through see the same min and max
+                assertTrue(ElasticsearchDirectoryReader.readsEngineSegments(apply(reader)));
+
+                // like field level security, hide the points of the field from the request
+                DirectoryReader hidingPoints = new FilterDirectoryReader(reader, new FilterDirectoryReader.SubReaderWrapper() {
+                    @Override
+                    public LeafReader wrap(LeafReader leaf) {
+                        return new FilterLeafReader(leaf) {
+                            @Override
+                            public PointValues getPointValues(String field) {
+                                return null;
+                            }
+
+                            @Override
+                            public CacheHelper getCoreCacheHelper() {
+                                return in.getCoreCacheHelper();
+                            }
+
+                            @Override
+                            public CacheHelper getReaderCacheHelper() {
+                                return in.getReaderCacheHelper();
+                            }
+                        };
+                    }
+                }) {
+                    @Override
+                    protected DirectoryReader doWrapDirectoryReader(DirectoryReader in) {
+                        return in;
+                    }
+
+                    @Override
+                    public CacheHelper getReaderCacheHelper() {
+                        return reader.getReaderCacheHelper();
+                    }
+                };
+                assertSame(reader.getReaderCacheHelper(), hidingPoints.getReaderCacheHelper());
+                assertFalse(ElasticsearchDirectoryReader.readsEngineSegments(hidingPoints));
+                assertFalse(ElasticsearchDirectoryReader.readsEngineSegments(apply(hidingPoints)));
+            }
+        }
+    }
+
     private ReaderContext createReaderContext(IndexService indexService, IndexShard indexShard) {
         return new ReaderContext(new ShardSearchContextId(UUIDs.randomBase64UUID(), randomNonNegativeLong()),
             indexService, indexShard, indexShard.acquireSearcherSupplier(), randomNonNegativeLong(), false);
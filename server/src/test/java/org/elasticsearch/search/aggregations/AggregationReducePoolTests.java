@@ -0,0 +1,132 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.bucket.terms.LongTerms;
+import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator.PipelineTree;
+import org.elasticsearch.test.ESTestCase;
+import org.junit.After;
+import org.junit.Before;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.equalTo;
+
+public class AggregationReducePoolTests extends ESTestCase {
+
+    private ThreadContext threadContext;
+    private AggregationReducePool pool;
+
+    @Before
+    public void createPool() {
+        threadContext = new ThreadContext(Settings.EMPTY);
+        pool = new AggregationReducePool(Settings.EMPTY, randomIntBetween(2, 8), threadContext);
+    }
+
+    @After
+    public void closePool() {
+        pool.close();
+    }
+
+    public void testMapKeepsOrder() {
+        List<Integer> inputs = IntStream.range(0, randomIntBetween(0, 10000)).boxed().collect(Collectors.toList());
+        List<Integer> results = pool.map(inputs, i -> i * 2);
+        assertThat(results.size(), equalTo(inputs.size()));
+        for (int i = 0; i < inputs.size(); i++) {
+            assertThat(results.get(i), equalTo(i * 2));
+        }
+    }
+
+    public void testSmallInputsRunInCallingThread() {
+        List<Integer> inputs = IntStream.range(0, AggregationReducePool.MIN_PARTITION_SIZE).boxed().collect(Collectors.toList());
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = pool.map(inputs, i -> Thread.currentThread());
+        for (Thread thread : threads) {
+            assertSame(caller, thread);
+        }
+    }
+
+    public void testNestedMap() {
+        List<Integer> inputs = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        List<Integer> results = pool.map(inputs, i -> pool.map(inputs, j -> i + j).stream().mapToInt(Integer::intValue).sum());
+        int sum = inputs.stream().mapToInt(Integer::intValue).sum();
+        for (int i = 0; i < inputs.size(); i++) {
+            assertThat(results.get(i), equalTo(sum + i * inputs.size()));
+        }
+    }
+
+    public void testFailure() {
+        List<Integer> inputs = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        int failing = randomFrom(inputs);
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> pool.map(inputs, i -> {
+            if (i == failing) {
+                throw new IllegalArgumentException("failed on [" + i + "]");
+            }
+            return i;
+        }));
+        assertThat(e.getMessage(), equalTo("failed on [" + failing + "]"));
+    }
+
+    public void testPreservesThreadContext() {
+        List<Integer> inputs = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        try (ThreadContext.StoredContext ignored = threadContext.stashContext()) {
+            threadContext.putHeader("header", "value");
+            List<String> headers = pool.map(inputs, i -> threadContext.getHeader("header"));
+            for (String header : headers) {
+                assertThat(header, equalTo("value"));
+            }
+        }
+    }
+
+    public void testReduceTermsInParallel() {
+        int numShards = randomIntBetween(2, 10);
+        List<InternalAggregation> shards = new ArrayList<>(numShards);
+        for (int s = 0; s < numShards; s++) {
+            shards.add(randomTerms("terms", randomIntBetween(0, 2000), true));
+        }
+        AtomicInteger sequentialBuckets = new AtomicInteger();
+        InternalAggregation sequential = shards.get(0).reduce(shards, finalReduce(sequentialBuckets::addAndGet, null));
+        AtomicInteger parallelBuckets = new AtomicInteger();
+        InternalAggregation parallel = shards.get(0).reduce(shards, finalReduce(parallelBuckets::addAndGet, pool));
+        assertThat(parallel, equalTo(sequential));
+        assertThat(parallelBuckets.get(), equalTo(sequentialBuckets.get()));
+    }
+
+    private static InternalAggregation.ReduceContext finalReduce(IntConsumer bucketConsumer, AggregationReducePool pool) {
+        return InternalAggregation.ReduceContext.forFinalReduction(BigArrays.NON_RECYCLING_INSTANCE, null, bucketConsumer,
+            PipelineTree.EMPTY, pool);
+    }
+
+    private LongTerms randomTerms(String name, int numBuckets, boolean withSubAggs) {
+        List<LongTerms.Bucket> buckets = new ArrayList<>(numBuckets);
+        long term = 0;
+        for (int b = 0; b < numBuckets; b++) {
+            term += randomIntBetween(1, 3);
+            InternalAggregations subAggs = withSubAggs
+                ? InternalAggregations.from(singletonList(randomTerms("sub", randomIntBetween(0, 5), false)))
+                : InternalAggregations.EMPTY;
+            buckets.add(new LongTerms.Bucket(term, randomIntBetween(1, 1000), subAggs, false, 0, DocValueFormat.RAW));
+        }
+        // a shard size greater than the number of buckets means that the reduce has no doc count error to account for, which
+        // keeps it from updating the errors of the buckets so that they can be reduced a second time
+        return new LongTerms(name, BucketOrder.key(true), BucketOrder.count(false), 100, 1, emptyMap(), DocValueFormat.RAW,
+            numBuckets + 1, false, 0, buckets, 0);
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.bucket;
+
+import org.elasticsearch.search.aggregations.BaseAggregationTestCase;
+import org.elasticsearch.search.aggregations.bucket.sampler.RandomSamplerAggregationBuilder;
+
+import static org.hamcrest.Matchers.startsWith;
+
+public class RandomSamplerTests extends BaseAggregationTestCase<RandomSamplerAggregationBuilder> {
+
+    @Override
+    protected final RandomSamplerAggregationBuilder createTestAggregatorBuilder() {
+        RandomSamplerAggregationBuilder factory = new RandomSamplerAggregationBuilder(randomAlphaOfLengthBetween(3, 10),
+            randomDoubleBetween(Double.MIN_VALUE, 1.0, true));
+        if (randomBoolean()) {
+            factory.seed(randomInt());
+        }
+        return factory;
+    }
+
+    public void testInvalidProbability() {
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+            () -> new RandomSamplerAggregationBuilder("sampler", randomFrom(0.0, -1.0, 1.5)));
+        assertThat(e.getMessage(), startsWith("[probability] must be in (0, 1] but was ["));
+    }
+}
@@ -20,9 +20,14 @@ import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.FilterDirectoryReader;
+import org.apache.lucene.index.FilterLeafReader;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.SortedNumericDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.DocValuesFieldExistsQuery;
 import org.apache.lucene.search.IndexSearcher;
@@ -34,11 +39,17 @@ import org.apache.lucene.search.SortedNumericSortField;
 import org.apache.lucene.search.SortedSetSortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.NumericUtils;
 import org.apache.lucene.util.TestUtil;
 import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.geo.GeoPoint;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.time.DateFormatter;
 import org.elasticsearch.common.time.DateFormatters;
@@ -55,6 +66,8 @@ import org.elasticsearch.index.mapper.NumberFieldMapper;
 import org.elasticsearch.index.mapper.ObjectMapper;
 import org.elasticsearch.index.mapper.SeqNoFieldMapper;
 import org.elasticsearch.index.mapper.Uid;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
 import org.elasticsearch.search.aggregations.Aggregator;
 import org.elasticsearch.search.aggregations.AggregatorTestCase;
 import org.elasticsearch.search.aggregations.bucket.InternalSingleBucketAggregation;
@@ -68,6 +81,7 @@ import org.elasticsearch.search.aggregations.metrics.InternalMax;
 import org.elasticsearch.search.aggregations.metrics.MaxAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.TopHits;
 import org.elasticsearch.search.aggregations.metrics.TopHitsAggregationBuilder;
+import org.elasticsearch.search.aggregations.support.AggregationContext;
 import org.elasticsearch.search.aggregations.support.ValueType;
 import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.test.IndexSettingsModule;
@@ -75,6 +89,7 @@ import org.junit.After;
 import org.junit.Before;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.time.ZoneId;
 import java.util.ArrayList;
@@ -85,22 +100,28 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongPredicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static org.elasticsearch.search.aggregations.bucket.nested.NestedAggregatorTests.nestedObject;
+import static org.elasticsearch.test.InternalAggregationTestCase.DEFAULT_MAX_BUCKETS;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 
 public class CompositeAggregatorTests  extends AggregatorTestCase {
     private static MappedFieldType[] FIELD_TYPES;
     private List<ObjectMapper> objectMappers;
+    private ConcurrentMap<String, Object> pointInTimeState;
 
     @Override
     @Before
@@ -125,6 +146,7 @@ public class CompositeAggregatorTests  extends AggregatorTestCase {
         super.tearDown();
         FIELD_TYPES = null;
         objectMappers = null;
+        pointInTimeState = null;
     }
 
     @Override
@@ -132,6 +154,11 @@ public class CompositeAggregatorTests  extends AggregatorTestCase {
         return objectMappers;
     }
 
+    @Override
+    protected ConcurrentMap<String, Object> pointInTimeState() {
+        return pointInTimeState;
+    }
+
     @Override
     protected IndexReader wrapDirectoryReader(DirectoryReader reader) throws IOException {
         if (false == objectMappers().isEmpty()) {
@@ -2498,6 +2525,241 @@ public class CompositeAggregatorTests  extends AggregatorTestCase {
         }
     }
 
+    public void testCursorPages() throws IOException {
+        List<Map<String, List<Object>>> dataset = new ArrayList<>();
+        int numDocs = randomIntBetween(1, 500);
+        for (int i = 0; i < numDocs; i++) {
+            // multi-valued documents belong to buckets past the end of the cursor too
+            List<Object> keywords = new ArrayList<>();
+            int numKeywords = randomIntBetween(0, 3);
+            for (int k = 0; k < numKeywords; k++) {
+                keywords.add(Integer.toString(randomIntBetween(0, 100)));
+            }
+            dataset.add(createDocument("keyword", keywords, "long", randomLongBetween(0, 5)));
+        }
+        boolean missingBucket = randomBoolean();
+        SortOrder keywordOrder = randomFrom(SortOrder.values());
+        SortOrder longOrder = randomFrom(SortOrder.values());
+        int size = randomIntBetween(1, 20);
+        Supplier<CompositeAggregationBuilder> create = () -> new CompositeAggregationBuilder("name",
+            Arrays.asList(
+                new TermsValuesSourceBuilder("keyword").field("keyword").missingBucket(missingBucket).order(keywordOrder),
+                new TermsValuesSourceBuilder("long").field("long").order(longOrder)
+            )).size(size).subAggregation(new MaxAggregationBuilder("max").field("long"));
+
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (Map<String, List<Object>> fields : dataset) {
+                    Document document = new Document();
+                    addToDocument(document, fields);
+                    indexWriter.addDocument(document);
+                }
+            }
+            // the cursor is only kept for requests that read the engine's segments as they are
+            try (IndexReader indexReader = wrapInMockESDirectoryReader(DirectoryReader.open(directory))) {
+                IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+                pointInTimeState = new ConcurrentHashMap<>();
+                // the cursor of the first query must not be read for the second
+                for (Query query : Arrays.asList(new MatchAllDocsQuery(), LongPoint.newRangeQuery("long", 1, 3))) {
+                    List<InternalComposite> expected = collectPages(indexSearcher, query, create, 1);
+                    List<InternalComposite> pages = collectPages(indexSearcher, query, create, randomIntBetween(2, 10));
+                    assertEquals(expected.size(), pages.size());
+                    for (int p = 0; p < expected.size(); p++) {
+                        assertEquals(expected.get(p).afterKey(), pages.get(p).afterKey());
+                        List<InternalComposite.InternalBucket> expectedBuckets = expected.get(p).getBuckets();
+                        List<InternalComposite.InternalBucket> buckets = pages.get(p).getBuckets();
+                        assertEquals(expectedBuckets.size(), buckets.size());
+                        for (int b = 0; b < expectedBuckets.size(); b++) {
+                            assertEquals(expectedBuckets.get(b).getKey(), buckets.get(b).getKey());
+                            assertEquals(expectedBuckets.get(b).getDocCount(), buckets.get(b).getDocCount());
+                            InternalMax expectedMax = expectedBuckets.get(b).getAggregations().get("max");
+                            InternalMax max = buckets.get(b).getAggregations().get("max");
+                            assertEquals(expectedMax.getValue(), max.getValue(), 0d);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private List<InternalComposite> collectPages(IndexSearcher searcher, Query query, Supplier<CompositeAggregationBuilder> create,
+                                                 int cursorPages) throws IOException {
+        List<InternalComposite> pages = new ArrayList<>();
+        boolean readsEngineSegments = ElasticsearchDirectoryReader.readsEngineSegments((DirectoryReader) searcher.getIndexReader());
+        Map<String, Object> after = null;
+        do {
+            CompositeAggregationBuilder builder = create.get().cursorPages(cursorPages).aggregateAfter(after);
+            // aggregate all leaves together like a shard does, the cursor is kept for the whole reader
+            InternalComposite page = searchAndReduce(createIndexSettings(null), searcher, query, builder, DEFAULT_MAX_BUCKETS,
+                false, FIELD_TYPES);
+            if (cursorPages > 1 && page.getBuckets().isEmpty() == false && readsEngineSegments) {
+                assertFalse(pointInTimeState.isEmpty());
+            }
+            pages.add(page);
+            after = page.afterKey();
+        } while (after != null);
+        return pages;
+    }
+
+    public void testCursorIsAccountedOnTheBreaker() throws IOException {
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (int i = 0; i < 100; i++) {
+                    Document document = new Document();
+                    addToDocument(document, createDocument("keyword", Integer.toString(i)));
+                    indexWriter.addDocument(document);
+                }
+            }
+            try (IndexReader indexReader = wrapInMockESDirectoryReader(DirectoryReader.open(directory))) {
+                IndexSearcher indexSearcher = new IndexSearcher(indexReader);
+                pointInTimeState = new ConcurrentHashMap<>();
+                CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(
+                    Settings.builder().put(HierarchyCircuitBreakerService.USE_REAL_MEMORY_USAGE_SETTING.getKey(), false).build(),
+                    Collections.emptyList(),
+                    new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS)
+                );
+                CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.REQUEST);
+                CompositeAggregationBuilder builder = new CompositeAggregationBuilder("name",
+                    Collections.singletonList(new TermsValuesSourceBuilder("keyword").field("keyword"))).size(10).cursorPages(5);
+                AggregationContext context = createAggregationContext(indexSearcher, createIndexSettings(null), new MatchAllDocsQuery(),
+                    breakerService, 0, DEFAULT_MAX_BUCKETS, FIELD_TYPES);
+                Aggregator aggregator = createAggregator(builder, context);
+                aggregator.preCollection();
+                indexSearcher.search(new MatchAllDocsQuery(), aggregator);
+                aggregator.postCollection();
+                aggregator.buildTopLevel();
+
+                // the cursor keeps its bytes on the breaker after the request until it is released
+                assertEquals(1, pointInTimeState.size());
+                Releasable cursor = (Releasable) pointInTimeState.values().iterator().next();
+                long used = breaker.getUsed();
+                cursor.close();
+                long released = breaker.getUsed();
+                assertThat(released, lessThan(used));
+                cursor.close();
+                assertEquals(released, breaker.getUsed());
+            }
+        }
+    }
+
+    public void testCursorIsNotSharedWithOtherViewsOfThePointInTime() throws IOException {
+        try (Directory directory = newDirectory()) {
+            try (RandomIndexWriter indexWriter = new RandomIndexWriter(random(), directory)) {
+                for (int i = 0; i < 120; i++) {
+                    Document document = new Document();
+                    addToDocument(document, createDocument("keyword", Integer.toString(i % 20), "long", (long) i));
+                    indexWriter.addDocument(document);
+                }
+            }
+            try (DirectoryReader engineReader = wrapInMockESDirectoryReader(DirectoryReader.open(directory))) {
+                // like document level security, show each view half of the documents of every bucket
+                DirectoryReader evenReader = hideDocuments(engineReader, value -> value / 20 % 2 != 0);
+                DirectoryReader oddReader = hideDocuments(engineReader, value -> value / 20 % 2 == 0);
+                Supplier<CompositeAggregationBuilder> create = () -> new CompositeAggregationBuilder("name",
+                    Collections.singletonList(new TermsValuesSourceBuilder("keyword").field("keyword"))).size(3);
+                pointInTimeState = new ConcurrentHashMap<>();
+                for (DirectoryReader reader : Arrays.asList(evenReader, oddReader)) {
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    List<InternalComposite> expected = collectPages(searcher, new MatchAllDocsQuery(), create, 1);
+                    List<InternalComposite> pages = collectPages(searcher, new MatchAllDocsQuery(), create, 5);
+                    // the views don't keep a cursor, even for each other
+                    assertTrue(pointInTimeState.isEmpty());
+                    assertPagesEqual(expected, pages);
+                }
+
+                // the engine's view keeps a cursor but the other views of the point in time don't read it
+                IndexSearcher engineSearcher = new IndexSearcher(engineReader);
+                InternalComposite first = searchAndReduce(createIndexSettings(null), engineSearcher, new MatchAllDocsQuery(),
+                    create.get().cursorPages(5), DEFAULT_MAX_BUCKETS, false, FIELD_TYPES);
+                assertEquals(6L, first.getBuckets().get(0).getDocCount());
+                assertEquals(1, pointInTimeState.size());
+                Object cursor = pointInTimeState.values().iterator().next();
+                for (DirectoryReader reader : Arrays.asList(evenReader, oddReader)) {
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    InternalComposite page = searchAndReduce(createIndexSettings(null), searcher, new MatchAllDocsQuery(),
+                        create.get().cursorPages(5), DEFAULT_MAX_BUCKETS, false, FIELD_TYPES);
+                    assertEquals(first.afterKey(), page.afterKey());
+                    assertEquals(first.getBuckets().size(), page.getBuckets().size());
+                    for (int b = 0; b < page.getBuckets().size(); b++) {
+                        assertEquals(first.getBuckets().get(b).getKey(), page.getBuckets().get(b).getKey());
+                        // half of the documents of each bucket are hidden from the view
+                        assertEquals(first.getBuckets().get(b).getDocCount() / 2, page.getBuckets().get(b).getDocCount());
+                    }
+                    assertSame(cursor, pointInTimeState.values().iterator().next());
+                }
+            }
+        }
+    }
+
+    private void assertPagesEqual(List<InternalComposite> expected, List<InternalComposite> pages) {
+        assertEquals(expected.size(), pages.size());
+        for (int p = 0; p < expected.size(); p++) {
+            assertEquals(expected.get(p).afterKey(), pages.get(p).afterKey());
+            List<InternalComposite.InternalBucket> expectedBuckets = expected.get(p).getBuckets();
+            List<InternalComposite.InternalBucket> buckets = pages.get(p).getBuckets();
+            assertEquals(expectedBuckets.size(), buckets.size());
+            for (int b = 0; b < expectedBuckets.size(); b++) {
+                assertEquals(expectedBuckets.get(b).getKey(), buckets.get(b).getKey());
+                assertEquals(expectedBuckets.get(b).getDocCount(), buckets.get(b).getDocCount());
+            }
+        }
+    }
+
+    /**
+     * Hide the documents whose {@code long} field matches {@code hidden} from the segments of {@code reader}
+     * but pass the cache helpers through, like document level security does.
+     */
+    private static DirectoryReader hideDocuments(DirectoryReader reader, LongPredicate hidden) throws IOException {
+        return new FilterDirectoryReader(reader, new FilterDirectoryReader.SubReaderWrapper() {
+            @Override
+            public LeafReader wrap(LeafReader leaf) {
+                FixedBitSet live = new FixedBitSet(leaf.maxDoc());
+                try {
+                    SortedNumericDocValues values = DocValues.getSortedNumeric(leaf, "long");
+                    for (int doc = 0; doc < leaf.maxDoc(); doc++) {
+                        if ((leaf.getLiveDocs() == null || leaf.getLiveDocs().get(doc))
+                            && values.advanceExact(doc) && hidden.test(values.nextValue()) == false) {
+                            live.set(doc);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return new FilterLeafReader(leaf) {
+                    @Override
+                    public Bits getLiveDocs() {
+                        return live;
+                    }
+
+                    @Override
+                    public int numDocs() {
+                        return live.cardinality();
+                    }
+
+                    @Override
+                    public CacheHelper getCoreCacheHelper() {
+                        return in.getCoreCacheHelper();
+                    }
+
+                    @Override
+                    public CacheHelper getReaderCacheHelper() {
+                        return in.getReaderCacheHelper();
+                    }
+                };
+            }
+        }) {
+            @Override
+            protected DirectoryReader doWrapDirectoryReader(DirectoryReader in) {
+                return in;
+            }
+
+            @Override
+            public CacheHelper getReaderCacheHelper() {
+                return in.getReaderCacheHelper();
+            }
+        };
+    }
+
     private void testSearchCase(List<Query> queries,
                                 List<Map<String, List<Object>>> dataset,
                                 Supplier<CompositeAggregationBuilder> create,
@@ -35,23 +35,27 @@ import org.elasticsearch.search.aggregations.LeafBucketCollector;
 import org.elasticsearch.search.aggregations.bucket.range.RangeAggregator;
 import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.MaxAggregationBuilder;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator.PipelineTree;
 import org.elasticsearch.search.aggregations.support.AggregationContext;
 import org.elasticsearch.search.aggregations.support.AggregationInspectionHelper;
 import org.hamcrest.Matcher;
 
 import java.io.IOException;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
@@ -1277,6 +1281,87 @@ public class DateHistogramAggregatorTests extends DateHistogramAggregatorTestCas
         }, ft, fnft);
     }
 
+    public void testSegmentsInOneBucketCountedFromPoints() throws IOException {
+        segmentsInOneBucketTestCase(
+            new DateHistogramAggregationBuilder("test").field(AGGREGABLE_DATE).fixedInterval(DateHistogramInterval.HOUR).minDocCount(1),
+            new MatchAllDocsQuery(),
+            debug -> {
+                assertThat(((Number) debug.get("segments_counted")).intValue(), greaterThan(0));
+                assertThat(debug, hasEntry("segments_with_one_bucket", 0));
+            }
+        );
+    }
+
+    public void testSegmentsInOneBucketWithSubAggregation() throws IOException {
+        segmentsInOneBucketTestCase(
+            new DateHistogramAggregationBuilder("test").field(AGGREGABLE_DATE)
+                .fixedInterval(DateHistogramInterval.HOUR)
+                .minDocCount(1)
+                .subAggregation(new MaxAggregationBuilder("max").field(AGGREGABLE_DATE)),
+            new MatchAllDocsQuery(),
+            debug -> {
+                assertThat(debug, hasEntry("segments_counted", 0));
+                assertThat(((Number) debug.get("segments_with_one_bucket")).intValue(), greaterThan(0));
+            }
+        );
+    }
+
+    public void testSegmentsInOneBucketWithQuery() throws IOException {
+        segmentsInOneBucketTestCase(
+            new DateHistogramAggregationBuilder("test").field(AGGREGABLE_DATE).fixedInterval(DateHistogramInterval.HOUR).minDocCount(1),
+            LongPoint.newRangeQuery(AGGREGABLE_DATE, Long.MIN_VALUE, Long.MAX_VALUE),
+            debug -> {
+                assertThat(debug, hasEntry("segments_counted", 0));
+                assertThat(((Number) debug.get("segments_with_one_bucket")).intValue(), greaterThan(0));
+            }
+        );
+    }
+
+    /**
+     * Indexes a segment whose dates all fall in the same hour next to segments that span
+     * too many hours to be aggregated as a range and checks that every path counts the same.
+     */
+    private void segmentsInOneBucketTestCase(
+        DateHistogramAggregationBuilder builder,
+        Query query,
+        Consumer<Map<String, Object>> verifyDebug
+    ) throws IOException {
+        DateFieldMapper.DateFieldType ft = aggregableDateFieldType(false, true);
+        long hour = 60 * 60 * 1000;
+        long start = asLong("2020-01-01T10:00:00", ft);
+        Map<Long, Long> expected = new TreeMap<>();
+        List<Long> oneHour = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            oneHour.add(start + randomLongBetween(0, hour - 1));
+        }
+        List<Long> spread = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            spread.add(start + (i - 100) * 50 * hour + randomLongBetween(0, hour - 1));
+        }
+        expected.merge(start, (long) oneHour.size(), Long::sum);
+        for (long date : spread) {
+            expected.merge(date - Math.floorMod(date, hour), 1L, Long::sum);
+        }
+        withNonMergingIndex(iw -> {
+            for (long date : oneHour) {
+                iw.addDocument(List.of(new SortedNumericDocValuesField(AGGREGABLE_DATE, date), new LongPoint(AGGREGABLE_DATE, date)));
+            }
+            iw.commit();
+            for (long date : spread) {
+                iw.addDocument(List.of(new SortedNumericDocValuesField(AGGREGABLE_DATE, date), new LongPoint(AGGREGABLE_DATE, date)));
+            }
+        }, searcher -> debugTestCase(builder, query, searcher, (InternalDateHistogram result, Class<? extends Aggregator> impl,
+                Map<String, Map<String, Object>> debug) -> {
+            assertThat(impl, equalTo(DateHistogramAggregator.class));
+            Map<Long, Long> actual = new TreeMap<>();
+            for (InternalDateHistogram.Bucket bucket : result.getBuckets()) {
+                actual.put(((ZonedDateTime) bucket.getKey()).toInstant().toEpochMilli(), bucket.getDocCount());
+            }
+            assertThat(actual, equalTo(expected));
+            verifyDebug.accept(debug.get("test"));
+        }, ft));
+    }
+
     private void aggregationImplementationChoiceTestCase(
         DateFieldMapper.DateFieldType ft,
         List<String> data,
@@ -810,6 +810,55 @@ public class NestedAggregatorTests extends AggregatorTestCase {
         }, resellersMappedFields());
     }
 
+    /**
+     * Children of another nested field between ours mean we can't collect
+     * everything between two parents.
+     */
+    public void testInterleavedNestedFields() throws IOException {
+        int numProducts = scaledRandomIntBetween(1, 100);
+        long[] expectedDocCounts = new long[numProducts];
+        double[] expectedMax = new double[numProducts];
+        CheckedConsumer<RandomIndexWriter, IOException> buildIndex = iw -> {
+            for (int p = 0; p < numProducts; p++) {
+                List<Document> documents = new ArrayList<>();
+                int numNestedDocs = between(0, 20);
+                expectedDocCounts[p] = numNestedDocs;
+                expectedMax[p] = generateMaxDocs(documents, numNestedDocs, p, NESTED_OBJECT, VALUE_FIELD_NAME);
+                generateDocuments(documents, between(0, 20), p, "nested_field", VALUE_FIELD_NAME);
+                Collections.shuffle(documents, random());
+                Document document = new Document();
+                document.add(new Field(IdFieldMapper.NAME, Uid.encodeId(Integer.toString(p)), IdFieldMapper.Defaults.FIELD_TYPE));
+                document.add(new Field(NestedPathFieldMapper.NAME, "test", NestedPathFieldMapper.Defaults.FIELD_TYPE));
+                document.add(sequenceIDFields.primaryTerm);
+                document.add(new SortedNumericDocValuesField("product_id", p));
+                documents.add(document);
+                iw.addDocuments(documents);
+            }
+        };
+        MappedFieldType productIdField = new NumberFieldMapper.NumberFieldType("product_id", NumberFieldMapper.NumberType.LONG);
+        MappedFieldType valueField = new NumberFieldMapper.NumberFieldType(VALUE_FIELD_NAME, NumberFieldMapper.NumberType.LONG);
+
+        NestedAggregationBuilder nestedBuilder = new NestedAggregationBuilder(NESTED_AGG, NESTED_OBJECT)
+            .subAggregation(new MaxAggregationBuilder(MAX_AGG_NAME).field(VALUE_FIELD_NAME));
+        testCase(nestedBuilder, new MatchAllDocsQuery(), buildIndex, (InternalNested nested) -> {
+            assertThat(nested.getDocCount(), equalTo(LongStream.of(expectedDocCounts).sum()));
+            InternalMax max = nested.getAggregations().get(MAX_AGG_NAME);
+            assertThat(max.getValue(), equalTo(DoubleStream.of(expectedMax).max().getAsDouble()));
+        }, productIdField, valueField);
+
+        AggregationBuilder termsBuilder = new TermsAggregationBuilder("products").field("product_id").size(numProducts)
+            .subAggregation(nestedBuilder);
+        testCase(termsBuilder, new MatchAllDocsQuery(), buildIndex, (LongTerms products) -> {
+            for (int p = 0; p < numProducts; p++) {
+                LongTerms.Bucket bucket = products.getBucketByKey(Integer.toString(p));
+                InternalNested nested = bucket.getAggregations().get(NESTED_AGG);
+                assertThat(nested.getDocCount(), equalTo(expectedDocCounts[p]));
+                InternalMax max = nested.getAggregations().get(MAX_AGG_NAME);
+                assertThat(max.getValue(), equalTo(expectedMax[p]));
+            }
+        }, productIdField, valueField);
+    }
+
     public static CheckedConsumer<RandomIndexWriter, IOException> buildResellerData(int numProducts, int numResellers) {
         return iw -> {
             for (int p = 0; p < numProducts; p++) {
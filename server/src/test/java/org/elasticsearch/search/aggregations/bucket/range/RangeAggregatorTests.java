@@ -8,17 +8,22 @@
 
 package org.elasticsearch.search.aggregations.bucket.range;
 
+import org.apache.lucene.document.Field;
 import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedNumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.CheckedConsumer;
@@ -40,6 +45,8 @@ import org.elasticsearch.search.runtime.StringScriptFieldTermQuery;
 import java.io.IOException;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -49,7 +56,9 @@ import java.util.function.Consumer;
 import static java.util.Collections.singleton;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 
 public class RangeAggregatorTests extends AggregatorTestCase {
@@ -451,7 +460,54 @@ public class RangeAggregatorTests extends AggregatorTestCase {
             Map<?, ?> topLevelDebug = (Map<?, ?>) debug.get("r");
             Map<?, ?> delegateDebug = (Map<?, ?>) topLevelDebug.get("delegate_debug");
             assertThat(delegateDebug, hasEntry("estimated_cost", totalDocs));
-            assertThat(delegateDebug, hasEntry("max_cost", totalDocs));
+            // Collecting doc by doc would cost a read and a two step binary search for every doc
+            assertThat(delegateDebug, hasEntry("max_cost", totalDocs * 3));
+            assertThat(delegateDebug, hasEntry("segments_collected_doc_by_doc", 0));
+        }, new NumberFieldMapper.NumberFieldType(NUMBER_FIELD_NAME, NumberFieldMapper.NumberType.INTEGER));
+    }
+
+    /**
+     * If the top level query is selective and the ranges are spread over
+     * every segment then running each filter costs more than reading the
+     * values of the few documents that match the query so
+     * {@link RangeAggregator.FromFilters} should collect those segments doc
+     * by doc.
+     */
+    public void testSelectiveTopLevelQueryCollectsDocByDoc() throws IOException {
+        int totalDocs = (int) RangeAggregator.DOCS_PER_RANGE_TO_USE_FILTERS * 8;
+        int rangeSize = totalDocs / 8;
+        RangeAggregationBuilder builder = new RangeAggregationBuilder("r").field(NUMBER_FIELD_NAME);
+        for (int r = 0; r < 8; r++) {
+            builder.addRange(r * rangeSize, (r + 1) * rangeSize);
+        }
+        long[] expected = new long[8];
+        for (int d = 0; d < totalDocs; d += 100) {
+            expected[(int) ((d * 7919L) % totalDocs) / rangeSize]++;
+        }
+        Query query = new TermQuery(new Term("k", "selected"));
+        debugTestCase(builder, query, iw -> {
+            for (int d = 0; d < totalDocs; d++) {
+                // Scatter the values so every segment has docs in every range
+                int value = (int) ((d * 7919L) % totalDocs);
+                List<IndexableField> doc = new ArrayList<>();
+                doc.add(new IntPoint(NUMBER_FIELD_NAME, value));
+                doc.add(new SortedNumericDocValuesField(NUMBER_FIELD_NAME, value));
+                if (d % 100 == 0) {
+                    doc.add(new StringField("k", "selected", Field.Store.NO));
+                }
+                iw.addDocument(doc);
+            }
+        }, (InternalRange<?, ?> r, Class<? extends Aggregator> impl, Map<String, Map<String, Object>> debug) -> {
+            assertThat(
+                r.getBuckets().stream().map(InternalRange.Bucket::getDocCount).collect(toList()),
+                equalTo(Arrays.stream(expected).boxed().collect(toList()))
+            );
+            assertThat(impl, equalTo(RangeAggregator.FromFilters.class));
+            Map<?, ?> topLevelDebug = (Map<?, ?>) debug.get("r");
+            Map<?, ?> delegateDebug = (Map<?, ?>) topLevelDebug.get("delegate_debug");
+            assertThat((int) delegateDebug.get("segments_collected_doc_by_doc"), greaterThan(0));
+            List<?> plans = (List<?>) delegateDebug.get("segment_plans");
+            assertThat(plans, hasItem(hasEntry("collect", "doc_by_doc")));
         }, new NumberFieldMapper.NumberFieldType(NUMBER_FIELD_NAME, NumberFieldMapper.NumberType.INTEGER));
     }
 
@@ -0,0 +1,67 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.InternalSingleBucketAggregationTestCase;
+import org.elasticsearch.search.aggregations.ParsedAggregation;
+import org.elasticsearch.search.aggregations.bucket.ParsedSingleBucketAggregation;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public class InternalRandomSamplerTests extends InternalSingleBucketAggregationTestCase<InternalRandomSampler> {
+    private double probability;
+    private int seed;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        // all the inputs of a reduction come from the same request
+        probability = randomBoolean() ? 1.0 : randomDoubleBetween(0.001, 1.0, false);
+        seed = randomInt();
+    }
+
+    @Override
+    protected InternalRandomSampler createTestInstance(String name, long docCount, InternalAggregations aggregations,
+                                                       Map<String, Object> metadata) {
+        double docCountStandardError = probability < 1 ? randomDoubleBetween(0, docCount, true) : 0;
+        return new InternalRandomSampler(name, docCount, probability, seed, docCountStandardError, aggregations, metadata);
+    }
+
+    @Override
+    protected long expectedReducedDocCount(List<InternalRandomSampler> inputs) {
+        long sampledDocCount = super.expectedReducedDocCount(inputs);
+        return probability < 1 ? new SamplingContext(probability).scaleUp(sampledDocCount) : sampledDocCount;
+    }
+
+    @Override
+    protected void extraAssertReduced(InternalRandomSampler reduced, List<InternalRandomSampler> inputs) {
+        assertEquals(probability, reduced.getProbability(), 0);
+        assertEquals(seed, reduced.getSeed());
+        if (probability < 1) {
+            long sampledDocCount = super.expectedReducedDocCount(inputs);
+            assertEquals(new SamplingContext(probability).standardError(sampledDocCount), reduced.getDocCountStandardError(), 0);
+        } else {
+            assertEquals(0, reduced.getDocCountStandardError(), 0);
+        }
+    }
+
+    @Override
+    protected void assertFromXContent(InternalRandomSampler aggregation, ParsedAggregation parsedAggregation) throws IOException {
+        super.assertFromXContent(aggregation, parsedAggregation);
+        ParsedRandomSampler parsed = (ParsedRandomSampler) parsedAggregation;
+        assertEquals(aggregation.getDocCountStandardError(), parsed.getDocCountStandardError(), 0);
+    }
+
+    @Override
+    protected Class<? extends ParsedSingleBucketAggregation> implementationClass() {
+        return ParsedRandomSampler.class;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.search.aggregations.bucket.sampler;
+
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.DocValuesFieldExistsQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.bucket.terms.LongTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.StatsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.Sum;
+import org.elasticsearch.search.aggregations.metrics.SumAggregationBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+
+public class RandomSamplerAggregatorTests extends AggregatorTestCase {
+
+    private static final String NUMBER_FIELD = "number";
+    private static final int NUM_DOCS = 5000;
+
+    private static MappedFieldType numberField() {
+        return new NumberFieldMapper.NumberFieldType(NUMBER_FIELD, NumberFieldMapper.NumberType.LONG);
+    }
+
+    public void testEstimatesCountsAndSums() throws IOException {
+        double probability = randomDoubleBetween(0.1, 0.5, true);
+        RandomSamplerAggregationBuilder builder = new RandomSamplerAggregationBuilder("sampler", probability)
+            .seed(randomInt())
+            .subAggregation(new SumAggregationBuilder("sum").field(NUMBER_FIELD));
+        testCase(builder, new MatchAllDocsQuery(), iw -> {
+            for (int i = 0; i < NUM_DOCS; i++) {
+                iw.addDocument(List.of(new SortedNumericDocValuesField(NUMBER_FIELD, 1)));
+            }
+        }, (InternalRandomSampler sampler) -> {
+            // the estimate is off by more than five standard errors with a negligible probability
+            double error = 5 * Math.sqrt(NUM_DOCS * (1 - probability) / probability);
+            assertThat((double) sampler.getDocCount(), closeTo(NUM_DOCS, error));
+            Sum sum = sampler.getAggregations().get("sum");
+            assertThat(sum.getValue(), closeTo(sampler.getDocCount(), 1));
+            assertThat(sampler.getProbability(), equalTo(probability));
+            double standardError = Math.sqrt(NUM_DOCS * (1 - probability) / probability);
+            assertThat(sampler.getDocCountStandardError(), closeTo(standardError, standardError / 2));
+        }, numberField());
+    }
+
+    public void testOnlySamplesMatchingDocs() throws IOException {
+        RandomSamplerAggregationBuilder builder = new RandomSamplerAggregationBuilder("sampler", 0.5)
+            .subAggregation(new SumAggregationBuilder("sum").field(NUMBER_FIELD));
+        testCase(builder, new DocValuesFieldExistsQuery(NUMBER_FIELD), iw -> {
+            for (int i = 0; i < NUM_DOCS; i++) {
+                if (i % 2 == 0) {
+                    iw.addDocument(List.of(new SortedNumericDocValuesField(NUMBER_FIELD, 1)));
+                } else {
+                    iw.addDocument(List.of());
+                }
+            }
+        }, (InternalRandomSampler sampler) -> {
+            assertThat(sampler.getDocCount(), greaterThan(0L));
+            assertThat(sampler.getDocCount(), lessThan((long) NUM_DOCS));
+            Sum sum = sampler.getAggregations().get("sum");
+            assertThat(sum.getValue(), closeTo(sampler.getDocCount(), 1));
+        }, numberField());
+    }
+
+    public void testProbabilityOfOneCollectsEverything() throws IOException {
+        RandomSamplerAggregationBuilder builder = new RandomSamplerAggregationBuilder("sampler", 1.0)
+            .subAggregation(new SumAggregationBuilder("sum").field(NUMBER_FIELD));
+        testCase(builder, new MatchAllDocsQuery(), iw -> {
+            for (int i = 0; i < 100; i++) {
+                iw.addDocument(List.of(new SortedNumericDocValuesField(NUMBER_FIELD, i)));
+            }
+        }, (InternalRandomSampler sampler) -> {
+            assertThat(sampler.getDocCount(), equalTo(100L));
+            Sum sum = sampler.getAggregations().get("sum");
+            assertThat(sum.getValue(), equalTo(4950.0));
+            assertThat(sampler.getDocCountStandardError(), equalTo(0.0));
+        }, numberField());
+    }
+
+    public void testBelowAnotherBucketAggregation() throws IOException {
+        double probability = 0.25;
+        TermsAggregationBuilder builder = new TermsAggregationBuilder("terms").field(NUMBER_FIELD)
+            .subAggregation(new RandomSamplerAggregationBuilder("sampler", probability));
+        testCase(builder, new MatchAllDocsQuery(), iw -> {
+            for (int i = 0; i < NUM_DOCS; i++) {
+                iw.addDocument(List.of(new SortedNumericDocValuesField(NUMBER_FIELD, i % 2)));
+            }
+        }, (LongTerms terms) -> {
+            assertThat(terms.getBuckets().size(), equalTo(2));
+            double error = 5 * Math.sqrt(NUM_DOCS / 2 * (1 - probability) / probability);
+            for (LongTerms.Bucket bucket : terms.getBuckets()) {
+                assertThat(bucket.getDocCount(), equalTo((long) NUM_DOCS / 2));
+                InternalRandomSampler sampler = bucket.getAggregations().get("sampler");
+                assertThat((double) sampler.getDocCount(), closeTo(NUM_DOCS / 2, error));
+            }
+        }, numberField());
+    }
+
+    public void testRejectsSubAggregationsThatCantBeScaled() {
+        RandomSamplerAggregationBuilder builder = new RandomSamplerAggregationBuilder("sampler", 0.5)
+            .subAggregation(new TermsAggregationBuilder("terms").field(NUMBER_FIELD)
+                .subAggregation(new StatsAggregationBuilder("stats").field(NUMBER_FIELD)));
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> testCase(builder, new MatchAllDocsQuery(),
+            iw -> iw.addDocument(List.of(new SortedNumericDocValuesField(NUMBER_FIELD, 1))), sampler -> {}, numberField()));
+        assertThat(e.getMessage(), equalTo("[random_sampler] aggregation [sampler] does not support sampling [stats] aggregation [stats]"));
+    }
+
+    public void testRandomSamplingIterator() throws IOException {
+        int maxDoc = randomIntBetween(10_000, 100_000);
+        double probability = randomDoubleBetween(0.01, 0.5, true);
+        long seed = randomLong();
+        RandomSamplingIterator iterator = new RandomSamplingIterator(maxDoc, probability, seed);
+        int sampled = 0;
+        int previous = -1;
+        for (int doc = iterator.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iterator.nextDoc()) {
+            assertThat(doc, greaterThan(previous));
+            assertThat(doc, lessThan(maxDoc));
+            previous = doc;
+            sampled++;
+        }
+        double error = 5 * Math.sqrt(maxDoc * probability * (1 - probability));
+        assertThat((double) sampled, closeTo(maxDoc * probability, error));
+
+        // the same seed samples the same docs
+        RandomSamplingIterator first = new RandomSamplingIterator(maxDoc, probability, seed);
+        RandomSamplingIterator second = new RandomSamplingIterator(maxDoc, probability, seed);
+        int target = randomIntBetween(0, maxDoc - 1);
+        assertThat(first.advance(target), equalTo(second.advance(target)));
+    }
+}
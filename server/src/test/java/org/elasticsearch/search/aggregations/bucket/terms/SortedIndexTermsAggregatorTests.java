@@ -0,0 +1,212 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortedSetSortField;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.KeywordFieldMapper.KeywordFieldType;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.search.aggregations.Aggregator;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.BucketOrder;
+import org.elasticsearch.test.IndexSettingsModule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * Tests the {@code terms} aggregation on an index that is sorted on the field being aggregated.
+ */
+public class SortedIndexTermsAggregatorTests extends AggregatorTestCase {
+    private static final String FIELD = "k";
+    /**
+     * More terms than {@link TermsAggregatorFactory#MAX_ORDS_TO_TRY_FILTERS} so we don't run filter-by-filter.
+     */
+    private static final int TERMS = 1200;
+
+    private boolean reverse;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        reverse = randomBoolean();
+    }
+
+    @Override
+    protected IndexSettings createIndexSettings() {
+        Settings settings = Settings.builder()
+            .put("index.sort.field", FIELD)
+            .put("index.sort.order", reverse ? "desc" : "asc")
+            .build();
+        return IndexSettingsModule.newIndexSettings("_index", settings);
+    }
+
+    private static MappedFieldType fieldType() {
+        return new KeywordFieldType(FIELD, true, true, Collections.emptyMap());
+    }
+
+    private static String term(int i) {
+        return String.format(Locale.ROOT, "t%04d", i);
+    }
+
+    /**
+     * Term {@code i} is in {@code 1 + i % 3} documents whose {@code n} field is {@code i} and some documents don't have the field.
+     */
+    private void withSortedIndex(boolean forceMerge, CheckedConsumer<IndexSearcher, IOException> consumer) throws IOException {
+        List<Document> docs = new ArrayList<>();
+        for (int i = 0; i < TERMS; i++) {
+            for (int d = 0; d <= i % 3; d++) {
+                Document doc = new Document();
+                BytesRef value = new BytesRef(term(i));
+                doc.add(new Field(FIELD, value, KeywordFieldMapper.Defaults.FIELD_TYPE));
+                doc.add(new SortedSetDocValuesField(FIELD, value));
+                doc.add(new LongPoint("n", i));
+                docs.add(doc);
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            Document doc = new Document();
+            doc.add(new LongPoint("n", i));
+            docs.add(doc);
+        }
+        Collections.shuffle(docs, random());
+        try (Directory directory = newDirectory()) {
+            IndexWriterConfig config = newIndexWriterConfig();
+            config.setIndexSort(new Sort(new SortedSetSortField(FIELD, reverse)));
+            config.setCodec(TestUtil.getDefaultCodec());
+            try (RandomIndexWriter iw = new RandomIndexWriter(random(), directory, config)) {
+                for (Document doc : docs) {
+                    iw.addDocument(doc);
+                }
+                if (forceMerge) {
+                    iw.forceMerge(1);
+                }
+            }
+            try (IndexReader reader = DirectoryReader.open(directory)) {
+                consumer.accept(newIndexSearcher(reader));
+            }
+        }
+    }
+
+    /**
+     * The expected doc count of each term that matches a query on {@code n <= maxN}.
+     */
+    private static TreeMap<String, Long> expectedCounts(int maxN) {
+        TreeMap<String, Long> counts = new TreeMap<>();
+        for (int i = 0; i <= Math.min(maxN, TERMS - 1); i++) {
+            counts.put(term(i), 1L + i % 3);
+        }
+        return counts;
+    }
+
+    public void testKeyOrder() throws IOException {
+        boolean asc = randomBoolean();
+        int size = randomIntBetween(1, 50);
+        int maxN = randomFrom(TERMS, randomIntBetween(0, TERMS - 1));
+        Query query = maxN == TERMS ? new MatchAllDocsQuery() : LongPoint.newRangeQuery("n", 0, maxN);
+        TreeMap<String, Long> counts = expectedCounts(maxN);
+        Map<String, Long> expected = asc ? counts : counts.descendingMap();
+        List<String> expectedKeys = expected.keySet().stream().limit(size).collect(toList());
+        long expectedOther = expected.values().stream().mapToLong(Long::longValue).sum()
+            - expectedKeys.stream().mapToLong(counts::get).sum();
+
+        TermsAggregationBuilder builder = new TermsAggregationBuilder("t").field(FIELD).size(size).order(BucketOrder.key(asc));
+        withSortedIndex(randomBoolean(), searcher -> {
+            StringTerms result = searchAndReduce(searcher, query, builder, fieldType());
+            assertThat(result.getBuckets().stream().map(StringTerms.Bucket::getKeyAsString).collect(toList()), equalTo(expectedKeys));
+            for (StringTerms.Bucket bucket : result.getBuckets()) {
+                assertThat(bucket.getDocCount(), equalTo(counts.get(bucket.getKeyAsString())));
+            }
+            assertThat(result.getSumOfOtherDocCounts(), equalTo(expectedOther));
+        });
+    }
+
+    public void testCountOrder() throws IOException {
+        TermsAggregationBuilder builder = new TermsAggregationBuilder("t").field(FIELD).size(4);
+        withSortedIndex(true, searcher -> {
+            StringTerms result = searchAndReduce(searcher, new MatchAllDocsQuery(), builder, fieldType());
+            assertThat(
+                result.getBuckets().stream().map(StringTerms.Bucket::getKeyAsString).collect(toList()),
+                equalTo(List.of(term(2), term(5), term(8), term(11)))
+            );
+            for (StringTerms.Bucket bucket : result.getBuckets()) {
+                assertThat(bucket.getDocCount(), equalTo(3L));
+            }
+            assertThat(result.getSumOfOtherDocCounts(), equalTo(2L * TERMS - 12));
+        });
+    }
+
+    public void testMissing() throws IOException {
+        TermsAggregationBuilder builder = new TermsAggregationBuilder("t").field(FIELD)
+            .missing(term(0))
+            .size(2)
+            .order(BucketOrder.key(true));
+        withSortedIndex(randomBoolean(), searcher -> debugTestCase(builder, new MatchAllDocsQuery(), searcher,
+            (StringTerms result, Class<? extends Aggregator> impl, Map<String, Map<String, Object>> debug) -> {
+                // the documents without the field aren't in the run of the missing value so they can't be counted in runs
+                assertThat(impl, not(equalTo(GlobalOrdinalsStringTermsAggregator.SortedRuns.class)));
+                assertThat(result.getBuckets().stream().map(StringTerms.Bucket::getKeyAsString).collect(toList()),
+                    equalTo(List.of(term(0), term(1))));
+                assertThat(result.getBuckets().get(0).getDocCount(), equalTo(51L));
+                assertThat(result.getBuckets().get(1).getDocCount(), equalTo(2L));
+            }, fieldType()));
+    }
+
+    public void testTerminatesEarlyWhenOrderedByKeyInTheDirectionOfTheSort() throws IOException {
+        TermsAggregationBuilder builder = new TermsAggregationBuilder("t").field(FIELD).size(10).order(BucketOrder.key(reverse == false));
+        withSortedIndex(true, searcher -> debugTestCase(builder, new MatchAllDocsQuery(), searcher,
+            (StringTerms result, Class<? extends Aggregator> impl, Map<String, Map<String, Object>> debug) -> {
+                assertThat(result.getBuckets().size(), equalTo(10));
+                assertThat(result.getSumOfOtherDocCounts(), greaterThan(0L));
+                assertThat(impl, equalTo(GlobalOrdinalsStringTermsAggregator.SortedRuns.class));
+                Map<String, Object> topLevelDebug = debug.get("t");
+                assertThat(topLevelDebug.get("segments_counted_in_runs"), equalTo(1));
+                assertThat(topLevelDebug.get("segments_terminated_early"), equalTo(1));
+            }, fieldType()));
+    }
+
+    public void testCountsAllRunsWhenOrderedAgainstTheSort() throws IOException {
+        TermsAggregationBuilder builder = new TermsAggregationBuilder("t").field(FIELD).size(10).order(BucketOrder.key(reverse));
+        withSortedIndex(true, searcher -> debugTestCase(builder, new MatchAllDocsQuery(), searcher,
+            (StringTerms result, Class<? extends Aggregator> impl, Map<String, Map<String, Object>> debug) -> {
+                assertThat(result.getBuckets().size(), equalTo(10));
+                Map<String, Object> topLevelDebug = debug.get("t");
+                assertThat(topLevelDebug.get("segments_counted_in_runs"), equalTo(1));
+                assertThat(topLevelDebug.get("segments_terminated_early"), equalTo(0));
+            }, fieldType()));
+    }
+}
@@ -130,9 +130,7 @@ import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasEntry;
-import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.instanceOf;
-import static org.hamcrest.Matchers.not;
 
 public class TermsAggregatorTests extends AggregatorTestCase {
 
@@ -1812,9 +1810,9 @@ public class TermsAggregatorTests extends AggregatorTestCase {
             assertThat(impl, equalTo(StringTermsAggregatorFromFilters.class));
             Map<?, ?> topLevelDebug = (Map<?, ?>) debug.get("t");
             Map<?, ?> delegateDebug = (Map<?, ?>) topLevelDebug.get("delegate_debug");
-            // We don't estimate the cost here so these shouldn't show up
-            assertThat(delegateDebug, not(hasKey("estimated_cost")));
-            assertThat(delegateDebug, not(hasKey("max_cost")));
+            // Reading the global ords of every doc that matches the script would cost twice as much as the filters
+            assertThat(delegateDebug, hasEntry("max_cost", totalDocs * 2));
+            assertThat(delegateDebug, hasEntry("segments_collected_doc_by_doc", 0));
             assertThat((int) delegateDebug.get("segments_counted"), greaterThan(0));
         }, new KeywordFieldType("k", true, true, Collections.emptyMap()));
     }
@@ -14,6 +14,7 @@ import com.carrotsearch.hppc.IntHashSet;
 import org.elasticsearch.common.breaker.CircuitBreaker;
 import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.breaker.NoopCircuitBreaker;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.MockBigArrays;
@@ -21,6 +22,7 @@ import org.elasticsearch.common.util.PageCacheRecycler;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
 
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.elasticsearch.search.aggregations.metrics.AbstractCardinalityAlgorithm.MAX_PRECISION;
@@ -103,6 +105,36 @@ public class HyperLogLogPlusPlusTests extends ESTestCase {
         }
     }
 
+    public void testMergeSerialized() throws IOException {
+        final int p = randomIntBetween(MIN_PRECISION, MAX_PRECISION);
+        final HyperLogLogPlusPlus single = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        final HyperLogLogPlusPlus merged = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        final int numSketches = randomIntBetween(1, 20);
+        for (int i = 0; i < numSketches; ++i) {
+            // small sketches stay in linear counting, big ones are serialized as registers
+            final HyperLogLogPlusPlus sketch = new HyperLogLogPlusPlus(p, BigArrays.NON_RECYCLING_INSTANCE, 1);
+            final int numValues = randomBoolean() ? randomIntBetween(1, 10) : randomIntBetween(1, 10000);
+            for (int j = 0; j < numValues; ++j) {
+                final long hash = BitMixer.mix64(randomInt(100000));
+                single.collect(0, hash);
+                sketch.collect(0, hash);
+            }
+            try (BytesStreamOutput out = new BytesStreamOutput()) {
+                sketch.writeTo(0, out);
+                merged.merge(0, out.bytes().streamInput());
+            }
+        }
+        assertEquals(single.cardinality(0), merged.cardinality(0));
+
+        final int otherPrecision = randomValueOtherThan(p, () -> randomIntBetween(MIN_PRECISION, MAX_PRECISION));
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            new HyperLogLogPlusPlus(otherPrecision, BigArrays.NON_RECYCLING_INSTANCE, 1).writeTo(0, out);
+            IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> merged.merge(0, out.bytes().streamInput()));
+            assertThat(e.getMessage(), equalTo("Cannot merge a HyperLogLog++ sketch with precision [" + otherPrecision
+                + "] into one with precision [" + p + "]"));
+        }
+    }
+
     public void testFakeHashes() {
         // hashes with lots of leading zeros trigger different paths in the code that we try to go through here
         final int p = randomIntBetween(MIN_PRECISION, MAX_PRECISION);
@@ -0,0 +1,143 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.metrics;
+
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.MockBigArrays;
+import org.elasticsearch.common.util.MockPageCacheRecycler;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
+import org.elasticsearch.test.ESTestCase;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TDigestArrayTests extends ESTestCase {
+
+    private final BigArrays bigArrays = new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), new NoneCircuitBreakerService());
+
+    public void testEmptyBuckets() {
+        try (TDigestArray digests = new TDigestArray(100, bigArrays, 1)) {
+            assertThat(digests.toState(0), nullValue());
+            assertThat(digests.toState(randomLongBetween(1, 1000)), nullValue());
+            digests.add(5, randomDouble());
+            assertThat(digests.toState(4), nullValue());
+            assertThat(digests.toState(5).size(), equalTo(1L));
+        }
+    }
+
+    public void testSmallBucketsAreExact() {
+        double compression = randomDoubleBetween(50, 200, true);
+        int buckets = between(1, 100);
+        TDigestState[] expected = new TDigestState[buckets];
+        for (int b = 0; b < buckets; b++) {
+            expected[b] = new TDigestState(compression);
+        }
+        try (TDigestArray digests = new TDigestArray(compression, bigArrays, 1)) {
+            // few enough values that neither the array nor the state merge them
+            int values = between(0, 10 * buckets);
+            for (int i = 0; i < values; i++) {
+                int bucket = between(0, buckets - 1);
+                double value = randomDoubleBetween(-1000, 1000, true);
+                digests.add(bucket, value);
+                expected[bucket].add(value);
+            }
+            for (int b = 0; b < buckets; b++) {
+                TDigestState state = digests.toState(b);
+                if (expected[b].size() == 0) {
+                    assertThat(state, nullValue());
+                    continue;
+                }
+                assertThat(state.size(), equalTo(expected[b].size()));
+                assertThat(state.centroidCount(), equalTo(expected[b].centroidCount()));
+                for (double q : new double[] { 0, 0.01, 0.25, 0.5, 0.75, 0.99, 1 }) {
+                    assertThat(state.quantile(q), equalTo(expected[b].quantile(q)));
+                }
+            }
+        }
+    }
+
+    public void testManyValues() {
+        int buckets = between(1, 20);
+        int valuesPerBucket = scaledRandomIntBetween(10000, 100000);
+        try (TDigestArray digests = new TDigestArray(100, bigArrays, 1)) {
+            // interleave the buckets so they grow past one another and reuse each other's blocks
+            for (int i = 0; i < valuesPerBucket; i++) {
+                for (int b = 0; b < buckets; b++) {
+                    digests.add(b, b + (double) i / valuesPerBucket);
+                }
+            }
+            for (int b = 0; b < buckets; b++) {
+                TDigestState state = digests.toState(b);
+                assertThat(state.size(), equalTo((long) valuesPerBucket));
+                assertThat(state.getMin(), equalTo((double) b));
+                assertThat(state.getMax(), equalTo(b + (double) (valuesPerBucket - 1) / valuesPerBucket));
+                assertThat(state.quantile(0.5), closeTo(b + 0.5, 0.01));
+                assertThat(state.quantile(0.99), closeTo(b + 0.99, 0.01));
+                assertThat(state.centroidCount(), lessThanOrEqualTo(20 * 100));
+            }
+        }
+    }
+
+    public void testMergeStates() {
+        int shards = between(1, 50);
+        TDigestState expected = new TDigestState(100);
+        try (TDigestArray digests = new TDigestArray(100, bigArrays, 1)) {
+            for (int s = 0; s < shards; s++) {
+                TDigestState shard = new TDigestState(100);
+                int values = between(0, 1000);
+                for (int i = 0; i < values; i++) {
+                    shard.add(randomDouble());
+                }
+                digests.add(0, shard);
+                expected.add(shard);
+            }
+            TDigestState merged = digests.toState(0);
+            if (expected.size() == 0) {
+                assertThat(merged, nullValue());
+                return;
+            }
+            assertThat(merged.size(), equalTo(expected.size()));
+            assertThat(merged.getMin(), equalTo(expected.getMin()));
+            assertThat(merged.getMax(), equalTo(expected.getMax()));
+            assertThat(merged.quantile(0.5), closeTo(expected.quantile(0.5), 0.05));
+        }
+    }
+
+    public void testLargeCountsDontOverflow() {
+        try (TDigestArray digests = new TDigestArray(100, bigArrays, 1)) {
+            for (int i = 0; i < 1000; ++i) {
+                digests.add(0, randomDouble());
+            }
+            final int count = 1 << 29;
+            for (int i = 0; i < 10; ++i) {
+                digests.add(0, randomDouble(), count);
+            }
+            TDigestState state = digests.toState(0);
+            assertEquals(1000 + 10L * (1 << 29), state.size());
+            double median = state.quantile(0.5);
+            assertTrue(median >= 0.0 && median <= 1.0);
+        }
+    }
+
+    public void testCircuitBreaker() {
+        BigArrays limited = new MockBigArrays(new MockPageCacheRecycler(Settings.EMPTY), ByteSizeValue.ofKb(64));
+        expectThrows(CircuitBreakingException.class, () -> {
+            try (TDigestArray digests = new TDigestArray(100, limited, 1)) {
+                for (int b = 0; b < 100000; b++) {
+                    digests.add(b, randomDouble());
+                }
+            }
+        });
+    }
+}
@@ -13,11 +13,13 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.search.aggregations.AggregationExecutionException;
 import org.elasticsearch.search.aggregations.Aggregations;
 import org.elasticsearch.search.aggregations.InternalMultiBucketAggregation;
+import org.elasticsearch.search.aggregations.InvalidAggregationPathException;
 import org.elasticsearch.search.aggregations.bucket.MultiBucketsAggregation;
 import org.elasticsearch.search.aggregations.metrics.InternalTDigestPercentiles;
 import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -171,4 +173,73 @@ public class BucketHelpersTests extends ESTestCase {
         assertThat(e.getMessage(), equalTo("buckets_path must reference either a number value or a single value numeric " +
             "metric aggregation, but [foo] contains multiple values. Please specify which to use."));
     }
+
+    public void testResolveBucketValuesMatchesResolveBucketValue() {
+        MultiBucketsAggregation agg = mock(MultiBucketsAggregation.class);
+        List<InternalMultiBucketAggregation.InternalBucket> buckets = new ArrayList<>();
+        int numBuckets = between(0, 100);
+        for (int b = 0; b < numBuckets; b++) {
+            buckets.add(bucket(randomLongBetween(0, 10), randomFrom(Double.NaN, Double.POSITIVE_INFINITY, null, randomDouble())));
+        }
+        String path = randomFrom("_count", "foo>bar");
+        BucketHelpers.GapPolicy gapPolicy = randomFrom(BucketHelpers.GapPolicy.values());
+        BucketHelpers.BucketValues values = BucketHelpers.resolveBucketValues(agg, buckets, path, gapPolicy);
+        assertThat(values.size(), equalTo(numBuckets));
+        for (int b = 0; b < numBuckets; b++) {
+            Double expected = BucketHelpers.resolveBucketValue(agg, buckets.get(b), path, gapPolicy);
+            if (expected == null) {
+                assertFalse(values.isResolved(b));
+                assertThat(values.get(b), equalTo(Double.NaN));
+            } else {
+                assertTrue(values.isResolved(b));
+                assertThat(values.get(b), equalTo(expected));
+            }
+        }
+    }
+
+    /**
+     * Build a bucket with a value at every path or, if {@code value} is
+     * {@code null}, with no value at any path.
+     */
+    private static InternalMultiBucketAggregation.InternalBucket bucket(long docCount, Double value) {
+        return new InternalMultiBucketAggregation.InternalBucket() {
+            @Override
+            public void writeTo(StreamOutput out) throws IOException {
+
+            }
+
+            @Override
+            public Object getKey() {
+                return null;
+            }
+
+            @Override
+            public String getKeyAsString() {
+                return null;
+            }
+
+            @Override
+            public long getDocCount() {
+                return docCount;
+            }
+
+            @Override
+            public Aggregations getAggregations() {
+                return null;
+            }
+
+            @Override
+            public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+                return null;
+            }
+
+            @Override
+            public Object getProperty(String containingAggName, List<String> path) {
+                if (value == null) {
+                    throw new InvalidAggregationPathException("no value");
+                }
+                return value;
+            }
+        };
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+
+package org.elasticsearch.search.aggregations.pipeline;
+
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class BuiltInPipelineScriptsTests extends ESTestCase {
+
+    public void testMovingFunctions() {
+        double[] values = randomValues();
+        Map<String, Object> params = Map.of("alpha", 0.3, "beta", 0.6);
+        assertMovingFunction("MovingFunctions.max(values)", params, values, MovingFunctions::max);
+        assertMovingFunction("MovingFunctions.min(values)", params, values, MovingFunctions::min);
+        assertMovingFunction("MovingFunctions.sum(values)", params, values, MovingFunctions::sum);
+        assertMovingFunction("return MovingFunctions.unweightedAvg(values);", params, values, MovingFunctions::unweightedAvg);
+        assertMovingFunction("MovingFunctions.linearWeightedAvg( values )", params, values, MovingFunctions::linearWeightedAvg);
+        assertMovingFunction(
+            "MovingFunctions.stdDev(values, MovingFunctions.unweightedAvg(values))",
+            params,
+            values,
+            v -> MovingFunctions.stdDev(v, MovingFunctions.unweightedAvg(v))
+        );
+        assertMovingFunction("MovingFunctions.ewma(values, 0.3)", params, values, v -> MovingFunctions.ewma(v, 0.3));
+        assertMovingFunction("MovingFunctions.ewma(values, params.alpha)", params, values, v -> MovingFunctions.ewma(v, 0.3));
+        assertMovingFunction(
+            "MovingFunctions.holt(values, params['alpha'], params.beta)",
+            params,
+            values,
+            v -> MovingFunctions.holt(v, 0.3, 0.6)
+        );
+    }
+
+    public void testUnsupportedMovingFunctions() {
+        assertThat(BuiltInPipelineScripts.movingFunction(new Script("MovingFunctions.max(values) + 1")), nullValue());
+        assertThat(BuiltInPipelineScripts.movingFunction(new Script("MovingFunctions.ewma(values, params.missing)")), nullValue());
+        assertThat(BuiltInPipelineScripts.movingFunction(new Script("MovingFunctions.ewma(values)")), nullValue());
+        assertThat(BuiltInPipelineScripts.movingFunction(new Script("MovingFunctions.holtWinters(values, 0.3, 0.1, 0.3, 5, false)")),
+            nullValue());
+        assertThat(BuiltInPipelineScripts.movingFunction(
+            new Script(ScriptType.INLINE, "mockscript", "MovingFunctions.max(values)", Collections.emptyMap())), nullValue());
+        assertThat(BuiltInPipelineScripts.movingFunction(
+            new Script(ScriptType.STORED, null, "MovingFunctions.max(values)", Collections.emptyMap())), nullValue());
+    }
+
+    public void testBucketExpressions() {
+        List<String> vars = List.of("a", "b");
+        double a = randomDoubleBetween(-100, 100, true);
+        double b = randomDoubleBetween(-100, 100, true);
+        Map<String, Object> params = Map.of("k", 3, "name", "foo");
+        assertBucketExpression("params.a / params.b", params, vars, a, b, a / b);
+        assertBucketExpression("return params.a + params.b * params.a;", params, vars, a, b, a + b * a);
+        assertBucketExpression("(params.a + params.b) * params.a", params, vars, a, b, (a + b) * a);
+        assertBucketExpression("params['a'] - -params[\"b\"] % params.a", params, vars, a, b, a - -b % a);
+        assertBucketExpression("params.a * 100 / params.k", params, vars, a, b, a * 100 / 3);
+        assertBucketExpression("-2.5 * params.a", params, vars, a, b, -2.5 * a);
+        Script expression = new Script(ScriptType.INLINE, "expression", "a / (b + k)", params);
+        assertThat(BuiltInPipelineScripts.bucketExpression(expression, vars).execute(new double[] { a, b }), equalTo(a / (b + 3)));
+    }
+
+    public void testUnsupportedBucketExpressions() {
+        List<String> vars = List.of("a", "b");
+        Map<String, Object> params = Map.of("k", 3, "name", "foo");
+        for (String source : new String[] {
+            "1 / 2 * params.a",
+            "params.k / 2 + params.a",
+            "params.a * 2L",
+            "params.a * 2.0f",
+            "params.name + params.a",
+            "params.missing + params.a",
+            "Math.log(params.a)",
+            "params.a + ",
+            "(params.a + params.b",
+            "params.a; params.b",
+            "params.k",
+            "def x = params.a; return x" }) {
+            Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, source, params);
+            assertThat(source, BuiltInPipelineScripts.bucketExpression(script, vars), nullValue());
+        }
+        Script mock = new Script(ScriptType.INLINE, "mockscript", "params.a / params.b", params);
+        assertThat(BuiltInPipelineScripts.bucketExpression(mock, vars), nullValue());
+        Script expressionWithPainlessSyntax = new Script(ScriptType.INLINE, "expression", "params.a / params.b", params);
+        assertThat(BuiltInPipelineScripts.bucketExpression(expressionWithPainlessSyntax, vars), nullValue());
+    }
+
+    private static double[] randomValues() {
+        double[] values = new double[between(0, 50)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = randomDoubleBetween(-1000, 1000, true);
+        }
+        return values;
+    }
+
+    private interface ArrayFunction {
+        double apply(double[] values);
+    }
+
+    private static void assertMovingFunction(String source, Map<String, Object> params, double[] values, ArrayFunction expected) {
+        Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, source, params);
+        BuiltInPipelineScripts.MovingFunction function = BuiltInPipelineScripts.movingFunction(script);
+        assertThat(source, function, notNullValue());
+        int from = between(0, values.length);
+        int to = between(from, values.length);
+        assertThat(source, function.apply(values, from, to), equalTo(expected.apply(Arrays.copyOfRange(values, from, to))));
+    }
+
+    private static void assertBucketExpression(
+        String source,
+        Map<String, Object> params,
+        List<String> vars,
+        double a,
+        double b,
+        double expected
+    ) {
+        Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, source, params);
+        BuiltInPipelineScripts.BucketExpression expression = BuiltInPipelineScripts.bucketExpression(script, vars);
+        assertThat(source, expression, notNullValue());
+        assertThat(source, expression.execute(new double[] { a, b }), equalTo(expected));
+    }
+}
@@ -79,4 +79,24 @@ public class FixedThreadPoolTests extends ESThreadPoolTestCase {
         }
     }
 
+    public void testFairQueuingRequiresTenantHeader() {
+        final String threadPoolName = randomFrom(ThreadPool.Names.SEARCH, ThreadPool.Names.WRITE);
+        final Settings nodeSettings = Settings.builder()
+            .put("node.name", "testFairQueuingRequiresTenantHeader")
+            .put("thread_pool." + threadPoolName + ".fair_queuing.enabled", true)
+            .build();
+        final IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> new ThreadPool(nodeSettings));
+        assertThat(e.getMessage(), equalTo("[thread_pool." + threadPoolName + ".fair_queuing.enabled] requires ["
+            + ThreadPool.TENANT_HEADER_SETTING.getKey() + "] to be set"));
+
+        ThreadPool threadPool = null;
+        try {
+            threadPool = new ThreadPool(Settings.builder().put(nodeSettings)
+                .put(ThreadPool.TENANT_HEADER_SETTING.getKey(), "X-Tenant")
+                .build());
+            assertThat(stats(threadPool, threadPoolName).getQueue(), equalTo(0));
+        } finally {
+            terminateThreadPoolIfNeeded(threadPool);
+        }
+    }
 }
@@ -8,13 +8,17 @@
 
 package org.elasticsearch.threadpool;
 
+import org.elasticsearch.Version;
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentParser;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.common.xcontent.json.JsonXContent;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.VersionUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -22,7 +26,10 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 
 public class ThreadPoolStatsTests extends ESTestCase {
     public void testThreadPoolStatsSort() throws IOException {
@@ -103,4 +110,47 @@ public class ThreadPoolStatsTests extends ESTestCase {
             }
         }
     }
+
+    public void testQueueLatencySerialization() throws IOException {
+        final ThreadPoolStats.Stats stats = new ThreadPoolStats.Stats(ThreadPool.Names.SEARCH, 4, 2, 4, 0, 4, 10L, 100L, 900L, 1500L,
+            List.of(new ThreadPoolStats.TenantStats("tenant", 2, 3L)));
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            stats.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                final ThreadPoolStats.Stats read = new ThreadPoolStats.Stats(in);
+                assertThat(read.getQueueLatencyP50(), equalTo(100L));
+                assertThat(read.getQueueLatencyP90(), equalTo(900L));
+                assertThat(read.getQueueLatencyP99(), equalTo(1500L));
+                assertThat(read.getTenants().size(), equalTo(1));
+                assertThat(read.getTenants().get(0).getTenant(), equalTo("tenant"));
+                assertThat(read.getTenants().get(0).getQueue(), equalTo(2));
+                assertThat(read.getTenants().get(0).getRejected(), equalTo(3L));
+            }
+        }
+
+        final Version oldVersion = VersionUtils.getPreviousVersion(Version.V_8_0_0);
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            out.setVersion(oldVersion);
+            stats.writeTo(out);
+            try (StreamInput in = out.bytes().streamInput()) {
+                in.setVersion(oldVersion);
+                final ThreadPoolStats.Stats read = new ThreadPoolStats.Stats(in);
+                assertThat(read.getCompleted(), equalTo(10L));
+                assertThat(read.getQueueLatencyP50(), equalTo(-1L));
+                assertThat(read.getTenants(), empty());
+            }
+        }
+    }
+
+    public void testQueueLatencyAndTenantsToXContent() {
+        final String tracked = Strings.toString(new ThreadPoolStats.Stats(ThreadPool.Names.SEARCH, 4, 2, 4, 0, 4, 10L, 100L, 900L, 1500L));
+        assertThat(tracked, containsString("\"queue_latency\":{\"p50_in_nanos\":100,\"p90_in_nanos\":900,\"p99_in_nanos\":1500}"));
+        final String untracked = Strings.toString(new ThreadPoolStats.Stats(ThreadPool.Names.GENERIC, 4, 2, 4, 0, 4, 10L));
+        assertThat(untracked, not(containsString("queue_latency")));
+        assertThat(untracked, not(containsString("tenants")));
+
+        final String tenants = Strings.toString(new ThreadPoolStats.Stats(ThreadPool.Names.WRITE, 4, 2, 4, 0, 4, 10L, -1L, -1L, -1L,
+            List.of(new ThreadPoolStats.TenantStats("tenant", 2, 3L))));
+        assertThat(tenants, containsString("\"tenants\":{\"tenant\":{\"queue\":2,\"rejected\":3}}"));
+    }
 }
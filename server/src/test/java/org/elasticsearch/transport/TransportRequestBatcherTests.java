@@ -0,0 +1,226 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0 and the Server Side Public License, v 1; you may not use this file except
+ * in compliance with, at your election, the Elastic License 2.0 or the Server
+ * Side Public License, v 1.
+ */
+package org.elasticsearch.transport;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.core.internal.io.IOUtils;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.transport.MockTransportService;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TransportRequestBatcherTests extends ESTestCase {
+
+    private static final String ACTION = "internal:test/batched";
+
+    private ThreadPool threadPool;
+    private MockTransportService serviceA;
+    private MockTransportService serviceB;
+    private DiscoveryNode nodeB;
+    private final Map<String, AtomicInteger> receivedOnB = new ConcurrentHashMap<>();
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new TestThreadPool(getClass().getName());
+        serviceA = buildService();
+        serviceB = buildService();
+        nodeB = serviceB.getLocalDiscoNode();
+        serviceB.addMessageListener(new TransportMessageListener() {
+            @Override
+            public void onRequestReceived(long requestId, String action) {
+                receivedOnB.computeIfAbsent(action, a -> new AtomicInteger()).incrementAndGet();
+            }
+        });
+        serviceB.registerRequestHandler(ACTION, randomFrom(ThreadPool.Names.SAME, ThreadPool.Names.GENERIC), TestRequest::new,
+            (request, channel, task) -> {
+                if (request.value.startsWith("fail")) {
+                    throw new ElasticsearchException("failed [" + request.value + "]");
+                }
+                channel.sendResponse(new TestResponse("response to " + request.value));
+            });
+        AbstractSimpleTransportTestCase.connectToNode(serviceA, nodeB);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        super.tearDown();
+        IOUtils.close(serviceA, serviceB, () -> terminate(threadPool));
+    }
+
+    private MockTransportService buildService() {
+        final MockTransportService service = MockTransportService.createNewService(Settings.EMPTY, Version.CURRENT, threadPool, null);
+        service.start();
+        service.acceptIncomingRequests();
+        return service;
+    }
+
+    private TransportRequestBatcher<TestRequest, TestResponse> batcher(TransportService service, TimeValue window, int maxSize) {
+        final Settings settings = Settings.builder()
+            .put(TransportRequestBatcher.BATCH_WINDOW_SETTING.getKey(), window)
+            .put(TransportRequestBatcher.BATCH_MAX_SIZE_SETTING.getKey(), maxSize)
+            .build();
+        return new TransportRequestBatcher<>(settings, service, ACTION, TestRequest::new, TestResponse::new);
+    }
+
+    private int received(String action) {
+        final AtomicInteger count = receivedOnB.get(action);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * Sends the given requests and returns the responses, or the messages of the failures, in the order of the requests.
+     */
+    private String[] sendAll(TransportRequestBatcher<TestRequest, TestResponse> batcher, boolean systemContext,
+                             String... values) throws InterruptedException {
+        final String[] results = new String[values.length];
+        final CountDownLatch latch = new CountDownLatch(values.length);
+        final ThreadContext threadContext = threadPool.getThreadContext();
+        for (int i = 0; i < values.length; i++) {
+            final int index = i;
+            // the key of a batch includes the request headers, so tag each request with a transient header
+            try (ThreadContext.StoredContext ignore = threadContext.stashContext()) {
+                if (systemContext) {
+                    threadContext.markAsSystemContext();
+                }
+                threadContext.putTransient("request", values[i]);
+                batcher.sendRequest(nodeB, new TestRequest(values[i]), TransportRequestOptions.EMPTY,
+                    new TransportResponseHandler<TestResponse>() {
+                        @Override
+                        public TestResponse read(StreamInput in) throws IOException {
+                            return new TestResponse(in);
+                        }
+
+                        @Override
+                        public void handleResponse(TestResponse response) {
+                            assertThat(threadContext.getTransient("request"), equalTo(values[index]));
+                            results[index] = response.value;
+                            latch.countDown();
+                        }
+
+                        @Override
+                        public void handleException(TransportException exp) {
+                            assertThat(threadContext.getTransient("request"), equalTo(values[index]));
+                            results[index] = ExceptionsHelper.unwrapCause(exp).getMessage();
+                            latch.countDown();
+                        }
+                    });
+            }
+            assertThat(threadContext.getTransient("request"), nullValue());
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return results;
+    }
+
+    public void testBatchesRequestsToTheSameNode() throws Exception {
+        batcher(serviceB, TimeValue.timeValueMinutes(1), 3);
+        // the batch is sent once it is full, long before the window expires
+        final String[] results = sendAll(batcher(serviceA, TimeValue.timeValueMinutes(1), 3), true, "a", "fail-b", "c");
+        assertThat(results[0], equalTo("response to a"));
+        assertThat(results[1], equalTo("failed [fail-b]"));
+        assertThat(results[2], equalTo("response to c"));
+        assertThat(received(TransportRequestBatcher.getBatchAction(ACTION)), equalTo(1));
+        assertThat(received(ACTION), equalTo(3));
+    }
+
+    public void testWindowSendsPartialBatches() throws Exception {
+        batcher(serviceB, TimeValue.timeValueMillis(10), 100);
+        final String[] results = sendAll(batcher(serviceA, TimeValue.timeValueMillis(10), 100), true, "a", "b");
+        assertThat(results[0], equalTo("response to a"));
+        assertThat(results[1], equalTo("response to b"));
+        assertThat(received(ACTION), equalTo(2));
+    }
+
+    public void testOnlyBatchesSystemRequests() throws Exception {
+        batcher(serviceB, TimeValue.timeValueMinutes(1), 2);
+        final String[] results = sendAll(batcher(serviceA, TimeValue.timeValueMinutes(1), 2), false, "a", "b");
+        assertThat(results[0], equalTo("response to a"));
+        assertThat(results[1], equalTo("response to b"));
+        assertThat(received(TransportRequestBatcher.getBatchAction(ACTION)), equalTo(0));
+        assertThat(received(ACTION), equalTo(2));
+    }
+
+    public void testZeroWindowDisablesBatching() throws Exception {
+        batcher(serviceB, TimeValue.ZERO, 2);
+        final String[] results = sendAll(batcher(serviceA, TimeValue.ZERO, 2), true, "a", "b");
+        assertThat(results[0], equalTo("response to a"));
+        assertThat(results[1], equalTo("response to b"));
+        assertThat(received(TransportRequestBatcher.getBatchAction(ACTION)), equalTo(0));
+    }
+
+    public void testFailedBatchFailsEveryRequest() throws Exception {
+        // the receiving node does not know the batch action
+        final String[] results = sendAll(batcher(serviceA, TimeValue.timeValueMinutes(1), 2), true, "a", "b");
+        for (String result : results) {
+            assertThat(result, equalTo("No handler for action [" + TransportRequestBatcher.getBatchAction(ACTION) + "]"));
+        }
+    }
+
+    public void testBatchAction() {
+        assertTrue(TransportRequestBatcher.isBatchAction(TransportRequestBatcher.getBatchAction(ACTION)));
+        assertFalse(TransportRequestBatcher.isBatchAction(ACTION));
+        assertTrue(TransportService.isValidActionName(TransportRequestBatcher.getBatchAction("indices:admin/seq_no/sync[r]")));
+    }
+
+    private static class TestRequest extends TransportRequest {
+        private final String value;
+
+        TestRequest(String value) {
+            this.value = value;
+        }
+
+        TestRequest(StreamInput in) throws IOException {
+            super(in);
+            value = in.readString();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeString(value);
+        }
+    }
+
+    private static class TestResponse extends TransportResponse {
+        private final String value;
+
+        TestResponse(String value) {
+            this.value = value;
+        }
+
+        TestResponse(StreamInput in) throws IOException {
+            super(in);
+            value = in.readString();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(value);
+        }
+    }
+}
@@ -165,6 +165,13 @@ public class MockBigArrays extends BigArrays {
         return array;
     }
 
+    @Override
+    public ByteArray newOffHeapByteArray(long size) {
+        final ByteArray array = super.newOffHeapByteArray(size);
+        // falls back to newByteArray, which already wraps, if off-heap pages are disabled
+        return array instanceof ByteArrayWrapper ? array : new ByteArrayWrapper(array, true);
+    }
+
     @Override
     public ByteArray resize(ByteArray array, long size) {
         ByteArrayWrapper arr = (ByteArrayWrapper) array;
@@ -135,6 +135,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -292,7 +293,8 @@ public abstract class AggregatorTestCase extends ESTestCase {
             randomInt(),
             () -> 0L,
             () -> false,
-            q -> q
+            q -> q,
+            this::pointInTimeState
         );
         releasables.add(context);
         return context;
@@ -314,6 +316,16 @@ public abstract class AggregatorTestCase extends ESTestCase {
         return List.of();
     }
 
+    /**
+     * The state that aggregations keep for the lifetime of a point in time.
+     * By default tests don't run against a point in time but tests for
+     * aggregations that keep state there can return a map here and share it
+     * between requests.
+     */
+    protected ConcurrentMap<String, Object> pointInTimeState() {
+        return null;
+    }
+
     /**
      * Build a {@link SubSearchContext}s to power {@code top_hits}.
      */
@@ -97,9 +97,16 @@ public abstract class InternalSingleBucketAggregationTestCase<T extends Internal
         return createTestInstance(name, docCount, aggregations, metadata);
     }
 
+    /**
+     * The doc count of the final reduction of {@code inputs}, the sum of their doc counts by default.
+     */
+    protected long expectedReducedDocCount(List<T> inputs) {
+        return inputs.stream().mapToLong(InternalSingleBucketAggregation::getDocCount).sum();
+    }
+
     @Override
     protected final void assertReduced(T reduced, List<T> inputs) {
-        assertEquals(inputs.stream().mapToLong(InternalSingleBucketAggregation::getDocCount).sum(), reduced.getDocCount());
+        assertEquals(expectedReducedDocCount(inputs), reduced.getDocCount());
         if (hasInternalMax) {
             double expected = inputs.stream().mapToDouble(i -> {
                         InternalMax max = i.getAggregations().get("max");
@@ -8,6 +8,7 @@ package org.elasticsearch.xpack.analytics.aggregations;
 
 import org.elasticsearch.search.aggregations.bucket.histogram.HistogramAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.AvgAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.CardinalityAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.MaxAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.MinAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.PercentileRanksAggregationBuilder;
@@ -27,6 +28,7 @@ import org.elasticsearch.xpack.analytics.aggregations.metrics.HistoBackedSumAggr
 import org.elasticsearch.xpack.analytics.aggregations.metrics.HistoBackedTDigestPercentileRanksAggregator;
 import org.elasticsearch.xpack.analytics.aggregations.metrics.HistoBackedTDigestPercentilesAggregator;
 import org.elasticsearch.xpack.analytics.aggregations.metrics.HistoBackedValueCountAggregator;
+import org.elasticsearch.xpack.analytics.aggregations.metrics.HllBackedCardinalityAggregator;
 import org.elasticsearch.xpack.analytics.aggregations.support.AnalyticsValuesSourceType;
 
 public class AnalyticsAggregatorFactory {
@@ -101,4 +103,13 @@ public class AnalyticsAggregatorFactory {
         builder.register(MaxAggregationBuilder.REGISTRY_KEY, AnalyticsValuesSourceType.HISTOGRAM, HistoBackedMaxAggregator::new, true);
     }
 
+    public static void registerHllBackedCardinalityAggregator(ValuesSourceRegistry.Builder builder) {
+        // the sketches were built with the mapped precision, so the precision derived from precision_threshold does not apply
+        builder.register(CardinalityAggregationBuilder.REGISTRY_KEY,
+            AnalyticsValuesSourceType.HLL,
+            (name, valuesSourceConfig, precision, context, parent, metadata) ->
+                new HllBackedCardinalityAggregator(name, valuesSourceConfig, context, parent, metadata),
+            true);
+    }
+
 }
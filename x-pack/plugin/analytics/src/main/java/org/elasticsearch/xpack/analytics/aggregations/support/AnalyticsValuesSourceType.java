@@ -43,6 +43,38 @@ public enum AnalyticsValuesSourceType implements ValuesSourceType {
             return new HistogramValuesSource.Histogram.Fielddata((IndexHistogramFieldData) indexFieldData);
         }
 
+        @Override
+        public ValuesSource replaceMissing(
+            ValuesSource valuesSource,
+            Object rawMissing,
+            DocValueFormat docValueFormat,
+            AggregationContext context
+        ) {
+            throw new IllegalArgumentException("Can't apply missing values on a " + valuesSource.getClass());
+        }
+    },
+    HLL() {
+        @Override
+        public ValuesSource getEmpty() {
+            throw new IllegalArgumentException("Can't deal with unmapped HllValuesSource type " + this.value());
+        }
+
+        @Override
+        public ValuesSource getScript(AggregationScript.LeafFactory script, ValueType scriptValueType) {
+            throw new AggregationExecutionException("value source of type [" + this.value() + "] is not supported by scripts");
+        }
+
+        @Override
+        public ValuesSource getField(FieldContext fieldContext, AggregationScript.LeafFactory script, AggregationContext context) {
+            final IndexFieldData<?> indexFieldData = fieldContext.indexFieldData();
+
+            if ((indexFieldData instanceof IndexHllFieldData) == false) {
+                throw new IllegalArgumentException("Expected hll type on field [" + fieldContext.field() +
+                    "], but got [" + fieldContext.fieldType().typeName() + "]");
+            }
+            return new HllValuesSource.Sketches.Fielddata((IndexHllFieldData) indexFieldData);
+        }
+
         @Override
         public ValuesSource replaceMissing(
             ValuesSource valuesSource,
@@ -0,0 +1,76 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.analytics.aggregations.support;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.elasticsearch.common.Rounding;
+import org.elasticsearch.common.Rounding.Prepared;
+import org.elasticsearch.index.fielddata.DocValueBits;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.search.aggregations.AggregationExecutionException;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+public class HllValuesSource {
+    public abstract static class Sketches extends org.elasticsearch.search.aggregations.support.ValuesSource {
+
+        /**
+         * The serialized sketches, in the format read by
+         * {@link org.elasticsearch.search.aggregations.metrics.HyperLogLogPlusPlus#merge(long,
+         * org.elasticsearch.common.io.stream.StreamInput)}.
+         */
+        public abstract BinaryDocValues getSketches(LeafReaderContext context) throws IOException;
+
+        /**
+         * The precision that every sketch was built with.
+         */
+        public abstract int precision();
+
+        @Override
+        public Function<Rounding, Prepared> roundingPreparer() throws IOException {
+            throw new AggregationExecutionException("can't round a [hll]");
+        }
+
+        public static class Fielddata extends Sketches {
+
+            protected final IndexHllFieldData indexFieldData;
+
+            public Fielddata(IndexHllFieldData indexFieldData) {
+                this.indexFieldData = indexFieldData;
+            }
+
+            @Override
+            public SortedBinaryDocValues bytesValues(LeafReaderContext context) {
+                return indexFieldData.load(context).getBytesValues();
+            }
+
+            @Override
+            public DocValueBits docsWithValue(LeafReaderContext context) throws IOException {
+                BinaryDocValues values = getSketches(context);
+                return new DocValueBits() {
+                    @Override
+                    public boolean advanceExact(int doc) throws IOException {
+                        return values.advanceExact(doc);
+                    }
+                };
+            }
+
+            @Override
+            public BinaryDocValues getSketches(LeafReaderContext context) throws IOException {
+                return indexFieldData.load(context).getSketches();
+            }
+
+            @Override
+            public int precision() {
+                return indexFieldData.getPrecision();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.aggregations.support;
+
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.search.aggregations.support.ValuesSourceType;
+
+/**
+ * Specialization of {@link IndexFieldData} for pre-aggregated HyperLogLog++ sketches.
+ */
+public abstract class IndexHllFieldData implements IndexFieldData<LeafHllFieldData> {
+    protected final String fieldName;
+    protected final int precision;
+
+    public IndexHllFieldData(String fieldName, int precision) {
+        this.fieldName = fieldName;
+        this.precision = precision;
+    }
+
+    @Override
+    public final String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * The precision that every sketch of the field was built with.
+     */
+    public final int getPrecision() {
+        return precision;
+    }
+
+    @Override
+    public ValuesSourceType getValuesSourceType() {
+        return AnalyticsValuesSourceType.HLL;
+    }
+
+}
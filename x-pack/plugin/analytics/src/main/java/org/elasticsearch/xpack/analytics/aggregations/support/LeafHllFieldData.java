@@ -0,0 +1,24 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.aggregations.support;
+
+import org.apache.lucene.index.BinaryDocValues;
+import org.elasticsearch.index.fielddata.LeafFieldData;
+
+import java.io.IOException;
+
+/**
+ * {@link LeafFieldData} specialization for pre-aggregated HyperLogLog++ sketches.
+ */
+public interface LeafHllFieldData extends LeafFieldData {
+
+    /**
+     * Return the serialized sketches, one per document at most.
+     */
+    BinaryDocValues getSketches() throws IOException;
+
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.mapper;
+
+import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.Explicit;
+import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.fielddata.IndexFieldData.XFieldComparatorSource.Nested;
+import org.elasticsearch.index.fielddata.ScriptDocValues;
+import org.elasticsearch.index.fielddata.SortedBinaryDocValues;
+import org.elasticsearch.index.mapper.ContentPath;
+import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.index.mapper.ParseContext;
+import org.elasticsearch.index.mapper.SourceValueFetcher;
+import org.elasticsearch.index.mapper.TextSearchInfo;
+import org.elasticsearch.index.mapper.ValueFetcher;
+import org.elasticsearch.index.query.SearchExecutionContext;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.MultiValueMode;
+import org.elasticsearch.search.aggregations.metrics.AbstractHyperLogLogPlusPlus;
+import org.elasticsearch.search.aggregations.metrics.HyperLogLogPlusPlus;
+import org.elasticsearch.search.lookup.SearchLookup;
+import org.elasticsearch.search.sort.BucketedSort;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.xpack.analytics.aggregations.support.IndexHllFieldData;
+import org.elasticsearch.xpack.analytics.aggregations.support.LeafHllFieldData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Field Mapper for pre-aggregated HyperLogLog++ sketches. Values are the base64 encoded serialization of a sketch, as written by
+ * {@link AbstractHyperLogLogPlusPlus#writeTo}, and are stored as is in binary doc values so that the {@code cardinality}
+ * aggregation can union them without re-hashing the original values.
+ */
+public class HyperLogLogPlusPlusFieldMapper extends FieldMapper {
+    public static final String CONTENT_TYPE = "hll";
+
+    private static HyperLogLogPlusPlusFieldMapper toType(FieldMapper in) {
+        return (HyperLogLogPlusPlusFieldMapper) in;
+    }
+
+    public static class Builder extends FieldMapper.Builder {
+
+        private final Parameter<Integer> precision
+            = Parameter.intParam("precision", false, m -> toType(m).precision, HyperLogLogPlusPlus.DEFAULT_PRECISION)
+            .setValidator(p -> {
+                if (p < AbstractHyperLogLogPlusPlus.MIN_PRECISION || p > AbstractHyperLogLogPlusPlus.MAX_PRECISION) {
+                    throw new IllegalArgumentException("[precision] must be between [" + AbstractHyperLogLogPlusPlus.MIN_PRECISION
+                        + "] and [" + AbstractHyperLogLogPlusPlus.MAX_PRECISION + "] but was [" + p + "]");
+                }
+            });
+        private final Parameter<Map<String, String>> meta = Parameter.metaParam();
+        private final Parameter<Explicit<Boolean>> ignoreMalformed;
+
+        public Builder(String name, boolean ignoreMalformedByDefault) {
+            super(name);
+            this.ignoreMalformed
+                = Parameter.explicitBoolParam("ignore_malformed", true, m -> toType(m).ignoreMalformed, ignoreMalformedByDefault);
+        }
+
+        @Override
+        protected List<Parameter<?>> getParameters() {
+            return List.of(precision, ignoreMalformed, meta);
+        }
+
+        @Override
+        public HyperLogLogPlusPlusFieldMapper build(ContentPath contentPath) {
+            return new HyperLogLogPlusPlusFieldMapper(name,
+                new HyperLogLogPlusPlusFieldType(buildFullName(contentPath), precision.getValue(), meta.getValue()),
+                multiFieldsBuilder.build(this, contentPath), copyTo.build(), this);
+        }
+    }
+
+    public static final TypeParser PARSER
+        = new TypeParser((n, c) -> new Builder(n, IGNORE_MALFORMED_SETTING.get(c.getSettings())), notInMultiFields(CONTENT_TYPE));
+
+    private final int precision;
+    private final Explicit<Boolean> ignoreMalformed;
+    private final boolean ignoreMalformedByDefault;
+
+    public HyperLogLogPlusPlusFieldMapper(String simpleName, MappedFieldType mappedFieldType,
+                                          MultiFields multiFields, CopyTo copyTo, Builder builder) {
+        super(simpleName, mappedFieldType, multiFields, copyTo);
+        this.precision = builder.precision.getValue();
+        this.ignoreMalformed = builder.ignoreMalformed.getValue();
+        this.ignoreMalformedByDefault = builder.ignoreMalformed.getDefaultValue().value();
+    }
+
+    boolean ignoreMalformed() {
+        return ignoreMalformed.value();
+    }
+
+    @Override
+    public HyperLogLogPlusPlusFieldType fieldType() {
+        return (HyperLogLogPlusPlusFieldType) super.fieldType();
+    }
+
+    @Override
+    protected String contentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public FieldMapper.Builder getMergeBuilder() {
+        return new Builder(simpleName(), ignoreMalformedByDefault).init(this);
+    }
+
+    @Override
+    protected void parseCreateField(ParseContext context) {
+        throw new UnsupportedOperationException("Parsing is implemented in parse(), this method should NEVER be called");
+    }
+
+    public static class HyperLogLogPlusPlusFieldType extends MappedFieldType {
+
+        private final int precision;
+
+        public HyperLogLogPlusPlusFieldType(String name, int precision, Map<String, String> meta) {
+            super(name, false, false, true, TextSearchInfo.NONE, meta);
+            this.precision = precision;
+        }
+
+        public int precision() {
+            return precision;
+        }
+
+        @Override
+        public String typeName() {
+            return CONTENT_TYPE;
+        }
+
+        @Override
+        public ValueFetcher valueFetcher(SearchExecutionContext context, String format) {
+            return SourceValueFetcher.identity(name(), context, format);
+        }
+
+        @Override
+        public IndexFieldData.Builder fielddataBuilder(String fullyQualifiedIndexName, Supplier<SearchLookup> searchLookup) {
+            failIfNoDocValues();
+            return (cache, breakerService) -> new IndexHllFieldData(name(), precision) {
+
+                @Override
+                public LeafHllFieldData load(LeafReaderContext context) {
+                    return new LeafHllFieldData() {
+                        @Override
+                        public BinaryDocValues getSketches() throws IOException {
+                            try {
+                                return DocValues.getBinary(context.reader(), fieldName);
+                            } catch (IOException e) {
+                                throw new IOException("Cannot load doc values", e);
+                            }
+                        }
+
+                        @Override
+                        public ScriptDocValues<?> getScriptValues() {
+                            throw new UnsupportedOperationException("The [" + CONTENT_TYPE + "] field does not " +
+                                "support scripts");
+                        }
+
+                        @Override
+                        public SortedBinaryDocValues getBytesValues() {
+                            throw new UnsupportedOperationException("String representation of doc values " +
+                                "for [" + CONTENT_TYPE + "] fields is not supported");
+                        }
+
+                        @Override
+                        public long ramBytesUsed() {
+                            return 0; // Unknown
+                        }
+
+                        @Override
+                        public void close() {
+
+                        }
+                    };
+                }
+
+                @Override
+                public LeafHllFieldData loadDirect(LeafReaderContext context) {
+                    return load(context);
+                }
+
+                @Override
+                public SortField sortField(Object missingValue, MultiValueMode sortMode,
+                                           Nested nested, boolean reverse) {
+                    throw new UnsupportedOperationException("can't sort on the [" + CONTENT_TYPE + "] field");
+                }
+
+                @Override
+                public BucketedSort newBucketedSort(BigArrays bigArrays, Object missingValue, MultiValueMode sortMode,
+                        Nested nested, SortOrder sortOrder, DocValueFormat format, int bucketSize, BucketedSort.ExtraData extra) {
+                    throw new IllegalArgumentException("can't sort on the [" + CONTENT_TYPE + "] field");
+                }
+            };
+        }
+
+        @Override
+        public Query termQuery(Object value, SearchExecutionContext context) {
+            throw new IllegalArgumentException("[" + CONTENT_TYPE + "] field do not support searching, " +
+                "use dedicated aggregations instead: [" + name() + "]");
+        }
+    }
+
+    @Override
+    public void parse(ParseContext context) throws IOException {
+        context.path().add(simpleName());
+        try {
+            XContentParser.Token token = context.parser().currentToken();
+            if (token == XContentParser.Token.VALUE_NULL) {
+                context.path().remove();
+                return;
+            }
+            if (token != XContentParser.Token.VALUE_STRING && token != XContentParser.Token.VALUE_EMBEDDED_OBJECT) {
+                throw new MapperParsingException("error parsing field [" + name() + "], expected a base64 encoded sketch but got ["
+                    + token + "]");
+            }
+            final byte[] sketch = context.parser().binaryValue();
+            validateSketch(sketch);
+            Field field = new BinaryDocValuesField(name(), new BytesRef(sketch));
+            if (context.doc().getByKey(fieldType().name()) != null) {
+                throw new IllegalArgumentException("Field [" + name() + "] of type [" + typeName() +
+                    "] doesn't not support indexing multiple values for the same field in the same document");
+            }
+            context.doc().addWithKey(fieldType().name(), field);
+        } catch (Exception ex) {
+            if (ignoreMalformed.value() == false) {
+                throw new MapperParsingException("failed to parse field [{}] of type [{}]",
+                    ex, fieldType().name(), fieldType().typeName());
+            }
+            context.addIgnoredField(fieldType().name());
+        }
+        context.path().remove();
+    }
+
+    /**
+     * Checks that the sketch has the mapped precision and is as long as its header says, so that a corrupt sketch is rejected at
+     * index time rather than failing every aggregation on the field.
+     */
+    private void validateSketch(byte[] sketch) throws IOException {
+        try (StreamInput in = new ByteBufferStreamInput(ByteBuffer.wrap(sketch))) {
+            final int sketchPrecision = in.readVInt();
+            if (sketchPrecision != precision) {
+                throw new MapperParsingException("error parsing field [" + name() + "], expected a sketch with precision ["
+                    + precision + "] but got [" + sketchPrecision + "]");
+            }
+            final long expectedLength;
+            if (in.readBoolean() == AbstractHyperLogLogPlusPlus.LINEAR_COUNTING) {
+                expectedLength = in.readVLong() * Integer.BYTES;
+            } else {
+                expectedLength = 1L << precision;
+            }
+            if (in.available() != expectedLength) {
+                throw new MapperParsingException("error parsing field [" + name() + "], expected [" + expectedLength
+                    + "] bytes of hashes or registers but got [" + in.available() + "]");
+            }
+        }
+    }
+}
@@ -11,9 +11,14 @@ package org.elasticsearch.xpack.analytics;
 import java.io.IOException;
 
 import org.apache.lucene.document.BinaryDocValuesField;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.search.aggregations.metrics.HyperLogLogPlusPlus;
 import org.elasticsearch.search.aggregations.metrics.TDigestState;
 
+import com.carrotsearch.hppc.BitMixer;
 import com.tdunning.math.stats.Centroid;
 import com.tdunning.math.stats.TDigest;
 
@@ -36,4 +41,25 @@ public final class AnalyticsTestsUtils {
         return new BinaryDocValuesField(fieldName, streamOutput.bytes().toBytesRef());
     }
 
+    /**
+     * Serializes a HyperLogLog++ sketch of the given values the way the {@code hll} field stores it.
+     */
+    public static byte[] hllSketch(int precision, long[] values) throws IOException {
+        try (HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(precision, BigArrays.NON_RECYCLING_INSTANCE, 1)) {
+            for (long value : values) {
+                counts.collect(0, BitMixer.mix64(value));
+            }
+            BytesStreamOutput streamOutput = new BytesStreamOutput();
+            counts.writeTo(0, streamOutput);
+            return BytesReference.toBytes(streamOutput.bytes());
+        }
+    }
+
+    /**
+     * Generates an index field for hll fields. Used in tests of aggregations that work on hll fields.
+     */
+    public static BinaryDocValuesField hllFieldDocValues(String fieldName, int precision, long[] values) throws IOException {
+        return new BinaryDocValuesField(fieldName, new BytesRef(hllSketch(precision, values)));
+    }
+
 }
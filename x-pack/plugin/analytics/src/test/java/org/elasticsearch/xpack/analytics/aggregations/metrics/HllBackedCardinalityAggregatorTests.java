@@ -0,0 +1,138 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.aggregations.metrics;
+
+import static java.util.Collections.singleton;
+import static org.elasticsearch.xpack.analytics.AnalyticsTestsUtils.hllFieldDocValues;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.carrotsearch.hppc.BitMixer;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.elasticsearch.common.CheckedConsumer;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.plugins.SearchPlugin;
+import org.elasticsearch.search.aggregations.AggregatorTestCase;
+import org.elasticsearch.search.aggregations.metrics.CardinalityAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.HyperLogLogPlusPlus;
+import org.elasticsearch.search.aggregations.metrics.InternalCardinality;
+import org.elasticsearch.search.aggregations.support.AggregationInspectionHelper;
+import org.elasticsearch.xpack.analytics.AnalyticsPlugin;
+import org.elasticsearch.xpack.analytics.mapper.HyperLogLogPlusPlusFieldMapper;
+
+public class HllBackedCardinalityAggregatorTests extends AggregatorTestCase {
+
+    private static final String FIELD_NAME = "field";
+    private static final int PRECISION = HyperLogLogPlusPlus.DEFAULT_PRECISION;
+
+    public void testNoDocs() throws IOException {
+        testCase(new MatchAllDocsQuery(), iw -> {
+            // Intentionally not writing any docs
+        }, card -> {
+            assertEquals(0L, card.getValue());
+            assertFalse(AggregationInspectionHelper.hasValue(card));
+        });
+    }
+
+    public void testNoMatchingField() throws IOException {
+        testCase(new MatchAllDocsQuery(), iw -> {
+            iw.addDocument(singleton(hllFieldDocValues("wrong_field", PRECISION, new long[] {1, 2, 3})));
+        }, card -> {
+            assertEquals(0L, card.getValue());
+            assertFalse(AggregationInspectionHelper.hasValue(card));
+        });
+    }
+
+    public void testUnionOfSketches() throws IOException {
+        testCase(new MatchAllDocsQuery(), iw -> {
+            iw.addDocument(singleton(hllFieldDocValues(FIELD_NAME, PRECISION, new long[] {1, 2, 3})));
+            iw.addDocument(singleton(hllFieldDocValues(FIELD_NAME, PRECISION, new long[] {3, 4, 5})));
+            iw.addDocument(singleton(hllFieldDocValues(FIELD_NAME, PRECISION, new long[] {1, 6})));
+        }, card -> {
+            assertEquals(6L, card.getValue());
+            assertTrue(AggregationInspectionHelper.hasValue(card));
+        });
+    }
+
+    public void testUnionOfLargeSketches() throws IOException {
+        // sketches that are serialized as registers rather than as hashes
+        final int numDocs = randomIntBetween(2, 10);
+        final long[][] values = new long[numDocs][];
+        final HyperLogLogPlusPlus expected = new HyperLogLogPlusPlus(PRECISION, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        for (int i = 0; i < numDocs; i++) {
+            values[i] = new long[randomIntBetween(20000, 40000)];
+            for (int j = 0; j < values[i].length; j++) {
+                values[i][j] = randomIntBetween(0, 100000);
+                expected.collect(0, BitMixer.mix64(values[i][j]));
+            }
+        }
+        try {
+            testCase(new MatchAllDocsQuery(), iw -> {
+                for (long[] docValues : values) {
+                    iw.addDocument(singleton(hllFieldDocValues(FIELD_NAME, PRECISION, docValues)));
+                }
+            }, card -> assertEquals(expected.cardinality(0), card.getValue()));
+        } finally {
+            expected.close();
+        }
+    }
+
+    public void testQueryFiltering() throws IOException {
+        testCase(new TermQuery(new Term("match", "yes")), iw -> {
+            iw.addDocument(Arrays.asList(
+                new StringField("match", "yes", Field.Store.NO),
+                hllFieldDocValues(FIELD_NAME, PRECISION, new long[] {1, 2}))
+            );
+            iw.addDocument(Arrays.asList(
+                new StringField("match", "no", Field.Store.NO),
+                hllFieldDocValues(FIELD_NAME, PRECISION, new long[] {3, 4, 5, 6}))
+            );
+            iw.addDocument(Arrays.asList(
+                new StringField("match", "yes", Field.Store.NO),
+                hllFieldDocValues(FIELD_NAME, PRECISION, new long[] {2, 7}))
+            );
+        }, card -> {
+            assertEquals(3L, card.getValue());
+            assertTrue(AggregationInspectionHelper.hasValue(card));
+        });
+    }
+
+    public void testPrecisionMismatch() {
+        Exception e = expectThrows(IllegalArgumentException.class, () -> testCase(new MatchAllDocsQuery(), iw -> {
+            iw.addDocument(singleton(hllFieldDocValues(FIELD_NAME, PRECISION - 1, new long[] {1, 2, 3})));
+        }, card -> fail("sketches with a different precision than the mapping must not be merged")));
+        assertEquals("Cannot merge a HyperLogLog++ sketch with precision [" + (PRECISION - 1) + "] into one with precision ["
+            + PRECISION + "]", e.getMessage());
+    }
+
+    private void testCase(
+        Query query,
+        CheckedConsumer<RandomIndexWriter, IOException> indexer,
+        Consumer<InternalCardinality> verify) throws IOException {
+        testCase(new CardinalityAggregationBuilder("_name").field(FIELD_NAME), query, indexer, verify, defaultFieldType());
+    }
+
+    @Override
+    protected List<SearchPlugin> getSearchPlugins() {
+        return List.of(new AnalyticsPlugin());
+    }
+
+    private MappedFieldType defaultFieldType() {
+        return new HyperLogLogPlusPlusFieldMapper.HyperLogLogPlusPlusFieldType(FIELD_NAME, PRECISION, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.analytics.mapper;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.MapperParsingException;
+import org.elasticsearch.index.mapper.MapperTestCase;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.xpack.analytics.AnalyticsPlugin;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.elasticsearch.xpack.analytics.AnalyticsTestsUtils.hllSketch;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+public class HyperLogLogPlusPlusFieldMapperTests extends MapperTestCase {
+
+    @Override
+    protected Object getSampleValueForDocument() {
+        try {
+            return hllSketch(14, new long[] { 1, 2, 3 });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    protected Collection<? extends Plugin> getPlugins() {
+        return List.of(new AnalyticsPlugin());
+    }
+
+    @Override
+    protected void minimalMapping(XContentBuilder b) throws IOException {
+        b.field("type", "hll");
+    }
+
+    @Override
+    protected void registerParameters(ParameterChecker checker) throws IOException {
+        checker.registerConflictCheck("precision", b -> b.field("precision", 10));
+        checker.registerUpdateCheck(b -> b.field("ignore_malformed", true),
+            m -> assertTrue(((HyperLogLogPlusPlusFieldMapper) m).ignoreMalformed()));
+    }
+
+    @Override
+    protected boolean supportsSearchLookup() {
+        return false;
+    }
+
+    @Override
+    protected boolean supportsStoredFields() {
+        return false;
+    }
+
+    public void testParseValue() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(fieldMapping(this::minimalMapping));
+        byte[] sketch = hllSketch(14, new long[] { 1, 2, 3 });
+        ParsedDocument doc = mapper.parse(source(b -> b.field("field", sketch)));
+        assertThat(doc.rootDoc().getField("field"), notNullValue());
+        assertThat(doc.rootDoc().getField("field").binaryValue().bytes, equalTo(sketch));
+    }
+
+    public void testParseRegisters() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(fieldMapping(b -> b.field("type", "hll").field("precision", 4)));
+        long[] values = new long[1000];
+        Arrays.setAll(values, i -> i);
+        ParsedDocument doc = mapper.parse(source(b -> b.field("field", hllSketch(4, values))));
+        assertThat(doc.rootDoc().getField("field"), notNullValue());
+    }
+
+    public void testParseArrayValue() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(fieldMapping(this::minimalMapping));
+        byte[] sketch = hllSketch(14, new long[] { 1, 2, 3 });
+        Exception e = expectThrows(MapperParsingException.class, () -> mapper.parse(source(b -> {
+            b.startArray("field").value(sketch).value(sketch).endArray();
+        })));
+        assertThat(
+            e.getCause().getMessage(),
+            containsString("doesn't not support indexing multiple values " + "for the same field in the same document")
+        );
+    }
+
+    public void testNullValue() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(fieldMapping(this::minimalMapping));
+        ParsedDocument doc = mapper.parse(source(b -> b.nullField("field")));
+        assertThat(doc.rootDoc().getField("field"), nullValue());
+    }
+
+    public void testWrongPrecision() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(fieldMapping(this::minimalMapping));
+        Exception e = expectThrows(
+            MapperParsingException.class,
+            () -> mapper.parse(source(b -> b.field("field", hllSketch(12, new long[] { 1, 2, 3 }))))
+        );
+        assertThat(e.getCause().getMessage(), containsString("expected a sketch with precision [14] but got [12]"));
+    }
+
+    public void testTruncatedSketch() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(fieldMapping(this::minimalMapping));
+        byte[] sketch = hllSketch(14, new long[] { 1, 2, 3 });
+        Exception e = expectThrows(
+            MapperParsingException.class,
+            () -> mapper.parse(source(b -> b.field("field", Arrays.copyOf(sketch, sketch.length - 1))))
+        );
+        assertThat(e.getCause().getMessage(), containsString("expected [12] bytes of hashes or registers but got [11]"));
+    }
+
+    public void testNotASketch() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(fieldMapping(this::minimalMapping));
+        Exception e = expectThrows(MapperParsingException.class, () -> mapper.parse(source(b -> b.field("field", 42))));
+        assertThat(e.getCause().getMessage(), containsString("expected a base64 encoded sketch"));
+    }
+
+    public void testInvalidPrecision() {
+        Exception e = expectThrows(
+            MapperParsingException.class,
+            () -> createMapperService(fieldMapping(b -> b.field("type", "hll").field("precision", 19)))
+        );
+        assertThat(e.getMessage(), containsString("[precision] must be between [4] and [18] but was [19]"));
+    }
+
+    public void testIgnoreMalformed() throws Exception {
+        DocumentMapper mapper = createDocumentMapper(fieldMapping(b -> b.field("type", "hll").field("ignore_malformed", true)));
+        ParsedDocument doc = mapper.parse(source(b -> b.field("field", hllSketch(12, new long[] { 1, 2, 3 }))));
+        assertThat(doc.rootDoc().getField("field"), nullValue());
+    }
+
+    @Override
+    protected Object generateRandomInputValue(MappedFieldType ft) {
+        assumeFalse("Test implemented in a follow up", true);
+        return null;
+    }
+
+    public void testCannotBeUsedInMultifields() {
+        Exception e = expectThrows(MapperParsingException.class, () -> createMapperService(fieldMapping(b -> {
+            b.field("type", "keyword");
+            b.startObject("fields");
+            b.startObject("sketch");
+            b.field("type", "hll");
+            b.endObject();
+            b.endObject();
+        })));
+        assertThat(e.getMessage(), containsString("Field [sketch] of type [hll] can't be used in multifields"));
+    }
+}
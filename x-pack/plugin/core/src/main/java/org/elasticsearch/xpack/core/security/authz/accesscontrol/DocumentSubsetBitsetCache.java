@@ -9,6 +9,7 @@ package org.elasticsearch.xpack.core.security.authz.accesscontrol;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
@@ -21,11 +22,14 @@ import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BitSet;
+import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.SparseFixedBitSet;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.cache.Cache;
 import org.elasticsearch.common.cache.CacheBuilder;
 import org.elasticsearch.common.cache.RemovalNotification;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
@@ -34,16 +38,22 @@ import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
 import org.elasticsearch.common.util.set.Sets;
+import org.elasticsearch.index.IndexWarmer;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -74,6 +84,11 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * BitSets that are not longer needed, so we set the TTL on this cache to be 2 hours ({@link #CACHE_TTL_SETTING}). This time has been
  * chosen so that it will retain BitSets that are in active use during a user's session, but not be an ongoing drain on memory.
  *
+ * Every refresh creates new segments for which no BitSet exists yet, so the first search after a refresh would have to build one for
+ * each of its DLS queries. To avoid that latency spike, the cache remembers the most recently used queries of each shard
+ * ({@link #CACHE_WARM_QUERIES_SETTING}) and builds their BitSets for new segments from an {@link IndexWarmer.Listener}, before the
+ * segments are exposed to searches.
+ *
  * @see org.elasticsearch.index.cache.bitset.BitsetFilterCache
  */
 public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListener, Closeable, Accountable {
@@ -91,6 +106,13 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
     static final Setting<ByteSizeValue> CACHE_SIZE_SETTING = Setting.memorySizeSetting("xpack.security.dls.bitset.cache.size",
             "10%", Property.NodeScope);
 
+    /**
+     * The number of most recently used DLS queries per shard whose BitSets are built eagerly when new segments are refreshed.
+     * A value of {@code 0} disables warming.
+     */
+    static final Setting<Integer> CACHE_WARM_QUERIES_SETTING =
+        Setting.intSetting("xpack.security.dls.bitset.cache.warm_queries", 10, 0, Property.NodeScope);
+
     private static final BitSet NULL_MARKER = new FixedBitSet(0);
 
     private final Logger logger;
@@ -106,14 +128,22 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
     private final ReleasableLock cacheEvictionLock;
     private final ReleasableLock cacheModificationLock;
     private final ExecutorService cleanupExecutor;
+    private final Executor warmerExecutor;
 
     private final long maxWeightBytes;
     private final Cache<BitsetCacheKey, BitSet> bitsetCache;
     private final Map<IndexReader.CacheKey, Set<BitsetCacheKey>> keysByIndex;
     private final AtomicLong cacheFullWarningTime;
 
+    private final long ttlNanos;
+    private final int maxWarmQueries;
+    private final Cache<ShardId, RecentQueries> recentQueriesByShard;
+    private final AtomicLong buildCount = new AtomicLong();
+    private final AtomicLong buildTimeNanos = new AtomicLong();
+    private final AtomicLong warmedCount = new AtomicLong();
+
     public DocumentSubsetBitsetCache(Settings settings, ThreadPool threadPool) {
-        this(settings, threadPool.executor(ThreadPool.Names.GENERIC));
+        this(settings, threadPool.executor(ThreadPool.Names.GENERIC), threadPool.executor(ThreadPool.Names.WARMER));
     }
 
     /**
@@ -122,12 +152,22 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
      *                        it is sometimes necessary to run an asynchronous task to synchronize the internal state.
      */
     protected DocumentSubsetBitsetCache(Settings settings, ExecutorService cleanupExecutor) {
+        this(settings, cleanupExecutor, cleanupExecutor);
+    }
+
+    /**
+     * @param settings The global settings object for this node
+     * @param cleanupExecutor An executor on which the cache cleanup tasks can be run.
+     * @param warmerExecutor An executor on which the BitSets of new segments are built when warming a shard.
+     */
+    protected DocumentSubsetBitsetCache(Settings settings, ExecutorService cleanupExecutor, Executor warmerExecutor) {
         this.logger = LogManager.getLogger(getClass());
 
         final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
         this.cacheEvictionLock = new ReleasableLock(readWriteLock.writeLock());
         this.cacheModificationLock = new ReleasableLock(readWriteLock.readLock());
         this.cleanupExecutor = cleanupExecutor;
+        this.warmerExecutor = warmerExecutor;
 
         final TimeValue ttl = CACHE_TTL_SETTING.get(settings);
         this.maxWeightBytes = CACHE_SIZE_SETTING.get(settings).getBytes();
@@ -140,6 +180,12 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
 
         this.keysByIndex = new ConcurrentHashMap<>();
         this.cacheFullWarningTime = new AtomicLong(0);
+
+        this.ttlNanos = ttl.nanos();
+        this.maxWarmQueries = CACHE_WARM_QUERIES_SETTING.get(settings);
+        this.recentQueriesByShard = CacheBuilder.<ShardId, RecentQueries>builder()
+            .setExpireAfterAccess(ttl)
+            .build();
     }
 
     @Override
@@ -193,6 +239,7 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
         // to the index without issue.
         keysByIndex.clear();
         bitsetCache.invalidateAll();
+        recentQueriesByShard.invalidateAll();
     }
 
     int entryCount() {
@@ -212,6 +259,11 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
      */
     @Nullable
     public BitSet getBitSet(final Query query, final LeafReaderContext context) throws ExecutionException {
+        return getOrLoadBitSet(query, context, false);
+    }
+
+    @Nullable
+    private BitSet getOrLoadBitSet(final Query query, final LeafReaderContext context, boolean warming) throws ExecutionException {
         final IndexReader.CacheHelper coreCacheHelper = context.reader().getCoreCacheHelper();
         if (coreCacheHelper == null) {
             throw new IllegalArgumentException("Reader " + context.reader() + " does not support caching");
@@ -230,6 +282,7 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
                     set.add(cacheKey);
                     return set;
                 });
+                final long startTime = System.nanoTime();
                 final IndexReaderContext topLevelContext = ReaderUtil.getTopLevelContext(context);
                 final IndexSearcher searcher = new IndexSearcher(topLevelContext);
                 searcher.setQueryCache(null);
@@ -240,6 +293,11 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
                     return NULL_MARKER;
                 } else {
                     final BitSet bs = bitSetFromDocIterator(s.iterator(), context.reader().maxDoc());
+                    buildCount.incrementAndGet();
+                    buildTimeNanos.addAndGet(System.nanoTime() - startTime);
+                    if (warming) {
+                        warmedCount.incrementAndGet();
+                    }
                     final long bitSetBytes = bs.ramBytesUsed();
                     if (bitSetBytes > this.maxWeightBytes) {
                         logger.warn("built a DLS BitSet that uses [{}] bytes; the DLS BitSet cache has a maximum size of [{}] bytes;" +
@@ -260,6 +318,89 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
         }
     }
 
+    /**
+     * Remembers that {@code query} was used on a shard, so that its BitSets are built for new segments of that shard when they are
+     * warmed. Called once each time a reader of the shard is wrapped for the query rather than for every segment lookup.
+     */
+    void recordQuery(Query query, @Nullable ShardId shardId) {
+        if (maxWarmQueries == 0 || shardId == null) {
+            return;
+        }
+        try {
+            recentQueriesByShard.computeIfAbsent(shardId, ignored -> new RecentQueries(maxWarmQueries)).add(query, System.nanoTime());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("failed to record DLS query for warming", e.getCause());
+        }
+    }
+
+    /**
+     * Creates a listener that builds the BitSets of the most recently used DLS queries of a shard for every segment of a new reader of
+     * that shard, so that searches on freshly refreshed segments find them in the cache.
+     */
+    public IndexWarmer.Listener createWarmerListener() {
+        return new BitSetWarmer();
+    }
+
+    private final class BitSetWarmer implements IndexWarmer.Listener {
+
+        @Override
+        public IndexWarmer.TerminationHandle warmReader(IndexShard indexShard, ElasticsearchDirectoryReader reader) {
+            final ShardId shardId = indexShard.shardId();
+            final RecentQueries recentQueries = recentQueriesByShard.get(shardId);
+            if (recentQueries == null) {
+                return IndexWarmer.TerminationHandle.NO_WAIT;
+            }
+            final List<Query> warmUp = recentQueries.usedSince(System.nanoTime() - ttlNanos);
+            if (warmUp.isEmpty()) {
+                // no DLS query has been used on this shard for a while, stop warming it until one is used again
+                recentQueriesByShard.invalidate(shardId);
+                return IndexWarmer.TerminationHandle.NO_WAIT;
+            }
+
+            final CountDownLatch latch = new CountDownLatch(reader.leaves().size() * warmUp.size());
+            for (final LeafReaderContext ctx : reader.leaves()) {
+                for (final Query query : warmUp) {
+                    warmerExecutor.execute(() -> {
+                        try {
+                            getOrLoadBitSet(query, ctx, true);
+                        } catch (Exception e) {
+                            indexShard.warmerService().logger().warn(() -> new ParameterizedMessage("failed to load " +
+                                "DLS bitset for [{}]", query), e);
+                        } finally {
+                            latch.countDown();
+                        }
+                    });
+                }
+            }
+            return latch::await;
+        }
+    }
+
+    /**
+     * The most recently used queries of a shard, bounded to a maximum number of entries.
+     */
+    private static final class RecentQueries {
+        private final Map<Query, Long> lastUsedNanos;
+
+        RecentQueries(int maxQueries) {
+            this.lastUsedNanos = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Query, Long> eldest) {
+                    return size() > maxQueries;
+                }
+            };
+        }
+
+        synchronized void add(Query query, long nowNanos) {
+            lastUsedNanos.put(query, nowNanos);
+        }
+
+        synchronized List<Query> usedSince(long sinceNanos) {
+            lastUsedNanos.values().removeIf(lastUsed -> lastUsed - sinceNanos < 0);
+            return List.copyOf(lastUsedNanos.keySet());
+        }
+    }
+
     private void maybeLogCacheFullWarning() {
         final long nextLogTime = cacheFullWarningTime.get();
         final long now = System.currentTimeMillis();
@@ -275,7 +416,7 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
     }
 
     public static List<Setting<?>> getSettings() {
-        return List.of(CACHE_TTL_SETTING, CACHE_SIZE_SETTING);
+        return List.of(CACHE_TTL_SETTING, CACHE_SIZE_SETTING, CACHE_WARM_QUERIES_SETTING);
     }
 
     public Map<String, Object> usageStats() {
@@ -283,7 +424,10 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
         return Map.of(
             "count", entryCount(),
             "memory", ram.toString(),
-            "memory_in_bytes", ram.getBytes()
+            "memory_in_bytes", ram.getBytes(),
+            "build_count", buildCount.get(),
+            "build_time_in_millis", TimeUnit.NANOSECONDS.toMillis(buildTimeNanos.get()),
+            "warmed_count", warmedCount.get()
         );
     }
 
@@ -345,11 +489,20 @@ public final class DocumentSubsetBitsetCache implements IndexReader.ClosedListen
 
     static BitSet bitSetFromDocIterator(DocIdSetIterator iter, int maxDoc) throws IOException {
         final BitSet set = BitSet.of(iter, maxDoc);
-        if (set.cardinality() == maxDoc) {
+        final int cardinality = set.cardinality();
+        if (cardinality == maxDoc) {
             return new MatchAllRoleBitSet(maxDoc);
-        } else {
-            return set;
         }
+        if (set instanceof FixedBitSet && cardinality < (maxDoc >>> 7)) {
+            // BitSet#of picks the implementation from the cost estimate of the iterator, which can be far above the actual number of
+            // matches for restrictive role queries. Switch to a sparse BitSet if that turns out to be smaller.
+            final SparseFixedBitSet sparse = new SparseFixedBitSet(maxDoc);
+            sparse.or(new BitSetIterator(set, cardinality));
+            if (sparse.ramBytesUsed() < set.ramBytesUsed()) {
+                return sparse;
+            }
+        }
+        return set;
     }
 
 }
@@ -14,6 +14,7 @@ import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.Fields;
 import org.apache.lucene.index.FilterDirectoryReader;
 import org.apache.lucene.index.FilterLeafReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.PointValues;
@@ -26,25 +27,30 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FilterIterator;
+import org.apache.lucene.util.WeakIdentityMap;
 import org.apache.lucene.util.automaton.CharacterRunAutomaton;
 import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
-import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.logging.LoggerMessageFormat;
 import org.elasticsearch.common.lucene.index.SequentialStoredFieldsLeafReader;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentHelper;
-import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.support.XContentMapValues.PendingHeaders;
 import org.elasticsearch.index.mapper.FieldNamesFieldMapper;
 import org.elasticsearch.index.mapper.SourceFieldMapper;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * A {@link FilterLeafReader} that exposes only a subset
@@ -63,32 +69,108 @@ public final class FieldSubsetReader extends SequentialStoredFieldsLeafReader {
      * @param filter fields to filter.
      */
     public static DirectoryReader wrap(DirectoryReader in, CharacterRunAutomaton filter) throws IOException {
-        return new FieldSubsetDirectoryReader(in, filter);
+        return wrap(in, filter, new FieldInfosCache());
+    }
+
+    /**
+     * Like {@link #wrap(DirectoryReader, CharacterRunAutomaton)}, but reuses the filtered {@link FieldInfos} of segments that
+     * have already been wrapped with the same {@code filter}.
+     * @param in reader to filter
+     * @param filter fields to filter.
+     * @param fieldInfosCache the filtered field infos of segments, must only be shared by readers wrapped with the same filter.
+     */
+    public static DirectoryReader wrap(DirectoryReader in, CharacterRunAutomaton filter, FieldInfosCache fieldInfosCache)
+            throws IOException {
+        return new FieldSubsetDirectoryReader(in, filter, fieldInfosCache);
+    }
+
+    /**
+     * The filtered {@link FieldInfos} of segments, so that they are only computed once per segment and set of permitted fields
+     * rather than on every search. Entries are weakly keyed on the core of the segment and are dropped once it is closed.
+     */
+    public static final class FieldInfosCache {
+        private final Map<IndexReader.CacheKey, FilteredFieldInfos> cache = Collections.synchronizedMap(new WeakHashMap<>());
+        private final WeakIdentityMap<FieldInfosCache, FieldInfosCache> intersections = WeakIdentityMap.newConcurrentHashMap();
+
+        /**
+         * Returns the cache for readers that are filtered with the intersection of the filter of this cache and the filter of
+         * {@code other}. Permissions that are limited by other permissions are rebuilt on every request, but the permissions they
+         * are built from are cached, so keying on the caches of those lets the limited permissions share their field infos.
+         */
+        public FieldInfosCache intersection(FieldInfosCache other) {
+            FieldInfosCache intersection = intersections.get(other);
+            if (intersection == null) {
+                // racing requests may each build a cache, which only costs filtering the field infos once more
+                intersection = new FieldInfosCache();
+                intersections.put(other, intersection);
+            }
+            return intersection;
+        }
+
+        FieldInfos getFieldInfos(LeafReader in, CharacterRunAutomaton filter) {
+            final FieldInfos source = in.getFieldInfos();
+            final IndexReader.CacheHelper cacheHelper = in.getCoreCacheHelper();
+            if (cacheHelper == null) {
+                return filter(source, filter);
+            }
+            final IndexReader.CacheKey key = cacheHelper.getKey();
+            final FilteredFieldInfos cached = cache.get(key);
+            // doc values updates change the field infos of a segment without changing its core
+            if (cached != null && cached.source == source) {
+                return cached.filtered;
+            }
+            final FieldInfos filtered = filter(source, filter);
+            cache.put(key, new FilteredFieldInfos(source, filtered));
+            return filtered;
+        }
+
+        private static FieldInfos filter(FieldInfos source, CharacterRunAutomaton filter) {
+            ArrayList<FieldInfo> filteredInfos = new ArrayList<>();
+            for (FieldInfo fi : source) {
+                if (filter.run(fi.name)) {
+                    filteredInfos.add(fi);
+                }
+            }
+            return new FieldInfos(filteredInfos.toArray(new FieldInfo[filteredInfos.size()]));
+        }
+
+        private static final class FilteredFieldInfos {
+            final FieldInfos source;
+            final FieldInfos filtered;
+
+            FilteredFieldInfos(FieldInfos source, FieldInfos filtered) {
+                this.source = source;
+                this.filtered = filtered;
+            }
+        }
     }
 
     // wraps subreaders with fieldsubsetreaders.
     static class FieldSubsetDirectoryReader extends FilterDirectoryReader {
 
         private final CharacterRunAutomaton filter;
+        private final FieldInfosCache fieldInfosCache;
 
-        FieldSubsetDirectoryReader(DirectoryReader in, final CharacterRunAutomaton filter) throws IOException {
+        FieldSubsetDirectoryReader(DirectoryReader in, final CharacterRunAutomaton filter, final FieldInfosCache fieldInfosCache)
+                throws IOException {
             super(in, new FilterDirectoryReader.SubReaderWrapper() {
                 @Override
                 public LeafReader wrap(LeafReader reader) {
                     try {
-                        return new FieldSubsetReader(reader, filter);
+                        return new FieldSubsetReader(reader, filter, fieldInfosCache);
                     } catch (IOException e) {
                         throw new UncheckedIOException(e);
                     }
                 }
             });
             this.filter = filter;
+            this.fieldInfosCache = fieldInfosCache;
             verifyNoOtherFieldSubsetDirectoryReaderIsWrapped(in);
         }
 
         @Override
         protected DirectoryReader doWrapDirectoryReader(DirectoryReader in) throws IOException {
-            return new FieldSubsetDirectoryReader(in, filter);
+            return new FieldSubsetDirectoryReader(in, filter, fieldInfosCache);
         }
 
         /** Return the automaton that is used to filter fields. */
@@ -124,15 +206,9 @@ public final class FieldSubsetReader extends SequentialStoredFieldsLeafReader {
     /**
      * Wrap a single segment, exposing a subset of its fields.
      */
-    FieldSubsetReader(LeafReader in, CharacterRunAutomaton filter) throws IOException {
+    FieldSubsetReader(LeafReader in, CharacterRunAutomaton filter, FieldInfosCache fieldInfosCache) throws IOException {
         super(in);
-        ArrayList<FieldInfo> filteredInfos = new ArrayList<>();
-        for (FieldInfo fi : in.getFieldInfos()) {
-            if (filter.run(fi.name)) {
-                filteredInfos.add(fi);
-            }
-        }
-        fieldInfos = new FieldInfos(filteredInfos.toArray(new FieldInfo[filteredInfos.size()]));
+        fieldInfos = fieldInfosCache.getFieldInfos(in, filter);
         this.filter = filter;
         final Terms fieldNameTerms = super.terms(FieldNamesFieldMapper.NAME);
         this.fieldNamesFilterTerms = fieldNameTerms == null ? null : new FieldNamesTerms(fieldNameTerms);
@@ -221,6 +297,91 @@ public final class FieldSubsetReader extends SequentialStoredFieldsLeafReader {
         return filtered;
     }
 
+    /**
+     * Streaming version of {@link #filter(Map, CharacterRunAutomaton, int)} that copies the retained fields from {@code parser}
+     * to {@code builder} without building a map of the whole document, called with the parser on the
+     * {@link XContentParser.Token#START_OBJECT} token of the object to filter.
+     */
+    static void filter(XContentParser parser, XContentBuilder builder, PendingHeaders pending,
+                       CharacterRunAutomaton includeAutomaton, int initialState) throws IOException {
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            assert token == XContentParser.Token.FIELD_NAME : "expected a field name but got " + token;
+            String key = parser.currentName();
+            token = parser.nextToken();
+
+            int state = step(includeAutomaton, key, initialState);
+            if (state == -1) {
+                parser.skipChildren();
+                continue;
+            }
+
+            if (token == XContentParser.Token.START_OBJECT) {
+                state = includeAutomaton.step(state, '.');
+                if (state == -1) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // empty objects are dropped, so the header is only written once a field of the object is retained
+                pending.push(key, true);
+                filter(parser, builder, pending, includeAutomaton, state);
+                pending.pop(builder);
+            } else if (token == XContentParser.Token.START_ARRAY) {
+                pending.push(key, false);
+                filterArray(parser, builder, pending, includeAutomaton, state);
+                pending.pop(builder);
+            } else if (includeAutomaton.isAccept(state)) {
+                pending.write(builder);
+                builder.field(key);
+                builder.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    /** Streaming version of {@link #filter(Iterable, CharacterRunAutomaton, int)}. */
+    private static void filterArray(XContentParser parser, XContentBuilder builder, PendingHeaders pending,
+                                    CharacterRunAutomaton includeAutomaton, int initialState) throws IOException {
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+            if (token == XContentParser.Token.START_OBJECT) {
+                int state = includeAutomaton.step(initialState, '.');
+                if (state == -1) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // objects in arrays are kept even if no field matches, see filter(Iterable, CharacterRunAutomaton, int)
+                pending.push(null, true);
+                pending.write(builder);
+                filter(parser, builder, pending, includeAutomaton, state);
+                pending.pop(builder);
+            } else if (token == XContentParser.Token.START_ARRAY) {
+                pending.push(null, false);
+                filterArray(parser, builder, pending, includeAutomaton, initialState);
+                pending.pop(builder);
+            } else if (includeAutomaton.isAccept(initialState)) {
+                pending.write(builder);
+                builder.copyCurrentStructure(parser);
+            }
+        }
+    }
+
+    /**
+     * Filter the given {@code _source} by a {@link CharacterRunAutomaton} that defines the fields to retain, keeping its content type.
+     */
+    static BytesReference filter(BytesReference source, CharacterRunAutomaton includeAutomaton) throws IOException {
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.THROW_UNSUPPORTED_OPERATION, source)) {
+            XContentBuilder builder = XContentBuilder.builder(parser.contentType().xContent());
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new IllegalStateException("_source must be an object but got " + parser.currentToken());
+            }
+            builder.startObject();
+            filter(parser, builder, new PendingHeaders(), includeAutomaton, 0);
+            builder.endObject();
+            return BytesReference.bytes(builder);
+        }
+    }
+
     /** Step through all characters of the provided string, and return the
      *  resulting state, or -1 if that did not lead to a valid state. */
     private static int step(CharacterRunAutomaton automaton, String key, int state) {
@@ -341,12 +502,9 @@ public final class FieldSubsetReader extends SequentialStoredFieldsLeafReader {
         @Override
         public void binaryField(FieldInfo fieldInfo, byte[] value) throws IOException {
             if (SourceFieldMapper.NAME.equals(fieldInfo.name)) {
-                // for _source, parse, filter out the fields we care about, and serialize back downstream
-                BytesReference bytes = new BytesArray(value);
-                Tuple<XContentType, Map<String, Object>> result = XContentHelper.convertToMap(bytes, true);
-                Map<String, Object> transformedSource = filter(result.v2(), filter, 0);
-                XContentBuilder xContentBuilder = XContentBuilder.builder(result.v1().xContent()).map(transformedSource);
-                visitor.binaryField(fieldInfo, BytesReference.toBytes(BytesReference.bytes(xContentBuilder)));
+                // for _source, stream through it, copying only the fields we care about downstream
+                BytesReference filtered = filter(new BytesArray(value), filter);
+                visitor.binaryField(fieldInfo, BytesReference.toBytes(filtered));
             } else {
                 visitor.binaryField(fieldInfo, value);
             }
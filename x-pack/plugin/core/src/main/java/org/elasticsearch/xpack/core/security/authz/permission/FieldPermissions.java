@@ -61,6 +61,8 @@ public final class FieldPermissions implements Accountable {
     private final CharacterRunAutomaton permittedFieldsAutomaton;
     private final boolean permittedFieldsAutomatonIsTotal;
     private final Automaton originalAutomaton;
+    // the field infos of segments filtered by this instance, shared across searches
+    private final FieldSubsetReader.FieldInfosCache fieldInfosCache;
 
     private final long ramBytesUsed;
 
@@ -78,12 +80,22 @@ public final class FieldPermissions implements Accountable {
     /** Constructor that enables field-level security based on include/exclude rules. Exclude rules
      *  have precedence over include rules. */
     FieldPermissions(FieldPermissionsDefinition fieldPermissionsDefinition, Automaton permittedFieldsAutomaton) {
+        this(fieldPermissionsDefinition, permittedFieldsAutomaton, new FieldSubsetReader.FieldInfosCache());
+    }
+
+    /**
+     * Constructor that enables field-level security based on the given automaton and shares the filtered field infos of segments
+     * with all other instances that use {@code fieldInfosCache}, which must permit the same fields.
+     */
+    private FieldPermissions(FieldPermissionsDefinition fieldPermissionsDefinition, Automaton permittedFieldsAutomaton,
+                             FieldSubsetReader.FieldInfosCache fieldInfosCache) {
         if (permittedFieldsAutomaton.isDeterministic() == false && permittedFieldsAutomaton.getNumStates() > 1) {
             // we only accept deterministic automata so that the CharacterRunAutomaton constructor
             // directly wraps the provided automaton
             throw new IllegalArgumentException("Only accepts deterministic automata");
         }
         this.fieldPermissionsDefinition = fieldPermissionsDefinition;
+        this.fieldInfosCache = fieldInfosCache;
         this.originalAutomaton = permittedFieldsAutomaton;
         this.permittedFieldsAutomaton = new CharacterRunAutomaton(permittedFieldsAutomaton);
         // we cache the result of isTotal since this might be a costly operation
@@ -173,11 +185,12 @@ public final class FieldPermissions implements Accountable {
     public FieldPermissions limitFieldPermissions(FieldPermissions limitedBy) {
         if (hasFieldLevelSecurity() && limitedBy != null && limitedBy.hasFieldLevelSecurity()) {
             Automaton permittedFieldsAutomaton = Automatons.intersectAndMinimize(getIncludeAutomaton(), limitedBy.getIncludeAutomaton());
-            return new FieldPermissions(null, permittedFieldsAutomaton);
+            return new FieldPermissions(null, permittedFieldsAutomaton, fieldInfosCache.intersection(limitedBy.fieldInfosCache));
         } else if (limitedBy != null && limitedBy.hasFieldLevelSecurity()) {
-            return new FieldPermissions(limitedBy.getFieldPermissionsDefinition(), limitedBy.getIncludeAutomaton());
+            return new FieldPermissions(limitedBy.getFieldPermissionsDefinition(), limitedBy.getIncludeAutomaton(),
+                limitedBy.fieldInfosCache);
         } else if (hasFieldLevelSecurity()) {
-            return new FieldPermissions(getFieldPermissionsDefinition(), getIncludeAutomaton());
+            return new FieldPermissions(getFieldPermissionsDefinition(), getIncludeAutomaton(), fieldInfosCache);
         }
         return FieldPermissions.DEFAULT;
     }
@@ -204,7 +217,7 @@ public final class FieldPermissions implements Accountable {
         if (hasFieldLevelSecurity() == false) {
             return reader;
         }
-        return FieldSubsetReader.wrap(reader, permittedFieldsAutomaton);
+        return FieldSubsetReader.wrap(reader, permittedFieldsAutomaton, fieldInfosCache);
     }
 
     Automaton getIncludeAutomaton() {
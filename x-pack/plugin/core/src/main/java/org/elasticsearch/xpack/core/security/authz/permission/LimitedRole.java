@@ -16,7 +16,10 @@ import org.elasticsearch.xpack.core.security.authz.privilege.ApplicationPrivileg
 import org.elasticsearch.xpack.core.security.authz.privilege.ClusterPrivilege;
 import org.elasticsearch.xpack.core.security.support.Automatons;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -46,6 +49,13 @@ public final class LimitedRole extends Role {
         throw new UnsupportedOperationException("cannot retrieve indices permission on limited role");
     }
 
+    @Override
+    public List<IndicesPermission> indicesPermissions() {
+        final List<IndicesPermission> permissions = new ArrayList<>(limitedBy.indicesPermissions());
+        permissions.add(0, super.indices());
+        return Collections.unmodifiableList(permissions);
+    }
+
     @Override
     public ApplicationPermission application() {
         throw new UnsupportedOperationException("cannot retrieve application permission on limited role");
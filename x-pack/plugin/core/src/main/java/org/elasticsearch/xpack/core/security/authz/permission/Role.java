@@ -64,6 +64,14 @@ public class Role {
         return indices;
     }
 
+    /**
+     * @return the indices permissions that decide which indices this role may access. Roles built from the same cached roles return
+     * the same instances, so they can be used to identify the indices privileges of a role that is rebuilt per request.
+     */
+    public List<IndicesPermission> indicesPermissions() {
+        return List.of(indices);
+    }
+
     public ApplicationPermission application() {
         return application;
     }
@@ -19,17 +19,21 @@ import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.BitSet;
 import org.apache.lucene.util.BitSetIterator;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.SparseFixedBitSet;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.CheckedBiConsumer;
 import org.elasticsearch.common.CheckedConsumer;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.mapper.FieldMapper;
@@ -40,6 +44,7 @@ import org.elasticsearch.index.mapper.MockFieldMapper;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.SearchExecutionContext;
 import org.elasticsearch.index.query.TermQueryBuilder;
+import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.IndexSettingsModule;
@@ -510,6 +515,121 @@ public class DocumentSubsetBitsetCacheTests extends ESTestCase {
         }
     }
 
+    public void testSparseRoleBitSets() throws Exception {
+        final int maxDocs = randomIntBetween(1 << 14, 1 << 16);
+        final FixedBitSet matches = new FixedBitSet(maxDocs);
+        for (int i = randomIntBetween(1, 10); i > 0; i--) {
+            matches.set(randomIntBetween(0, maxDocs - 1));
+        }
+        // a pessimistic cost estimate makes BitSet#of start with a dense bitset
+        final DocIdSetIterator it = new BitSetIterator(matches, maxDocs);
+        final BitSet bitSet = DocumentSubsetBitsetCache.bitSetFromDocIterator(it, maxDocs);
+        assertThat(bitSet, instanceOf(SparseFixedBitSet.class));
+        assertThat(bitSet.cardinality(), equalTo(matches.cardinality()));
+        for (int i = 0; i < maxDocs; i++) {
+            assertThat(bitSet.get(i), equalTo(matches.get(i)));
+        }
+    }
+
+    public void testWarmerBuildsBitSetsOfRecentlyUsedQueries() throws Exception {
+        final DocumentSubsetBitsetCache cache = newCache(Settings.EMPTY);
+        final ShardId shardId = new ShardId("test", "_na_", 0);
+        final IndexShard indexShard = mock(IndexShard.class);
+        when(indexShard.shardId()).thenReturn(shardId);
+        final Query query = new TermQuery(new Term("field", "value"));
+
+        final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory directory = newDirectory(); IndexWriter writer = new IndexWriter(directory, config)) {
+            final Document document = new Document();
+            document.add(new StringField("field", "value", Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+
+            final ElasticsearchDirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(directory), shardId);
+            try {
+                // looking up bitsets doesn't record the query, wrapping a reader of the shard with it does
+                assertThat(cache.getBitSet(query, reader.leaves().get(0)), notNullValue());
+                assertThat(cache.usageStats().get("build_count"), equalTo(1L));
+                DocumentSubsetReader.wrap(reader, cache, query);
+
+                // a refresh brings a new segment, the warmer builds its bitset for the query that was used on the shard
+                writer.addDocument(document);
+                writer.commit();
+                final ElasticsearchDirectoryReader newReader = (ElasticsearchDirectoryReader) DirectoryReader.openIfChanged(reader);
+                try {
+                    assertThat(newReader.leaves().size(), equalTo(2));
+                    cache.createWarmerListener().warmReader(indexShard, newReader).awaitTermination();
+                    assertThat(cache.entryCount(), equalTo(2));
+                    assertThat(cache.usageStats().get("build_count"), equalTo(2L));
+                    assertThat(cache.usageStats().get("warmed_count"), equalTo(1L));
+
+                    for (LeafReaderContext leaf : newReader.leaves()) {
+                        assertThat(cache.getBitSet(query, leaf), notNullValue());
+                    }
+                    assertThat(cache.usageStats().get("build_count"), equalTo(2L));
+                } finally {
+                    newReader.close();
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    public void testWarmingDisabled() throws Exception {
+        final Settings settings = Settings.builder().put(DocumentSubsetBitsetCache.CACHE_WARM_QUERIES_SETTING.getKey(), 0).build();
+        final DocumentSubsetBitsetCache cache = newCache(settings);
+        final ShardId shardId = new ShardId("test", "_na_", 0);
+        final IndexShard indexShard = mock(IndexShard.class);
+        when(indexShard.shardId()).thenReturn(shardId);
+
+        final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory directory = newDirectory(); IndexWriter writer = new IndexWriter(directory, config)) {
+            final Document document = new Document();
+            document.add(new StringField("field", "value", Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+            try (DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(directory), shardId)) {
+                cache.recordQuery(new TermQuery(new Term("field", "value")), shardId);
+                cache.getBitSet(new TermQuery(new Term("field", "value")), reader.leaves().get(0));
+
+                writer.addDocument(document);
+                writer.commit();
+                try (ElasticsearchDirectoryReader newReader = (ElasticsearchDirectoryReader) DirectoryReader.openIfChanged(reader)) {
+                    cache.createWarmerListener().warmReader(indexShard, newReader).awaitTermination();
+                    assertThat(cache.entryCount(), equalTo(1));
+                    assertThat(cache.usageStats().get("warmed_count"), equalTo(0L));
+                }
+            }
+        }
+    }
+
+    public void testBitSetLookupsDontRecordQueries() throws Exception {
+        final DocumentSubsetBitsetCache cache = newCache(Settings.EMPTY);
+        final ShardId shardId = new ShardId("test", "_na_", 0);
+        final IndexShard indexShard = mock(IndexShard.class);
+        when(indexShard.shardId()).thenReturn(shardId);
+
+        final IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer()).setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory directory = newDirectory(); IndexWriter writer = new IndexWriter(directory, config)) {
+            final Document document = new Document();
+            document.add(new StringField("field", "value", Field.Store.NO));
+            writer.addDocument(document);
+            writer.commit();
+            try (DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(directory), shardId)) {
+                cache.getBitSet(new TermQuery(new Term("field", "value")), reader.leaves().get(0));
+
+                writer.addDocument(document);
+                writer.commit();
+                try (ElasticsearchDirectoryReader newReader = (ElasticsearchDirectoryReader) DirectoryReader.openIfChanged(reader)) {
+                    cache.createWarmerListener().warmReader(indexShard, newReader).awaitTermination();
+                    assertThat(cache.entryCount(), equalTo(1));
+                    assertThat(cache.usageStats().get("warmed_count"), equalTo(0L));
+                }
+            }
+        }
+    }
+
     private void runTestOnIndex(CheckedBiConsumer<SearchExecutionContext, LeafReaderContext, Exception> body) throws Exception {
         runTestOnIndices(1, ctx -> {
             final TestIndexContext indexContext = ctx.get(0);
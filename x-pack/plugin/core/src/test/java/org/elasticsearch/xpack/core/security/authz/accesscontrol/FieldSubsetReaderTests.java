@@ -54,6 +54,7 @@ import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.metadata.MappingMetadata;
 import org.elasticsearch.cluster.metadata.Metadata;
 import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.lucene.index.SequentialStoredFieldsLeafReader;
 import org.elasticsearch.common.settings.Settings;
@@ -569,6 +570,38 @@ public class FieldSubsetReaderTests extends ESTestCase {
         IOUtils.close(ir, iw, dir);
     }
 
+    /**
+     * test filtered fieldinfos are shared by readers wrapped with the same cache
+     */
+    public void testFieldInfosCache() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriterConfig iwc = new IndexWriterConfig(null);
+        IndexWriter iw = new IndexWriter(dir, iwc);
+
+        Document doc = new Document();
+        doc.add(new StringField("fieldA", "test", Field.Store.NO));
+        doc.add(new StringField("fieldB", "test", Field.Store.NO));
+        iw.addDocument(doc);
+
+        CharacterRunAutomaton filter = new CharacterRunAutomaton(Automata.makeString("fieldA"));
+        FieldSubsetReader.FieldInfosCache cache = new FieldSubsetReader.FieldInfosCache();
+        DirectoryReader in = DirectoryReader.open(iw);
+        DirectoryReader ir1 = FieldSubsetReader.wrap(in, filter, cache);
+        DirectoryReader ir2 = FieldSubsetReader.wrap(in, filter, cache);
+
+        FieldInfos infos = ir1.leaves().get(0).reader().getFieldInfos();
+        assertEquals(1, infos.size());
+        assertNotNull(infos.fieldInfo("fieldA"));
+        assertSame(infos, ir2.leaves().get(0).reader().getFieldInfos());
+
+        // a reader that is wrapped with another cache filters the field infos again
+        DirectoryReader ir3 = FieldSubsetReader.wrap(in, filter);
+        assertNotSame(infos, ir3.leaves().get(0).reader().getFieldInfos());
+
+        TestUtil.checkReader(ir1);
+        IOUtils.close(in, iw, dir);
+    }
+
     /**
      * test special handling for _source field.
      */
@@ -740,6 +773,30 @@ public class FieldSubsetReaderTests extends ESTestCase {
         assertEquals(expected, filtered);
     }
 
+    public void testStreamingSourceFiltering() throws IOException {
+        String source = "{\"foo\":\"value\",\"bar\":[{\"foo\":\"1\"},{\"baz\":\"2\"},12,[{\"baz\":3}]],"
+            + "\"obj\":{\"bar\":42,\"baz\":{\"a\":null,\"b\":[1,2]}},\"empty\":{}}";
+        Map<String, Object> map = XContentHelper.convertToMap(XContentType.JSON.xContent(), source, false);
+        List<CharacterRunAutomaton> includes = List.of(
+            new CharacterRunAutomaton(Automata.makeAnyString()),
+            new CharacterRunAutomaton(Automata.makeString("foo")),
+            new CharacterRunAutomaton(Automatons.patterns("bar.baz")),
+            new CharacterRunAutomaton(Automatons.patterns("bar")),
+            new CharacterRunAutomaton(Automatons.patterns("*.baz")),
+            new CharacterRunAutomaton(Automatons.patterns("obj.baz.*")),
+            new CharacterRunAutomaton(Automatons.patterns("empty", "nothing")),
+            new CharacterRunAutomaton(Operations.minus(Automata.makeAnyString(), Automatons.patterns("obj.*"),
+                Operations.DEFAULT_MAX_DETERMINIZED_STATES)));
+        for (CharacterRunAutomaton include : includes) {
+            XContentType xContentType = randomFrom(XContentType.JSON, XContentType.SMILE, XContentType.CBOR, XContentType.YAML);
+            BytesReference bytes = XContentHelper.toXContent(
+                (builder, params) -> builder.mapContents(map), xContentType, false);
+            BytesReference filtered = FieldSubsetReader.filter(bytes, include);
+            Map<String, Object> actual = XContentHelper.convertToMap(filtered, false, xContentType).v2();
+            assertEquals(FieldSubsetReader.filter(map, include, 0), actual);
+        }
+    }
+
     /**
      * test special handling for _field_names field.
      */
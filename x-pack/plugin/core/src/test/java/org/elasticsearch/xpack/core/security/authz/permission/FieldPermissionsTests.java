@@ -7,6 +7,14 @@
 
 package org.elasticsearch.xpack.core.security.authz.permission;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.automaton.CharacterRunAutomaton;
 import org.elasticsearch.test.ESTestCase;
 import org.hamcrest.core.IsSame;
@@ -75,6 +83,43 @@ public class FieldPermissionsTests extends ESTestCase {
         }
     }
 
+    public void testLimitedFieldPermissionsShareFilteredFieldInfos() throws IOException {
+        final FieldPermissions fieldPermissions1 = new FieldPermissions(fieldPermissionDef(new String[] { "f1", "f2" }, null));
+        final FieldPermissions fieldPermissions2 = new FieldPermissions(fieldPermissionDef(new String[] { "f1", "f3" }, null));
+
+        try (Directory dir = newDirectory(); IndexWriter iw = new IndexWriter(dir, new IndexWriterConfig(null))) {
+            Document doc = new Document();
+            doc.add(new StringField("f1", "test", Field.Store.NO));
+            doc.add(new StringField("f2", "test", Field.Store.NO));
+            doc.add(new StringField("f3", "test", Field.Store.NO));
+            iw.addDocument(doc);
+
+            try (DirectoryReader in = DirectoryReader.open(iw)) {
+                // limited permissions are built on every request from the same permissions, they must reuse the filtered field infos
+                final FieldInfos intersection = fieldInfos(fieldPermissions1.limitFieldPermissions(fieldPermissions2), in);
+                assertThat(intersection.size(), is(1));
+                assertThat(fieldInfos(fieldPermissions1.limitFieldPermissions(fieldPermissions2), in), IsSame.sameInstance(intersection));
+
+                // but not with permissions limited by other permissions
+                assertThat(fieldInfos(fieldPermissions2.limitFieldPermissions(fieldPermissions1), in),
+                    not(IsSame.sameInstance(intersection)));
+                final FieldPermissions fieldPermissions3 = new FieldPermissions(fieldPermissionDef(new String[] { "f1", "f3" }, null));
+                assertThat(fieldInfos(fieldPermissions1.limitFieldPermissions(fieldPermissions3), in),
+                    not(IsSame.sameInstance(intersection)));
+
+                // permissions that are only limited on one side filter the same fields as the permissions they are built from
+                assertThat(fieldInfos(fieldPermissions1.limitFieldPermissions(FieldPermissions.DEFAULT), in),
+                    IsSame.sameInstance(fieldInfos(fieldPermissions1, in)));
+                assertThat(fieldInfos(FieldPermissions.DEFAULT.limitFieldPermissions(fieldPermissions2), in),
+                    IsSame.sameInstance(fieldInfos(fieldPermissions2, in)));
+            }
+        }
+    }
+
+    private static FieldInfos fieldInfos(FieldPermissions fieldPermissions, DirectoryReader reader) throws IOException {
+        return fieldPermissions.filter(reader).leaves().get(0).reader().getFieldInfos();
+    }
+
     private static FieldPermissionsDefinition fieldPermissionDef(String[] granted, String[] denied) {
         return new FieldPermissionsDefinition(granted, denied);
     }
@@ -364,7 +364,10 @@ public class RBACEngine implements AuthorizationEngine {
                                       Map<String, IndexAbstraction> indicesLookup, ActionListener<List<String>> listener) {
         if (authorizationInfo instanceof RBACAuthorizationInfo) {
             final Role role = ((RBACAuthorizationInfo) authorizationInfo).getRole();
-            listener.onResponse(resolveAuthorizedIndicesFromRole(role, requestInfo, indicesLookup));
+            final TransportRequest request = requestInfo.getRequest();
+            final boolean includeDataStreams = (request instanceof IndicesRequest) && ((IndicesRequest) request).includeDataStreams();
+            listener.onResponse(rolesStore.getAuthorizedIndicesCache().computeIfAbsent(role, requestInfo.getAction(), includeDataStreams,
+                indicesLookup, () -> resolveAuthorizedIndicesFromRole(role, requestInfo, indicesLookup)));
         } else {
             listener.onFailure(
                 new IllegalArgumentException("unsupported authorization info:" + authorizationInfo.getClass().getSimpleName()));
@@ -0,0 +1,196 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+
+package org.elasticsearch.xpack.security.authz.store;
+
+import org.elasticsearch.cluster.metadata.IndexAbstraction;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ReleasableLock;
+import org.elasticsearch.xpack.core.security.authz.permission.IndicesPermission;
+import org.elasticsearch.xpack.core.security.authz.permission.Role;
+import org.elasticsearch.xpack.core.security.support.CacheIteratorHelper;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the list of indices, aliases and data streams that a {@link Role} is authorized to access for a given action.
+ * Resolving that list means testing every entry of the cluster's indices lookup against the role, which dominates the cost of
+ * authorizing wildcard requests on clusters with many indices. Entries are keyed on the identity of both the
+ * {@link Role#indicesPermissions() indices permissions} of the role and the indices lookup: a new lookup is built whenever the
+ * cluster metadata changes and new permissions are built whenever a role is invalidated, so a cached entry can never be served for
+ * stale metadata or stale privileges. Keying on the permissions rather than the role lets the limited roles that are rebuilt for
+ * every API key request share entries as long as the roles they are built from stay cached.
+ * <p>
+ * Only entries for the newest lookup we've seen are kept. Requests still holding a lookup that we've moved on from resolve their
+ * indices without touching the cache so they can't push out the entries for the current one.
+ */
+public final class AuthorizedIndicesCache {
+
+    static final Setting<Integer> CACHE_SIZE_SETTING =
+        Setting.intSetting("xpack.security.authz.store.authorized_indices.cache.max_size", 1000, Property.NodeScope);
+
+    /**
+     * How many replaced lookups we remember. Requests are only in flight with an older lookup for a short time so we only need
+     * to remember the last few.
+     */
+    private static final int RETIRED_LOOKUPS = 8;
+
+    private final Cache<Key, List<String>> cache;
+    private final CacheIteratorHelper<Key, List<String>> cacheHelper;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    /** The newest indices lookup. Only modified while holding the lock on {@link #retiredLookups}. */
+    private volatile Map<String, IndexAbstraction> currentLookup;
+    /** Lookups that {@link #currentLookup} replaced, newest first. Weak so we don't keep old metadata around. */
+    private final Deque<WeakReference<Map<String, IndexAbstraction>>> retiredLookups = new ArrayDeque<>();
+
+    public AuthorizedIndicesCache(Settings settings) {
+        final CacheBuilder<Key, List<String>> builder = CacheBuilder.builder();
+        final int cacheSize = CACHE_SIZE_SETTING.get(settings);
+        if (cacheSize >= 0) {
+            builder.setMaximumWeight(cacheSize);
+        }
+        this.cache = builder.build();
+        this.cacheHelper = new CacheIteratorHelper<>(cache);
+    }
+
+    /**
+     * Returns the authorized indices of {@code role} for {@code action} against {@code lookup}, calling {@code loader} to resolve them
+     * if they are not cached yet.
+     */
+    public List<String> computeIfAbsent(Role role, String action, boolean includeDataStreams, Map<String, IndexAbstraction> lookup,
+                                        Supplier<List<String>> loader) {
+        if (lookup != currentLookup && advanceTo(lookup) == false) {
+            misses.incrementAndGet();
+            return loader.get();
+        }
+        final Key key = new Key(role, action, includeDataStreams, lookup);
+        final List<String> cached = cache.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        try (ReleasableLock ignored = cacheHelper.acquireUpdateLock()) {
+            final List<String> indices = cache.computeIfAbsent(key, k -> {
+                misses.incrementAndGet();
+                return loader.get();
+            });
+            if (lookup != currentLookup) {
+                // a newer lookup arrived while we were loading and may have already dropped the stale entries
+                cache.invalidate(key);
+            }
+            return indices;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("failed to resolve authorized indices for action [" + action + "]", e.getCause());
+        }
+    }
+
+    /**
+     * Make {@code lookup} the current lookup unless it is one we've already replaced, dropping the entries of every other lookup.
+     * @return {@code true} if {@code lookup} is now the current lookup
+     */
+    private boolean advanceTo(Map<String, IndexAbstraction> lookup) {
+        synchronized (retiredLookups) {
+            final Map<String, IndexAbstraction> previous = currentLookup;
+            if (previous == lookup) {
+                return true;
+            }
+            for (WeakReference<Map<String, IndexAbstraction>> retired : retiredLookups) {
+                if (retired.get() == lookup) {
+                    return false;
+                }
+            }
+            if (previous != null) {
+                retiredLookups.addFirst(new WeakReference<>(previous));
+                if (retiredLookups.size() > RETIRED_LOOKUPS) {
+                    retiredLookups.removeLast();
+                }
+            }
+            currentLookup = lookup;
+        }
+        // entries resolved against an older lookup can never be hit again, release them rather than waiting for eviction
+        cacheHelper.removeKeysIf(key -> key.lookup != currentLookup);
+        return true;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> usageStats() {
+        return Map.of(
+            "count", cache.count(),
+            "hits", hits.get(),
+            "misses", misses.get()
+        );
+    }
+
+    private static final class Key {
+        private final List<IndicesPermission> permissions;
+        private final String action;
+        private final boolean includeDataStreams;
+        private final Map<String, IndexAbstraction> lookup;
+
+        private Key(Role role, String action, boolean includeDataStreams, Map<String, IndexAbstraction> lookup) {
+            this.permissions = role.indicesPermissions();
+            this.action = action;
+            this.includeDataStreams = includeDataStreams;
+            this.lookup = lookup;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return samePermissions(permissions, other.permissions)
+                && lookup == other.lookup
+                && includeDataStreams == other.includeDataStreams
+                && action.equals(other.action);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(System.identityHashCode(lookup), action, includeDataStreams);
+            for (IndicesPermission permission : permissions) {
+                result = 31 * result + System.identityHashCode(permission);
+            }
+            return result;
+        }
+
+        private static boolean samePermissions(List<IndicesPermission> permissions, List<IndicesPermission> otherPermissions) {
+            if (permissions.size() != otherPermissions.size()) {
+                return false;
+            }
+            for (int i = 0; i < permissions.size(); i++) {
+                if (permissions.get(i) != otherPermissions.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -105,6 +105,7 @@ public class CompositeRolesStore {
     private final CacheIteratorHelper<RoleKey, Role> roleCacheHelper;
     private final Cache<String, Boolean> negativeLookupCache;
     private final DocumentSubsetBitsetCache dlsBitsetCache;
+    private final AuthorizedIndicesCache authorizedIndicesCache;
     private final ThreadContext threadContext;
     private final AtomicLong numInvalidation = new AtomicLong();
     private final AnonymousUser anonymousUser;
@@ -145,6 +146,7 @@ public class CompositeRolesStore {
             nlcBuilder.setMaximumWeight(nlcCacheSize);
         }
         this.negativeLookupCache = nlcBuilder.build();
+        this.authorizedIndicesCache = new AuthorizedIndicesCache(settings);
         this.builtInRoleProviders = List.of(reservedRolesStore, fileRolesStore, nativeRolesStore);
         if (rolesProviders.isEmpty()) {
             this.allRoleProviders = this.builtInRoleProviders;
@@ -494,6 +496,13 @@ public class CompositeRolesStore {
         }
     }
 
+    /**
+     * @return the cache of authorized indices per role and action, shared by every authorization of roles built by this store
+     */
+    public AuthorizedIndicesCache getAuthorizedIndicesCache() {
+        return authorizedIndicesCache;
+    }
+
     public void invalidateAll() {
         numInvalidation.incrementAndGet();
         negativeLookupCache.invalidateAll();
@@ -501,6 +510,7 @@ public class CompositeRolesStore {
             roleCache.invalidateAll();
         }
         dlsBitsetCache.clear("role store invalidation");
+        authorizedIndicesCache.invalidateAll();
     }
 
     public void invalidate(String role) {
@@ -520,6 +530,7 @@ public class CompositeRolesStore {
         final Map<String, Object> usage = new HashMap<>(2);
         usage.put("file", fileRolesStore.usageStats());
         usage.put("dls", Map.of("bit_set_cache", dlsBitsetCache.usageStats()));
+        usage.put("authorized_indices_cache", authorizedIndicesCache.usageStats());
         nativeRolesStore.usageStats(ActionListener.wrap(map -> {
             usage.put("native", map);
             listener.onResponse(usage);
@@ -656,6 +667,6 @@ public class CompositeRolesStore {
     }
 
     public static List<Setting<?>> getSettings() {
-        return Arrays.asList(CACHE_SIZE_SETTING, NEGATIVE_LOOKUP_CACHE_SIZE_SETTING);
+        return Arrays.asList(CACHE_SIZE_SETTING, NEGATIVE_LOOKUP_CACHE_SIZE_SETTING, AuthorizedIndicesCache.CACHE_SIZE_SETTING);
     }
 }
@@ -151,6 +151,7 @@ import org.elasticsearch.xpack.security.audit.AuditTrail;
 import org.elasticsearch.xpack.security.audit.AuditTrailService;
 import org.elasticsearch.xpack.security.audit.AuditUtil;
 import org.elasticsearch.xpack.security.audit.logfile.LoggingAuditTrail;
+import org.elasticsearch.xpack.security.authz.store.AuthorizedIndicesCache;
 import org.elasticsearch.xpack.security.authz.store.CompositeRolesStore;
 import org.elasticsearch.xpack.security.authz.store.NativePrivilegeStore;
 import org.elasticsearch.xpack.security.operator.OperatorPrivileges;
@@ -228,6 +229,7 @@ public class AuthorizationServiceTests extends ESTestCase {
     @Before
     public void setup() {
         rolesStore = mock(CompositeRolesStore.class);
+        when(rolesStore.getAuthorizedIndicesCache()).thenReturn(new AuthorizedIndicesCache(Settings.EMPTY));
         clusterService = mock(ClusterService.class);
         final Settings settings = Settings.builder()
             .put("cluster.remote.other_cluster.seeds", "localhost:9999")
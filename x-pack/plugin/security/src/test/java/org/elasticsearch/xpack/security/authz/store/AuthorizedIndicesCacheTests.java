@@ -0,0 +1,163 @@
+/*
+ * Copyright Elasticsearch B.V. and/or licensed to Elasticsearch B.V. under one
+ * or more contributor license agreements. Licensed under the Elastic License
+ * 2.0; you may not use this file except in compliance with the Elastic License
+ * 2.0.
+ */
+package org.elasticsearch.xpack.security.authz.store;
+
+import org.elasticsearch.action.search.SearchAction;
+import org.elasticsearch.cluster.metadata.IndexAbstraction;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.xpack.core.security.authz.permission.LimitedRole;
+import org.elasticsearch.xpack.core.security.authz.permission.Role;
+import org.elasticsearch.xpack.core.security.authz.privilege.IndexPrivilege;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class AuthorizedIndicesCacheTests extends ESTestCase {
+
+    public void testCachedPerRoleActionAndLookup() {
+        final AuthorizedIndicesCache cache = new AuthorizedIndicesCache(Settings.EMPTY);
+        final Role role = Role.builder("test").add(IndexPrivilege.READ, "*").build();
+        final Map<String, IndexAbstraction> lookup = new TreeMap<>();
+        final AtomicInteger loads = new AtomicInteger();
+        final List<String> indices = List.of("index");
+
+        final List<String> first = cache.computeIfAbsent(role, SearchAction.NAME, true, lookup, () -> {
+            loads.incrementAndGet();
+            return indices;
+        });
+        final List<String> second = cache.computeIfAbsent(role, SearchAction.NAME, true, lookup, () -> {
+            loads.incrementAndGet();
+            return List.of();
+        });
+        assertThat(first, sameInstance(indices));
+        assertThat(second, sameInstance(indices));
+        assertThat(loads.get(), equalTo(1));
+
+        // a different action, data stream flag or role must not share the entry
+        cache.computeIfAbsent(role, "indices:data/read/get", true, lookup, () -> {
+            loads.incrementAndGet();
+            return indices;
+        });
+        cache.computeIfAbsent(role, SearchAction.NAME, false, lookup, () -> {
+            loads.incrementAndGet();
+            return indices;
+        });
+        cache.computeIfAbsent(Role.builder("test").add(IndexPrivilege.READ, "*").build(), SearchAction.NAME, true, lookup, () -> {
+            loads.incrementAndGet();
+            return indices;
+        });
+        assertThat(loads.get(), equalTo(4));
+
+        final Map<String, Object> stats = cache.usageStats();
+        assertThat(stats.get("hits"), equalTo(1L));
+        assertThat(stats.get("misses"), equalTo(4L));
+        assertThat(stats.get("count"), equalTo(4));
+    }
+
+    public void testLimitedRolesBuiltFromTheSameRolesShareEntries() {
+        final AuthorizedIndicesCache cache = new AuthorizedIndicesCache(Settings.EMPTY);
+        final Role apiKeyRole = Role.builder("api_key").add(IndexPrivilege.READ, "logs-*").build();
+        final Role userRole = Role.builder("user").add(IndexPrivilege.READ, "*").build();
+        final Map<String, IndexAbstraction> lookup = new TreeMap<>();
+        final AtomicInteger loads = new AtomicInteger();
+
+        // a limited role is built for every API key request, but from the same cached roles
+        for (int i = 0; i < 3; i++) {
+            cache.computeIfAbsent(LimitedRole.createLimitedRole(apiKeyRole, userRole), SearchAction.NAME, true, lookup, () -> {
+                loads.incrementAndGet();
+                return List.of("logs-1");
+            });
+        }
+        assertThat(loads.get(), equalTo(1));
+
+        // neither the role it limits, nor the same role limited by another role may share the entry
+        cache.computeIfAbsent(apiKeyRole, SearchAction.NAME, true, lookup, () -> {
+            loads.incrementAndGet();
+            return List.of("logs-1");
+        });
+        final Role otherUserRole = Role.builder("user").add(IndexPrivilege.READ, "*").build();
+        cache.computeIfAbsent(LimitedRole.createLimitedRole(apiKeyRole, otherUserRole), SearchAction.NAME, true, lookup, () -> {
+            loads.incrementAndGet();
+            return List.of("logs-1");
+        });
+        assertThat(loads.get(), equalTo(3));
+        assertThat(cache.usageStats().get("hits"), equalTo(2L));
+    }
+
+    public void testNewLookupInvalidatesEntries() {
+        final AuthorizedIndicesCache cache = new AuthorizedIndicesCache(Settings.EMPTY);
+        final Role role = Role.builder("test").add(IndexPrivilege.READ, "*").build();
+        cache.computeIfAbsent(role, SearchAction.NAME, true, new TreeMap<>(), () -> List.of("old"));
+        final List<String> indices = cache.computeIfAbsent(role, SearchAction.NAME, true, new TreeMap<>(), () -> List.of("new"));
+        assertThat(indices, equalTo(List.of("new")));
+        assertThat(cache.usageStats().get("count"), equalTo(1));
+
+        cache.invalidateAll();
+        assertThat(cache.usageStats().get("count"), equalTo(0));
+    }
+
+    public void testOlderLookupBypassesCache() {
+        final AuthorizedIndicesCache cache = new AuthorizedIndicesCache(Settings.EMPTY);
+        final Role role = Role.builder("test").add(IndexPrivilege.READ, "*").build();
+        final Map<String, IndexAbstraction> oldLookup = new TreeMap<>();
+        final Map<String, IndexAbstraction> newLookup = new TreeMap<>();
+        cache.computeIfAbsent(role, SearchAction.NAME, true, oldLookup, () -> List.of("old"));
+        cache.computeIfAbsent(role, SearchAction.NAME, true, newLookup, () -> List.of("new"));
+
+        // a request still holding the replaced lookup is resolved but neither cached nor allowed to evict the current entries
+        final AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            final List<String> indices = cache.computeIfAbsent(role, SearchAction.NAME, true, oldLookup, () -> {
+                loads.incrementAndGet();
+                return List.of("old");
+            });
+            assertThat(indices, equalTo(List.of("old")));
+        }
+        assertThat(loads.get(), equalTo(3));
+        assertThat(cache.usageStats().get("count"), equalTo(1));
+        assertThat(cache.computeIfAbsent(role, SearchAction.NAME, true, newLookup, () -> List.of("reloaded")), equalTo(List.of("new")));
+    }
+
+    public void testConcurrentLookups() throws Exception {
+        final AuthorizedIndicesCache cache = new AuthorizedIndicesCache(Settings.EMPTY);
+        final Role role = Role.builder("test").add(IndexPrivilege.READ, "*").build();
+        final List<Map<String, IndexAbstraction>> lookups = List.of(new TreeMap<>(), new TreeMap<>(), new TreeMap<>());
+        final Thread[] threads = new Thread[between(2, 8)];
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads.length; t++) {
+            final Random random = new Random(randomLong());
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                for (int i = 0; i < 1000; i++) {
+                    final int l = random.nextInt(lookups.size());
+                    final List<String> indices = cache.computeIfAbsent(role, SearchAction.NAME, true, lookups.get(l),
+                        () -> List.of(Integer.toString(l)));
+                    assertThat(indices, equalTo(List.of(Integer.toString(l))));
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // only entries for the newest lookup survive
+        assertThat(cache.usageStats().get("count"), equalTo(1));
+    }
+}
@@ -9,11 +9,13 @@ package org.elasticsearch.xpack.transform.transforms.pivot;
 
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.Numbers;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.geo.builders.LineStringBuilder;
 import org.elasticsearch.common.geo.builders.PointBuilder;
 import org.elasticsearch.common.geo.builders.PolygonBuilder;
 import org.elasticsearch.common.geo.parsers.ShapeParser;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
 import org.elasticsearch.geometry.Rectangle;
 import org.elasticsearch.index.mapper.DateFieldMapper;
 import org.elasticsearch.search.aggregations.Aggregation;
@@ -25,6 +27,7 @@ import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregati
 import org.elasticsearch.search.aggregations.bucket.geogrid.GeoTileUtils;
 import org.elasticsearch.search.aggregations.metrics.GeoBounds;
 import org.elasticsearch.search.aggregations.metrics.GeoCentroid;
+import org.elasticsearch.search.aggregations.metrics.InternalCardinality;
 import org.elasticsearch.search.aggregations.metrics.MultiValueAggregation;
 import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregation.MultiValue;
 import org.elasticsearch.search.aggregations.metrics.NumericMetricsAggregation.SingleValue;
@@ -40,7 +43,9 @@ import org.elasticsearch.xpack.core.transform.transforms.pivot.SingleGroupSource
 import org.elasticsearch.xpack.transform.transforms.IDGenerator;
 import org.elasticsearch.xpack.transform.utils.OutputFieldNameConverter;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -54,6 +59,9 @@ import static org.elasticsearch.xpack.transform.transforms.pivot.SchemaUtil.isNu
 
 public final class AggregationResultUtils {
 
+    /** The type of the pre-aggregated HyperLogLog++ sketch field, see the analytics plugin. */
+    private static final String HLL_TYPE = "hll";
+
     private static final Map<String, AggValueExtractor> TYPE_VALUE_EXTRACTOR_MAP;
     static {
         Map<String, AggValueExtractor> tempMap = new HashMap<>();
@@ -259,6 +267,10 @@ public final class AggregationResultUtils {
             }
 
             String fieldType = fieldTypeMap.get(lookupFieldPrefix.isEmpty() ? agg.getName() : lookupFieldPrefix + "." + agg.getName());
+            // A cardinality that goes to a pre-aggregated sketch field is written as its sketch so that it can be unioned again
+            if (HLL_TYPE.equals(fieldType) && agg instanceof InternalCardinality) {
+                return cardinalitySketch((InternalCardinality) agg);
+            }
             // If the type is numeric or if the formatted string is the same as simply making the value a string,
             // gather the `value` type, otherwise utilize `getValueAsString` so we don't lose formatted outputs.
             if (isNumericType(fieldType) || aggregation.getValueAsString().equals(String.valueOf(aggregation.value()))) {
@@ -269,6 +281,18 @@ public final class AggregationResultUtils {
         }
     }
 
+    private static String cardinalitySketch(InternalCardinality cardinality) {
+        if (cardinality.getCounts() == null) {
+            return null;
+        }
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+            cardinality.getCounts().writeTo(0, out);
+            return Base64.getEncoder().encodeToString(BytesReference.toBytes(out.bytes()));
+        } catch (IOException e) {
+            throw new AggregationExtractionException("failed to serialize the sketch of aggregation [{}]", e, cardinality.getName());
+        }
+    }
+
     static class MultiValueAggExtractor implements AggValueExtractor {
         @Override
         public Object value(Aggregation agg, Map<String, String> fieldTypeMap, String lookupFieldPrefix) {
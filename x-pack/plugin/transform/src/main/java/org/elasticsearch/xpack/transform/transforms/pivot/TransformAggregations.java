@@ -69,6 +69,7 @@ public final class TransformAggregations {
         "matrix_stats",
         "nested",
         "percentile_ranks",
+        "random_sampler",
         "range",
         "reverse_nested",
         "sampler",
@@ -7,9 +7,12 @@
 
 package org.elasticsearch.xpack.transform.transforms.pivot;
 
+import com.carrotsearch.hppc.BitMixer;
 import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.geo.GeoPoint;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.xcontent.ContextParser;
 import org.elasticsearch.common.xcontent.DeprecationHandler;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
@@ -38,6 +41,8 @@ import org.elasticsearch.search.aggregations.metrics.CardinalityAggregationBuild
 import org.elasticsearch.search.aggregations.metrics.ExtendedStatsAggregationBuilder;
 import org.elasticsearch.search.aggregations.metrics.GeoBounds;
 import org.elasticsearch.search.aggregations.metrics.GeoCentroid;
+import org.elasticsearch.search.aggregations.metrics.HyperLogLogPlusPlus;
+import org.elasticsearch.search.aggregations.metrics.InternalCardinality;
 import org.elasticsearch.search.aggregations.metrics.InternalMultiValueAggregation;
 import org.elasticsearch.search.aggregations.metrics.InternalNumericMetricsAggregation;
 import org.elasticsearch.search.aggregations.metrics.MaxAggregationBuilder;
@@ -71,6 +76,7 @@ import org.elasticsearch.xpack.transform.transforms.pivot.AggregationResultUtils
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -759,6 +765,23 @@ public class AggregationResultUtilsTests extends ESTestCase {
         );
     }
 
+    public void testCardinalityToSketchFieldExtractor() throws IOException {
+        HyperLogLogPlusPlus counts = new HyperLogLogPlusPlus(HyperLogLogPlusPlus.DEFAULT_PRECISION, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        for (long i = 0; i < 10; i++) {
+            counts.collect(0, BitMixer.mix64(i));
+        }
+        Aggregation agg = new InternalCardinality("metric", counts, emptyMap());
+        assertThat(AggregationResultUtils.getExtractor(agg).value(agg, Collections.singletonMap("metric", "long"), ""), equalTo(10L));
+
+        Object sketch = AggregationResultUtils.getExtractor(agg).value(agg, Collections.singletonMap("metric", "hll"), "");
+        HyperLogLogPlusPlus merged = new HyperLogLogPlusPlus(HyperLogLogPlusPlus.DEFAULT_PRECISION, BigArrays.NON_RECYCLING_INSTANCE, 1);
+        merged.merge(0, new BytesArray(Base64.getDecoder().decode((String) sketch)).streamInput());
+        assertThat(merged.cardinality(0), equalTo(10L));
+
+        agg = new InternalCardinality("metric", null, emptyMap());
+        assertThat(AggregationResultUtils.getExtractor(agg).value(agg, Collections.singletonMap("metric", "hll"), ""), is(nullValue()));
+    }
+
     public void testMultiValueAggExtractor() {
         Aggregation agg = new TestMultiValueAggregation("mv_metric", Collections.singletonMap("ip", "192.168.1.1"));
 